@@ -0,0 +1,21 @@
+package com.example.deliveryproductservice.Exception;
+
+import lombok.Getter;
+import org.springframework.http.HttpStatus;
+
+/**
+ * Обработка изображения отклонена из-за перегрузки:
+ * 429 - очередь заполнена, 503 - не дождались памяти под декодирование
+ */
+@Getter
+public class ImageProcessingRejectedException extends RuntimeException {
+
+    private final HttpStatus status;
+    private final long retryAfterSeconds;
+
+    public ImageProcessingRejectedException(HttpStatus status, String message, long retryAfterSeconds) {
+        super(message);
+        this.status = status;
+        this.retryAfterSeconds = retryAfterSeconds;
+    }
+}
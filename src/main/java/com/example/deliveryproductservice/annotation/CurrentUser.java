@@ -4,7 +4,14 @@ import java.lang.annotation.Retention;
 import java.lang.annotation.RetentionPolicy;
 import java.lang.annotation.Target;
 
+/**
+ * Текущий пользователь (Long - id, AuthenticatedUser - весь principal).
+ * Как и @RequestHeader, по умолчанию обязателен: без principal запрос отклоняется с 401
+ * до вызова метода контроллера. required = false - вместо ошибки передается null.
+ */
 @Target(ElementType.PARAMETER)
 @Retention(RetentionPolicy.RUNTIME)
 public @interface CurrentUser {
+
+    boolean required() default true;
 }
@@ -0,0 +1,73 @@
+package com.example.deliveryproductservice.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+
+/**
+ * Неизменяемые данные пользователя, извлеченные из JWT за один разбор токена.
+ * JwtAuthenticationFilter кладет объект в атрибут запроса {@link #REQUEST_ATTRIBUTE},
+ * откуда его читают @CurrentUser и проверки ролей в контроллерах.
+ *
+ * @param userId    claim "userId"
+ * @param email     subject токена
+ * @param role      claim "role"
+ * @param expiresAt время истечения токена (epoch millis)
+ */
+public record AuthenticatedUser(Long userId, String email, String role, long expiresAt) {
+
+    public static final String REQUEST_ATTRIBUTE = AuthenticatedUser.class.getName();
+
+    public boolean isExpired(long nowMillis) {
+        return nowMillis >= expiresAt;
+    }
+
+    public boolean hasRole(String requiredRole) {
+        return requiredRole.equals(role);
+    }
+
+    /**
+     * Principal текущего запроса. Если JWT-фильтр его не установил (запрос пришел через gateway
+     * без Authorization), principal один раз собирается из заголовков X-User-* и кэшируется в атрибуте.
+     *
+     * @return principal или null для анонимного запроса
+     */
+    public static AuthenticatedUser from(HttpServletRequest request) {
+        if (request == null) {
+            return null;
+        }
+
+        Object attribute = request.getAttribute(REQUEST_ATTRIBUTE);
+        if (attribute instanceof AuthenticatedUser principal) {
+            return principal;
+        }
+
+        String userIdHeader = request.getHeader("X-User-Id");
+        String role = request.getHeader("X-User-Role");
+        if (userIdHeader == null && role == null) {
+            return null;
+        }
+
+        Long userId = null;
+        if (userIdHeader != null) {
+            try {
+                userId = Long.parseLong(userIdHeader);
+            } catch (NumberFormatException e) {
+                userId = null;
+            }
+        }
+
+        AuthenticatedUser principal = new AuthenticatedUser(
+                userId, request.getHeader("X-User-Email"), role, Long.MAX_VALUE);
+        request.setAttribute(REQUEST_ATTRIBUTE, principal);
+        return principal;
+    }
+
+    public static String roleOf(HttpServletRequest request) {
+        AuthenticatedUser principal = from(request);
+        return principal != null ? principal.role() : null;
+    }
+
+    public static String emailOf(HttpServletRequest request) {
+        AuthenticatedUser principal = from(request);
+        return principal != null ? principal.email() : null;
+    }
+}
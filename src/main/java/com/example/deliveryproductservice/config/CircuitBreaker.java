@@ -0,0 +1,177 @@
+package com.example.deliveryproductservice.config;
+
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.function.Consumer;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * 🔌 Circuit breaker для внешних вызовов.
+ * CLOSED - вызовы проходят; после {@code failureThreshold} ошибок подряд переходит в OPEN
+ * и отклоняет вызовы. Через {@code openDuration} пропускает один пробный вызов (HALF_OPEN):
+ * успех закрывает цепь, ошибка снова открывает ее.
+ */
+public class CircuitBreaker {
+
+    public enum State { CLOSED, OPEN, HALF_OPEN }
+
+    private final String name;
+    private final int failureThreshold;
+    private final long openDurationNanos;
+    private final Consumer<State> onStateChange;
+    private final LongSupplier nanoClock;
+
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private long openedAtNanos;
+    private boolean probeInFlight;
+
+    /**
+     * @param onStateChange вызывается вне блокировки при каждой смене состояния
+     */
+    public CircuitBreaker(String name, int failureThreshold, Duration openDuration, Consumer<State> onStateChange) {
+        this(name, failureThreshold, openDuration, onStateChange, System::nanoTime);
+    }
+
+    CircuitBreaker(String name, int failureThreshold, Duration openDuration, Consumer<State> onStateChange,
+                   LongSupplier nanoClock) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be at least 1: " + failureThreshold);
+        }
+        this.name = name;
+        this.failureThreshold = failureThreshold;
+        this.openDurationNanos = openDuration.toNanos();
+        this.onStateChange = onStateChange != null ? onStateChange : state -> { };
+        this.nanoClock = nanoClock;
+    }
+
+    /**
+     * Выполняет вызов через breaker.
+     *
+     * @throws CallNotPermittedException если цепь открыта
+     */
+    public <T> T execute(Supplier<T> call) {
+        if (!tryAcquirePermission()) {
+            throw new CallNotPermittedException(name);
+        }
+
+        T result;
+        try {
+            result = call.get();
+        } catch (RuntimeException e) {
+            if (isServiceFailure(e)) {
+                onFailure();
+            } else {
+                onSuccess();
+            }
+            throw e;
+        } catch (Error e) {
+            onFailure();
+            throw e;
+        }
+        onSuccess();
+        return result;
+    }
+
+    public boolean tryAcquirePermission() {
+        State changedTo = null;
+        boolean permitted;
+
+        synchronized (this) {
+            switch (state) {
+                case CLOSED -> permitted = true;
+                case OPEN -> {
+                    permitted = nanoClock.getAsLong() - openedAtNanos >= openDurationNanos;
+                    if (permitted) {
+                        state = State.HALF_OPEN;
+                        probeInFlight = true;
+                        changedTo = state;
+                    }
+                }
+                default -> {
+                    // HALF_OPEN: одновременно допускается только один пробный вызов
+                    permitted = !probeInFlight;
+                    probeInFlight = true;
+                }
+            }
+        }
+
+        notifyStateChange(changedTo);
+        return permitted;
+    }
+
+    /**
+     * Пропустил бы цепь вызов сейчас - без смены состояния и без занятия пробного вызова.
+     * Проверка перед дорогой подготовкой (ожидание лимита запросов), окончательное решение - в execute
+     */
+    public synchronized boolean allowRequest() {
+        return switch (state) {
+            case CLOSED -> true;
+            case OPEN -> nanoClock.getAsLong() - openedAtNanos >= openDurationNanos;
+            case HALF_OPEN -> !probeInFlight;
+        };
+    }
+
+    public void onSuccess() {
+        State changedTo = null;
+        synchronized (this) {
+            consecutiveFailures = 0;
+            probeInFlight = false;
+            if (state != State.CLOSED) {
+                state = State.CLOSED;
+                changedTo = state;
+            }
+        }
+        notifyStateChange(changedTo);
+    }
+
+    public void onFailure() {
+        State changedTo = null;
+        synchronized (this) {
+            consecutiveFailures++;
+            probeInFlight = false;
+            if (state == State.HALF_OPEN || (state == State.CLOSED && consecutiveFailures >= failureThreshold)) {
+                state = State.OPEN;
+                openedAtNanos = nanoClock.getAsLong();
+                changedTo = state;
+            }
+        }
+        notifyStateChange(changedTo);
+    }
+
+    public synchronized State getState() {
+        return state;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Duration getOpenDuration() {
+        return Duration.ofNanos(openDurationNanos);
+    }
+
+    /**
+     * Ошибки клиента (кроме 429) относятся к конкретному запросу: сервис при этом доступен
+     */
+    private static boolean isServiceFailure(RuntimeException e) {
+        return !(e instanceof HttpClientErrorException clientError) || clientError.getStatusCode().value() == 429;
+    }
+
+    private void notifyStateChange(State changedTo) {
+        if (changedTo != null) {
+            onStateChange.accept(changedTo);
+        }
+    }
+
+    /**
+     * Вызов отклонен без обращения к внешнему сервису
+     */
+    public static class CallNotPermittedException extends RuntimeException {
+        public CallNotPermittedException(String name) {
+            super("Circuit breaker '" + name + "' is open");
+        }
+    }
+}
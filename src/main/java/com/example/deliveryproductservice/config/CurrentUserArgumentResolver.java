@@ -42,17 +42,21 @@
 package com.example.deliveryproductservice.config;
 
 import com.example.deliveryproductservice.annotation.CurrentUser;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.core.MethodParameter;
-import org.springframework.http.ResponseEntity;
+import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Component;
 import org.springframework.web.bind.support.WebDataBinderFactory;
 import org.springframework.web.context.request.NativeWebRequest;
 import org.springframework.web.method.support.HandlerMethodArgumentResolver;
 import org.springframework.web.method.support.ModelAndViewContainer;
+import org.springframework.web.server.ResponseStatusException;
 
 /**
- * ArgumentResolver для извлечения текущего пользователя из заголовка X-User-Id
+ * ArgumentResolver для @CurrentUser: читает principal, установленный JwtAuthenticationFilter
+ * в атрибут запроса. Поддерживает параметры типа Long (id пользователя) и AuthenticatedUser.
+ * Обязательный параметр без principal (или без userId для Long) - 401.
  */
 @Component
 @Slf4j
@@ -60,14 +64,11 @@ public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolve
 
     @Override
     public boolean supportsParameter(MethodParameter parameter) {
-        boolean supports = parameter.hasParameterAnnotation(CurrentUser.class)
-                && parameter.getParameterType().equals(Long.class);
-
-        if (supports) {
-            log.debug("🎯 Supporting @CurrentUser parameter: {}", parameter.getParameterName());
+        if (!parameter.hasParameterAnnotation(CurrentUser.class)) {
+            return false;
         }
-
-        return supports;
+        Class<?> type = parameter.getParameterType();
+        return type.equals(Long.class) || type.equals(AuthenticatedUser.class);
     }
 
     @Override
@@ -76,26 +77,17 @@ public class CurrentUserArgumentResolver implements HandlerMethodArgumentResolve
                                   NativeWebRequest webRequest,
                                   WebDataBinderFactory binderFactory) {
 
-        log.debug("🔍 Resolving @CurrentUser parameter");
+        AuthenticatedUser principal = AuthenticatedUser.from(webRequest.getNativeRequest(HttpServletRequest.class));
+        Object value = principal == null ? null
+                : parameter.getParameterType().equals(AuthenticatedUser.class) ? principal : principal.userId();
 
-        try {
-            String userIdHeader = webRequest.getHeader("X-User-Id");
-
-            if (userIdHeader != null) {
-                Long userId = Long.parseLong(userIdHeader);
-                log.debug("✅ Resolved @CurrentUser: {}", userId);
-                return userId;
-            } else {
-                log.warn("⚠️ X-User-Id header not found - user not authenticated?");
-                return null;
+        if (value == null) {
+            log.debug("⚠️ No authenticated principal for @CurrentUser {}", parameter.getParameterName());
+            CurrentUser currentUser = parameter.getParameterAnnotation(CurrentUser.class);
+            if (currentUser != null && currentUser.required()) {
+                throw new ResponseStatusException(HttpStatus.UNAUTHORIZED, "Authentication required");
             }
-
-        } catch (NumberFormatException e) {
-            log.error("❌ Invalid X-User-Id header format: {}", webRequest.getHeader("X-User-Id"));
-            return null;
-        } catch (Exception e) {
-            log.error("💥 Error resolving @CurrentUser: {}", e.getMessage(), e);
-            return null;
         }
+        return value;
     }
-}
\ No newline at end of file
+}
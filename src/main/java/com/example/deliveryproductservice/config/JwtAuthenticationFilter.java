@@ -6,7 +6,6 @@ import org.springframework.stereotype.Component;
 
 import jakarta.servlet.*;
 import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletRequestWrapper;
 import java.io.IOException;
 
 @Component
@@ -21,63 +20,36 @@ public class JwtAuthenticationFilter implements Filter {
             throws IOException, ServletException {
 
         HttpServletRequest httpRequest = (HttpServletRequest) request;
-        String requestURI = httpRequest.getRequestURI();
-
-        log.info("🌐 JWT Filter processing request: {} {}", httpRequest.getMethod(), requestURI);
 
         String token = extractTokenFromRequest(httpRequest);
 
         if (token != null) {
-            log.info("🔍 JWT token found for: {}", requestURI);
-            log.info("🔍 Token starts with: {}...", token.substring(0, Math.min(20, token.length())));
-
-            if (jwtUtil.validateToken(token)) {
-                Long userId = jwtUtil.getUserIdFromToken(token);
-                String email = jwtUtil.getEmailFromToken(token);
-                String role = jwtUtil.getRoleFromToken(token);
+            AuthenticatedUser principal = jwtUtil.authenticate(token);
 
-                log.info("✅ JWT validated - UserId: {}, Email: {}, Role: {}", userId, email, role);
+            if (principal != null) {
+                // Principal устанавливается один раз - дальше его читают @CurrentUser и проверки ролей
+                httpRequest.setAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE, principal);
 
-                HttpServletRequestWrapper requestWrapper = new HttpServletRequestWrapper(httpRequest) {
-                    @Override
-                    public String getHeader(String name) {
-                        switch (name) {
-                            case "X-User-Id":
-                                log.debug("Returning X-User-Id: {}", userId);
-                                return userId != null ? userId.toString() : null;
-                            case "X-User-Email":
-                                log.debug("Returning X-User-Email: {}", email);
-                                return email;
-                            case "X-User-Role":
-                                log.debug("Returning X-User-Role: {}", role);
-                                return role;
-                            default:
-                                return super.getHeader(name);
-                        }
-                    }
-                };
-
-                log.info("🚀 Forwarding request with JWT data");
-                chain.doFilter(requestWrapper, response);
+                if (log.isDebugEnabled()) {
+                    log.debug("✅ JWT validated for {} {} - UserId: {}, Role: {}",
+                            httpRequest.getMethod(), httpRequest.getRequestURI(), principal.userId(), principal.role());
+                }
             } else {
-                log.warn("❌ Invalid JWT token for: {}", requestURI);
-                chain.doFilter(request, response);
+                log.warn("❌ Invalid JWT token for: {}", httpRequest.getRequestURI());
             }
-        } else {
-            log.info("❌ No JWT token found for: {}", requestURI);
-            chain.doFilter(request, response);
+        } else if (log.isDebugEnabled()) {
+            log.debug("No JWT token found for: {}", httpRequest.getRequestURI());
         }
+
+        chain.doFilter(request, response);
     }
 
     private String extractTokenFromRequest(HttpServletRequest request) {
         String bearerToken = request.getHeader("Authorization");
-        log.info("🔍 Authorization header: {}", bearerToken != null ? "Bearer ***" : "null");
 
         if (bearerToken != null && bearerToken.startsWith("Bearer ")) {
-            String token = bearerToken.substring(7);
-            log.info("🔍 Extracted token length: {}", token.length());
-            return token;
+            return bearerToken.substring(7);
         }
         return null;
     }
-}
\ No newline at end of file
+}
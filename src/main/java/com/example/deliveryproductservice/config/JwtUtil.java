@@ -1,11 +1,17 @@
 package com.example.deliveryproductservice.config;
 import io.jsonwebtoken.*;
 import io.jsonwebtoken.security.Keys;
+import jakarta.annotation.PostConstruct;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Component;
 
 import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Clock;
+import java.util.*;
 
 @Component
 @Slf4j
@@ -14,68 +20,142 @@ public class JwtUtil {
     @Value("${jwt.secret}")
     private String jwtSecret;
 
-    private SecretKey getSigningKey() {
-        return Keys.hmacShaKeyFor(jwtSecret.getBytes());
+    @Value("${jwt.expiration:86400000}")
+    private long jwtExpiration;
+
+    // Максимальное число токенов в кэше разобранных principal
+    @Value("${jwt.principal-cache.max-size:10000}")
+    private int principalCacheMaxSize;
+
+    // Ключ и парсер строятся один раз при старте
+    private SecretKey signingKey;
+    private JwtParser jwtParser;
+
+    // Часы для проверки exp - и в кэше, и в парсере (в тестах подменяются)
+    private Clock clock = Clock.systemUTC();
+
+    // SHA-256(token) -> principal; LRU по доступу, записи живут до exp токена
+    private Map<String, AuthenticatedUser> principalCache;
+
+    @PostConstruct
+    public void init() {
+        this.signingKey = Keys.hmacShaKeyFor(jwtSecret.getBytes());
+        this.jwtParser = Jwts.parserBuilder()
+                .setSigningKey(signingKey)
+                .setClock(() -> new Date(clock.millis()))
+                .build();
+        // При переполнении вытесняется давно не использованный токен - за O(1), без прохода по кэшу
+        this.principalCache = Collections.synchronizedMap(new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, AuthenticatedUser> eldest) {
+                return size() > principalCacheMaxSize;
+            }
+        });
     }
 
-    public String getEmailFromToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return claims.getSubject();
-        } catch (Exception e) {
-            log.error("Error extracting email from token: {}", e.getMessage());
+    /**
+     * Единая точка разбора токена: проверка подписи + извлечение всех claims за один проход.
+     * Повторные запросы с тем же токеном обслуживаются из кэша без HMAC-проверки.
+     *
+     * @return principal или null, если токен невалиден/истек
+     */
+    public AuthenticatedUser authenticate(String token) {
+        if (token == null || token.isEmpty()) {
             return null;
         }
-    }
 
-    public Long getUserIdFromToken(String token) {
+        long now = clock.millis();
+        String cacheKey = hashToken(token);
+
+        AuthenticatedUser cached = principalCache.get(cacheKey);
+        if (cached != null) {
+            if (!cached.isExpired(now)) {
+                return cached;
+            }
+            principalCache.remove(cacheKey);
+        }
+
         try {
             Claims claims = getClaimsFromToken(token);
-            Object userIdObj = claims.get("userId");
+            Date expiration = claims.getExpiration();
+            long expiresAt = expiration != null ? expiration.getTime() : now + jwtExpiration;
 
-            if (userIdObj instanceof Number) {
-                return ((Number) userIdObj).longValue();
-            } else if (userIdObj instanceof String) {
-                return Long.parseLong((String) userIdObj);
-            }
+            AuthenticatedUser principal = new AuthenticatedUser(
+                    extractUserId(claims), claims.getSubject(), claims.get("role", String.class), expiresAt);
 
-            log.warn("UserId in token has unexpected type: {}", userIdObj.getClass());
-            return null;
+            principalCache.put(cacheKey, principal);
+            log.debug("Token validated successfully for user: {}", principal.email());
+            return principal;
         } catch (Exception e) {
-            log.error("Error extracting userId from token: {}", e.getMessage());
+            log.error("JWT token validation error: {}", e.getMessage());
             return null;
         }
     }
 
+    public String getEmailFromToken(String token) {
+        AuthenticatedUser principal = authenticate(token);
+        return principal != null ? principal.email() : null;
+    }
+
+    public Long getUserIdFromToken(String token) {
+        AuthenticatedUser principal = authenticate(token);
+        return principal != null ? principal.userId() : null;
+    }
+
     public String getRoleFromToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            return claims.get("role", String.class);
-        } catch (Exception e) {
-            log.error("Error extracting role from token: {}", e.getMessage());
-            return null;
-        }
+        AuthenticatedUser principal = authenticate(token);
+        return principal != null ? principal.role() : null;
     }
 
     public boolean validateToken(String token) {
-        try {
-            Claims claims = getClaimsFromToken(token);
-            log.debug("Token validated successfully for user: {}", claims.getSubject());
-            return true;
-        } catch (Exception e) {
-            log.error("JWT token validation error: {}", e.getMessage());
-            return false;
+        return authenticate(token) != null;
+    }
+
+    private Long extractUserId(Claims claims) {
+        Object userIdObj = claims.get("userId");
+
+        if (userIdObj instanceof Number) {
+            return ((Number) userIdObj).longValue();
+        } else if (userIdObj instanceof String) {
+            try {
+                return Long.parseLong((String) userIdObj);
+            } catch (NumberFormatException e) {
+                log.error("Error extracting userId from token: {}", e.getMessage());
+                return null;
+            }
         }
+
+        log.warn("UserId in token has unexpected type: {}", userIdObj != null ? userIdObj.getClass() : null);
+        return null;
     }
 
     private Claims getClaimsFromToken(String token) {
-        return Jwts.parserBuilder()
-                .setSigningKey(getSigningKey())
-                .build()
+        return jwtParser
                 .parseClaimsJws(token)
                 .getBody();
     }
 
+    boolean isCached(String token) {
+        return principalCache.containsKey(hashToken(token));
+    }
+
+    int cachedPrincipals() {
+        return principalCache.size();
+    }
+
+    /**
+     * В кэше хранится не сам токен, а его SHA-256
+     */
+    private static String hashToken(String token) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().withoutPadding().encodeToString(hash);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
     public void debugToken(String token) {
         try {
             Claims claims = getClaimsFromToken(token);
@@ -89,4 +169,4 @@ public class JwtUtil {
             log.error("Error debugging token: {}", e.getMessage());
         }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,144 @@
+package com.example.deliveryproductservice.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.client.ClientHttpRequestInterceptor;
+import org.springframework.http.client.ClientHttpResponse;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestTemplate;
+
+import java.io.IOException;
+import java.net.http.HttpClient;
+import java.net.http.HttpTimeoutException;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * 🌐 Фабрика HTTP-клиентов для внешних интеграций (Mapbox и др.).
+ * Каждый клиент получает свой пул keep-alive соединений (JDK HttpClient), таймауты
+ * подключения и чтения и гистограмму задержек {@code outbound.http.requests}
+ * с тегом {@code client}. Пулы потоков клиентов останавливаются вместе с контекстом.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboundHttpClientFactory {
+
+    private final MeterRegistry meterRegistry;
+
+    private final List<ExecutorService> executors = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param clientName     имя интеграции - тег метрик и префикс имен потоков
+     * @param connectTimeout таймаут установки соединения
+     * @param readTimeout    таймаут ожидания ответа
+     */
+    public RestTemplate create(String clientName, Duration connectTimeout, Duration readTimeout) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        ExecutorService executor = Executors.newCachedThreadPool(runnable -> {
+            Thread thread = new Thread(runnable, clientName + "-http-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        executors.add(executor);
+
+        // Соединения переиспользуются между запросами (keep-alive), HTTP/2 - с мультиплексированием
+        HttpClient httpClient = HttpClient.newBuilder()
+                .connectTimeout(connectTimeout)
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .executor(executor)
+                .build();
+
+        JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+        requestFactory.setReadTimeout(readTimeout);
+
+        RestTemplate restTemplate = new RestTemplate(requestFactory);
+        restTemplate.getInterceptors().add(latencyInterceptor(clientName));
+
+        log.info("🌐 Outbound HTTP client '{}' created (connect timeout {}, read timeout {})",
+                clientName, connectTimeout, readTimeout);
+        return restTemplate;
+    }
+
+    /**
+     * Circuit breaker с gauge состояния {@code outbound.http.circuit.state}
+     * (0 - CLOSED, 1 - HALF_OPEN, 2 - OPEN)
+     */
+    public CircuitBreaker circuitBreaker(String clientName, int failureThreshold, Duration openDuration,
+                                         Consumer<CircuitBreaker.State> onStateChange) {
+        CircuitBreaker circuitBreaker = new CircuitBreaker(clientName, failureThreshold, openDuration, state -> {
+            log.warn("🔌 Circuit breaker '{}' → {}", clientName, state);
+            if (onStateChange != null) {
+                onStateChange.accept(state);
+            }
+        });
+
+        Gauge.builder("outbound.http.circuit.state", circuitBreaker, OutboundHttpClientFactory::stateValue)
+                .tag("client", clientName)
+                .register(meterRegistry);
+        return circuitBreaker;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executors.forEach(ExecutorService::shutdownNow);
+        executors.clear();
+        log.info("🛑 Outbound HTTP client executors stopped");
+    }
+
+    private ClientHttpRequestInterceptor latencyInterceptor(String clientName) {
+        return (request, body, execution) -> {
+            long start = System.nanoTime();
+            String outcome = "IO_ERROR";
+            String status = "IO_ERROR";
+            try {
+                ClientHttpResponse response = execution.execute(request, body);
+                int code = response.getStatusCode().value();
+                status = String.valueOf(code);
+                outcome = outcomeOf(code);
+                return response;
+            } catch (IOException e) {
+                status = e instanceof HttpTimeoutException ? "TIMEOUT" : "IO_ERROR";
+                throw e;
+            } finally {
+                // URI не используется как тег: в нем токены и адреса пользователей
+                Timer.builder("outbound.http.requests")
+                        .tag("client", clientName)
+                        .tag("method", request.getMethod().name())
+                        .tag("status", status)
+                        .tag("outcome", outcome)
+                        .publishPercentileHistogram()
+                        .register(meterRegistry)
+                        .record(Duration.ofNanos(System.nanoTime() - start));
+            }
+        };
+    }
+
+    private static String outcomeOf(int code) {
+        if (code >= 500) {
+            return "SERVER_ERROR";
+        }
+        if (code >= 400) {
+            return "CLIENT_ERROR";
+        }
+        return code >= 200 && code < 300 ? "SUCCESS" : "UNKNOWN";
+    }
+
+    private static double stateValue(CircuitBreaker circuitBreaker) {
+        return switch (circuitBreaker.getState()) {
+            case CLOSED -> 0;
+            case HALF_OPEN -> 1;
+            case OPEN -> 2;
+        };
+    }
+}
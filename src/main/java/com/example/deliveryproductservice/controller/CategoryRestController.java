@@ -1,4 +1,6 @@
 package com.example.deliveryproductservice.controller;
+import com.example.deliveryproductservice.annotation.CurrentUser;
+import com.example.deliveryproductservice.config.AuthenticatedUser;
 import com.example.deliveryproductservice.dto.category.*;
 import com.example.deliveryproductservice.repository.CategoryRepository;
 import com.example.deliveryproductservice.service.CategoryService;
@@ -70,7 +72,7 @@ public class CategoryRestController {
     public ResponseEntity<ListApiResponse<CategoryResponseDto>> getAllCategories(
             HttpServletRequest request) {
 
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
         if (!"ROLE_ADMIN".equals(userRole)) {
             log.warn("❌ Access denied for role: {}", userRole);
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
@@ -138,7 +140,7 @@ public class CategoryRestController {
     @GetMapping("/brief/all")
     public ResponseEntity<ListApiResponse<CategoryBaseProjection>> getAllCategoriesBrief(
             HttpServletRequest request) {
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
         if (!"ROLE_ADMIN".equals(userRole)) {
             return ResponseEntity.status(HttpStatus.FORBIDDEN)
                     .body(ListApiResponse.error("Доступ запрещен"));
@@ -241,14 +243,14 @@ public class CategoryRestController {
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<ApiResponse<CategoryResponseDto>> createCategory(
             @Valid @ModelAttribute CreateCategoryDto createCategoryDto,
-            @RequestHeader("X-User-Id") Long userId,
+            @CurrentUser Long userId,
             HttpServletRequest request) {
 
         log.info("➕ POST /api/categories - Creating new category: {}", createCategoryDto.getName());
 
         // Проверяем авторизацию
-        String userEmail = request.getHeader("X-User-Email");
-        String userRole = request.getHeader("X-User-Role");
+        String userEmail = AuthenticatedUser.emailOf(request);
+        String userRole = AuthenticatedUser.roleOf(request);
 
         log.info("🔐 Create category request from User: ID={}, Email={}, Role={}",
                 userId, userEmail, userRole);
@@ -281,13 +283,13 @@ public class CategoryRestController {
     public ResponseEntity<ApiResponse<CategoryResponseDto>> updateCategory(
             @PathVariable Long id,
             @Valid @ModelAttribute CreateCategoryDto updateCategoryDto,
-            @RequestHeader("X-User-Id") Long userId,
+            @CurrentUser Long userId,
             HttpServletRequest request) {
 
         log.info("✏️ PUT /api/categories/{} - Updating category", id);
 
         // Проверяем авторизацию
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
 
         if (!"ROLE_ADMIN".equals(userRole)) {
             log.warn("❌ Access denied for user {} with role {}", userId, userRole);
@@ -315,13 +317,13 @@ public class CategoryRestController {
     @DeleteMapping("/{id}")
     public ResponseEntity<ApiResponse<Void>> deleteCategory(
             @PathVariable Long id,
-            @RequestHeader("X-User-Id") Long userId,
+            @CurrentUser Long userId,
             HttpServletRequest request) {
 
         log.info("🗑️ DELETE /api/categories/{} - Deleting category", id);
 
         // Проверяем авторизацию
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
 
         if (!"ROLE_ADMIN".equals(userRole)) {
             log.warn("❌ Access denied for user {} with role {}", userId, userRole);
@@ -346,13 +348,13 @@ public class CategoryRestController {
     @PostMapping("/{id}/toggle")
     public ResponseEntity<ApiResponse<CategoryResponseDto>> toggleCategoryStatus(
             @PathVariable Long id,
-            @RequestHeader("X-User-Id") Long userId,
+            @CurrentUser Long userId,
             HttpServletRequest request) {
 
         log.info("🔄 PATCH /api/categories/{}/toggle - Toggling category status by user: {}", id, userId);
 
         // Проверяем авторизацию
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
 
         if (!"ROLE_ADMIN".equals(userRole)) {
             log.warn("❌ Access denied for user {} with role {}", userId, userRole);
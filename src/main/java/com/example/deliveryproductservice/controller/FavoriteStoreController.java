@@ -27,7 +27,7 @@ public class FavoriteStoreController {
      */
     @GetMapping
     public ResponseEntity<FavoriteStoreApiResponse<List<FavoriteStoreResponseDto>>> getMyFavorites(
-            @CurrentUser Long userId) {
+            @CurrentUser(required = false) Long userId) {
 
         log.info("📋 REST: Получение избранных ресторанов пользователя {} (из JWT)", userId);
 
@@ -47,7 +47,7 @@ public class FavoriteStoreController {
 
     @PostMapping("/stores/{storeId}")
     public ResponseEntity<FavoriteStoreApiResponse<FavoriteStoreResponseDto>> addToFavorites(
-            @CurrentUser Long userId,
+            @CurrentUser(required = false) Long userId,
             @PathVariable Long storeId) {
 
         log.info("🌟 REST: Добавление ресторана {} в избранное пользователя {} (из JWT)", storeId, userId);
@@ -72,7 +72,7 @@ public class FavoriteStoreController {
      */
     @DeleteMapping("/stores/{storeId}")
     public ResponseEntity<FavoriteStoreApiResponse<String>> removeFromFavorites(
-            @CurrentUser Long userId,
+            @CurrentUser(required = false) Long userId,
             @PathVariable Long storeId) {
 
         log.info("🗑️ REST: Удаление ресторана {} из избранного пользователя {} (из JWT)", storeId, userId);
@@ -97,7 +97,7 @@ public class FavoriteStoreController {
      */
     @PutMapping("/stores/{storeId}/toggle")
     public ResponseEntity<FavoriteStoreApiResponse<FavoriteStoreResponseDto>> toggleFavorite(
-            @CurrentUser Long userId,
+            @CurrentUser(required = false) Long userId,
             @PathVariable Long storeId) {
 
         log.info("🔄 REST: Переключение избранного ресторана {} для пользователя {} (из JWT)", storeId, userId);
@@ -125,7 +125,7 @@ public class FavoriteStoreController {
      */
     @GetMapping("/active")
     public ResponseEntity<FavoriteStoreApiResponse<List<FavoriteStoreResponseDto>>> getMyActiveFavorites(
-            @CurrentUser Long userId) {
+            @CurrentUser(required = false) Long userId) {
 
         log.info("📋 REST: Получение активных избранных ресторанов пользователя {} (из JWT)", userId);
 
@@ -149,7 +149,7 @@ public class FavoriteStoreController {
      */
     @GetMapping("/stores/{storeId}/status")
     public ResponseEntity<FavoriteStoreApiResponse<Boolean>> checkMyFavoriteStatus(
-            @CurrentUser Long userId,
+            @CurrentUser(required = false) Long userId,
             @PathVariable Long storeId) {
 
         log.info("🔍 REST: Проверка статуса избранного ресторана {} для пользователя {} (из JWT)", storeId, userId);
@@ -174,7 +174,7 @@ public class FavoriteStoreController {
      */
     @GetMapping("/count")
     public ResponseEntity<FavoriteStoreApiResponse<Long>> getMyFavoritesCount(
-            @CurrentUser Long userId) {
+            @CurrentUser(required = false) Long userId) {
 
         log.info("📊 REST: Получение количества избранных ресторанов пользователя {} (из JWT)", userId);
 
@@ -198,7 +198,7 @@ public class FavoriteStoreController {
      */
     @PostMapping
     public ResponseEntity<FavoriteStoreApiResponse<FavoriteStoreResponseDto>> addToFavoritesWithBody(
-            @CurrentUser Long userId,
+            @CurrentUser(required = false) Long userId,
             @RequestBody AddToFavoriteRequest request) {
 
         log.info("🌟 REST: Добавление ресторана {} в избранное пользователя {} (из JWT, через body)",
@@ -0,0 +1,27 @@
+package com.example.deliveryproductservice.controller;
+
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
+import com.example.deliveryproductservice.dto.category.ApiResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * 🚦 Перегрузка обработки изображений для всех загрузок (товары, магазины, категории):
+ * 429 - очередь заполнена, 503 - не дождались памяти, с заголовком Retry-After
+ */
+@RestControllerAdvice
+@Slf4j
+public class ImageProcessingExceptionHandler {
+
+    @ExceptionHandler(ImageProcessingRejectedException.class)
+    public ResponseEntity<ApiResponse<Void>> handleRejected(ImageProcessingRejectedException e) {
+        log.warn("🚦 Image processing rejected ({}): {}", e.getStatus().value(), e.getMessage());
+
+        return ResponseEntity.status(e.getStatus())
+                .header(HttpHeaders.RETRY_AFTER, String.valueOf(e.getRetryAfterSeconds()))
+                .body(ApiResponse.error(e.getMessage()));
+    }
+}
@@ -1,7 +1,15 @@
 package com.example.deliveryproductservice.controller;
 
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
 import com.example.deliveryproductservice.annotation.CurrentUser;
+import com.example.deliveryproductservice.config.AuthenticatedUser;
+import com.example.deliveryproductservice.dto.CursorParams;
+import com.example.deliveryproductservice.dto.ImageUpload.ImageUploadStatusDto;
+import com.example.deliveryproductservice.dto.PageCursor;
+import com.example.deliveryproductservice.dto.SearchCursor;
 import com.example.deliveryproductservice.dto.ProductDto.*;
+import com.example.deliveryproductservice.dto.category.ApiResponse;
+import com.example.deliveryproductservice.service.FullTextSearchService;
 import com.example.deliveryproductservice.service.ProductService;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import jakarta.servlet.http.HttpServletRequest;
@@ -14,7 +22,9 @@ import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
 import java.util.List;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/products")
@@ -23,15 +33,17 @@ import java.util.List;
 public class ProductRestController {
 
     private final ProductService productService;
+    private final FullTextSearchService fullTextSearchService;
    private final ObjectMapper objectMapper;
 
     @PostMapping(consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<SingleProductResponseWrapper> createProduct(
             @RequestPart("product") String productJson,  // ИЗМЕНЕНО: принимаем как строку!
             @RequestPart("image") MultipartFile imageFile,
-            @RequestHeader(value = "X-User-ID", required = false) Long userId) {
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @CurrentUser Long userId) {
 
-        log.info("📥 Received product creation request");
+        log.info("📥 Received product creation request (async image upload: {})", async);
         log.info("📄 Product JSON: {}", productJson);
         log.info("🖼️ Image file: {} ({} bytes)",
                 imageFile.getOriginalFilename(), imageFile.getSize());
@@ -66,7 +78,18 @@ public class ProductRestController {
             }
 
             // 🚀 Вызываем сервисный слой с распарсенным объектом
-            SingleProductResponseWrapper result = productService.createProduct(createProductDto, imageFile, userId);
+            SingleProductResponseWrapper result = async ?
+                    productService.createProductAsync(createProductDto, imageFile, userId) :
+                    productService.createProduct(createProductDto, imageFile, userId);
+
+            // 🚀 Изображение еще загружается - 202 со ссылкой на статус
+            if (async && Boolean.TRUE.equals(result.getSuccess())) {
+                Long productId = result.getProduct().getId();
+                log.info("⏳ Product {} created, image upload pending", productId);
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .location(URI.create("/api/products/" + productId + "/image-status"))
+                        .body(result);
+            }
 
             // 📊 Определяем HTTP статус на основе результата
             HttpStatus status = Boolean.TRUE.equals(result.getSuccess()) ?
@@ -77,6 +100,10 @@ public class ProductRestController {
 
             return ResponseEntity.status(status).body(result);
 
+        } catch (ImageProcessingRejectedException e) {
+            // 🚦 429/503 с Retry-After - в ImageProcessingExceptionHandler
+            throw e;
+
         } catch (com.fasterxml.jackson.core.JsonProcessingException e) {
             // 🚫 Ошибка парсинга JSON
             log.error("❌ Failed to parse product JSON: {}", e.getMessage());
@@ -113,14 +140,29 @@ public class ProductRestController {
         }
     }
 
+    /**
+     * Получить все доступные продукты
+     * GET /api/products?cursor={nextCursor} - keyset-пагинация (первая страница - без cursor);
+     * page > 0 без cursor - устаревший OFFSET-режим
+     */
     @GetMapping
     public ResponseEntity<ProductResponseWrapper> getAllAvailableProducts(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        log.info("📋 GET /api/products - Getting all available products: page={}, size={}", page, size);
+        log.info("📋 GET /api/products - Getting all available products: cursor={}, page={}, size={}", cursor, page, size);
 
-        ProductResponseWrapper response = productService.getAllAvailableProducts(page, size);
+        ProductResponseWrapper response;
+        if (CursorParams.useKeyset(cursor, page)) {
+            Optional<PageCursor> pageCursor = CursorParams.decodePage(cursor);
+            if (pageCursor.isEmpty()) {
+                return ResponseEntity.badRequest().body(ProductResponseWrapper.error(CursorParams.INVALID_CURSOR));
+            }
+            response = productService.getAllAvailableProducts(pageCursor.get(), size);
+        } else {
+            response = productService.getAllAvailableProducts(page, size);
+        }
 
         log.info("✅ Found {} products, hasNext: {}", response.getTotalCount(), response.getHasNext());
         return ResponseEntity.ok(response);
@@ -133,12 +175,23 @@ public class ProductRestController {
     @GetMapping("/store/{storeId}")
     public ResponseEntity<ProductResponseWrapper> getProductsByStore(
             @PathVariable Long storeId,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        log.info("🏪 GET /api/products/store/{} - Getting products for store: page={}, size={}", storeId, page, size);
+        log.info("🏪 GET /api/products/store/{} - Getting products for store: cursor={}, page={}, size={}",
+                storeId, cursor, page, size);
 
-        ProductResponseWrapper response = productService.getProductsByStore(storeId, page, size);
+        ProductResponseWrapper response;
+        if (CursorParams.useKeyset(cursor, page)) {
+            Optional<PageCursor> pageCursor = CursorParams.decodePage(cursor);
+            if (pageCursor.isEmpty()) {
+                return ResponseEntity.badRequest().body(ProductResponseWrapper.error(CursorParams.INVALID_CURSOR));
+            }
+            response = productService.getProductsByStore(storeId, pageCursor.get(), size);
+        } else {
+            response = productService.getProductsByStore(storeId, page, size);
+        }
 
         log.info("✅ Found {} products for store {}, hasNext: {}", response.getTotalCount(), storeId, response.getHasNext());
         return ResponseEntity.ok(response);
@@ -151,24 +204,37 @@ public class ProductRestController {
     @GetMapping("/category/{categoryId}")
     public ResponseEntity<ProductResponseWrapper> getProductsByCategory(
             @PathVariable Long categoryId,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        log.info("📂 GET /api/products/category/{} - Getting products for category: page={}, size={}", categoryId, page, size);
+        log.info("📂 GET /api/products/category/{} - Getting products for category: cursor={}, page={}, size={}",
+                categoryId, cursor, page, size);
 
-        ProductResponseWrapper response = productService.getProductsByCategory(categoryId, page, size);
+        ProductResponseWrapper response;
+        if (CursorParams.useKeyset(cursor, page)) {
+            Optional<PageCursor> pageCursor = CursorParams.decodePage(cursor);
+            if (pageCursor.isEmpty()) {
+                return ResponseEntity.badRequest().body(ProductResponseWrapper.error(CursorParams.INVALID_CURSOR));
+            }
+            response = productService.getProductsByCategory(categoryId, pageCursor.get(), size);
+        } else {
+            response = productService.getProductsByCategory(categoryId, page, size);
+        }
 
         log.info("✅ Found {} products for category {}, hasNext: {}", response.getTotalCount(), categoryId, response.getHasNext());
         return ResponseEntity.ok(response);
     }
 
     /**
-     * Поиск продуктов по названию
-     * GET /api/products/search?name={name}
+     * Поиск продуктов по названию и описанию
+     * GET /api/products/search?name={name}&cursor={nextCursor} - полнотекстовый, по релевантности;
+     * page > 0 без cursor - устаревший LIKE по названию
      */
     @GetMapping("/search")
     public ResponseEntity<ProductResponseWrapper> searchProductsByName(
             @RequestParam String name,
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
@@ -179,8 +245,22 @@ public class ProductRestController {
             ProductResponseWrapper errorResponse = ProductResponseWrapper.error("Search query cannot be empty");
             return ResponseEntity.badRequest().body(errorResponse);
         }
+        // Тот же предел, что и в /api/search: иначе LIMIT size+1 и findAllById по всем совпадениям
+        if (size < 1 || size > SearchController.MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(
+                    ProductResponseWrapper.error("Page size must be between 1 and " + SearchController.MAX_PAGE_SIZE));
+        }
 
-        ProductResponseWrapper response = productService.searchProductsByName(name.trim(), page, size);
+        ProductResponseWrapper response;
+        if (CursorParams.useKeyset(cursor, page)) {
+            Optional<SearchCursor> searchCursor = CursorParams.decodeSearch(cursor);
+            if (searchCursor.isEmpty()) {
+                return ResponseEntity.badRequest().body(ProductResponseWrapper.error(CursorParams.INVALID_CURSOR));
+            }
+            response = fullTextSearchService.searchProducts(name.trim(), searchCursor.get(), size);
+        } else {
+            response = productService.searchProductsByName(name.trim(), page, size);
+        }
 
         log.info("✅ Found {} products matching '{}', hasNext: {}", response.getTotalCount(), name, response.getHasNext());
         return ResponseEntity.ok(response);
@@ -227,6 +307,20 @@ public class ProductRestController {
         }
     }
 
+    /**
+     * Статус фоновой загрузки изображения продукта (после POST /api/products?async=true)
+     * GET /api/products/{id}/image-status
+     */
+    @GetMapping("/{id}/image-status")
+    public ResponseEntity<ApiResponse<ImageUploadStatusDto>> getProductImageStatus(@PathVariable Long id) {
+        log.debug("🖼️ GET /api/products/{}/image-status", id);
+
+        return productService.getProductImageStatus(id)
+                .map(status -> ResponseEntity.ok(ApiResponse.success(status)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.notFound("Product not found with ID: " + id)));
+    }
+
     // ================================
     // ✏️ СОЗДАНИЕ И ОБНОВЛЕНИЕ ПРОДУКТОВ (BUSINESS ONLY)
     // ================================
@@ -339,7 +433,7 @@ public class ProductRestController {
         log.info("✏️ PUT /api/products/{} - Updating product", id);
 
         // Проверяем авторизацию
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
 
         if (!"ROLE_BUSINESS".equals(userRole)) {
             log.warn("❌ Access denied for user {} with role {}", userId, userRole);
@@ -357,6 +451,9 @@ public class ProductRestController {
                 return ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
             }
 
+        } catch (ImageProcessingRejectedException e) {
+            // 🚦 429/503 с Retry-After - в ImageProcessingExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("❌ Error updating product {}: {}", id, e.getMessage(), e);
 
@@ -389,7 +486,7 @@ public class ProductRestController {
         log.info("🗑️ DELETE /api/products/{} - Deleting product", id);
 
         // Проверяем авторизацию
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
 
         if (!"ROLE_BUSINESS".equals(userRole)) {
             log.warn("❌ Access denied for user {} with role {}", userId, userRole);
@@ -425,7 +522,7 @@ public class ProductRestController {
         log.info("💥 DELETE /api/products/{}/hard - Hard deleting product", id);
 
         // Проверяем авторизацию
-        String userRole = request.getHeader("X-User-Role");
+        String userRole = AuthenticatedUser.roleOf(request);
 
         if (!"ROLE_ADMIN".equals(userRole)) {
             log.warn("❌ Access denied for user {} with role {}. Required: ROLE_ADMIN", userId, userRole);
@@ -460,4 +557,4 @@ public class ProductRestController {
         log.debug("🔧 GET /api/products/health - Health check");
         return ResponseEntity.ok("Products service is up and running! 🛍️");
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,102 @@
+package com.example.deliveryproductservice.controller;
+
+import com.example.deliveryproductservice.dto.CursorParams;
+import com.example.deliveryproductservice.dto.ProductDto.ProductResponseWrapper;
+import com.example.deliveryproductservice.dto.SearchCursor;
+import com.example.deliveryproductservice.dto.SuggestionDto;
+import com.example.deliveryproductservice.dto.StoreDto.StoreResponseWrapper;
+import com.example.deliveryproductservice.dto.category.ApiResponse;
+import com.example.deliveryproductservice.service.FullTextSearchService;
+import com.example.deliveryproductservice.service.SuggestionIndex;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * 🔎 Поиск: подсказки при вводе и полнотекстовый поиск (результаты по релевантности,
+ * следующая страница - по nextCursor)
+ */
+@RestController
+@RequestMapping("/api/search")
+@RequiredArgsConstructor
+@Slf4j
+public class SearchController {
+
+    // Проверяется явно: без @Validated на бине @Min/@Max на параметрах не срабатывают
+    static final int MAX_PAGE_SIZE = 100;
+    private static final int MAX_SUGGESTIONS = 20;
+
+    private final FullTextSearchService fullTextSearchService;
+    private final SuggestionIndex suggestionIndex;
+
+    /**
+     * Подсказки при вводе: продукты, магазины и категории, чье название (или слово в нем)
+     * начинается с q, по убыванию популярности. Из памяти, без запроса к БД
+     * GET /api/search/suggest?q={prefix}&limit=10
+     */
+    @GetMapping("/suggest")
+    public ResponseEntity<ApiResponse<List<SuggestionDto>>> suggest(
+            @RequestParam String q,
+            @RequestParam(defaultValue = "10") int limit) {
+
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            return ResponseEntity.badRequest().body(ApiResponse.error("Limit must be between 1 and " + MAX_SUGGESTIONS));
+        }
+        return ResponseEntity.ok(ApiResponse.success(suggestionIndex.suggest(q, limit)));
+    }
+
+    /**
+     * GET /api/search/products?q={query}&cursor={nextCursor}
+     */
+    @GetMapping("/products")
+    public ResponseEntity<ProductResponseWrapper> searchProducts(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        log.debug("🔎 GET /api/search/products - q='{}', cursor={}, size={}", q, cursor, size);
+
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body(ProductResponseWrapper.error("Search query cannot be empty"));
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(ProductResponseWrapper.error("Page size must be between 1 and " + MAX_PAGE_SIZE));
+        }
+        Optional<SearchCursor> searchCursor = CursorParams.decodeSearch(cursor);
+        if (searchCursor.isEmpty()) {
+            return ResponseEntity.badRequest().body(ProductResponseWrapper.error(CursorParams.INVALID_CURSOR));
+        }
+        return ResponseEntity.ok(fullTextSearchService.searchProducts(q, searchCursor.get(), size));
+    }
+
+    /**
+     * GET /api/search/stores?q={query}&cursor={nextCursor}
+     */
+    @GetMapping("/stores")
+    public ResponseEntity<StoreResponseWrapper> searchStores(
+            @RequestParam String q,
+            @RequestParam(required = false) String cursor,
+            @RequestParam(defaultValue = "20") int size) {
+
+        log.debug("🔎 GET /api/search/stores - q='{}', cursor={}, size={}", q, cursor, size);
+
+        if (q.isBlank()) {
+            return ResponseEntity.badRequest().body(StoreResponseWrapper.error("Поисковый запрос не может быть пустым"));
+        }
+        if (size < 1 || size > MAX_PAGE_SIZE) {
+            return ResponseEntity.badRequest().body(StoreResponseWrapper.error("Размер страницы должен быть от 1 до " + MAX_PAGE_SIZE));
+        }
+        Optional<SearchCursor> searchCursor = CursorParams.decodeSearch(cursor);
+        if (searchCursor.isEmpty()) {
+            return ResponseEntity.badRequest().body(StoreResponseWrapper.error(CursorParams.INVALID_CURSOR));
+        }
+        return ResponseEntity.ok(fullTextSearchService.searchStores(q, searchCursor.get(), size));
+    }
+}
@@ -1,5 +1,9 @@
 package com.example.deliveryproductservice.controller;
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
 import com.example.deliveryproductservice.annotation.CurrentUser;
+import com.example.deliveryproductservice.dto.ImageUpload.ImageUploadStatusDto;
+import com.example.deliveryproductservice.dto.CursorParams;
+import com.example.deliveryproductservice.dto.PageCursor;
 import com.example.deliveryproductservice.dto.StoreDto.*;
 import com.example.deliveryproductservice.dto.category.ApiResponse;
 import com.example.deliveryproductservice.service.StoreService;
@@ -17,10 +21,12 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.multipart.MultipartException;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.net.URI;
 import java.time.LocalDateTime;
 import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.Optional;
 
 @RestController
 @RequestMapping("/api/stores")
@@ -34,9 +40,10 @@ public class StoreController {
     public ResponseEntity<ApiResponse<StoreResponseDto>> createStore(
             @RequestPart("store") CreateStoreDto createStoreRequest,
             @RequestPart("imageFile") MultipartFile imageFile,
-            @RequestHeader("X-User-Id") Long userId) {
+            @RequestParam(value = "async", defaultValue = "false") boolean async,
+            @CurrentUser Long userId) {
 
-        log.info("📸 Creating store with image: {}", createStoreRequest.getName());
+        log.info("📸 Creating store with image: {} (async image upload: {})", createStoreRequest.getName(), async);
         log.info("📋 Image file: {} ({} bytes)",
                 imageFile.getOriginalFilename(),
                 imageFile.getSize());
@@ -46,11 +53,22 @@ public class StoreController {
             // Устанавливаем файл в объект запроса
             createStoreRequest.setImageFile(imageFile);
 
+            if (async) {
+                // 🚀 Изображение загружается в фоне - 202 со ссылкой на статус
+                StoreResponseDto storeResponse = storeService.createStoreAsync(createStoreRequest, userId);
+                return ResponseEntity.status(HttpStatus.ACCEPTED)
+                        .location(URI.create("/api/stores/" + storeResponse.getId() + "/image-status"))
+                        .body(ApiResponse.success(storeResponse));
+            }
+
             // Логика создания магазина
             StoreResponseDto storeResponse = storeService.createStore(createStoreRequest, userId);
 
             return ResponseEntity.ok(ApiResponse.success(storeResponse));
 
+        } catch (ImageProcessingRejectedException e) {
+            // 🚦 429/503 с Retry-After - в ImageProcessingExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("💥 Error creating store", e);
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
@@ -201,26 +219,51 @@ public class StoreController {
     }
 
 
+    /**
+     * Активные магазины: ?cursor={nextCursor} - keyset-пагинация (первая страница - без cursor),
+     * page > 0 без cursor - устаревший OFFSET-режим
+     */
     @GetMapping
     public ResponseEntity<StoreResponseWrapper> getActiveStores(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") int page,
             @RequestParam(defaultValue = "20") int size) {
 
-        log.info("📋 GET /api/stores - Getting active stores: page={}, size={}", page, size);
-        StoreResponseWrapper response = storeService.getActiveStores(page, size);
+        log.info("📋 GET /api/stores - Getting active stores: cursor={}, page={}, size={}", cursor, page, size);
+        StoreResponseWrapper response;
+        if (CursorParams.useKeyset(cursor, page)) {
+            Optional<PageCursor> pageCursor = CursorParams.decodePage(cursor);
+            if (pageCursor.isEmpty()) {
+                return ResponseEntity.badRequest().body(StoreResponseWrapper.error(CursorParams.INVALID_CURSOR));
+            }
+            response = storeService.getActiveStores(pageCursor.get(), size);
+        } else {
+            response = storeService.getActiveStores(page, size);
+        }
         log.info("✅ Found {} stores, hasNext: {}", response.getTotalCount(), response.getHasNext());
         return ResponseEntity.ok(response);
     }
 
     @GetMapping("/brief")
     public ResponseEntity<StoreBriefResponseWrapper> getActiveStoresBrief(
+            @RequestParam(required = false) String cursor,
             @RequestParam(defaultValue = "0") @Min(0) int page,
             @RequestParam(defaultValue = "10") @Min(1) @Max(100) int size) {
 
-        log.debug("Getting active stores brief with pagination: page={}, size={}", page, size);
+        log.debug("Getting active stores brief with pagination: cursor={}, page={}, size={}", cursor, page, size);
+
+        Optional<PageCursor> pageCursor = Optional.empty();
+        if (CursorParams.useKeyset(cursor, page)) {
+            pageCursor = CursorParams.decodePage(cursor);
+            if (pageCursor.isEmpty()) {
+                return ResponseEntity.badRequest().body(StoreBriefResponseWrapper.error(CursorParams.INVALID_CURSOR));
+            }
+        }
 
         try {
-            StoreBriefResponseWrapper response = storeService.getActiveStoresBrief(page, size);
+            StoreBriefResponseWrapper response = pageCursor.isPresent()
+                    ? storeService.getActiveStoresBrief(pageCursor.get(), size)
+                    : storeService.getActiveStoresBrief(page, size);
 
             if (response.getSuccess()) {
                 log.debug("Successfully retrieved {} stores for page {}", response.getTotalCount(), page);
@@ -241,6 +284,28 @@ public class StoreController {
 
 
 
+    /**
+     * Магазины поблизости: радиус + фильтры + top-K
+     * GET /api/stores/nearby?latitude=..&longitude=..&radiusKm=10&limit=20&sortBy=distance
+     * С deliverableOnly=true - только магазины, которые доставляют в эту точку (по их deliveryRadius)
+     */
+    @GetMapping("/nearby")
+    public ResponseEntity<NearbyStoreResponseWrapper> getNearbyStores(@Valid @ModelAttribute NearbyStoreRequest request) {
+        log.debug("GET /api/stores/nearby - [{}, {}] radius={}km limit={} sortBy={}",
+                request.getLatitude(), request.getLongitude(), request.getRadiusKm(),
+                request.getLimit(), request.getSortBy());
+
+        try {
+            NearbyStoreResponseWrapper response = storeService.findNearbyStores(request);
+            log.debug("Found {} stores nearby", response.getTotalCount());
+            return ResponseEntity.ok(response);
+        } catch (Exception e) {
+            log.error("Unexpected error searching nearby stores", e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(NearbyStoreResponseWrapper.error("Внутренняя ошибка сервера"));
+        }
+    }
+
     @GetMapping("/{id}")
     public ResponseEntity<SingleStoreResponseWrapper> getStoreById(@PathVariable Long id) {
         log.info("🔍 GET /api/stores/{} - Getting store by ID", id);
@@ -256,6 +321,20 @@ public class StoreController {
         }
     }
 
+    /**
+     * Статус фоновой загрузки изображения магазина (после POST /api/stores?async=true)
+     * GET /api/stores/{id}/image-status
+     */
+    @GetMapping("/{id}/image-status")
+    public ResponseEntity<ApiResponse<ImageUploadStatusDto>> getStoreImageStatus(@PathVariable Long id) {
+        log.debug("🖼️ GET /api/stores/{}/image-status", id);
+
+        return storeService.getStoreImageStatus(id)
+                .map(status -> ResponseEntity.ok(ApiResponse.success(status)))
+                .orElseGet(() -> ResponseEntity.status(HttpStatus.NOT_FOUND)
+                        .body(ApiResponse.notFound("Store not found with ID: " + id)));
+    }
+
     @GetMapping("/owner/{ownerId}")
     public ResponseEntity<StoreResponseWrapper> getStoresByOwner(
             @PathVariable Long ownerId,
@@ -297,21 +376,54 @@ public class StoreController {
 
 
     /**
-     * 🔐 Проверить роль ROLE_BUSINESS
+     * Обновить свой магазин
+     * PUT /api/stores/{id}
      */
-    private ResponseEntity<StoreResponseDto> checkBusinessRole(Long userId, HttpServletRequest request) {
-        String userRole = request.getHeader("X-User-Role");
+    @PutMapping(value = "/{id}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<SingleStoreResponseWrapper> updateStore(
+            @PathVariable Long id,
+            @Valid @RequestPart("store") UpdateStoreDto updateStoreDto,
+            @RequestPart(value = "imageFile", required = false) MultipartFile imageFile,
+            @CurrentUser Long userId) {
 
-        log.info("🔐 Business request from User: ID={}, Role={}", userId, userRole);
+        log.info("✏️ PUT /api/stores/{} - Updating store by user: {}", id, userId);
 
-        if (!"ROLE_BUSINESS".equals(userRole)) {
-            log.warn("❌ Access denied for user {} with role {}. Required: ROLE_BUSINESS", userId, userRole);
-            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        try {
+            updateStoreDto.setImageFile(imageFile);
+            SingleStoreResponseWrapper response = storeService.updateStore(id, updateStoreDto, userId);
+
+            return response.getSuccess() ?
+                    ResponseEntity.ok(response) :
+                    ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        } catch (ImageProcessingRejectedException e) {
+            // 🚦 429/503 с Retry-After - в ImageProcessingExceptionHandler
+            throw e;
+        } catch (Exception e) {
+            log.error("💥 Error updating store {}", id, e);
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR)
+                    .body(SingleStoreResponseWrapper.error("Ошибка обновления магазина: " + e.getMessage()));
         }
+    }
+
+    /**
+     * Деактивировать свой магазин (мягкое удаление)
+     * DELETE /api/stores/{id}
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<SingleStoreResponseWrapper> deactivateStore(
+            @PathVariable Long id,
+            @CurrentUser Long userId) {
+
+        log.info("🗑️ DELETE /api/stores/{} - Deactivating store by user: {}", id, userId);
 
-        return null; // Проверка прошла успешно
+        SingleStoreResponseWrapper response = storeService.deactivateStore(id, userId);
+
+        return response.getSuccess() ?
+                ResponseEntity.ok(response) :
+                ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
     }
 
+
     /**
      * 🚨 Обработка ошибок создания магазина
      */
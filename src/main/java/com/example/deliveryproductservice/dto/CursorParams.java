@@ -0,0 +1,49 @@
+package com.example.deliveryproductservice.dto;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.util.Optional;
+
+/**
+ * 🔖 Курсор из параметров запроса - одинаково для списков и поиска: выбор keyset/OFFSET,
+ * разбор без исключений и одно сообщение об ошибке для клиента
+ */
+@Slf4j
+public final class CursorParams {
+
+    public static final String INVALID_CURSOR = "Неверный курсор пагинации";
+
+    private CursorParams() {
+    }
+
+    /**
+     * Курсор задан или запрошена первая страница - keyset-пагинация; page > 0 без курсора - устаревший OFFSET
+     */
+    public static boolean useKeyset(String cursor, int page) {
+        return cursor != null || page == 0;
+    }
+
+    /**
+     * Курсор списка; пустой - начало, поврежденный - Optional.empty()
+     */
+    public static Optional<PageCursor> decodePage(String cursor) {
+        try {
+            return Optional.of(PageCursor.decode(cursor));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid page cursor: {}", cursor);
+            return Optional.empty();
+        }
+    }
+
+    /**
+     * Курсор полнотекстовой выдачи; пустой - начало, поврежденный - Optional.empty()
+     */
+    public static Optional<SearchCursor> decodeSearch(String cursor) {
+        try {
+            return Optional.of(SearchCursor.decode(cursor));
+        } catch (IllegalArgumentException e) {
+            log.warn("Invalid search cursor: {}", cursor);
+            return Optional.empty();
+        }
+    }
+}
@@ -0,0 +1,30 @@
+package com.example.deliveryproductservice.dto.ImageUpload;
+
+import com.example.deliveryproductservice.model.ImageStatus;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 🖼️ Состояние фоновой загрузки изображения (для опроса клиентом после 202 Accepted)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageUploadStatusDto {
+    private String entityType;
+    private Long entityId;
+    private ImageStatus status;
+    private String picUrl;
+
+    public static ImageUploadStatusDto of(String entityType, Long entityId, ImageStatus status, String picUrl) {
+        return ImageUploadStatusDto.builder()
+                .entityType(entityType)
+                .entityId(entityId)
+                .status(status)
+                .picUrl(picUrl)
+                .build();
+    }
+}
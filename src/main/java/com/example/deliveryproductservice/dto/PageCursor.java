@@ -0,0 +1,74 @@
+package com.example.deliveryproductservice.dto;
+
+import lombok.Value;
+import org.springframework.data.domain.Slice;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.List;
+import java.util.function.Function;
+
+/**
+ * 🔖 Курсор keyset-пагинации: позиция последнего элемента страницы (createdAt, id)
+ * в порядке ORDER BY createdAt DESC, id DESC. Следующая страница читается условием
+ * (createdAt, id) < (курсор) по составному индексу - глубина прокрутки не влияет на стоимость.
+ * Клиенту отдается непрозрачной строкой (base64url), внутренний формат может меняться
+ */
+@Value
+public class PageCursor {
+
+    // Начало списка: позже любой реальной записи
+    private static final PageCursor FIRST = new PageCursor(LocalDateTime.of(9999, 12, 31, 23, 59), Long.MAX_VALUE);
+
+    LocalDateTime createdAt;
+    Long id;
+
+    public static PageCursor first() {
+        return FIRST;
+    }
+
+    public static PageCursor after(LocalDateTime createdAt, Long id) {
+        return new PageCursor(createdAt, id);
+    }
+
+    /**
+     * Разбирает курсор из запроса; пустой курсор - начало списка
+     *
+     * @throws IllegalArgumentException курсор поврежден или подделан
+     */
+    public static PageCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 3) {
+                throw new IllegalArgumentException("Invalid page cursor");
+            }
+            LocalDateTime createdAt = LocalDateTime.ofEpochSecond(
+                    Long.parseLong(parts[0]), Integer.parseInt(parts[1]), ZoneOffset.UTC);
+            return new PageCursor(createdAt, Long.parseLong(parts[2]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid page cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = createdAt.toEpochSecond(ZoneOffset.UTC) + ":" + createdAt.getNano() + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Курсор следующей страницы по последнему элементу; null, если страница последняя
+     */
+    public static <T> String next(Slice<T> slice, Function<T, LocalDateTime> createdAt, Function<T, Long> id) {
+        List<T> content = slice.getContent();
+        if (!slice.hasNext() || content.isEmpty()) {
+            return null;
+        }
+        T last = content.get(content.size() - 1);
+        return after(createdAt.apply(last), id.apply(last)).encode();
+    }
+}
@@ -7,7 +7,9 @@ public interface ProductBriefProjection {
     String getName();
     BigDecimal getPrice();
     BigDecimal getDiscountPrice();
+    // Миниатюра (thumb), если производные есть
     String getPicUrl();
+    String getPicWebpUrl();
     Boolean getIsAvailable();
     BigDecimal getRating();
 }
\ No newline at end of file
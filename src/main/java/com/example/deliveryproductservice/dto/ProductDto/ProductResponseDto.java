@@ -1,5 +1,7 @@
 package com.example.deliveryproductservice.dto.ProductDto;
 
+import com.example.deliveryproductservice.model.ImageStatus;
+import com.example.deliveryproductservice.model.ImageVariants;
 import lombok.Data;
 import java.math.BigDecimal;
 import java.time.LocalDateTime;
@@ -14,6 +16,8 @@ public class ProductResponseDto {
     private BigDecimal price;
     private BigDecimal discountPrice;
     private String picUrl;
+    private ImageVariants imageVariants;
+    private ImageStatus imageStatus;
     private Boolean isAvailable;
     private BigDecimal rating;
     private LocalDateTime createdAt;
@@ -23,6 +23,8 @@ public class ProductResponseWrapper {
     private Boolean hasPrevious;
     private Integer currentPage;
     private Integer pageSize;
+    // Курсор следующей страницы (keyset-пагинация); null - страница последняя
+    private String nextCursor;
     private Boolean success;
     private String message;
     private LocalDateTime timestamp;
@@ -40,6 +42,13 @@ public class ProductResponseWrapper {
                 .build();
     }
 
+    // Страница keyset-пагинации: следующая запрашивается по nextCursor
+    public static ProductResponseWrapper success(Slice<ProductResponseDto> slice, String nextCursor) {
+        ProductResponseWrapper response = success(slice);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
     public static ProductResponseWrapper error(String message) {
         return ProductResponseWrapper.builder()
                 .products(Collections.emptyList())
@@ -0,0 +1,56 @@
+package com.example.deliveryproductservice.dto;
+
+import lombok.Value;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * 🔖 Курсор постраничной выдачи полнотекстового поиска: позиция последнего результата
+ * (rank, id) в порядке ORDER BY rank DESC, id DESC. Ранг - float4 из PostgreSQL,
+ * Float.toString/parseFloat передают его без потерь, поэтому сравнение на границе страницы точное
+ */
+@Value
+public class SearchCursor {
+
+    // Начало выдачи: выше любого реального ранга
+    private static final SearchCursor FIRST = new SearchCursor(Float.MAX_VALUE, Long.MAX_VALUE);
+
+    float rank;
+    long id;
+
+    public static SearchCursor first() {
+        return FIRST;
+    }
+
+    public static SearchCursor after(float rank, long id) {
+        return new SearchCursor(rank, id);
+    }
+
+    /**
+     * @throws IllegalArgumentException курсор поврежден или подделан
+     */
+    public static SearchCursor decode(String token) {
+        if (token == null || token.isBlank()) {
+            return FIRST;
+        }
+        try {
+            String[] parts = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.US_ASCII).split(":");
+            if (parts.length != 2) {
+                throw new IllegalArgumentException("Invalid search cursor");
+            }
+            float rank = Float.parseFloat(parts[0]);
+            if (!Float.isFinite(rank)) {
+                throw new IllegalArgumentException("Invalid search cursor");
+            }
+            return new SearchCursor(rank, Long.parseLong(parts[1]));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid search cursor", e);
+        }
+    }
+
+    public String encode() {
+        String raw = Float.toString(rank) + ":" + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.US_ASCII));
+    }
+}
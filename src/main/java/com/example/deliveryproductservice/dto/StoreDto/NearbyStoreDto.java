@@ -0,0 +1,28 @@
+package com.example.deliveryproductservice.dto.StoreDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+
+/**
+ * Магазин в результатах поиска поблизости (краткие поля + расстояние)
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyStoreDto {
+    private Long id;
+    private String name;
+    private BigDecimal rating;
+    private BigDecimal deliveryFee;
+    private Integer estimatedDeliveryTime;
+    private Integer deliveryRadius;
+    private String picUrl;
+    private String addressCity;
+    private String addressStreet;
+    private Double distanceKm;
+}
@@ -36,4 +36,7 @@ public class NearbyStoreRequest {
     private BigDecimal maxDeliveryFee;
     private Integer maxDeliveryTime;
     private BigDecimal minRating;
+
+    // true - только магазины, чья зона доставки (deliveryRadius) покрывает точку; radiusKm не применяется
+    private Boolean deliverableOnly = false;
 }
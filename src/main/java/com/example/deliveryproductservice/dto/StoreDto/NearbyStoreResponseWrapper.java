@@ -0,0 +1,52 @@
+package com.example.deliveryproductservice.dto.StoreDto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.List;
+
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class NearbyStoreResponseWrapper {
+    private List<NearbyStoreDto> stores;
+    private Integer totalCount;
+    private BigDecimal latitude;
+    private BigDecimal longitude;
+    private Integer radiusKm;
+    private String sortBy;
+    private Boolean success;
+    private String message;
+    private LocalDateTime timestamp;
+
+    // Для успешного ответа
+    public static NearbyStoreResponseWrapper success(List<NearbyStoreDto> stores, NearbyStoreRequest request) {
+        return NearbyStoreResponseWrapper.builder()
+                .stores(stores)
+                .totalCount(stores.size())
+                .latitude(request.getLatitude())
+                .longitude(request.getLongitude())
+                .radiusKm(request.getRadiusKm())
+                .sortBy(request.getSortBy())
+                .success(true)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+
+    // Для ошибок
+    public static NearbyStoreResponseWrapper error(String message) {
+        return NearbyStoreResponseWrapper.builder()
+                .stores(Collections.emptyList())
+                .totalCount(0)
+                .success(false)
+                .message(message)
+                .timestamp(LocalDateTime.now())
+                .build();
+    }
+}
@@ -19,6 +19,7 @@ public class StoreBriefDto {
     private BigDecimal deliveryFee;
     private Integer estimatedDeliveryTime;
     private String picUrl;
+    private String picWebpUrl;
     private String addressCity;
     private String addressStreet;
 
@@ -32,6 +33,7 @@ public class StoreBriefDto {
                 .deliveryFee(projection.getDeliveryFee())
                 .estimatedDeliveryTime(projection.getEstimatedDeliveryTime())
                 .picUrl(projection.getPicUrl())
+                .picWebpUrl(projection.getPicWebpUrl())
                 .addressCity(projection.getAddressCity())
                 .addressStreet(projection.getAddressStreet())
                 .build();
@@ -1,6 +1,7 @@
 package com.example.deliveryproductservice.dto.StoreDto;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 
 public interface StoreBriefProjection {
     Long getId();
@@ -9,9 +10,14 @@ public interface StoreBriefProjection {
     BigDecimal getRating();
     BigDecimal getDeliveryFee();
     Integer getEstimatedDeliveryTime();
+    // Миниатюра (thumb), если производные есть
     String getPicUrl();
+    String getPicWebpUrl();
 
     // Адрес - через вложенные свойства
     String getAddressCity();
     String getAddressStreet();
+
+    // Позиция для курсора keyset-пагинации
+    LocalDateTime getCreatedAt();
 }
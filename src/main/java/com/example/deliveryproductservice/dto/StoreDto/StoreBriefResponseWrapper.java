@@ -23,6 +23,8 @@ public class StoreBriefResponseWrapper {
     private Boolean hasPrevious;
     private Integer currentPage;
     private Integer pageSize;
+    // Курсор следующей страницы (keyset-пагинация); null - страница последняя
+    private String nextCursor;
     private Boolean success;
     private String message;
     private LocalDateTime timestamp;
@@ -41,6 +43,13 @@ public class StoreBriefResponseWrapper {
                 .build();
     }
 
+    // Страница keyset-пагинации: следующая запрашивается по nextCursor
+    public static StoreBriefResponseWrapper success(Slice<StoreBriefDto> slice, String nextCursor) {
+        StoreBriefResponseWrapper response = success(slice);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
     // Для ошибок
     public static StoreBriefResponseWrapper error(String message) {
         return StoreBriefResponseWrapper.builder()
@@ -0,0 +1,9 @@
+package com.example.deliveryproductservice.dto.StoreDto;
+
+/**
+ * Краткая проекция магазина + вычисленное в SQL расстояние до точки поиска
+ */
+public interface StoreNearbyProjection extends StoreBriefProjection {
+    Integer getDeliveryRadius();
+    Double getDistanceKm();
+}
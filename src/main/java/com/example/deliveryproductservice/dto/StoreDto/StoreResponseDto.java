@@ -1,6 +1,8 @@
 package com.example.deliveryproductservice.dto.StoreDto;
 
 import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.model.ImageStatus;
+import com.example.deliveryproductservice.model.ImageVariants;
 import lombok.Data;
 
 import java.math.BigDecimal;
@@ -22,6 +24,8 @@ public class StoreResponseDto {
     private BigDecimal deliveryFee;
     private Integer estimatedDeliveryTime;
     private String picUrl;
+    private ImageVariants imageVariants;
+    private ImageStatus imageStatus;
     private LocalDateTime createdAt;
     private LocalDateTime updatedAt;
 
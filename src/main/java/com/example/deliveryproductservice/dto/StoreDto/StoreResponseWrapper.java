@@ -21,6 +21,8 @@ public class StoreResponseWrapper {
     private Boolean hasPrevious;
     private Integer currentPage;
     private Integer pageSize;
+    // Курсор следующей страницы (keyset-пагинация); null - страница последняя
+    private String nextCursor;
     private Boolean success;
     private String message;
     private LocalDateTime timestamp;
@@ -51,6 +53,13 @@ public class StoreResponseWrapper {
                 .build();
     }
 
+    // Страница keyset-пагинации: следующая запрашивается по nextCursor
+    public static StoreResponseWrapper success(Slice<StoreResponseDto> slice, String nextCursor) {
+        StoreResponseWrapper response = success(slice);
+        response.setNextCursor(nextCursor);
+        return response;
+    }
+
     // Для ошибок
     public static StoreResponseWrapper error(String message) {
         return StoreResponseWrapper.builder()
@@ -0,0 +1,17 @@
+package com.example.deliveryproductservice.dto;
+
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// Подсказка поиска: product | store | category
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionDto {
+    private String type;
+    private Long id;
+    private String name;
+}
@@ -1,5 +1,6 @@
 package com.example.deliveryproductservice.dto.category;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
@@ -149,6 +150,7 @@ public class ApiResponse<T> {
      * @return данные ответа
      * @throws RuntimeException если данных нет
      */
+    @JsonIgnore // не свойство: иначе ответ с ошибкой (data == null) не сериализуется
     public T getDataOrThrow() {
         if (data == null) {
             throw new RuntimeException(message != null ? message : "No data available");
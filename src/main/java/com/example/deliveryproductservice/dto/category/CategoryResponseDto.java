@@ -1,5 +1,6 @@
 package com.example.deliveryproductservice.dto.category;
 
+import com.example.deliveryproductservice.model.ImageVariants;
 import lombok.Data;
 
 import java.time.LocalDateTime;
@@ -10,6 +11,7 @@ public class CategoryResponseDto {
     private String name;
     private String description;
     private String imageUrl;
+    private ImageVariants imageVariants;
     private Boolean isActive;
     private Integer sortOrder;
     private LocalDateTime createdAt;
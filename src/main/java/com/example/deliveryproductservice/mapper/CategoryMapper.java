@@ -20,6 +20,7 @@ public class CategoryMapper {
         dto.setName(category.getName());
         dto.setDescription(category.getDescription());
         dto.setImageUrl(category.getImageUrl());
+        dto.setImageVariants(category.getImageVariants());
         dto.setIsActive(category.getIsActive());
         dto.setSortOrder(category.getSortOrder());
         dto.setCreatedAt(category.getCreatedAt());
@@ -3,6 +3,7 @@ package com.example.deliveryproductservice.mapper;
 import com.example.deliveryproductservice.dto.ProductDto.CreateProductDto;
 
 import com.example.deliveryproductservice.dto.ProductDto.ProductResponseDto;
+import com.example.deliveryproductservice.model.ImageStatus;
 import com.example.deliveryproductservice.model.Product;
 import org.springframework.stereotype.Component;
 
@@ -23,6 +24,8 @@ public class ProductMapper {
             dto.setPrice(product.getPrice());
             dto.setDiscountPrice(product.getDiscountPrice());
             dto.setPicUrl(product.getPicUrl());
+            dto.setImageVariants(product.getImageVariants());
+            dto.setImageStatus(ImageStatus.orReady(product.getImageStatus()));
             dto.setIsAvailable(product.getIsAvailable());
             dto.setIsPopular(product.getIsPopular());
             dto.setRating(product.getRating());
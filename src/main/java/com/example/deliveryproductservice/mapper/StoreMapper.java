@@ -3,6 +3,7 @@ package com.example.deliveryproductservice.mapper;
 import com.example.deliveryproductservice.dto.StoreDto.StoreResponseDto;
 import com.example.deliveryproductservice.dto.StoreDto.StoreUIDto;
 import com.example.deliveryproductservice.dto.StoreDto.StoreUIProjection;
+import com.example.deliveryproductservice.model.ImageStatus;
 import com.example.deliveryproductservice.model.Store;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Component;
@@ -34,6 +35,8 @@ public class StoreMapper {
         dto.setDeliveryFee(store.getDeliveryFee());
         dto.setEstimatedDeliveryTime(store.getEstimatedDeliveryTime());
         dto.setPicUrl(store.getPicUrl());
+        dto.setImageVariants(store.getImageVariants());
+        dto.setImageStatus(ImageStatus.orReady(store.getImageStatus()));
         dto.setCreatedAt(store.getCreatedAt());
         dto.setUpdatedAt(store.getUpdatedAt());
 
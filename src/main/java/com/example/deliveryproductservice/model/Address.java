@@ -1,6 +1,7 @@
 package com.example.deliveryproductservice.model;
 
 
+import com.example.deliveryproductservice.util.geo.GeoKernel;
 import jakarta.persistence.Column;
 import jakarta.persistence.Embeddable;
 import jakarta.persistence.PrePersist;
@@ -64,22 +65,11 @@ public class Address {
 
     // ✅ Метод для расчета расстояния между адресами:
     public double distanceToKm(Address other) {
-        return calculateDistance(
-                this.latitude.doubleValue(), this.longitude.doubleValue(),
-                other.latitude.doubleValue(), other.longitude.doubleValue()
+        double lat1 = Math.toRadians(this.latitude.doubleValue());
+        double lat2 = Math.toRadians(other.latitude.doubleValue());
+        return GeoKernel.haversineKm(
+                lat1, Math.toRadians(this.longitude.doubleValue()), Math.cos(lat1),
+                lat2, Math.toRadians(other.longitude.doubleValue()), Math.cos(lat2)
         );
     }
-
-    private double calculateDistance(double lat1, double lon1, double lat2, double lon2) {
-        final int R = 6371; // Радиус Земли в км
-
-        double latDistance = Math.toRadians(lat2 - lat1);
-        double lonDistance = Math.toRadians(lon2 - lon1);
-        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
-                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
-                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
-        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
-
-        return R * c;
-    }
 }
\ No newline at end of file
@@ -31,6 +31,9 @@ public class Category {
     @Column(length = 200)
     private String imageId;
 
+    @Embedded
+    private ImageVariants imageVariants;
+
 
 
     @Column(nullable = false)
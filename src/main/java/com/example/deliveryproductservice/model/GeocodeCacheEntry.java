@@ -0,0 +1,52 @@
+package com.example.deliveryproductservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+/**
+ * Персистентный уровень кэша геокодирования.
+ * Ключ - нормализованная строка адреса; запись без координат означает
+ * "адрес не найден" (негативное кэширование).
+ */
+@Entity
+@Table(name = "geocode_cache",
+        indexes = {
+                @Index(name = "idx_geocode_cache_expires_at", columnList = "expires_at")
+        },
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_geocode_cache_address_key", columnNames = {"address_key"})
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class GeocodeCacheEntry {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "address_key", nullable = false, length = 500)
+    private String addressKey;
+
+    @Column(precision = 10, scale = 8)
+    private BigDecimal latitude;
+
+    @Column(precision = 11, scale = 8)
+    private BigDecimal longitude;
+
+    @Column(nullable = false)
+    private Boolean resolved;
+
+    @Column(name = "expires_at", nullable = false)
+    private LocalDateTime expiresAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
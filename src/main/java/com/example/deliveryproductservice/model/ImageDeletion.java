@@ -0,0 +1,45 @@
+package com.example.deliveryproductservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Отложенное удаление изображения из хранилища (transactional outbox).
+ * Запись создается в той же транзакции, что и изменение сущности, и удаляется
+ * фоновым обработчиком после успешного удаления файла.
+ */
+@Entity
+@Table(name = "image_deletion_outbox",
+        indexes = {
+                @Index(name = "idx_image_deletion_next_attempt_at", columnList = "next_attempt_at")
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImageDeletion {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "public_id", nullable = false)
+    private String publicId;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    @Column(name = "next_attempt_at", nullable = false)
+    private LocalDateTime nextAttemptAt;
+
+    @Column(name = "last_error", length = 500)
+    private String lastError;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+}
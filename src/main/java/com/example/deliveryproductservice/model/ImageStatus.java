@@ -0,0 +1,17 @@
+package com.example.deliveryproductservice.model;
+
+/**
+ * 🖼️ Состояние изображения сущности при асинхронной загрузке
+ */
+public enum ImageStatus {
+    PENDING,  // сущность сохранена с placeholder, изображение обрабатывается
+    READY,    // picUrl/picId указывают на загруженное изображение
+    FAILED;   // обработка или загрузка не удалась, остался placeholder
+
+    /**
+     * Записи, созданные до появления статуса, считаются загруженными
+     */
+    public static ImageStatus orReady(ImageStatus status) {
+        return status != null ? status : READY;
+    }
+}
@@ -0,0 +1,54 @@
+package com.example.deliveryproductservice.model;
+
+import jakarta.persistence.Column;
+import jakarta.persistence.Embeddable;
+import lombok.*;
+
+/**
+ * 🖼️ Производные изображения, созданные один раз при загрузке.
+ * Полный размер в JPEG - это основной picUrl/imageUrl сущности; идентификаторы
+ * производных в хранилище выводятся из основного: {@code <id>_card}, {@code <id>_thumb}.
+ * У записей, загруженных до появления производных, все поля пустые.
+ */
+@Embeddable
+@Getter
+@Setter
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class ImageVariants {
+
+    public static final String CARD_SUFFIX = "_card";
+    public static final String THUMB_SUFFIX = "_thumb";
+
+    // Миниатюра для списков (до 200px)
+    @Column(length = 500)
+    private String thumbUrl;
+
+    @Column(length = 500)
+    private String thumbWebpUrl;
+
+    // Карточка (до 600px)
+    @Column(length = 500)
+    private String cardUrl;
+
+    @Column(length = 500)
+    private String cardWebpUrl;
+
+    // Полный размер (до 1200px) в WebP
+    @Column(length = 500)
+    private String fullWebpUrl;
+
+    /**
+     * Идентификатор основного изображения по идентификатору производной
+     */
+    public static String baseId(String publicId) {
+        if (publicId.endsWith(CARD_SUFFIX)) {
+            return publicId.substring(0, publicId.length() - CARD_SUFFIX.length());
+        }
+        if (publicId.endsWith(THUMB_SUFFIX)) {
+            return publicId.substring(0, publicId.length() - THUMB_SUFFIX.length());
+        }
+        return publicId;
+    }
+}
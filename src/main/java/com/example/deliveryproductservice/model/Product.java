@@ -11,8 +11,11 @@ import java.time.LocalDateTime;
 
 @Entity
 @Table(name = "products", indexes = {
-        @Index(name = "idx_store_available", columnList = "store_id, isAvailable"),
-        @Index(name = "idx_category_available", columnList = "category_id, isAvailable")
+        // Составные индексы под keyset-пагинацию: фильтр + (createdAt, id)
+        @Index(name = "idx_product_available_created", columnList = "isAvailable, createdAt, id"),
+        @Index(name = "idx_product_store_available_created", columnList = "store_id, isAvailable, createdAt, id"),
+        @Index(name = "idx_product_category_available_created", columnList = "category_id, isAvailable, createdAt, id"),
+        @Index(name = "idx_product_pic_id", columnList = "pic_id")
 })
 @Getter
 @Setter
@@ -49,9 +52,17 @@ public class Product {
     @Column(nullable = false)
     private Boolean isPopular = false;
 
-    @Column(unique = true, nullable = false)
+    // Не уникален: одинаковые изображения загружаются один раз (см. ImageContentIndex)
+    @Column(nullable = false)
     private String picId;
 
+    @Embedded
+    private ImageVariants imageVariants;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ImageStatus imageStatus;
+
     @Column(nullable = false)
     private Boolean isAvailable = true;
 
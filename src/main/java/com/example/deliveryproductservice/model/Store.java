@@ -11,7 +11,13 @@ import java.util.List;
 
 @Entity
 @Table(name = "stores", indexes = {
-        @Index(name = "idx_owner_active", columnList = "owner_id, isActive")
+        @Index(name = "idx_owner_active", columnList = "owner_id, isActive"),
+        // Keyset-пагинация активных магазинов: (createdAt, id)
+        @Index(name = "idx_store_active_created", columnList = "isActive, createdAt, id"),
+        @Index(name = "idx_store_lat_lon", columnList = "latitude, longitude"),
+        // MAX(deliveryRadius) активных магазинов - граница поиска "кто доставит в точку"
+        @Index(name = "idx_store_active_radius", columnList = "isActive, deliveryRadius"),
+        @Index(name = "idx_store_pic_id", columnList = "pic_id")
 })
 @Getter
 @Setter
@@ -60,9 +66,17 @@ public class Store {
     @Column(nullable = false)
     private String picUrl;
 
-    @Column(nullable = true, unique = true)
+    // Не уникален: одинаковые изображения загружаются один раз (см. ImageContentIndex)
+    @Column(nullable = true)
     private String picId;
 
+    @Embedded
+    private ImageVariants imageVariants;
+
+    @Enumerated(EnumType.STRING)
+    @Column(length = 16)
+    private ImageStatus imageStatus;
+
 
     @OneToMany(fetch = FetchType.LAZY)
     @JoinColumn(name = "store_id")
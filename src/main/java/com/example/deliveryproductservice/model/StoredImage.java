@@ -0,0 +1,55 @@
+package com.example.deliveryproductservice.model;
+
+import jakarta.persistence.*;
+import lombok.*;
+import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
+
+import java.time.LocalDateTime;
+
+/**
+ * Загруженное в хранилище изображение, адресуемое по содержимому.
+ * Одинаковые файлы загружаются один раз; refCount - число сущностей,
+ * ссылающихся на изображение. Удаление из хранилища - только при нуле.
+ */
+@Entity
+@Table(name = "stored_images",
+        uniqueConstraints = {
+                @UniqueConstraint(name = "uk_stored_images_content_hash", columnNames = {"content_hash"}),
+                @UniqueConstraint(name = "uk_stored_images_public_id", columnNames = {"public_id"})
+        })
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class StoredImage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // SHA-256 исходного файла (hex)
+    @Column(name = "content_hash", nullable = false, length = 64)
+    private String contentHash;
+
+    @Column(name = "public_id", nullable = false)
+    private String publicId;
+
+    @Column(nullable = false, length = 500)
+    private String url;
+
+    @Embedded
+    private ImageVariants imageVariants;
+
+    @Column(name = "ref_count", nullable = false)
+    private Integer refCount;
+
+    @CreationTimestamp
+    @Column(name = "created_at")
+    private LocalDateTime createdAt;
+
+    @UpdateTimestamp
+    @Column(name = "updated_at")
+    private LocalDateTime updatedAt;
+}
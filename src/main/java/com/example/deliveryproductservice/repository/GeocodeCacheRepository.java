@@ -0,0 +1,26 @@
+package com.example.deliveryproductservice.repository;
+
+import com.example.deliveryproductservice.model.GeocodeCacheEntry;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface GeocodeCacheRepository extends JpaRepository<GeocodeCacheEntry, Long> {
+
+    Optional<GeocodeCacheEntry> findByAddressKey(String addressKey);
+
+    /**
+     * Удаляет просроченные записи кэша
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM GeocodeCacheEntry e WHERE e.expiresAt < :now")
+    int deleteExpired(@Param("now") LocalDateTime now);
+}
@@ -0,0 +1,28 @@
+package com.example.deliveryproductservice.repository;
+
+import com.example.deliveryproductservice.model.ImageDeletion;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Repository
+public interface ImageDeletionRepository extends JpaRepository<ImageDeletion, Long> {
+
+    /**
+     * Забирает пачку готовых к повтору удалений. SKIP LOCKED - несколько инстансов
+     * разбирают очередь параллельно, не получая одни и те же записи; после коммита
+     * записи защищает аренда (сдвинутый next_attempt_at), а не блокировка
+     */
+    @Query(value = """
+            SELECT * FROM image_deletion_outbox
+            WHERE next_attempt_at <= :now
+            ORDER BY next_attempt_at
+            LIMIT :limit
+            FOR UPDATE SKIP LOCKED
+            """, nativeQuery = true)
+    List<ImageDeletion> lockDue(@Param("now") LocalDateTime now, @Param("limit") int limit);
+}
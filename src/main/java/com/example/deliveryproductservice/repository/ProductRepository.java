@@ -8,6 +8,7 @@ import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 public interface ProductRepository extends JpaRepository<Product, Long> {
@@ -21,15 +22,40 @@ public interface ProductRepository extends JpaRepository<Product, Long> {
     // Продукты конкретной категории
     Slice<Product> findByCategoryIdAndIsAvailableTrueOrderByCreatedAtDesc(Long categoryId, Pageable pageable);
 
+    // ================================
+    // 🔖 KEYSET-ПАГИНАЦИЯ (следующая страница после курсора (createdAt, id))
+    // ================================
+
+    @Query("SELECT p FROM Product p WHERE p.isAvailable = true " +
+            "AND (p.createdAt, p.id) < (:createdAt, :id) ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<Product> findAvailableAfter(@Param("createdAt") LocalDateTime createdAt,
+                                      @Param("id") Long id,
+                                      Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.storeId = :storeId AND p.isAvailable = true " +
+            "AND (p.createdAt, p.id) < (:createdAt, :id) ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<Product> findAvailableByStoreAfter(@Param("storeId") Long storeId,
+                                             @Param("createdAt") LocalDateTime createdAt,
+                                             @Param("id") Long id,
+                                             Pageable pageable);
+
+    @Query("SELECT p FROM Product p WHERE p.categoryId = :categoryId AND p.isAvailable = true " +
+            "AND (p.createdAt, p.id) < (:createdAt, :id) ORDER BY p.createdAt DESC, p.id DESC")
+    Slice<Product> findAvailableByCategoryAfter(@Param("categoryId") Long categoryId,
+                                                @Param("createdAt") LocalDateTime createdAt,
+                                                @Param("id") Long id,
+                                                Pageable pageable);
+
     // Поиск по названию
     Slice<Product> findByNameContainingIgnoreCaseAndIsAvailableTrueOrderByCreatedAtDesc(String name, Pageable pageable);
 
     // Один продукт по ID
     Optional<Product> findByIdAndIsAvailableTrue(Long id);
 
-    // Проекция для кратких данных
+    // Проекция для кратких данных: в списке отдается миниатюра (у старых записей - исходный picUrl)
     @Query("SELECT p.id as id, p.name as name, p.price as price, " +
-            "p.discountPrice as discountPrice, p.picUrl as picUrl, " +
+            "p.discountPrice as discountPrice, COALESCE(p.imageVariants.thumbUrl, p.picUrl) as picUrl, " +
+            "p.imageVariants.thumbWebpUrl as picWebpUrl, " +
             "p.isAvailable as isAvailable, p.rating as rating " +
             "FROM Product p WHERE p.storeId = :storeId AND p.isAvailable = true " +
             "ORDER BY p.createdAt DESC")
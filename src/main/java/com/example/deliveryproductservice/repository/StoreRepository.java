@@ -1,14 +1,17 @@
 package com.example.deliveryproductservice.repository;
 
 import com.example.deliveryproductservice.dto.StoreDto.StoreBriefProjection;
+import com.example.deliveryproductservice.dto.StoreDto.StoreNearbyProjection;
 import com.example.deliveryproductservice.dto.StoreDto.StoreUIProjection;
 import com.example.deliveryproductservice.model.Store;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -34,12 +37,135 @@ public interface StoreRepository extends JpaRepository<Store, Long> {
     Slice<StoreUIProjection> findByIsActiveTrueOrderByRatingDescCreatedAtDesc(Pageable pageable);
 
 
-    //  краткая проекция (9 полей)
+    //  краткая проекция (10 полей), изображение - миниатюра (у старых записей - исходный picUrl)
     @Query("SELECT s.id as id, s.name as name, s.isActive as isActive, " +
             "s.rating as rating, s.deliveryFee as deliveryFee, " +
-            "s.estimatedDeliveryTime as estimatedDeliveryTime, s.picUrl as picUrl, " +
-            "s.address.city as addressCity, s.address.street as addressStreet " +
+            "s.estimatedDeliveryTime as estimatedDeliveryTime, " +
+            "COALESCE(s.imageVariants.thumbUrl, s.picUrl) as picUrl, s.imageVariants.thumbWebpUrl as picWebpUrl, " +
+            "s.address.city as addressCity, s.address.street as addressStreet, s.createdAt as createdAt " +
             "FROM Store s WHERE s.isActive = true ORDER BY s.createdAt DESC")
     Slice<StoreBriefProjection> findActiveStoresBrief(Pageable pageable);
 
+    // ================================
+    // 🔖 KEYSET-ПАГИНАЦИЯ (следующая страница после курсора (createdAt, id))
+    // ================================
+
+    @Query("SELECT s FROM Store s WHERE s.isActive = true " +
+            "AND (s.createdAt, s.id) < (:createdAt, :id) ORDER BY s.createdAt DESC, s.id DESC")
+    Slice<Store> findActiveAfter(@Param("createdAt") LocalDateTime createdAt,
+                                 @Param("id") Long id,
+                                 Pageable pageable);
+
+    @Query("SELECT s.id as id, s.name as name, s.isActive as isActive, " +
+            "s.rating as rating, s.deliveryFee as deliveryFee, " +
+            "s.estimatedDeliveryTime as estimatedDeliveryTime, " +
+            "COALESCE(s.imageVariants.thumbUrl, s.picUrl) as picUrl, s.imageVariants.thumbWebpUrl as picWebpUrl, " +
+            "s.address.city as addressCity, s.address.street as addressStreet, s.createdAt as createdAt " +
+            "FROM Store s WHERE s.isActive = true " +
+            "AND (s.createdAt, s.id) < (:createdAt, :id) ORDER BY s.createdAt DESC, s.id DESC")
+    Slice<StoreBriefProjection> findActiveStoresBriefAfter(@Param("createdAt") LocalDateTime createdAt,
+                                                           @Param("id") Long id,
+                                                           Pageable pageable);
+
+
+    // ================================
+    // 🗺️ ГЕО-ЗАПРОСЫ (режим поиска поблизости на стороне БД)
+    // ================================
+
+    // Пустые числовые поля читаются как 0 - так же, как в in-memory индексе (StoreSpatialIndex.StoreGeoEntry)
+
+    /**
+     * Наибольшая зона доставки среди активных магазинов - радиус поиска для deliverableOnly
+     * (idx_store_active_radius, без полного прохода по таблице)
+     */
+    @Query("SELECT MAX(s.deliveryRadius) FROM Store s WHERE s.isActive = true")
+    Integer findMaxActiveDeliveryRadius();
+
+    /**
+     * Plain PostgreSQL: префильтр по bounding box (btree idx_store_lat_lon),
+     * затем точное расстояние (haversine) и сортировка в SQL.
+     */
+    @Query(value = "SELECT * FROM (" +
+            "SELECT s.id AS \"id\", s.name AS \"name\", s.is_active AS \"isActive\", " +
+            "COALESCE(s.rating, 0) AS \"rating\", COALESCE(s.delivery_fee, 0) AS \"deliveryFee\", " +
+            "COALESCE(s.estimated_delivery_time, 0) AS \"estimatedDeliveryTime\", s.pic_url AS \"picUrl\", " +
+            "s.city AS \"addressCity\", s.street AS \"addressStreet\", " +
+            "COALESCE(s.delivery_radius, 0) AS \"deliveryRadius\", " +
+            "6371.0 * 2 * ASIN(SQRT(" +
+            "POWER(SIN(RADIANS(s.latitude - :lat) / 2), 2) + " +
+            "COS(RADIANS(:lat)) * COS(RADIANS(s.latitude)) * " +
+            "POWER(SIN(RADIANS(s.longitude - :lon) / 2), 2))) AS \"distanceKm\" " +
+            "FROM stores s " +
+            "WHERE s.is_active = true " +
+            "AND s.latitude BETWEEN :minLat AND :maxLat " +
+            "AND s.longitude BETWEEN :minLon AND :maxLon " +
+            "AND COALESCE(s.delivery_fee, 0) <= :maxFee " +
+            "AND COALESCE(s.estimated_delivery_time, 0) <= :maxTime " +
+            "AND COALESCE(s.rating, 0) >= :minRating" +
+            ") t " +
+            "WHERE t.\"distanceKm\" <= :radiusKm " +
+            "AND (:deliverableOnly = false OR t.\"distanceKm\" <= t.\"deliveryRadius\") " +
+            "ORDER BY " +
+            "CASE WHEN :sortBy = 'rating' THEN t.\"rating\" END DESC NULLS LAST, " +
+            "CASE WHEN :sortBy = 'deliveryTime' THEN t.\"estimatedDeliveryTime\" END ASC, " +
+            "CASE WHEN :sortBy = 'deliveryFee' THEN t.\"deliveryFee\" END ASC, " +
+            "t.\"distanceKm\" ASC",
+            nativeQuery = true)
+    Slice<StoreNearbyProjection> findNearbyBriefByBoundingBox(@Param("lat") double lat,
+                                                              @Param("lon") double lon,
+                                                              @Param("minLat") double minLat,
+                                                              @Param("maxLat") double maxLat,
+                                                              @Param("minLon") double minLon,
+                                                              @Param("maxLon") double maxLon,
+                                                              @Param("radiusKm") double radiusKm,
+                                                              @Param("maxFee") double maxFee,
+                                                              @Param("maxTime") int maxTime,
+                                                              @Param("minRating") double minRating,
+                                                              @Param("deliverableOnly") boolean deliverableOnly,
+                                                              @Param("sortBy") String sortBy,
+                                                              Pageable pageable);
+
+    /**
+     * PostGIS: ST_DWithin по geography-выражению (GiST idx_store_geog),
+     * расстояние через ST_Distance на сфероиде.
+     */
+    @Query(value = "SELECT * FROM (" +
+            "SELECT s.id AS \"id\", s.name AS \"name\", s.is_active AS \"isActive\", " +
+            "COALESCE(s.rating, 0) AS \"rating\", COALESCE(s.delivery_fee, 0) AS \"deliveryFee\", " +
+            "COALESCE(s.estimated_delivery_time, 0) AS \"estimatedDeliveryTime\", s.pic_url AS \"picUrl\", " +
+            "s.city AS \"addressCity\", s.street AS \"addressStreet\", " +
+            "COALESCE(s.delivery_radius, 0) AS \"deliveryRadius\", " +
+            "ST_Distance(" + StoreRepository.STORE_GEOGRAPHY + ", " +
+            "CAST(ST_SetSRID(ST_MakePoint(:lon, :lat), 4326) AS geography)) / 1000.0 AS \"distanceKm\" " +
+            "FROM stores s " +
+            "WHERE s.is_active = true " +
+            "AND ST_DWithin(" + StoreRepository.STORE_GEOGRAPHY + ", " +
+            "CAST(ST_SetSRID(ST_MakePoint(:lon, :lat), 4326) AS geography), :radiusKm * 1000.0) " +
+            "AND COALESCE(s.delivery_fee, 0) <= :maxFee " +
+            "AND COALESCE(s.estimated_delivery_time, 0) <= :maxTime " +
+            "AND COALESCE(s.rating, 0) >= :minRating" +
+            ") t " +
+            "WHERE (:deliverableOnly = false OR t.\"distanceKm\" <= t.\"deliveryRadius\") " +
+            "ORDER BY " +
+            "CASE WHEN :sortBy = 'rating' THEN t.\"rating\" END DESC NULLS LAST, " +
+            "CASE WHEN :sortBy = 'deliveryTime' THEN t.\"estimatedDeliveryTime\" END ASC, " +
+            "CASE WHEN :sortBy = 'deliveryFee' THEN t.\"deliveryFee\" END ASC, " +
+            "t.\"distanceKm\" ASC",
+            nativeQuery = true)
+    Slice<StoreNearbyProjection> findNearbyBriefPostgis(@Param("lat") double lat,
+                                                        @Param("lon") double lon,
+                                                        @Param("radiusKm") double radiusKm,
+                                                        @Param("maxFee") double maxFee,
+                                                        @Param("maxTime") int maxTime,
+                                                        @Param("minRating") double minRating,
+                                                        @Param("deliverableOnly") boolean deliverableOnly,
+                                                        @Param("sortBy") String sortBy,
+                                                        Pageable pageable);
+
+    /**
+     * Geography-выражение точки магазина. Должно совпадать с выражением GiST-индекса idx_store_geog.
+     */
+    String STORE_GEOGRAPHY = "CAST(ST_SetSRID(ST_MakePoint(" +
+            "CAST(s.longitude AS double precision), CAST(s.latitude AS double precision)), 4326) AS geography)";
+
 }
@@ -0,0 +1,40 @@
+package com.example.deliveryproductservice.repository;
+
+import com.example.deliveryproductservice.model.StoredImage;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.Optional;
+
+@Repository
+public interface StoredImageRepository extends JpaRepository<StoredImage, Long> {
+
+    Optional<StoredImage> findByContentHash(String contentHash);
+
+    /**
+     * Добавляет ссылку на изображение, если оно еще не освобождено (refCount > 0).
+     * updatedAt отмечает повторное использование - сборщик мусора не трогает недавно выданные изображения
+     */
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredImage s SET s.refCount = s.refCount + 1, s.updatedAt = CURRENT_TIMESTAMP " +
+            "WHERE s.contentHash = :contentHash AND s.refCount > 0")
+    int incrementRefCount(@Param("contentHash") String contentHash);
+
+    @Modifying
+    @Transactional
+    @Query("UPDATE StoredImage s SET s.refCount = s.refCount - 1 WHERE s.publicId = :publicId AND s.refCount > 0")
+    int decrementRefCount(@Param("publicId") String publicId);
+
+    /**
+     * Удаляет запись, если на изображение больше никто не ссылается
+     */
+    @Modifying
+    @Transactional
+    @Query("DELETE FROM StoredImage s WHERE s.publicId = :publicId AND s.refCount = 0")
+    int deleteUnreferenced(@Param("publicId") String publicId);
+}
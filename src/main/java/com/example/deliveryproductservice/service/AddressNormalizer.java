@@ -0,0 +1,94 @@
+package com.example.deliveryproductservice.service;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * 🔤 Нормализация адреса для ключа кэша геокодирования:
+ * регистр, ё→е, пунктуация и пробелы, раскрытие типовых сокращений
+ * ("ул." и "улица" дают один и тот же ключ).
+ */
+public final class AddressNormalizer {
+
+    // Сокращения с дефисом раскрываются до разбиения на токены
+    private static final Map<String, String> HYPHENATED = Map.of(
+            "пр-т", "проспект",
+            "пр-кт", "проспект",
+            "б-р", "бульвар",
+            "пр-д", "проезд"
+    );
+
+    private static final Map<String, String> ABBREVIATIONS = Map.ofEntries(
+            // ru
+            Map.entry("ул", "улица"),
+            Map.entry("пр", "проспект"),
+            Map.entry("просп", "проспект"),
+            Map.entry("пер", "переулок"),
+            Map.entry("пл", "площадь"),
+            Map.entry("бул", "бульвар"),
+            Map.entry("ш", "шоссе"),
+            Map.entry("наб", "набережная"),
+            Map.entry("д", "дом"),
+            Map.entry("г", "город"),
+            Map.entry("обл", "область"),
+            // uk
+            Map.entry("вул", "вулиця"),
+            Map.entry("пров", "провулок"),
+            Map.entry("м", "місто"),
+            // en
+            Map.entry("st", "street"),
+            Map.entry("str", "street"),
+            Map.entry("ave", "avenue"),
+            Map.entry("av", "avenue"),
+            Map.entry("rd", "road"),
+            Map.entry("blvd", "boulevard"),
+            Map.entry("ln", "lane"),
+            Map.entry("sq", "square")
+    );
+
+    private AddressNormalizer() {
+    }
+
+    public static String normalize(String address) {
+        if (address == null) {
+            return "";
+        }
+
+        String text = address.toLowerCase(Locale.ROOT).replace('ё', 'е');
+        for (Map.Entry<String, String> entry : HYPHENATED.entrySet()) {
+            text = text.replace(entry.getKey(), entry.getValue());
+        }
+
+        StringBuilder result = new StringBuilder(text.length());
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            // Пропускаем все, что не буква/цифра (пунктуация, пробелы)
+            while (i < length && !Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            while (i < length && Character.isLetterOrDigit(text.charAt(i))) {
+                i++;
+            }
+            if (start == i) {
+                break;
+            }
+
+            String token = text.substring(start, i);
+            int last = result.length() - 1;
+            boolean houseLetter = token.length() == 1 && Character.isLetter(token.charAt(0))
+                    && last >= 0 && Character.isDigit(result.charAt(last));
+            if (houseLetter) {
+                // "22 А" и "22а" - один и тот же дом
+                result.append(token);
+                continue;
+            }
+            if (result.length() > 0) {
+                result.append(' ');
+            }
+            result.append(ABBREVIATIONS.getOrDefault(token, token));
+        }
+        return result.toString();
+    }
+}
@@ -0,0 +1,400 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🚀 Фоновая обработка и загрузка изображений.
+ * Сущность сохраняется сразу с placeholder и статусом PENDING, а конвертация и загрузка
+ * в хранилище выполняются в ограниченном пуле потоков уже после коммита транзакции.
+ * Результат записывается в сущность отдельной короткой транзакцией.
+ * Место в пуле (потоки + очередь) занимается еще до коммита: если мест нет, запрос отклоняется
+ * с 429 и сущность не создается - загрузка никогда не выполняется в потоке запроса.
+ * Записи, оставшиеся в PENDING дольше stale-after (узел остановился с задачами в очереди),
+ * периодически помечаются FAILED.
+ */
+@Service
+@Slf4j
+public class AsyncImageUploadService {
+
+    private static final long RETRY_AFTER_SECONDS = 5;
+    private static final List<String> IMAGE_TABLES = List.of("products", "stores");
+
+    private final StorageService storageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    // Пометка FAILED из afterCommit/остановки - в собственной транзакции
+    private final TransactionTemplate newTransactionTemplate;
+    private final ThreadPoolExecutor executor;
+    // Места в пуле: работающие + ожидающие задачи не превышают poolSize + queueCapacity
+    private final Semaphore slots;
+    private final Duration staleAfter;
+    private final Duration staleCheckInterval;
+
+    private ScheduledExecutorService sweeper;
+
+    public AsyncImageUploadService(StorageService storageService,
+                                   JdbcTemplate jdbcTemplate,
+                                   PlatformTransactionManager transactionManager,
+                                   @Value("${image.upload.async.pool-size:4}") int poolSize,
+                                   @Value("${image.upload.async.queue-capacity:100}") int queueCapacity,
+                                   @Value("${image.upload.async.stale-after:15m}") Duration staleAfter,
+                                   @Value("${image.upload.async.stale-check-interval:10m}") Duration staleCheckInterval) {
+        this.storageService = storageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate = new TransactionTemplate(transactionManager);
+        this.newTransactionTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.slots = new Semaphore(poolSize + queueCapacity);
+        this.staleAfter = staleAfter;
+        this.staleCheckInterval = staleCheckInterval;
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Переполнение исключено семафором; AbortPolicy срабатывает только после остановки пула
+        this.executor = new ThreadPoolExecutor(
+                poolSize, poolSize,
+                60L, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-upload-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+    }
+
+    /**
+     * Зависшие PENDING помечаются при старте и затем периодически
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void startStaleSweep() {
+        sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-upload-stale-sweep");
+            thread.setDaemon(true);
+            return thread;
+        });
+        sweeper.scheduleWithFixedDelay(this::markStalePendingFailedSafely,
+                0, staleCheckInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Ставит изображение в очередь после коммита текущей транзакции (или сразу, если транзакции нет).
+     * При откате транзакции загрузка не выполняется. Вызывается до коммита: если места в пуле нет,
+     * бросает ImageProcessingRejectedException (429) и транзакция создания сущности откатывается.
+     * С этого вызова временной копией владеет сервис: до него ее удаляет вызывающий (discardIfNotSubmitted).
+     *
+     * @param image     копия файла из запроса
+     * @param uploader  конвертация + загрузка в хранилище
+     * @param patcher   запись результата в сущность (выполняется в транзакции)
+     * @param onFailure пометка сущности как FAILED (выполняется в транзакции)
+     */
+    public void submitAfterCommit(PendingImage image, ImageUploader uploader,
+                                  ImagePatcher patcher, Runnable onFailure) {
+        image.submitted.set(true);
+        if (!slots.tryAcquire()) {
+            image.discard();
+            log.warn("🚦 Async image upload rejected: {} tasks queued", executor.getQueue().size());
+            throw new ImageProcessingRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Image upload queue is full, please retry later", RETRY_AFTER_SECONDS);
+        }
+        UploadTask task = new UploadTask(image, uploader, patcher, onFailure);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    enqueue(task);
+                }
+
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        task.release();
+                    }
+                }
+            });
+        } else {
+            enqueue(task);
+        }
+    }
+
+    private void enqueue(UploadTask task) {
+        try {
+            executor.execute(task);
+        } catch (RejectedExecutionException e) {
+            // Пул уже остановлен - сущность закоммичена, но загрузки не будет
+            log.warn("⚠️ Image upload pool is shut down, marking {} as FAILED", task.image.getOriginalFilename());
+            task.abandon();
+        }
+    }
+
+    private void uploadAndPatch(PendingImage image, ImageUploader uploader,
+                                ImagePatcher patcher, Runnable onFailure) {
+        long start = System.currentTimeMillis();
+        StorageService.StorageResult result;
+
+        try {
+            result = uploader.upload(image);
+        } catch (Exception e) {
+            log.error("❌ Async image upload failed for {}: {}", image.getOriginalFilename(), e.getMessage(), e);
+            markFailed(onFailure);
+            return;
+        }
+
+        try {
+            Boolean patched = transactionTemplate.execute(status -> patcher.patch(result));
+            if (!Boolean.TRUE.equals(patched)) {
+                // Сущность удалена, пока шла загрузка - изображение больше никому не нужно
+                log.warn("⚠️ Target entity is gone, deleting uploaded image {}", result.getImageId());
+                storageService.deleteImage(result.getImageId());
+                return;
+            }
+            log.info("✅ Async image uploaded in {} ms: {}", System.currentTimeMillis() - start, result.getUrl());
+        } catch (Exception e) {
+            log.error("❌ Failed to attach uploaded image {}: {}", result.getImageId(), e.getMessage(), e);
+            storageService.deleteImage(result.getImageId());
+            markFailed(onFailure);
+        }
+    }
+
+    private void markFailed(Runnable onFailure) {
+        try {
+            newTransactionTemplate.executeWithoutResult(status -> onFailure.run());
+        } catch (Exception e) {
+            log.error("❌ Failed to mark image upload as FAILED: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * PENDING дольше staleAfter: задача потеряна (узел остановился или упал), временной копии
+     * файла уже нет - повторить загрузку нельзя, клиент видит FAILED и загружает изображение заново
+     *
+     * @return сколько записей помечено
+     */
+    int markStalePendingFailed() {
+        Timestamp before = Timestamp.from(Instant.now().minus(staleAfter));
+        int marked = 0;
+        for (String table : IMAGE_TABLES) {
+            marked += jdbcTemplate.update("UPDATE " + table + " SET image_status = 'FAILED' " +
+                    "WHERE image_status = 'PENDING' AND updated_at < ?", before);
+        }
+        if (marked > 0) {
+            log.warn("⚠️ Marked {} stale PENDING image uploads as FAILED (older than {})", marked, staleAfter);
+        }
+        return marked;
+    }
+
+    private void markStalePendingFailedSafely() {
+        try {
+            markStalePendingFailed();
+        } catch (Exception e) {
+            log.error("❌ Stale PENDING image sweep failed: {}", e.getMessage(), e);
+        }
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public int getActiveCount() {
+        return executor.getActiveCount();
+    }
+
+    int getAvailableSlots() {
+        return slots.availablePermits();
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (sweeper != null) {
+            sweeper.shutdownNow();
+        }
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(30, TimeUnit.SECONDS)) {
+                abandonQueued(executor.shutdownNow());
+            }
+        } catch (InterruptedException e) {
+            abandonQueued(executor.shutdownNow());
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    // Задачи, не дождавшиеся потока, сразу помечаются FAILED - не ждут проверки зависших PENDING
+    private void abandonQueued(List<Runnable> dropped) {
+        log.warn("⚠️ Image upload pool did not finish in time, {} tasks marked FAILED", dropped.size());
+        for (Runnable runnable : dropped) {
+            if (runnable instanceof UploadTask task) {
+                task.abandon();
+            }
+        }
+    }
+
+    /**
+     * Задача загрузки; место в пуле и временная копия освобождаются ровно один раз
+     */
+    private final class UploadTask implements Runnable {
+        private final PendingImage image;
+        private final ImageUploader uploader;
+        private final ImagePatcher patcher;
+        private final Runnable onFailure;
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        private UploadTask(PendingImage image, ImageUploader uploader, ImagePatcher patcher, Runnable onFailure) {
+            this.image = image;
+            this.uploader = uploader;
+            this.patcher = patcher;
+            this.onFailure = onFailure;
+        }
+
+        @Override
+        public void run() {
+            try {
+                uploadAndPatch(image, uploader, patcher, onFailure);
+            } finally {
+                release();
+            }
+        }
+
+        private void abandon() {
+            try {
+                markFailed(onFailure);
+            } finally {
+                release();
+            }
+        }
+
+        private void release() {
+            if (released.compareAndSet(false, true)) {
+                image.discard();
+                slots.release();
+            }
+        }
+    }
+
+    // ================================
+    // 📦 ВСПОМОГАТЕЛЬНЫЕ ТИПЫ
+    // ================================
+
+    @FunctionalInterface
+    public interface ImageUploader {
+        StorageService.StorageResult upload(MultipartFile file) throws IOException;
+    }
+
+    /**
+     * Возвращает false, если сущность уже не существует
+     */
+    @FunctionalInterface
+    public interface ImagePatcher {
+        boolean patch(StorageService.StorageResult result);
+    }
+
+    /**
+     * Копия загруженного файла во временном файле: временный файл multipart удаляется
+     * по завершении запроса, а фоновая задача выполняется позже. Копия делается потоком,
+     * поэтому очередь задач не держит содержимое изображений в heap.
+     */
+    public static class PendingImage implements MultipartFile {
+        private final String name;
+        private final String originalFilename;
+        private final String contentType;
+        private final Path file;
+        private final long size;
+        // Передана в submitAfterCommit - дальше копию удаляет задача загрузки или откат транзакции
+        private final AtomicBoolean submitted = new AtomicBoolean();
+
+        private PendingImage(String name, String originalFilename, String contentType, Path file, long size) {
+            this.name = name;
+            this.originalFilename = originalFilename;
+            this.contentType = contentType;
+            this.file = file;
+            this.size = size;
+        }
+
+        public static PendingImage copyOf(MultipartFile file) throws IOException {
+            Path spooled = Files.createTempFile("pending-image-", null);
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+            } catch (IOException e) {
+                Files.deleteIfExists(spooled);
+                throw e;
+            }
+            return new PendingImage(file.getName(), file.getOriginalFilename(), file.getContentType(),
+                    spooled, Files.size(spooled));
+        }
+
+        /**
+         * Удаляет временную копию (после обработки или при откате транзакции)
+         */
+        public void discard() {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                log.warn("⚠️ Failed to delete pending image {}: {}", file, e.getMessage());
+            }
+        }
+
+        /**
+         * Удаляет копию, если запрос упал до передачи ее в submitAfterCommit
+         * (геокодирование, сохранение сущности) - иначе временный файл остался бы навсегда
+         */
+        public void discardIfNotSubmitted() {
+            if (!submitted.get()) {
+                discard();
+            }
+        }
+
+        @Override
+        public String getName() { return name; }
+
+        @Override
+        public String getOriginalFilename() { return originalFilename; }
+
+        @Override
+        public String getContentType() { return contentType; }
+
+        @Override
+        public boolean isEmpty() { return size == 0; }
+
+        @Override
+        public long getSize() { return size; }
+
+        @Override
+        public byte[] getBytes() throws IOException { return Files.readAllBytes(file); }
+
+        @Override
+        public InputStream getInputStream() throws IOException { return Files.newInputStream(file); }
+
+        @Override
+        public void transferTo(File dest) throws IOException, IllegalStateException {
+            Files.copy(file, dest.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+}
@@ -0,0 +1,196 @@
+package com.example.deliveryproductservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * 🔔 Шина инвалидации локальных кэшей между экземплярами сервиса.
+ * Запись публикует "тип сущности + id" после коммита; остальные экземпляры применяют
+ * изменение к своим кэшам через зарегистрированные обработчики.
+ * Каждое сообщение несет номер узла-отправителя и его счетчик версий: разрыв в номерах
+ * (потерянное сообщение) или переподключение транспорта приводят к полной перезагрузке кэшей.
+ * Формат сообщения: node|version|TYPE|id
+ */
+@Service
+@Slf4j
+public class CacheInvalidationBus {
+
+    public enum EntityType {
+        CATEGORY, STORE, PRODUCT
+    }
+
+    private final CacheInvalidationTransport transport;
+    private final String nodeId = UUID.randomUUID().toString().substring(0, 8);
+    private final AtomicLong version = new AtomicLong();
+    // Последняя полученная версия каждого узла-отправителя
+    private final Map<String, Long> lastVersions = new ConcurrentHashMap<>();
+    private final Map<EntityType, List<Handler>> handlers = new ConcurrentHashMap<>();
+
+    private final Counter sent;
+    private final Counter received;
+    private final Counter fullRefreshes;
+
+    // Отправка из одного потока: сообщения узла уходят в порядке версий
+    private final ExecutorService publisher = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "cache-invalidation-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public CacheInvalidationBus(CacheInvalidationTransport transport, MeterRegistry meterRegistry) {
+        this.transport = transport;
+        this.sent = meterRegistry.counter("cache.invalidation.messages", "direction", "sent");
+        this.received = meterRegistry.counter("cache.invalidation.messages", "direction", "received");
+        this.fullRefreshes = meterRegistry.counter("cache.invalidation.full.refreshes");
+    }
+
+    @PostConstruct
+    public void start() {
+        transport.subscribe(this::onMessage, () -> refreshAll("transport reconnected"));
+        log.info("🔔 Cache invalidation bus started, node {}", nodeId);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        transport.close();
+        publisher.shutdownNow();
+    }
+
+    /**
+     * Регистрирует обработчик изменений сущностей данного типа на других узлах
+     *
+     * @param onInvalidate изменилась (создана/обновлена/удалена) одна сущность
+     * @param onRefreshAll сообщения могли быть потеряны - перезагрузить кэш целиком
+     */
+    public void register(EntityType type, Consumer<Long> onInvalidate, Runnable onRefreshAll) {
+        handlers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>())
+                .add(new Handler(onInvalidate, onRefreshAll, false));
+    }
+
+    /**
+     * Как {@link #register}, но обработчик получает и изменения этого узла (после коммита) -
+     * для кэшей, которые сервисы не обновляют напрямую
+     */
+    public void registerLocalAndRemote(EntityType type, Consumer<Long> onInvalidate, Runnable onRefreshAll) {
+        handlers.computeIfAbsent(type, key -> new CopyOnWriteArrayList<>())
+                .add(new Handler(onInvalidate, onRefreshAll, true));
+    }
+
+    /**
+     * Сообщает другим узлам (и локальным обработчикам {@link #registerLocalAndRemote}) об изменении
+     * сущности. Внутри транзакции - после коммита, отправка асинхронная и не занимает соединение транзакции
+     */
+    public void publish(EntityType type, Long id) {
+        if (id == null) {
+            return;
+        }
+        runAfterCommit(() -> {
+            for (Handler handler : handlers.getOrDefault(type, List.of())) {
+                if (handler.includeLocal()) {
+                    handler.onInvalidate().accept(id);
+                }
+            }
+            publisher.execute(() -> send(type, id));
+        });
+    }
+
+    private void send(EntityType type, Long id) {
+        // Версия расходуется и при неудачной отправке - получатели увидят разрыв и перезагрузятся
+        long next = version.incrementAndGet();
+        try {
+            transport.publish(String.join("|", nodeId, Long.toString(next), type.name(), id.toString()));
+            sent.increment();
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to publish cache invalidation {} {}: {}", type, id, e.getMessage());
+        }
+    }
+
+    void onMessage(String payload) {
+        String[] parts = payload == null ? new String[0] : payload.split("\\|");
+        if (parts.length != 4) {
+            log.warn("⚠️ Malformed cache invalidation message: {}", payload);
+            return;
+        }
+        String sender = parts[0];
+        if (nodeId.equals(sender)) {
+            return;
+        }
+
+        EntityType type;
+        long messageVersion;
+        long id;
+        try {
+            type = EntityType.valueOf(parts[2]);
+            messageVersion = Long.parseLong(parts[1]);
+            id = Long.parseLong(parts[3]);
+        } catch (IllegalArgumentException e) {
+            log.warn("⚠️ Malformed cache invalidation message: {}", payload);
+            return;
+        }
+        received.increment();
+
+        // Первое сообщение узла: все до него уже было в БД, когда кэши загружались
+        // Сообщения приходят из одного потока транспорта
+        Long previous = lastVersions.get(sender);
+        if (previous != null && messageVersion <= previous) {
+            return;
+        }
+        lastVersions.put(sender, messageVersion);
+        if (previous != null && messageVersion != previous + 1) {
+            refreshAll("missed " + (messageVersion - previous - 1) + " message(s) from node " + sender);
+            return;
+        }
+
+        for (Handler handler : handlers.getOrDefault(type, List.of())) {
+            handler.onInvalidate().accept(id);
+        }
+    }
+
+    private void refreshAll(String reason) {
+        log.warn("🔔 Full cache refresh: {}", reason);
+        fullRefreshes.increment();
+        handlers.values().forEach(list -> list.forEach(handler -> {
+            try {
+                handler.onRefreshAll().run();
+            } catch (Exception e) {
+                log.error("❌ Cache refresh failed: {}", e.getMessage(), e);
+            }
+        }));
+    }
+
+    String getNodeId() {
+        return nodeId;
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record Handler(Consumer<Long> onInvalidate, Runnable onRefreshAll, boolean includeLocal) {
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.deliveryproductservice.service;
+
+import java.util.function.Consumer;
+
+/**
+ * 📡 Транспорт сообщений инвалидации между экземплярами сервиса.
+ * Доставка "не более одного раза": пропуски обнаруживает {@link CacheInvalidationBus}
+ * по номерам сообщений, транспорт лишь сообщает о переподключении
+ */
+public interface CacheInvalidationTransport {
+
+    /**
+     * Отправляет сообщение всем подписанным экземплярам (включая отправителя)
+     */
+    void publish(String message);
+
+    /**
+     * Подписка на сообщения
+     *
+     * @param onMessage   получатель сообщений
+     * @param onReconnect вызывается после восстановления подписки - сообщения за время
+     *                    разрыва потеряны, кэши нужно перезагрузить целиком
+     */
+    void subscribe(Consumer<String> onMessage, Runnable onReconnect);
+
+    void close();
+}
@@ -0,0 +1,284 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.category.CategoryBaseProjection;
+import com.example.deliveryproductservice.dto.category.CategoryResponseDto;
+import com.example.deliveryproductservice.mapper.CategoryMapper;
+import com.example.deliveryproductservice.model.Category;
+import com.example.deliveryproductservice.model.ImageVariants;
+import com.example.deliveryproductservice.repository.CategoryRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 📚 Каталог категорий в памяти - неизменяемый снимок.
+ * Категорий мало, а читаются они на каждом экране, поэтому списки, краткие проекции
+ * и индекс поиска (имена в нижнем регистре) собираются один раз на снимок.
+ * Чтение без блокировок: ссылка на текущий снимок. Первое чтение загружает снимок из БД,
+ * запись категории после коммита перечитывает ее из БД и публикует новый снимок (copy-on-write).
+ * Читатели получают копии DTO: изменение ответа не попадает в снимок.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CategoryCatalogCache {
+
+    private static final Comparator<Entry> BY_SORT_ORDER = Comparator
+            .comparing((Entry entry) -> entry.getDto().getSortOrder(), Comparator.nullsLast(Comparator.naturalOrder()));
+
+    private final CategoryRepository categoryRepository;
+    private final CategoryMapper categoryMapper;
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>();
+
+    /**
+     * Текущий снимок; при первом обращении загружается из БД
+     */
+    public Snapshot snapshot() {
+        Snapshot snapshot = current.get();
+        return snapshot != null ? snapshot : load();
+    }
+
+    /**
+     * Публикует изменение категории после коммита текущей транзакции. В снимок попадает
+     * строка, перечитанная из БД, а не экземпляр сущности: два параллельных обновления могут
+     * выполнить afterCommit в обратном порядке, но последнее чтение увидит последний коммит
+     */
+    public void onCategorySaved(Category category) {
+        if (category == null || category.getId() == null) {
+            return;
+        }
+        Long id = category.getId();
+        runAfterCommit(() -> refresh(id));
+    }
+
+    /**
+     * Перечитывает одну категорию из БД (после локального коммита или изменения с другого экземпляра).
+     * Чтение и публикация под одной блокировкой - более раннее чтение не перезапишет более позднее
+     */
+    public synchronized void refresh(Long id) {
+        if (current.get() == null) {
+            return;
+        }
+        categoryRepository.findById(id).ifPresentOrElse(this::apply, this::invalidate);
+    }
+
+    /**
+     * Сбрасывает снимок - следующее чтение загрузит каталог из БД заново
+     */
+    public synchronized void invalidate() {
+        current.set(null);
+    }
+
+    // Загрузка и применение изменений под одной блокировкой: изменение, закоммиченное
+    // во время загрузки, дождется ее и ляжет поверх, а не потеряется
+    private synchronized Snapshot load() {
+        Snapshot snapshot = current.get();
+        if (snapshot != null) {
+            return snapshot;
+        }
+
+        List<Entry> entries = categoryRepository.findAll().stream()
+                .map(category -> Entry.of(categoryMapper.mapToResponseDto(category)))
+                .toList();
+        snapshot = Snapshot.of(entries);
+        current.set(snapshot);
+        log.info("📚 Category catalog loaded: {} categories", entries.size());
+        return snapshot;
+    }
+
+    private synchronized void apply(Category category) {
+        Snapshot snapshot = current.get();
+        if (snapshot == null) {
+            // Еще не загружен - изменение уже в БД и попадет в первую загрузку
+            return;
+        }
+        current.set(snapshot.with(Entry.of(categoryMapper.mapToResponseDto(category))));
+        log.debug("📚 Category catalog updated: category {}", category.getId());
+    }
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // ================================
+    // 📦 СНИМОК
+    // ================================
+
+    /**
+     * Неизменяемый снимок каталога. Порядок списков совпадает с запросами CategoryRepository
+     */
+    public static final class Snapshot {
+
+        private final Map<Long, Entry> byId;
+        private final List<Entry> all;
+        private final List<CategoryBaseProjection> activeBrief;
+        private final List<CategoryBaseProjection> allBrief;
+        // Параллельно activeEntries: имена в нижнем регистре для поиска подстроки
+        private final List<Entry> activeEntries;
+        private final String[] activeNamesLower;
+
+        private Snapshot(Collection<Entry> entries) {
+            Map<Long, Entry> index = new HashMap<>();
+            for (Entry entry : entries) {
+                index.put(entry.getDto().getId(), entry);
+            }
+            this.byId = Collections.unmodifiableMap(index);
+
+            List<Entry> sorted = new ArrayList<>(entries);
+            sorted.sort(BY_SORT_ORDER);
+            this.activeEntries = sorted.stream().filter(Entry::isActive).toList();
+            this.all = List.copyOf(sorted);
+            this.activeBrief = activeEntries.stream().<CategoryBaseProjection>map(Entry::getBrief).toList();
+            this.allBrief = sorted.stream()
+                    .sorted(BY_SORT_ORDER.thenComparing(entry -> entry.getDto().getName(),
+                            Comparator.nullsLast(Comparator.naturalOrder())))
+                    .<CategoryBaseProjection>map(Entry::getBrief)
+                    .toList();
+            this.activeNamesLower = activeEntries.stream().map(Entry::getNameLower).toArray(String[]::new);
+        }
+
+        static Snapshot of(Collection<Entry> entries) {
+            return new Snapshot(entries);
+        }
+
+        Snapshot with(Entry changed) {
+            Map<Long, Entry> entries = new HashMap<>(byId);
+            entries.put(changed.getDto().getId(), changed);
+            return new Snapshot(entries.values());
+        }
+
+        public Optional<CategoryResponseDto> findById(Long id) {
+            Entry entry = byId.get(id);
+            return entry == null ? Optional.empty() : Optional.of(entry.copyDto());
+        }
+
+        public Optional<CategoryBaseProjection> findBriefById(Long id) {
+            Entry entry = byId.get(id);
+            return entry == null ? Optional.empty() : Optional.of(entry.getBrief());
+        }
+
+        public List<CategoryBaseProjection> findBriefByIds(Collection<Long> ids) {
+            return ids.stream()
+                    .distinct()
+                    .map(byId::get)
+                    .filter(Objects::nonNull)
+                    .sorted(BY_SORT_ORDER)
+                    .<CategoryBaseProjection>map(Entry::getBrief)
+                    .toList();
+        }
+
+        public List<CategoryResponseDto> getActive() {
+            return activeEntries.stream().map(Entry::copyDto).toList();
+        }
+
+        public List<CategoryResponseDto> getAll() {
+            return all.stream().map(Entry::copyDto).toList();
+        }
+
+        public List<CategoryBaseProjection> getActiveBrief() {
+            return activeBrief;
+        }
+
+        public List<CategoryBaseProjection> getAllBrief() {
+            return allBrief;
+        }
+
+        public long getActiveCount() {
+            return activeEntries.size();
+        }
+
+        /**
+         * Активные категории, в имени которых есть подстрока (без учета регистра)
+         */
+        public List<CategoryResponseDto> searchActive(String query) {
+            return search(query).stream().map(Entry::copyDto).toList();
+        }
+
+        public List<CategoryBaseProjection> searchActiveBrief(String query) {
+            return search(query).stream().<CategoryBaseProjection>map(Entry::getBrief).toList();
+        }
+
+        private List<Entry> search(String query) {
+            String needle = query == null ? "" : query.toLowerCase(Locale.ROOT);
+            List<Entry> found = new ArrayList<>();
+            for (int i = 0; i < activeNamesLower.length; i++) {
+                if (activeNamesLower[i].contains(needle)) {
+                    found.add(activeEntries.get(i));
+                }
+            }
+            return found;
+        }
+    }
+
+    @Value
+    static class Entry {
+        CategoryResponseDto dto;
+        CategoryBrief brief;
+        String nameLower;
+
+        static Entry of(CategoryResponseDto dto) {
+            CategoryBrief brief = new CategoryBrief(dto.getId(), dto.getName(), dto.getIsActive(),
+                    dto.getSortOrder(), dto.getImageUrl());
+            String nameLower = dto.getName() == null ? "" : dto.getName().toLowerCase(Locale.ROOT);
+            return new Entry(dto, brief, nameLower);
+        }
+
+        boolean isActive() {
+            return Boolean.TRUE.equals(dto.getIsActive());
+        }
+
+        /**
+         * DTO изменяемый (@Data) - наружу отдается копия, снимок остается нетронутым
+         */
+        CategoryResponseDto copyDto() {
+            CategoryResponseDto copy = new CategoryResponseDto();
+            copy.setId(dto.getId());
+            copy.setName(dto.getName());
+            copy.setDescription(dto.getDescription());
+            copy.setImageUrl(dto.getImageUrl());
+            copy.setIsActive(dto.getIsActive());
+            copy.setSortOrder(dto.getSortOrder());
+            copy.setCreatedAt(dto.getCreatedAt());
+            copy.setUpdatedAt(dto.getUpdatedAt());
+            ImageVariants variants = dto.getImageVariants();
+            if (variants != null) {
+                copy.setImageVariants(ImageVariants.builder()
+                        .thumbUrl(variants.getThumbUrl())
+                        .thumbWebpUrl(variants.getThumbWebpUrl())
+                        .cardUrl(variants.getCardUrl())
+                        .cardWebpUrl(variants.getCardWebpUrl())
+                        .fullWebpUrl(variants.getFullWebpUrl())
+                        .build());
+            }
+            return copy;
+        }
+    }
+
+    /**
+     * Краткая проекция из снимка - сериализуется так же, как проекция из CategoryRepository
+     */
+    @Value
+    public static class CategoryBrief implements CategoryBaseProjection {
+        Long id;
+        String name;
+        Boolean isActive;
+        Integer sortOrder;
+        String imageUrl;
+    }
+}
@@ -1,44 +1,96 @@
 package com.example.deliveryproductservice.service;
 
 import com.cloudinary.Cloudinary;
+import com.cloudinary.EagerTransformation;
 import com.cloudinary.Transformation;
+import com.example.deliveryproductservice.Exception.ImageConversionException;
+import com.example.deliveryproductservice.model.ImageVariants;
 import com.cloudinary.utils.ObjectUtils;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.*;
-import java.text.SimpleDateFormat;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.Instant;
+import java.util.ArrayList;
 import java.util.Collections;
-import java.util.Date;
+import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 @Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "cloudinary", matchIfMissing = true)
 @RequiredArgsConstructor
 @Slf4j
 public class CloudinaryStorageService implements StorageService {
 
+    // Admin API удаляет не больше 100 ресурсов за вызов
+    private static final int BULK_DELETE_LIMIT = 100;
+    private static final int LIST_PAGE_LIMIT = 500;
+
     private final Cloudinary cloudinary;
+    private final ImageConverterService imageConverterService;
+    private final ImageContentIndex imageContentIndex;
+    private final StorageIdGenerator storageIdGenerator;
 
     @Override
     public StorageResult uploadImage(MultipartFile file) throws IOException {
         return uploadImage(file, "categories");
     }
 
+    /**
+     * Загружает изображение вместе с производными (thumb/card/full).
+     * Файл, уже загруженный ранее (тот же хэш содержимого), повторно не обрабатывается
+     * и не загружается - возвращается существующее изображение с новой ссылкой.
+     * Формат, который ImageIO не читает, загружается как есть одним файлом
+     */
     @Override
     public StorageResult uploadImage(MultipartFile file, String folder) throws IOException {
         if (file == null || file.isEmpty()) {
             throw new IllegalArgumentException("Файл отсутствует или пуст");
         }
 
+        return imageContentIndex.uploadOnce(file, () -> uploadNew(file, folder), this::destroy);
+    }
+
+    private StorageResult uploadNew(MultipartFile file, String folder) throws IOException {
+        try (ImageConverterService.ImageDerivatives derivatives = imageConverterService.processDerivatives(file)) {
+            return uploadDerivatives(derivatives, folder);
+        } catch (ImageConversionException e) {
+            log.warn("⚠️ Производные не созданы для {} ({}), загружаем оригинал", file.getOriginalFilename(), e.getMessage());
+            return uploadOriginal(file, folder);
+        }
+    }
+
+    private StorageResult uploadOriginal(MultipartFile file, String folder) throws IOException {
+        // Multipart уже лежит на диске - копируем потоком во временный файл вместо file.getBytes()
+        Path spooled = Files.createTempFile("upload-", null);
+        try {
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, spooled, StandardCopyOption.REPLACE_EXISTING);
+            }
+            return upload(spooled.toFile(), file.getOriginalFilename(), folder);
+        } finally {
+            Files.deleteIfExists(spooled);
+        }
+    }
+
+    /**
+     * Загружает файл с диска: Cloudinary-клиент читает его потоком при отправке
+     */
+    private StorageResult upload(File source, String originalFilename, String folder) throws IOException {
         try {
             // Генерируем уникальный public_id
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-            String randomSuffix = String.valueOf(System.nanoTime()).substring(0, 6);
-            String publicId = folder + "/" + timestamp + "_" + randomSuffix;
+            String publicId = generatePublicId(folder);
 
-            log.info("🚀 Загружаем изображение в Cloudinary: {}", file.getOriginalFilename());
+            log.info("🚀 Загружаем изображение в Cloudinary: {}", originalFilename);
 
             // 🔧 ПРОСТОЙ подход без сложных трансформаций
             Map<String, Object> params = ObjectUtils.asMap(
@@ -52,7 +104,7 @@ public class CloudinaryStorageService implements StorageService {
 
             log.debug("📋 Параметры загрузки: {}", params);
 
-            Map uploadResult = cloudinary.uploader().upload(file.getBytes(), params);
+            Map uploadResult = cloudinary.uploader().upload(source, params);
 
             String url = (String) uploadResult.get("secure_url");
             String resultPublicId = (String) uploadResult.get("public_id");
@@ -71,6 +123,73 @@ public class CloudinaryStorageService implements StorageService {
         }
     }
 
+    /**
+     * 📐 Загружает производные под общим идентификатором: полный размер получает
+     * основной public_id, card и thumb - с суффиксами. WebP-версия каждого размера
+     * создается eager-трансформацией при загрузке (в JDK нет WebP-кодека)
+     */
+    @Override
+    public StorageResult uploadDerivatives(ImageConverterService.ImageDerivatives derivatives, String folder) throws IOException {
+        Map full = uploadVariant(derivatives.get(ImageConverterService.ImageVariant.FULL), generatePublicId(folder));
+        String publicId = (String) full.get("public_id");
+
+        try {
+            Map card = uploadVariant(derivatives.get(ImageConverterService.ImageVariant.CARD),
+                    publicId + ImageVariants.CARD_SUFFIX);
+            Map thumb = uploadVariant(derivatives.get(ImageConverterService.ImageVariant.THUMB),
+                    publicId + ImageVariants.THUMB_SUFFIX);
+
+            ImageVariants variants = ImageVariants.builder()
+                    .thumbUrl((String) thumb.get("secure_url"))
+                    .thumbWebpUrl(eagerUrl(thumb))
+                    .cardUrl((String) card.get("secure_url"))
+                    .cardWebpUrl(eagerUrl(card))
+                    .fullWebpUrl(eagerUrl(full))
+                    .build();
+
+            log.info("✅ Производные загружены. Public ID: {}, thumb: {}", publicId, variants.getThumbUrl());
+            return new StorageResult((String) full.get("secure_url"), publicId, variants);
+
+        } catch (IOException e) {
+            // Неполный набор не оставляем
+            destroy(publicId);
+            throw e;
+        }
+    }
+
+    private Map uploadVariant(ImageConverterService.ProcessedImage variant, String publicId) throws IOException {
+        try {
+            Map<String, Object> params = ObjectUtils.asMap(
+                    "resource_type", "image",
+                    "public_id", publicId,
+                    "overwrite", false,
+                    "tags", "derivative",
+                    "eager", List.of(new EagerTransformation().format("webp").quality("auto:good"))
+            );
+
+            return cloudinary.uploader().upload(variant.getFile().toFile(), params);
+        } catch (Exception e) {
+            log.error("❌ Ошибка при загрузке производной {}: {}", publicId, e.getMessage(), e);
+            throw new IOException("Failed to upload image derivative to Cloudinary: " + e.getMessage(), e);
+        }
+    }
+
+    private String eagerUrl(Map uploadResult) {
+        Object eager = uploadResult.get("eager");
+        if (eager instanceof List<?> transformations && !transformations.isEmpty()
+                && transformations.get(0) instanceof Map<?, ?> transformation) {
+            return (String) transformation.get("secure_url");
+        }
+        return null;
+    }
+
+    /**
+     * folder/0A8ERN7JG0M00 - упорядоченный по времени ключ без коллизий между потоками и узлами
+     */
+    private String generatePublicId(String folder) {
+        return folder + "/" + storageIdGenerator.nextKey();
+    }
+
     /**
      * 🎨 Генерация URL с трансформациями ПОСЛЕ загрузки
      */
@@ -103,9 +222,7 @@ public class CloudinaryStorageService implements StorageService {
         }
 
         try {
-            String timestamp = new SimpleDateFormat("yyyyMMdd_HHmmss").format(new Date());
-            String randomSuffix = String.valueOf(System.nanoTime()).substring(0, 6);
-            String publicId = folder + "/" + timestamp + "_" + randomSuffix;
+            String publicId = generatePublicId(folder);
 
             log.info("🚀 Загружаем изображение с трансформациями: {}", file.getOriginalFilename());
 
@@ -172,10 +289,15 @@ public class CloudinaryStorageService implements StorageService {
     }
 
     public StorageResult uploadProcessedImage(ImageConverterService.ProcessedImage processedImage, String folder) throws IOException {
-        MultipartFile convertedFile = new ProcessedImageMultipartFile(processedImage);
-        return uploadImage(convertedFile, folder);
+        if (processedImage == null || processedImage.getFile() == null || processedImage.getSize() == 0) {
+            throw new IllegalArgumentException("Файл отсутствует или пуст");
+        }
+        return upload(processedImage.getFile().toFile(), processedImage.getFileName(), folder);
     }
 
+    /**
+     * Снимает ссылку на изображение; из Cloudinary оно удаляется только вместе с последней ссылкой
+     */
     @Override
     public boolean deleteImage(String publicId) {
         if (publicId == null || publicId.isEmpty()) {
@@ -183,6 +305,14 @@ public class CloudinaryStorageService implements StorageService {
             return false;
         }
 
+        if (!imageContentIndex.release(publicId)) {
+            log.info("🧬 Изображение {} используется другими сущностями, не удаляем", publicId);
+            return true;
+        }
+        return destroy(publicId);
+    }
+
+    private boolean destroy(String publicId) {
         try {
             log.info("🗑️ Удаляем изображение из Cloudinary. Public ID: {}", publicId);
 
@@ -195,6 +325,7 @@ public class CloudinaryStorageService implements StorageService {
                 log.warn("⚠️ Не удалось удалить изображение. Public ID: {}, Результат: {}", publicId, result);
             }
 
+            deleteDerivatives(publicId);
             return success;
         } catch (Exception e) {
             log.error("❌ Ошибка при удалении изображения. Public ID: {}", publicId, e);
@@ -202,59 +333,135 @@ public class CloudinaryStorageService implements StorageService {
         }
     }
 
+    /**
+     * Пакетное удаление через Admin API: один вызов на пачку вместо destroy на каждый файл.
+     * Изображение считается удаленным, когда каждый его файл "deleted" или "not_found"
+     */
     @Override
-    public Map<String, Object> getImageInfo(String publicId) {
-        if (publicId == null || publicId.isEmpty()) {
-            throw new IllegalArgumentException("Public ID не может быть пустым");
+    public Set<String> destroyImages(List<String> publicIds) {
+        Set<String> destroyed = new HashSet<>();
+        List<String> chunk = new ArrayList<>();
+        int resources = 0;
+
+        for (String publicId : publicIds) {
+            int size = resourceIds(publicId).size();
+            if (resources + size > BULK_DELETE_LIMIT) {
+                bulkDestroy(chunk, destroyed);
+                chunk.clear();
+                resources = 0;
+            }
+            chunk.add(publicId);
+            resources += size;
+        }
+        if (!chunk.isEmpty()) {
+            bulkDestroy(chunk, destroyed);
         }
+        return destroyed;
+    }
+
+    private void bulkDestroy(List<String> publicIds, Set<String> destroyed) {
+        List<String> resourceIds = publicIds.stream()
+                .flatMap(publicId -> resourceIds(publicId).stream())
+                .toList();
 
         try {
-            log.info("ℹ️ Получаем информацию об изображении. Public ID: {}", publicId);
-            return cloudinary.api().resource(publicId, ObjectUtils.emptyMap());
+            Map response = cloudinary.api().deleteResources(resourceIds, ObjectUtils.asMap("invalidate", true));
+            Map<?, ?> statuses = response.get("deleted") instanceof Map<?, ?> deleted ? deleted : Map.of();
+
+            for (String publicId : publicIds) {
+                boolean gone = resourceIds(publicId).stream()
+                        .map(statuses::get)
+                        .allMatch(status -> "deleted".equals(status) || "not_found".equals(status));
+                if (gone) {
+                    destroyed.add(publicId);
+                }
+            }
+            log.info("🗑️ Пакетное удаление из Cloudinary: {} из {} изображений", destroyed.size(), publicIds.size());
         } catch (Exception e) {
-            log.error("❌ Ошибка при получении информации об изображении. Public ID: {}", publicId, e);
-            return Collections.emptyMap();
+            log.warn("⚠️ Пакетное удаление {} изображений не удалось: {}", publicIds.size(), e.getMessage());
         }
     }
 
-    // Wrapper класс для ProcessedImage
-    private static class ProcessedImageMultipartFile implements MultipartFile {
-        private final ImageConverterService.ProcessedImage processedImage;
-
-        public ProcessedImageMultipartFile(ImageConverterService.ProcessedImage processedImage) {
-            this.processedImage = processedImage;
+    /**
+     * Изображение и его производные
+     */
+    private static List<String> resourceIds(String publicId) {
+        if (publicId.endsWith(ImageVariants.CARD_SUFFIX) || publicId.endsWith(ImageVariants.THUMB_SUFFIX)) {
+            return List.of(publicId);
         }
+        return List.of(publicId, publicId + ImageVariants.CARD_SUFFIX, publicId + ImageVariants.THUMB_SUFFIX);
+    }
 
-        @Override
-        public String getName() { return "category_image"; }
-
-        @Override
-        public String getOriginalFilename() { return processedImage.getFileName(); }
-
-        @Override
-        public String getContentType() { return processedImage.getContentType(); }
-
-        @Override
-        public boolean isEmpty() {
-            return processedImage.getBytes() == null || processedImage.getBytes().length == 0;
+    /**
+     * Производные удаляются вместе с основным изображением.
+     * У загрузок без производных destroy просто вернет "not found"
+     */
+    private void deleteDerivatives(String publicId) {
+        for (String suffix : List.of(ImageVariants.CARD_SUFFIX, ImageVariants.THUMB_SUFFIX)) {
+            if (publicId.endsWith(suffix)) {
+                continue;
+            }
+            try {
+                Map result = cloudinary.uploader().destroy(publicId + suffix, ObjectUtils.emptyMap());
+                log.debug("🗑️ Производная {}: {}", publicId + suffix, result.get("result"));
+            } catch (Exception e) {
+                log.warn("⚠️ Не удалось удалить производную {}: {}", publicId + suffix, e.getMessage());
+            }
         }
+    }
+
+    /**
+     * Admin API отдает не больше 500 ресурсов за вызов; дальше - по next_cursor
+     */
+    @Override
+    public void listImages(String folder, int pageSize, Consumer<List<StoredObject>> pageConsumer) throws IOException {
+        String cursor = null;
+        do {
+            Map<String, Object> options = ObjectUtils.asMap(
+                    "type", "upload",
+                    "resource_type", "image",
+                    "prefix", folder + "/",
+                    "max_results", Math.min(pageSize, LIST_PAGE_LIMIT));
+            if (cursor != null) {
+                options.put("next_cursor", cursor);
+            }
 
-        @Override
-        public long getSize() { return processedImage.getBytes().length; }
+            Map response;
+            try {
+                response = cloudinary.api().resources(options);
+            } catch (Exception e) {
+                throw new IOException("Failed to list Cloudinary images in " + folder + ": " + e.getMessage(), e);
+            }
 
-        @Override
-        public byte[] getBytes() { return processedImage.getBytes(); }
+            List<StoredObject> page = new ArrayList<>();
+            Set<String> seen = new HashSet<>();
+            if (response.get("resources") instanceof List<?> resources) {
+                for (Object resource : resources) {
+                    if (resource instanceof Map<?, ?> item) {
+                        String imageId = ImageVariants.baseId((String) item.get("public_id"));
+                        if (seen.add(imageId)) {
+                            page.add(new StoredObject(imageId, Instant.parse((String) item.get("created_at"))));
+                        }
+                    }
+                }
+            }
+            pageConsumer.accept(page);
+            cursor = (String) response.get("next_cursor");
+        } while (cursor != null);
+    }
 
-        @Override
-        public InputStream getInputStream() {
-            return new ByteArrayInputStream(processedImage.getBytes());
+    @Override
+    public Map<String, Object> getImageInfo(String publicId) {
+        if (publicId == null || publicId.isEmpty()) {
+            throw new IllegalArgumentException("Public ID не может быть пустым");
         }
 
-        @Override
-        public void transferTo(File dest) throws IOException, IllegalStateException {
-            try (FileOutputStream fos = new FileOutputStream(dest)) {
-                fos.write(processedImage.getBytes());
-            }
+        try {
+            log.info("ℹ️ Получаем информацию об изображении. Public ID: {}", publicId);
+            return cloudinary.api().resource(publicId, ObjectUtils.emptyMap());
+        } catch (Exception e) {
+            log.error("❌ Ошибка при получении информации об изображении. Public ID: {}", publicId, e);
+            return Collections.emptyMap();
         }
     }
 }
\ No newline at end of file
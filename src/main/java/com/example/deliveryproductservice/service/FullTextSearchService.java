@@ -0,0 +1,229 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.ProductDto.ProductResponseDto;
+import com.example.deliveryproductservice.dto.ProductDto.ProductResponseWrapper;
+import com.example.deliveryproductservice.dto.SearchCursor;
+import com.example.deliveryproductservice.dto.StoreDto.StoreResponseDto;
+import com.example.deliveryproductservice.dto.StoreDto.StoreResponseWrapper;
+import com.example.deliveryproductservice.mapper.ProductMapper;
+import com.example.deliveryproductservice.mapper.StoreMapper;
+import com.example.deliveryproductservice.model.Product;
+import com.example.deliveryproductservice.model.Store;
+import com.example.deliveryproductservice.repository.ProductRepository;
+import com.example.deliveryproductservice.repository.StoreRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * 🔎 Полнотекстовый поиск продуктов и магазинов (PostgreSQL tsvector + GIN).
+ * При старте у таблиц products и stores создается генерируемая колонка search_vector:
+ * название (вес A) и описание (вес B) в конфигурациях russian, english и simple
+ * (+ ukrainian, если в БД установлен словарь) - PostgreSQL сам пересчитывает ее при записи.
+ * Украинский без словаря ищется через simple (точные формы) и русский стеммер (общие окончания).
+ * Каждое слово запроса - префикс (пицц → пицца, пиццерия), результаты ранжируются ts_rank_cd
+ * и отдаются страницами по курсору (rank, id). Если колонку создать не удалось (не PostgreSQL),
+ * поиск деградирует до LIKE по названию - только первая страница.
+ */
+@Service
+@Slf4j
+public class FullTextSearchService {
+
+    private static final int MAX_QUERY_TERMS = 8;
+    private static final List<String> BASE_CONFIGS = List.of("russian", "english", "simple");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final ProductRepository productRepository;
+    private final StoreRepository storeRepository;
+    private final ProductMapper productMapper;
+    private final StoreMapper storeMapper;
+    private final boolean enabled;
+
+    private volatile List<String> configs = BASE_CONFIGS;
+    private volatile boolean available = false;
+
+    public FullTextSearchService(JdbcTemplate jdbcTemplate,
+                                 ProductRepository productRepository,
+                                 StoreRepository storeRepository,
+                                 ProductMapper productMapper,
+                                 StoreMapper storeMapper,
+                                 @Value("${search.fulltext.enabled:true}") boolean enabled) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.productRepository = productRepository;
+        this.storeRepository = storeRepository;
+        this.productMapper = productMapper;
+        this.storeMapper = storeMapper;
+        this.enabled = enabled;
+    }
+
+    /**
+     * ⚠️ При первом запуске добавляет products/stores колонку search_vector. ADD COLUMN ... GENERATED ... STORED
+     * переписывает всю таблицу под ACCESS EXCLUSIVE lock - чтение и запись ждут до конца перезаписи.
+     * На больших таблицах создайте колонку и GIN индекс миграцией в окно обслуживания (тот же DDL, тогда
+     * здесь IF NOT EXISTS ничего не делает) или запускайте с search.fulltext.enabled=false
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void initialize() {
+        if (!enabled) {
+            log.info("🔎 Full-text search disabled (search.fulltext.enabled=false), using LIKE");
+            return;
+        }
+
+        try {
+            Boolean ukrainian = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_ts_config WHERE cfgname = 'ukrainian')", Boolean.class);
+            List<String> detected = new ArrayList<>(BASE_CONFIGS);
+            if (Boolean.TRUE.equals(ukrainian)) {
+                detected.add(1, "ukrainian");
+            }
+
+            // Выражение колонки фиксируется при создании; запрос с лишней конфигурацией просто не найдет по ней ничего
+            for (String table : List.of("products", "stores")) {
+                jdbcTemplate.execute("ALTER TABLE " + table + " ADD COLUMN IF NOT EXISTS search_vector tsvector " +
+                        "GENERATED ALWAYS AS (" + vectorExpression(detected) + ") STORED");
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_" + table + "_search ON " + table +
+                        " USING GIN (search_vector)");
+            }
+            configs = List.copyOf(detected);
+            available = true;
+            log.info("🔎 Full-text search ready: tsvector + GIN, configs {}", configs);
+        } catch (Exception e) {
+            available = false;
+            log.warn("⚠️ Full-text search unavailable, falling back to LIKE: {}", e.getMessage());
+        }
+    }
+
+    public boolean isAvailable() {
+        return available;
+    }
+
+    @Transactional(readOnly = true)
+    public ProductResponseWrapper searchProducts(String text, SearchCursor cursor, int size) {
+        String query = toPrefixQuery(text);
+        if (query == null) {
+            return ProductResponseWrapper.success(new SliceImpl<>(List.of(), PageRequest.of(0, size), false), null);
+        }
+
+        if (!available) {
+            Slice<ProductResponseDto> slice = productRepository
+                    .findByNameContainingIgnoreCaseAndIsAvailableTrueOrderByCreatedAtDesc(text.trim(), PageRequest.of(0, size))
+                    .map(productMapper::mapToResponseDto);
+            return ProductResponseWrapper.success(new SliceImpl<>(slice.getContent(), PageRequest.of(0, size), false), null);
+        }
+
+        Page<Product> page = rankedPage("products", "is_available", query, cursor, size,
+                productRepository::findAllById, Product::getId);
+        Slice<ProductResponseDto> slice = new SliceImpl<>(
+                page.items().stream().map(productMapper::mapToResponseDto).toList(), PageRequest.of(0, size), page.hasNext());
+        return ProductResponseWrapper.success(slice, page.nextCursor());
+    }
+
+    @Transactional(readOnly = true)
+    public StoreResponseWrapper searchStores(String text, SearchCursor cursor, int size) {
+        String query = toPrefixQuery(text);
+        if (query == null) {
+            return StoreResponseWrapper.success(new SliceImpl<>(List.of(), PageRequest.of(0, size), false), null);
+        }
+
+        if (!available) {
+            Slice<StoreResponseDto> slice = storeRepository
+                    .findByNameContainingIgnoreCaseAndIsActiveTrueOrderByCreatedAtDesc(text.trim(), PageRequest.of(0, size))
+                    .map(storeMapper::mapToResponseDto);
+            return StoreResponseWrapper.success(new SliceImpl<>(slice.getContent(), PageRequest.of(0, size), false), null);
+        }
+
+        Page<Store> page = rankedPage("stores", "is_active", query, cursor, size,
+                storeRepository::findAllById, Store::getId);
+        Slice<StoreResponseDto> slice = new SliceImpl<>(
+                page.items().stream().map(storeMapper::mapToResponseDto).toList(), PageRequest.of(0, size), page.hasNext());
+        return StoreResponseWrapper.success(slice, page.nextCursor());
+    }
+
+    /**
+     * Идентификаторы страницы выбираются по GIN-индексу и рангу, сущности догружаются по id
+     */
+    private <T> Page<T> rankedPage(String table, String activeColumn, String query, SearchCursor cursor, int size,
+                                   Function<List<Long>, List<T>> loader, Function<T, Long> idOf) {
+        String tsQuery = configs.stream()
+                .map(config -> "to_tsquery('" + config + "'::regconfig, ?)")
+                .collect(Collectors.joining(" || "));
+        List<Object> args = new ArrayList<>(Collections.nCopies(configs.size(), query));
+        args.add(cursor.getRank());
+        args.add(cursor.getId());
+        args.add(size + 1);
+
+        List<Hit> hits = jdbcTemplate.query("""
+                SELECT r.id, r.rank FROM (
+                    SELECT t.id, ts_rank_cd(t.search_vector, q.query) AS rank
+                    FROM %s t, (SELECT %s AS query) q
+                    WHERE t.%s = true AND t.search_vector @@ q.query
+                ) r
+                WHERE (r.rank, r.id) < (CAST(? AS real), ?)
+                ORDER BY r.rank DESC, r.id DESC
+                LIMIT ?
+                """.formatted(table, tsQuery, activeColumn),
+                (resultSet, rowNum) -> new Hit(resultSet.getLong(1), resultSet.getFloat(2)),
+                args.toArray());
+
+        boolean hasNext = hits.size() > size;
+        List<Hit> pageHits = hasNext ? hits.subList(0, size) : hits;
+
+        List<Long> ids = pageHits.stream().map(Hit::id).toList();
+        Map<Long, T> loaded = loader.apply(ids).stream()
+                .collect(Collectors.toMap(idOf, Function.identity()));
+        List<T> items = ids.stream().map(loaded::get).filter(Objects::nonNull).toList();
+
+        String nextCursor = null;
+        if (hasNext) {
+            Hit last = pageHits.get(pageHits.size() - 1);
+            nextCursor = SearchCursor.after(last.rank(), last.id()).encode();
+        }
+        return new Page<>(items, hasNext, nextCursor);
+    }
+
+    /**
+     * Слова запроса (только буквы и цифры - спецсимволы tsquery не пройдут) как префиксы через AND:
+     * "Пицца  4 сыра!" → "пицца:* & 4:* & сыра:*"
+     */
+    static String toPrefixQuery(String text) {
+        if (text == null) {
+            return null;
+        }
+        List<String> terms = new ArrayList<>();
+        for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+            if (!word.isEmpty() && terms.size() < MAX_QUERY_TERMS) {
+                terms.add(word + ":*");
+            }
+        }
+        return terms.isEmpty() ? null : String.join(" & ", terms);
+    }
+
+    static String vectorExpression(List<String> configs) {
+        return configs.stream()
+                .map(config -> "setweight(to_tsvector('" + config + "'::regconfig, coalesce(name, '')), 'A') || " +
+                        "setweight(to_tsvector('" + config + "'::regconfig, coalesce(description, '')), 'B')")
+                .collect(Collectors.joining(" || "));
+    }
+
+    private record Hit(long id, float rank) {
+    }
+
+    private record Page<T>(List<T> items, boolean hasNext, String nextCursor) {
+    }
+}
@@ -0,0 +1,194 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.GeoLocation.GeoLocation;
+import com.example.deliveryproductservice.model.GeocodeCacheEntry;
+import com.example.deliveryproductservice.repository.GeocodeCacheRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * 🗃️ Двухуровневый кэш геокодирования: LRU в памяти + таблица geocode_cache.
+ * Ключ - {@link AddressNormalizer#normalize(String)}. Хранит и найденные координаты (TTL),
+ * и "адрес не найден" (более короткий negative TTL), чтобы не повторять заведомо
+ * безуспешные запросы к Mapbox.
+ */
+@Component
+@Slf4j
+public class GeocodingCache {
+
+    private final GeocodeCacheRepository geocodeCacheRepository;
+    private final int memoryMaxSize;
+    private final Duration ttl;
+    private final Duration negativeTtl;
+
+    // LinkedHashMap в режиме access-order: вытесняется давно не использованный адрес
+    private final Map<String, CachedGeocode> memory;
+
+    private final Counter memoryHits;
+    private final Counter databaseHits;
+    private final Counter negativeHits;
+    private final Counter misses;
+
+    public GeocodingCache(GeocodeCacheRepository geocodeCacheRepository,
+                          MeterRegistry meterRegistry,
+                          @Value("${geocoding.cache.memory.max-size:10000}") int memoryMaxSize,
+                          @Value("${geocoding.cache.ttl:30d}") Duration ttl,
+                          @Value("${geocoding.cache.negative-ttl:1d}") Duration negativeTtl) {
+        this.geocodeCacheRepository = geocodeCacheRepository;
+        this.memoryMaxSize = memoryMaxSize;
+        this.ttl = ttl;
+        this.negativeTtl = negativeTtl;
+        this.memory = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CachedGeocode> eldest) {
+                return size() > GeocodingCache.this.memoryMaxSize;
+            }
+        };
+
+        this.memoryHits = meterRegistry.counter("geocoding.cache.requests", "tier", "memory", "result", "hit");
+        this.databaseHits = meterRegistry.counter("geocoding.cache.requests", "tier", "database", "result", "hit");
+        this.negativeHits = meterRegistry.counter("geocoding.cache.requests", "tier", "any", "result", "negative-hit");
+        this.misses = meterRegistry.counter("geocoding.cache.requests", "tier", "any", "result", "miss");
+        Gauge.builder("geocoding.cache.memory.size", this, GeocodingCache::memorySize).register(meterRegistry);
+    }
+
+    /**
+     * Ищет адрес сначала в памяти, затем в БД (найденное в БД поднимается в память).
+     *
+     * @return пусто - промах; CachedGeocode с resolved=false - адрес ранее не был найден
+     */
+    public Optional<CachedGeocode> get(String address) {
+        String key = AddressNormalizer.normalize(address);
+        long now = System.currentTimeMillis();
+
+        CachedGeocode cached;
+        synchronized (memory) {
+            cached = memory.get(key);
+            if (cached != null && cached.isExpired(now)) {
+                memory.remove(key);
+                cached = null;
+            }
+        }
+        if (cached != null) {
+            (cached.resolved() ? memoryHits : negativeHits).increment();
+            return Optional.of(cached);
+        }
+
+        try {
+            Optional<GeocodeCacheEntry> stored = geocodeCacheRepository.findByAddressKey(key);
+            if (stored.isPresent()) {
+                CachedGeocode fromDb = CachedGeocode.from(stored.get());
+                if (!fromDb.isExpired(now)) {
+                    putInMemory(key, fromDb);
+                    (fromDb.resolved() ? databaseHits : negativeHits).increment();
+                    return Optional.of(fromDb);
+                }
+            }
+        } catch (Exception e) {
+            // Недоступность БД не должна ломать геокодирование - работаем как при промахе
+            log.warn("⚠️ Geocode cache lookup failed for '{}': {}", key, e.getMessage());
+        }
+
+        misses.increment();
+        return Optional.empty();
+    }
+
+    public void putResolved(String address, GeoLocation location) {
+        put(address, new CachedGeocode(location.getLatitude(), location.getLongitude(),
+                System.currentTimeMillis() + ttl.toMillis()));
+    }
+
+    public void putUnresolved(String address) {
+        put(address, new CachedGeocode(null, null, System.currentTimeMillis() + negativeTtl.toMillis()));
+    }
+
+    /**
+     * Удаляет просроченные записи из БД (при старте приложения)
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void evictExpired() {
+        try {
+            int deleted = geocodeCacheRepository.deleteExpired(LocalDateTime.now());
+            log.info("🗃️ Geocode cache: {} expired entries removed", deleted);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to evict expired geocode cache entries: {}", e.getMessage());
+        }
+    }
+
+    public int memorySize() {
+        synchronized (memory) {
+            return memory.size();
+        }
+    }
+
+    private void put(String address, CachedGeocode value) {
+        String key = AddressNormalizer.normalize(address);
+        putInMemory(key, value);
+
+        try {
+            LocalDateTime expiresAt = LocalDateTime.ofInstant(
+                    Instant.ofEpochMilli(value.expiresAtMillis()), ZoneId.systemDefault());
+
+            GeocodeCacheEntry entry = geocodeCacheRepository.findByAddressKey(key)
+                    .orElseGet(() -> GeocodeCacheEntry.builder().addressKey(key).build());
+            entry.setLatitude(value.latitude());
+            entry.setLongitude(value.longitude());
+            entry.setResolved(value.resolved());
+            entry.setExpiresAt(expiresAt);
+            geocodeCacheRepository.save(entry);
+        } catch (DataIntegrityViolationException e) {
+            // Тот же адрес параллельно записал другой запрос/инстанс
+            log.debug("Geocode cache entry '{}' already stored concurrently", key);
+        } catch (Exception e) {
+            log.warn("⚠️ Failed to persist geocode cache entry '{}': {}", key, e.getMessage());
+        }
+    }
+
+    private void putInMemory(String key, CachedGeocode value) {
+        synchronized (memory) {
+            memory.put(key, value);
+        }
+    }
+
+    /**
+     * Закэшированный результат; latitude/longitude == null - адрес не найден
+     */
+    public record CachedGeocode(BigDecimal latitude, BigDecimal longitude, long expiresAtMillis) {
+
+        public boolean resolved() {
+            return latitude != null && longitude != null;
+        }
+
+        public boolean isExpired(long nowMillis) {
+            return nowMillis >= expiresAtMillis;
+        }
+
+        public GeoLocation toGeoLocation() {
+            return new GeoLocation(latitude, longitude);
+        }
+
+        static CachedGeocode from(GeocodeCacheEntry entry) {
+            long expiresAt = entry.getExpiresAt().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+            if (!Boolean.TRUE.equals(entry.getResolved())) {
+                return new CachedGeocode(null, null, expiresAt);
+            }
+            return new CachedGeocode(entry.getLatitude(), entry.getLongitude(), expiresAt);
+        }
+    }
+}
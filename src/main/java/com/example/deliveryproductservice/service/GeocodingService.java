@@ -9,6 +9,7 @@ import java.util.List;
 
 public interface GeocodingService {
     Address createAddressWithCoordinates(CreateAddressRequest request);
+    List<Address> createAddressesWithCoordinates(List<CreateAddressRequest> requests);
     String reverseGeocode(BigDecimal longitude, BigDecimal latitude);
     List<MapboxPlace> searchNearbyPlaces(BigDecimal longitude, BigDecimal latitude, String query, int limit);
 }
@@ -0,0 +1,182 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.model.StoredImage;
+import com.example.deliveryproductservice.repository.StoredImageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Consumer;
+
+/**
+ * 🧬 Индекс изображений по содержимому: hash -> (url, publicId, refCount).
+ * Повторная загрузка того же файла возвращает уже загруженное изображение
+ * и только увеличивает счетчик ссылок; удаление из хранилища - при последней ссылке.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class ImageContentIndex {
+
+    // Меняется вместе с набором производных: старые записи не должны отдаваться для новой обработки
+    private static final String PIPELINE_VERSION = "derivatives-v1";
+
+    // Таблицы, где одно изображение теперь может быть у нескольких строк
+    private static final List<String> SHARED_IMAGE_TABLES = List.of("products", "stores");
+
+    private final StoredImageRepository storedImageRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    /**
+     * pic_id больше не уникален (одно изображение - несколько продуктов), а ddl-auto=update
+     * не удаляет ограничения, созданные раньше - снимаем их при старте
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void dropPicIdUniqueConstraints() {
+        for (String table : SHARED_IMAGE_TABLES) {
+            try {
+                List<String> constraints = jdbcTemplate.queryForList(
+                        "SELECT c.conname FROM pg_constraint c " +
+                                "JOIN pg_class t ON t.oid = c.conrelid " +
+                                "JOIN pg_attribute a ON a.attrelid = t.oid AND a.attnum = c.conkey[1] " +
+                                "WHERE c.contype = 'u' AND t.relname = ? AND a.attname = 'pic_id' " +
+                                "AND array_length(c.conkey, 1) = 1",
+                        String.class, table);
+
+                for (String constraint : constraints) {
+                    jdbcTemplate.execute("ALTER TABLE " + table + " DROP CONSTRAINT \"" + constraint + "\"");
+                    log.info("🧬 Dropped unique constraint {} on {}.pic_id", constraint, table);
+                }
+            } catch (Exception e) {
+                log.warn("⚠️ Could not check pic_id constraints on {}: {}", table, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * SHA-256 исходного файла, читается потоком.
+     * Обработка детерминирована, поэтому одинаковый исходник дает одинаковый результат -
+     * хэш до обработки позволяет пропустить и декодирование, и загрузку
+     */
+    public String hash(MultipartFile file) throws IOException {
+        MessageDigest digest = newDigest();
+        digest.update(PIPELINE_VERSION.getBytes(StandardCharsets.UTF_8));
+
+        try (InputStream inputStream = new DigestInputStream(file.getInputStream(), digest)) {
+            inputStream.transferTo(OutputStream.nullOutputStream());
+        }
+        return HexFormat.of().formatHex(digest.digest());
+    }
+
+    /**
+     * Загружает файл, только если такого содержимого еще нет в хранилище.
+     * Иначе возвращает существующее изображение с новой ссылкой.
+     *
+     * @param upload  загрузка нового изображения (обработка + запись в хранилище)
+     * @param destroy удаление своей копии, если параллельная загрузка того же файла успела раньше
+     */
+    public StorageService.StorageResult uploadOnce(MultipartFile file, Upload upload, Consumer<String> destroy) throws IOException {
+        String contentHash = hash(file);
+        Optional<StorageService.StorageResult> existing = acquire(contentHash);
+        if (existing.isPresent()) {
+            log.info("🧬 Image {} is already stored, reusing {}", file.getOriginalFilename(), existing.get().getImageId());
+            return existing.get();
+        }
+
+        StorageService.StorageResult uploaded = upload.upload();
+        StorageService.StorageResult registered = register(contentHash, uploaded);
+        if (!registered.getImageId().equals(uploaded.getImageId())) {
+            destroy.accept(uploaded.getImageId());
+        }
+        return registered;
+    }
+
+    /**
+     * Добавляет ссылку на уже загруженное изображение с таким содержимым
+     */
+    public Optional<StorageService.StorageResult> acquire(String contentHash) {
+        if (storedImageRepository.incrementRefCount(contentHash) == 0) {
+            return Optional.empty();
+        }
+        return storedImageRepository.findByContentHash(contentHash).map(ImageContentIndex::toResult);
+    }
+
+    /**
+     * Регистрирует только что загруженное изображение с одной ссылкой.
+     * Если параллельная загрузка того же файла успела раньше - возвращает ее результат
+     * (вызывающий удаляет свою копию). Если запись есть, но уже освобождается,
+     * загрузка остается без учета ссылок и удаляется напрямую.
+     */
+    public StorageService.StorageResult register(String contentHash, StorageService.StorageResult uploaded) {
+        try {
+            storedImageRepository.saveAndFlush(StoredImage.builder()
+                    .contentHash(contentHash)
+                    .publicId(uploaded.getImageId())
+                    .url(uploaded.getUrl())
+                    .imageVariants(uploaded.getVariants())
+                    .refCount(1)
+                    .build());
+            return uploaded;
+        } catch (DataIntegrityViolationException e) {
+            Optional<StorageService.StorageResult> concurrent = acquire(contentHash);
+            if (concurrent.isPresent()) {
+                log.info("🧬 Same image uploaded concurrently, reusing {}", concurrent.get().getImageId());
+                return concurrent.get();
+            }
+            log.warn("⚠️ Image {} is being released, keeping upload {} untracked", contentHash, uploaded.getImageId());
+            return uploaded;
+        }
+    }
+
+    /**
+     * Снимает одну ссылку.
+     *
+     * @return true, если изображение нужно удалить из хранилища
+     * (последняя ссылка или изображение не учитывается индексом)
+     */
+    public boolean release(String publicId) {
+        if (storedImageRepository.decrementRefCount(publicId) == 0) {
+            // Загружено до появления индекса или без учета ссылок
+            return true;
+        }
+        // Запись удаляет тот, кто снял последнюю ссылку - ровно один вызывающий
+        boolean lastReference = storedImageRepository.deleteUnreferenced(publicId) == 1;
+        if (!lastReference) {
+            log.debug("🧬 Image {} is still referenced, keeping it", publicId);
+        }
+        return lastReference;
+    }
+
+    @FunctionalInterface
+    public interface Upload {
+        StorageService.StorageResult upload() throws IOException;
+    }
+
+    private static StorageService.StorageResult toResult(StoredImage storedImage) {
+        return new StorageService.StorageResult(storedImage.getUrl(), storedImage.getPublicId(),
+                storedImage.getImageVariants());
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
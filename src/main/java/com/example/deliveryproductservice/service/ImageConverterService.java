@@ -2,28 +2,48 @@
 package com.example.deliveryproductservice.service;
 
 import com.example.deliveryproductservice.Exception.ImageConversionException;
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
 import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.web.multipart.MultipartFile;
 
 import javax.imageio.IIOImage;
 import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
 import javax.imageio.ImageWriteParam;
 import javax.imageio.ImageWriter;
+import javax.imageio.stream.ImageInputStream;
 import javax.imageio.stream.ImageOutputStream;
 import java.awt.*;
 import java.awt.image.BufferedImage;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
+/**
+ * 🖼️ Потоковая обработка изображений продуктов.
+ * Размеры читаются из заголовка, большие изображения декодируются сразу с прореживанием
+ * ({@link ImageReadParam#setSourceSubsampling}) почти до целевого размера, а результат
+ * кодируется прямо во временный файл - без промежуточных byte[] с полным содержимым.
+ * Декодирование выполняется в {@link ImageProcessingExecutor} в пределах бюджета памяти.
+ * Для раздачи из одного декодирования строится набор производных ({@link ImageVariant}).
+ */
 @Service
+@RequiredArgsConstructor
 @Slf4j
 public class ImageConverterService {
 
@@ -41,12 +61,15 @@ public class ImageConverterService {
     private static final int PRODUCT_IMAGE_MAX_HEIGHT = 1200;
     private static final float JPEG_QUALITY = 0.85f;
 
+    private final ImageProcessingExecutor imageProcessingExecutor;
+
     public boolean needsConversion(String contentType) {
-        return CONVERTIBLE_TYPES.contains(contentType.toLowerCase());
+        return contentType != null && CONVERTIBLE_TYPES.contains(contentType.toLowerCase());
     }
 
     /**
-     * Основной метод для обработки изображений продуктов
+     * Основной метод для обработки изображений продуктов.
+     * Результат лежит во временном файле - его нужно закрыть ({@link ProcessedImage#close()}) после загрузки.
      */
     public ProcessedImage processProductImage(MultipartFile imageFile) throws IOException {
         try {
@@ -55,18 +78,26 @@ public class ImageConverterService {
                     imageFile.getContentType(),
                     imageFile.getSize());
 
-            // 1. Проверяем, нужна ли конвертация из HEIF/HEIC
-            if (needsConversion(imageFile.getContentType())) {
-                log.info("Converting HEIF/HEIC to JPEG for file: {}", imageFile.getOriginalFilename());
-                ProcessedImage convertedImage = convertToStandardFormat(imageFile);
+            ImageHeader header = readHeader(imageFile);
+
+            boolean needsResize = header.width() > PRODUCT_IMAGE_MAX_WIDTH ||
+                    header.height() > PRODUCT_IMAGE_MAX_HEIGHT;
+            boolean needsReencode = needsConversion(imageFile.getContentType())
+                    || "image/png".equals(imageFile.getContentType());
 
-                // Дополнительно обрабатываем размер, если нужно
-                return resizeIfNeeded(convertedImage);
+            if (!needsResize && !needsReencode) {
+                // Изображение уже подходящего размера и формата - копируем как есть, без декодирования
+                log.info("Image {} doesn't need processing", imageFile.getOriginalFilename());
+                return copyAsIs(imageFile, header);
             }
 
-            // 2. Для обычных форматов - проверяем размер и оптимизируем
-            return processStandardImage(imageFile);
+            // Растр декодируется только когда в общем бюджете памяти есть место под его оценку
+            return imageProcessingExecutor.execute(
+                    estimateDecodeBytes(header.width(), header.height()),
+                    () -> decodeAndEncode(imageFile, header));
 
+        } catch (ImageProcessingRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Failed to process product image {}: {}",
                     imageFile.getOriginalFilename(), e.getMessage(), e);
@@ -75,79 +106,225 @@ public class ImageConverterService {
     }
 
     /**
-     * Обрабатывает стандартные форматы изображений (JPG, PNG, GIF)
+     * Производные для раздачи (thumb/card/full в JPEG) из одного декодирования.
+     * Все файлы временные - набор нужно закрыть ({@link ImageDerivatives#close()}) после загрузки.
+     *
+     * @throws ImageConversionException если формат не читается ImageIO (например, WebP или HEIC без плагина)
      */
-    private ProcessedImage processStandardImage(MultipartFile imageFile) throws IOException {
-        BufferedImage originalImage = ImageIO.read(new ByteArrayInputStream(imageFile.getBytes()));
+    public ImageDerivatives processDerivatives(MultipartFile imageFile) throws IOException {
+        try {
+            log.info("Generating image derivatives: {}, type: {}, size: {} bytes",
+                    imageFile.getOriginalFilename(),
+                    imageFile.getContentType(),
+                    imageFile.getSize());
+
+            ImageHeader header = readHeader(imageFile);
+
+            return imageProcessingExecutor.execute(
+                    estimateDerivativesBytes(header.width(), header.height()),
+                    () -> decodeDerivatives(imageFile, header));
 
-        if (originalImage == null) {
-            throw new IOException("Could not read image file: " + imageFile.getOriginalFilename());
+        } catch (ImageProcessingRejectedException | ImageConversionException e) {
+            throw e;
+        } catch (Exception e) {
+            log.error("Failed to generate derivatives for {}: {}",
+                    imageFile.getOriginalFilename(), e.getMessage(), e);
+            throw new IOException("Failed to generate image derivatives: " + e.getMessage(), e);
         }
+    }
 
-        // Проверяем, нужно ли изменить размер
-        boolean needsResize = originalImage.getWidth() > PRODUCT_IMAGE_MAX_WIDTH ||
-                originalImage.getHeight() > PRODUCT_IMAGE_MAX_HEIGHT;
+    /**
+     * Читает только заголовок: формат и размеры без декодирования пикселей
+     */
+    private ImageHeader readHeader(MultipartFile imageFile) throws IOException {
+        try (InputStream inputStream = imageFile.getInputStream();
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+
+            ImageReader reader = firstReader(imageInputStream, imageFile);
+            try {
+                reader.setInput(imageInputStream, true, true);
+                return new ImageHeader(reader.getWidth(0), reader.getHeight(0));
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
 
-        if (!needsResize && !"image/png".equals(imageFile.getContentType())) {
-            // Изображение уже подходящего размера и не PNG - возвращаем как есть
-            log.info("Image {} doesn't need processing", imageFile.getOriginalFilename());
-            return ProcessedImage.fromMultipartFile(imageFile);
+    private ProcessedImage copyAsIs(MultipartFile imageFile, ImageHeader header) throws IOException {
+        Path target = Files.createTempFile("product-image-", ProcessedImage.getExtensionFromFileName(imageFile.getOriginalFilename()));
+        try (InputStream inputStream = imageFile.getInputStream()) {
+            Files.copy(inputStream, target, StandardCopyOption.REPLACE_EXISTING);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
         }
 
-        // Обрабатываем изображение
-        BufferedImage processedImage = needsResize ?
-                resizeImageWithAspectRatio(originalImage, PRODUCT_IMAGE_MAX_WIDTH, PRODUCT_IMAGE_MAX_HEIGHT) :
-                originalImage;
+        return ProcessedImage.builder()
+                .file(target)
+                .size(Files.size(target))
+                .width(header.width())
+                .height(header.height())
+                .contentType(imageFile.getContentType())
+                .fileName(imageFile.getOriginalFilename())
+                .extension(ProcessedImage.getExtensionFromFileName(imageFile.getOriginalFilename()))
+                .originalFileName(imageFile.getOriginalFilename())
+                .originalContentType(imageFile.getContentType())
+                .build();
+    }
+
+    /**
+     * Декодирует с прореживанием, доводит до точного размера и пишет JPEG во временный файл
+     */
+    private ProcessedImage decodeAndEncode(MultipartFile imageFile, ImageHeader header) throws IOException {
+        int subsampling = subsamplingFactor(header.width(), header.height());
+        BufferedImage decoded = decodeSubsampled(imageFile, subsampling);
+
+        BufferedImage processedImage = fitsWithin(decoded, PRODUCT_IMAGE_MAX_WIDTH, PRODUCT_IMAGE_MAX_HEIGHT)
+                ? toRgb(decoded)
+                : resizeImageWithAspectRatio(decoded, header, PRODUCT_IMAGE_MAX_WIDTH, PRODUCT_IMAGE_MAX_HEIGHT);
 
-        // Конвертируем в JPEG для оптимизации
-        byte[] optimizedBytes = convertToOptimizedJpeg(processedImage);
         String newFileName = generateJpegFileName(imageFile.getOriginalFilename());
+        ProcessedImage result = writeJpegFile(processedImage, imageFile, newFileName);
+
+        log.info("Processed image: {} -> {}, {}x{} (subsampling {}) -> {}x{}, original size: {} bytes, new size: {} bytes",
+                imageFile.getOriginalFilename(), newFileName, header.width(), header.height(), subsampling,
+                processedImage.getWidth(), processedImage.getHeight(), imageFile.getSize(), result.getSize());
+
+        return result;
+    }
 
-        log.info("Processed standard image: {} -> {}, original size: {} bytes, new size: {} bytes",
-                imageFile.getOriginalFilename(), newFileName, imageFile.getSize(), optimizedBytes.length);
+    /**
+     * Декодирует один раз и строит все производные: каждая следующая масштабируется
+     * из предыдущей (full -> card -> thumb), а не из исходного растра
+     */
+    private ImageDerivatives decodeDerivatives(MultipartFile imageFile, ImageHeader header) throws IOException {
+        int subsampling = subsamplingFactor(header.width(), header.height());
+        BufferedImage source = decodeSubsampled(imageFile, subsampling);
+
+        Map<ImageVariant, ProcessedImage> variants = new EnumMap<>(ImageVariant.class);
+        try {
+            for (ImageVariant variant : ImageVariant.LARGEST_FIRST) {
+                int maxSize = variant.getMaxSize();
+                BufferedImage scaled = fitsWithin(source, maxSize, maxSize)
+                        ? toRgb(source)
+                        : resizeImageWithAspectRatio(source, header, maxSize, maxSize);
+
+                variants.put(variant, writeJpegFile(scaled, imageFile,
+                        generateJpegFileName(imageFile.getOriginalFilename(), variant)));
+                source = scaled;
+            }
+        } catch (IOException | RuntimeException e) {
+            variants.values().forEach(ProcessedImage::close);
+            throw e;
+        }
+
+        log.info("Image derivatives for {}: {}x{} (subsampling {}) -> full {}x{}, card {}x{}, thumb {}x{}",
+                imageFile.getOriginalFilename(), header.width(), header.height(), subsampling,
+                variants.get(ImageVariant.FULL).getWidth(), variants.get(ImageVariant.FULL).getHeight(),
+                variants.get(ImageVariant.CARD).getWidth(), variants.get(ImageVariant.CARD).getHeight(),
+                variants.get(ImageVariant.THUMB).getWidth(), variants.get(ImageVariant.THUMB).getHeight());
+
+        return new ImageDerivatives(variants);
+    }
+
+    BufferedImage decodeSubsampled(MultipartFile imageFile, int subsampling) throws IOException {
+        try (InputStream inputStream = imageFile.getInputStream();
+             ImageInputStream imageInputStream = ImageIO.createImageInputStream(inputStream)) {
+
+            ImageReader reader = firstReader(imageInputStream, imageFile);
+            try {
+                reader.setInput(imageInputStream, true, true);
+                ImageReadParam readParam = reader.getDefaultReadParam();
+                if (subsampling > 1) {
+                    // Декодер пропускает строки и столбцы - полный растр в памяти не создается
+                    readParam.setSourceSubsampling(subsampling, subsampling, 0, 0);
+                }
+                return reader.read(0, readParam);
+            } finally {
+                reader.dispose();
+            }
+        }
+    }
+
+    private ProcessedImage writeJpegFile(BufferedImage image, MultipartFile imageFile, String fileName) throws IOException {
+        Path target = Files.createTempFile("product-image-", TARGET_EXTENSION);
+        try {
+            writeOptimizedJpeg(image, target);
+        } catch (IOException e) {
+            Files.deleteIfExists(target);
+            throw e;
+        }
 
         return ProcessedImage.builder()
-                .bytes(optimizedBytes)
+                .file(target)
+                .size(Files.size(target))
+                .width(image.getWidth())
+                .height(image.getHeight())
                 .contentType(TARGET_CONTENT_TYPE)
-                .fileName(newFileName)
+                .fileName(fileName)
                 .extension(TARGET_EXTENSION)
                 .originalFileName(imageFile.getOriginalFilename())
                 .originalContentType(imageFile.getContentType())
                 .build();
     }
 
+    private static boolean fitsWithin(BufferedImage image, int maxWidth, int maxHeight) {
+        return image.getWidth() <= maxWidth && image.getHeight() <= maxHeight;
+    }
+
     /**
-     * Дополнительно обрабатывает уже сконвертированное изображение
+     * Наибольший шаг прореживания, при котором декодированное изображение
+     * все еще не меньше целевого размера
      */
-    private ProcessedImage resizeIfNeeded(ProcessedImage convertedImage) throws IOException {
-        BufferedImage image = ImageIO.read(new ByteArrayInputStream(convertedImage.getBytes()));
+    static int subsamplingFactor(int width, int height) {
+        double scale = Math.max((double) width / PRODUCT_IMAGE_MAX_WIDTH, (double) height / PRODUCT_IMAGE_MAX_HEIGHT);
+        return Math.max(1, (int) Math.floor(scale));
+    }
 
-        if (image.getWidth() <= PRODUCT_IMAGE_MAX_WIDTH &&
-                image.getHeight() <= PRODUCT_IMAGE_MAX_HEIGHT) {
-            return convertedImage; // Размер уже подходящий
-        }
+    /**
+     * Оценка памяти под обработку: прореженный растр + итоговый растр (до 4 байт на пиксель)
+     */
+    static long estimateDecodeBytes(int width, int height) {
+        int subsampling = subsamplingFactor(width, height);
+        long decodedPixels = (long) ((width + subsampling - 1) / subsampling) * ((height + subsampling - 1) / subsampling);
+        long outputPixels = (long) Math.min(width, PRODUCT_IMAGE_MAX_WIDTH) * Math.min(height, PRODUCT_IMAGE_MAX_HEIGHT);
+        return (decodedPixels + outputPixels) * 4;
+    }
 
-        BufferedImage resizedImage = resizeImageWithAspectRatio(
-                image, PRODUCT_IMAGE_MAX_WIDTH, PRODUCT_IMAGE_MAX_HEIGHT);
+    /**
+     * Оценка памяти под производные: к растрам полного размера добавляются card и thumb
+     */
+    static long estimateDerivativesBytes(int width, int height) {
+        long smallerVariantsPixels = 0;
+        for (ImageVariant variant : ImageVariant.values()) {
+            if (variant != ImageVariant.FULL) {
+                smallerVariantsPixels += (long) Math.min(width, variant.getMaxSize()) * Math.min(height, variant.getMaxSize());
+            }
+        }
+        return estimateDecodeBytes(width, height) + smallerVariantsPixels * 4;
+    }
 
-        byte[] resizedBytes = convertToOptimizedJpeg(resizedImage);
+    private ImageReader firstReader(ImageInputStream imageInputStream, MultipartFile imageFile) {
+        if (imageInputStream == null) {
+            throw new ImageConversionException("Could not open image stream: " + imageFile.getOriginalFilename());
+        }
 
-        return ProcessedImage.builder()
-                .bytes(resizedBytes)
-                .contentType(convertedImage.getContentType())
-                .fileName(convertedImage.getFileName())
-                .extension(convertedImage.getExtension())
-                .originalFileName(convertedImage.getOriginalFileName())
-                .originalContentType(convertedImage.getOriginalContentType())
-                .build();
+        Iterator<ImageReader> readers = ImageIO.getImageReaders(imageInputStream);
+        if (!readers.hasNext()) {
+            throw new ImageConversionException("Unsupported image format (" + imageFile.getContentType()
+                    + "): " + imageFile.getOriginalFilename());
+        }
+        return readers.next();
     }
 
     /**
-     * Изменяет размер изображения с сохранением пропорций
+     * Изменяет размер изображения с сохранением пропорций.
+     * Пропорции берутся из заголовка: прореживание могло их немного округлить
      */
-    private BufferedImage resizeImageWithAspectRatio(BufferedImage originalImage, int maxWidth, int maxHeight) {
-        int originalWidth = originalImage.getWidth();
-        int originalHeight = originalImage.getHeight();
+    private BufferedImage resizeImageWithAspectRatio(BufferedImage originalImage, ImageHeader header,
+                                                     int maxWidth, int maxHeight) {
+        int originalWidth = header.width();
+        int originalHeight = header.height();
 
         // Вычисляем новые размеры с сохранением пропорций
         double aspectRatio = (double) originalWidth / originalHeight;
@@ -189,182 +366,137 @@ public class ImageConverterService {
         g2d.dispose();
 
         log.info("Resized image from {}x{} to {}x{}",
-                originalWidth, originalHeight, newWidth, newHeight);
+                originalImage.getWidth(), originalImage.getHeight(), newWidth, newHeight);
 
         return resizedImage;
     }
 
     /**
-     * Конвертирует изображение в оптимизированный JPEG
+     * RGB без прозрачности (прозрачные области заливаются белым)
      */
-    private byte[] convertToOptimizedJpeg(BufferedImage image) throws IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-
-            // Создаем RGB изображение если нужно
-            BufferedImage rgbImage = image;
-            if (image.getType() != BufferedImage.TYPE_INT_RGB) {
-                rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
-                Graphics2D g2d = rgbImage.createGraphics();
-                g2d.setColor(Color.WHITE);
-                g2d.fillRect(0, 0, rgbImage.getWidth(), rgbImage.getHeight());
-                g2d.drawImage(image, 0, 0, null);
-                g2d.dispose();
-            }
+    private BufferedImage toRgb(BufferedImage image) {
+        if (image.getType() == BufferedImage.TYPE_INT_RGB || image.getType() == BufferedImage.TYPE_3BYTE_BGR) {
+            return image;
+        }
 
-            // Настраиваем качество JPEG
-            ImageWriter writer = ImageIO.getImageWritersByFormatName(TARGET_FORMAT).next();
-            ImageWriteParam writeParam = writer.getDefaultWriteParam();
-            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            writeParam.setCompressionQuality(JPEG_QUALITY);
+        BufferedImage rgbImage = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        Graphics2D g2d = rgbImage.createGraphics();
+        g2d.setColor(Color.WHITE);
+        g2d.fillRect(0, 0, rgbImage.getWidth(), rgbImage.getHeight());
+        g2d.drawImage(image, 0, 0, null);
+        g2d.dispose();
+        return rgbImage;
+    }
 
-            // Записываем в поток
-            ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream);
+    /**
+     * Кодирует изображение в оптимизированный JPEG прямо в файл
+     */
+    private void writeOptimizedJpeg(BufferedImage image, Path target) throws IOException {
+        // Настраиваем качество JPEG
+        ImageWriter writer = ImageIO.getImageWritersByFormatName(TARGET_FORMAT).next();
+        ImageWriteParam writeParam = writer.getDefaultWriteParam();
+        writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
+        writeParam.setCompressionQuality(JPEG_QUALITY);
+
+        try (ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(target.toFile())) {
             writer.setOutput(imageOutputStream);
-            writer.write(null, new IIOImage(rgbImage, null, null), writeParam);
-
+            writer.write(null, new IIOImage(image, null, null), writeParam);
+        } finally {
             writer.dispose();
-            imageOutputStream.close();
-
-            return outputStream.toByteArray();
         }
     }
 
-    public ProcessedImage convertToStandardFormat(MultipartFile file) {
-        try {
-            log.info("Converting file {} from {} to JPEG",
-                    file.getOriginalFilename(), file.getContentType());
-
-            // Читаем исходное изображение
-            BufferedImage sourceImage = readHeifImage(file);
-
-            // Конвертируем в JPEG
-            byte[] convertedBytes = convertToJpeg(sourceImage);
-
-            // Генерируем новое имя файла
-            String newFileName = generateNewFileName(file.getOriginalFilename());
-
-            log.info("Successfully converted {} to JPEG, size: {} bytes",
-                    file.getOriginalFilename(), convertedBytes.length);
-
-            return ProcessedImage.builder()
-                    .bytes(convertedBytes)
-                    .contentType(TARGET_CONTENT_TYPE)
-                    .fileName(newFileName)
-                    .extension(TARGET_EXTENSION)
-                    .originalFileName(file.getOriginalFilename())
-                    .originalContentType(file.getContentType())
-                    .build();
-
-        } catch (Exception e) {
-            log.error("Failed to convert image {}: {}",
-                    file.getOriginalFilename(), e.getMessage(), e);
-            throw new ImageConversionException(
-                    "Failed to convert HEIF image to JPEG: " + e.getMessage(), e);
+    private String generateJpegFileName(String originalFileName) {
+        if (originalFileName == null || originalFileName.isEmpty()) {
+            return "product_image" + TARGET_EXTENSION;
         }
-    }
 
-    private BufferedImage readHeifImage(MultipartFile file) throws IOException {
-        try (InputStream inputStream = file.getInputStream()) {
-            BufferedImage image = ImageIO.read(inputStream);
+        String nameWithoutExtension = originalFileName.replaceAll("\\.[^.]*$", "");
+        return nameWithoutExtension + TARGET_EXTENSION;
+    }
 
-            if (image == null) {
-                throw new ImageConversionException(
-                        "Unable to read HEIF image. ImageIO returned null");
-            }
+    private String generateJpegFileName(String originalFileName, ImageVariant variant) {
+        String fileName = generateJpegFileName(originalFileName);
+        return fileName.substring(0, fileName.length() - TARGET_EXTENSION.length())
+                + "_" + variant.getSuffix() + TARGET_EXTENSION;
+    }
 
-            return image;
-        }
+    private record ImageHeader(int width, int height) {
     }
 
-    private byte[] convertToJpeg(BufferedImage sourceImage) throws IOException {
-        try (ByteArrayOutputStream outputStream = new ByteArrayOutputStream()) {
-
-            // Создаем новое изображение с RGB цветовым пространством
-            BufferedImage rgbImage = new BufferedImage(
-                    sourceImage.getWidth(),
-                    sourceImage.getHeight(),
-                    BufferedImage.TYPE_INT_RGB
-            );
-
-            // Копируем изображение, убирая прозрачность если есть
-            Graphics2D g2d = rgbImage.createGraphics();
-            g2d.setColor(Color.WHITE);
-            g2d.fillRect(0, 0, rgbImage.getWidth(), rgbImage.getHeight());
-            g2d.drawImage(sourceImage, 0, 0, null);
-            g2d.dispose();
-
-            // Настраиваем качество JPEG
-            ImageWriter writer = ImageIO.getImageWritersByFormatName(TARGET_FORMAT).next();
-            ImageWriteParam writeParam = writer.getDefaultWriteParam();
-            writeParam.setCompressionMode(ImageWriteParam.MODE_EXPLICIT);
-            writeParam.setCompressionQuality(0.9f);
-
-            // Записываем в поток
-            ImageOutputStream imageOutputStream = ImageIO.createImageOutputStream(outputStream);
-            writer.setOutput(imageOutputStream);
-            writer.write(null, new IIOImage(rgbImage, null, null), writeParam);
+    /**
+     * 📐 Фиксированный набор размеров, который генерируется при загрузке
+     */
+    @Getter
+    @RequiredArgsConstructor
+    public enum ImageVariant {
+        THUMB("thumb", 200),
+        CARD("card", 600),
+        FULL("full", PRODUCT_IMAGE_MAX_WIDTH);
 
-            writer.dispose();
-            imageOutputStream.close();
+        static final List<ImageVariant> LARGEST_FIRST = List.of(FULL, CARD, THUMB);
 
-            return outputStream.toByteArray();
-        }
+        private final String suffix;
+        private final int maxSize;
     }
 
-    private String generateNewFileName(String originalFileName) {
-        if (originalFileName == null || originalFileName.isEmpty()) {
-            return "converted_image" + TARGET_EXTENSION;
-        }
-
-        String nameWithoutExtension = originalFileName.replaceAll("\\.[^.]*$", "");
-        return nameWithoutExtension + TARGET_EXTENSION;
-    }
+    /**
+     * Набор производных во временных файлах; {@link #close()} удаляет их все
+     */
+    @RequiredArgsConstructor
+    public static class ImageDerivatives implements AutoCloseable {
+        private final Map<ImageVariant, ProcessedImage> variants;
 
-    private String generateJpegFileName(String originalFileName) {
-        if (originalFileName == null || originalFileName.isEmpty()) {
-            return "product_image" + TARGET_EXTENSION;
+        public ProcessedImage get(ImageVariant variant) {
+            return variants.get(variant);
         }
 
-        String nameWithoutExtension = originalFileName.replaceAll("\\.[^.]*$", "");
-        return nameWithoutExtension + TARGET_EXTENSION;
+        @Override
+        public void close() {
+            variants.values().forEach(ProcessedImage::close);
+        }
     }
 
+    /**
+     * Обработанное изображение во временном файле.
+     * {@link #close()} удаляет файл - вызывается после загрузки в хранилище.
+     */
     @Data
     @Builder
     @AllArgsConstructor
     @NoArgsConstructor
-    public static class ProcessedImage {
-        private byte[] bytes;
+    public static class ProcessedImage implements AutoCloseable {
+        private Path file;
+        private long size;
+        private int width;
+        private int height;
         private String contentType;
         private String fileName;
         private String extension;
         private String originalFileName;
         private String originalContentType;
 
-        public static ProcessedImage fromMultipartFile(MultipartFile file) {
+        public InputStream openStream() throws IOException {
+            return Files.newInputStream(file);
+        }
+
+        @Override
+        public void close() {
+            if (file == null) {
+                return;
+            }
             try {
-                return ProcessedImage.builder()
-                        .bytes(file.getBytes())
-                        .contentType(file.getContentType())
-                        .fileName(file.getOriginalFilename())
-                        .extension(getExtensionFromFileName(file.getOriginalFilename()))
-                        .originalFileName(file.getOriginalFilename())
-                        .originalContentType(file.getContentType())
-                        .build();
+                Files.deleteIfExists(file);
             } catch (IOException e) {
-                throw new RuntimeException("Failed to read file bytes", e);
+                log.warn("⚠️ Failed to delete temporary image file {}: {}", file, e.getMessage());
             }
         }
 
-        private static String getExtensionFromFileName(String fileName) {
+        static String getExtensionFromFileName(String fileName) {
             if (fileName == null || !fileName.contains(".")) {
                 return "";
             }
             return fileName.substring(fileName.lastIndexOf("."));
         }
-
-        public long getSize() {
-            return bytes != null ? bytes.length : 0;
-        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,241 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.model.ImageDeletion;
+import com.example.deliveryproductservice.repository.ImageDeletionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 🗑️ Отложенное удаление изображений из хранилища.
+ * {@link #enqueue} снимает ссылку и записывает удаление в outbox в транзакции вызывающего кода:
+ * при откате не теряется ни ссылка, ни файл. Фоновый обработчик забирает записи пачками
+ * и удаляет их одним вызовом {@link StorageService#destroyImages}. Неудачные записи
+ * повторяются с экспоненциальной задержкой, размер очереди - метрика image.deletion.backlog.
+ * <p>
+ * Вызов хранилища идет без открытой транзакции: пачка сначала арендуется коротким коммитом
+ * (next_attempt_at сдвигается на lease), результат записывается вторым коротким коммитом.
+ * Если инстанс упал между ними, записи снова станут готовыми, когда истечет аренда.
+ */
+@Service
+@Slf4j
+public class ImageDeletionQueue {
+
+    private static final int MAX_ERROR_LENGTH = 500;
+
+    private final ImageDeletionRepository imageDeletionRepository;
+    private final ImageContentIndex imageContentIndex;
+    private final StorageService storageService;
+    private final TransactionTemplate transactionTemplate;
+
+    private final int batchSize;
+    private final Duration pollInterval;
+    private final Duration initialBackoff;
+    private final Duration maxBackoff;
+    private final Duration lease;
+
+    private final AtomicLong backlog = new AtomicLong();
+    private final Counter completed;
+    private final Counter failed;
+
+    private ScheduledExecutorService scheduler;
+
+    public ImageDeletionQueue(ImageDeletionRepository imageDeletionRepository,
+                              ImageContentIndex imageContentIndex,
+                              StorageService storageService,
+                              PlatformTransactionManager transactionManager,
+                              MeterRegistry meterRegistry,
+                              @Value("${image.deletion.batch-size:100}") int batchSize,
+                              @Value("${image.deletion.poll-interval:10s}") Duration pollInterval,
+                              @Value("${image.deletion.initial-backoff:30s}") Duration initialBackoff,
+                              @Value("${image.deletion.max-backoff:1h}") Duration maxBackoff,
+                              @Value("${image.deletion.lease:5m}") Duration lease) {
+        this.imageDeletionRepository = imageDeletionRepository;
+        this.imageContentIndex = imageContentIndex;
+        this.storageService = storageService;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.batchSize = batchSize;
+        this.pollInterval = pollInterval;
+        this.initialBackoff = initialBackoff;
+        this.maxBackoff = maxBackoff;
+        this.lease = lease;
+
+        this.completed = meterRegistry.counter("image.deletion.processed", "result", "deleted");
+        this.failed = meterRegistry.counter("image.deletion.processed", "result", "failed");
+        Gauge.builder("image.deletion.backlog", backlog, AtomicLong::get)
+                .description("Image deletions waiting in the outbox")
+                .register(meterRegistry);
+    }
+
+    @PostConstruct
+    public void start() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "image-deletion");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::drainSafely,
+                pollInterval.toMillis(), pollInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Снимает ссылку на изображение и, если она была последней, ставит файл в очередь на удаление.
+     * Вызывается внутри транзакции, меняющей сущность
+     */
+    @Transactional
+    public void enqueue(String publicId) {
+        if (publicId == null || publicId.isEmpty() || publicId.startsWith("default_")) {
+            return;
+        }
+
+        if (!imageContentIndex.release(publicId)) {
+            log.info("🧬 Изображение {} используется другими сущностями, не удаляем", publicId);
+            return;
+        }
+
+        imageDeletionRepository.save(ImageDeletion.builder()
+                .publicId(publicId)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build());
+        backlog.incrementAndGet();
+        log.debug("🗑️ Image {} queued for deletion", publicId);
+    }
+
+    /**
+     * Разбирает все готовые записи; возвращает число успешно удаленных изображений
+     */
+    public int drain() {
+        int deleted = 0;
+        while (true) {
+            BatchResult result = processBatch();
+            if (result == null || result.claimed() == 0) {
+                break;
+            }
+            deleted += result.deleted();
+            // Неполная пачка - готовых записей больше нет; неудачные отложены и в этот цикл не вернутся
+            if (result.claimed() < batchSize) {
+                break;
+            }
+        }
+        backlog.set(imageDeletionRepository.count());
+        return deleted;
+    }
+
+    private void drainSafely() {
+        try {
+            int deleted = drain();
+            if (deleted > 0) {
+                log.info("🗑️ Deleted {} images from storage, {} waiting", deleted, backlog.get());
+            }
+        } catch (Exception e) {
+            log.error("❌ Image deletion cycle failed: {}", e.getMessage(), e);
+        }
+    }
+
+    private BatchResult processBatch() {
+        List<ImageDeletion> due = claimBatch();
+        if (due == null || due.isEmpty()) {
+            return new BatchResult(0, 0);
+        }
+
+        // Транзакции нет: ни строки, ни соединение не удерживаются на время вызова хранилища
+        Set<String> destroyed;
+        String error = "not deleted by storage";
+        try {
+            destroyed = storageService.destroyImages(due.stream().map(ImageDeletion::getPublicId).distinct().toList());
+        } catch (RuntimeException e) {
+            destroyed = Set.of();
+            error = e.getMessage();
+        }
+
+        LocalDateTime now = LocalDateTime.now();
+        List<ImageDeletion> done = new ArrayList<>();
+        List<ImageDeletion> retry = new ArrayList<>();
+        for (ImageDeletion deletion : due) {
+            if (destroyed.contains(deletion.getPublicId())) {
+                done.add(deletion);
+                continue;
+            }
+            int attempts = deletion.getAttempts() + 1;
+            deletion.setAttempts(attempts);
+            deletion.setNextAttemptAt(now.plus(backoff(attempts)));
+            deletion.setLastError(error == null ? null : error.substring(0, Math.min(error.length(), MAX_ERROR_LENGTH)));
+            retry.add(deletion);
+            log.warn("⚠️ Image {} deletion attempt {} failed, retry at {}",
+                    deletion.getPublicId(), attempts, deletion.getNextAttemptAt());
+        }
+
+        transactionTemplate.executeWithoutResult(status -> {
+            imageDeletionRepository.deleteAllInBatch(done);
+            imageDeletionRepository.saveAll(retry);
+        });
+        completed.increment(done.size());
+        failed.increment(retry.size());
+        return new BatchResult(due.size(), done.size());
+    }
+
+    /**
+     * Короткая транзакция: блокирует готовые записи (SKIP LOCKED), сдвигает их next_attempt_at
+     * на время аренды и коммитит - другие инстансы эту пачку не возьмут, пока аренда не истечет
+     */
+    private List<ImageDeletion> claimBatch() {
+        return transactionTemplate.execute(status -> {
+            LocalDateTime now = LocalDateTime.now();
+            List<ImageDeletion> due = imageDeletionRepository.lockDue(now, batchSize);
+            if (due.isEmpty()) {
+                return due;
+            }
+            LocalDateTime leaseUntil = now.plus(lease);
+            due.forEach(deletion -> deletion.setNextAttemptAt(leaseUntil));
+            imageDeletionRepository.saveAll(due);
+            return due;
+        });
+    }
+
+    /**
+     * initial * 2^(attempts-1), не больше max, с джиттером до 20% - чтобы после сбоя
+     * хранилища повторы не приходили одной волной
+     */
+    Duration backoff(int attempts) {
+        long initialMillis = initialBackoff.toMillis();
+        long maxMillis = maxBackoff.toMillis();
+        int shift = Math.min(attempts - 1, 30);
+        long delay = initialMillis > maxMillis >> shift ? maxMillis : Math.min(maxMillis, initialMillis << shift);
+        long jitter = ThreadLocalRandom.current().nextLong(delay / 5 + 1);
+        return Duration.ofMillis(delay + jitter);
+    }
+
+    public long getBacklog() {
+        return backlog.get();
+    }
+
+    private record BatchResult(int claimed, int deleted) {
+    }
+}
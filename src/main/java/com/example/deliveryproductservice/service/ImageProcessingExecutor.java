@@ -0,0 +1,163 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 🧮 Отдельный пул для декодирования изображений.
+ * Ограничивает число одновременных декодирований и общий объем памяти под растры:
+ * задача допускается к выполнению, только когда в бюджете есть место под ее оценку
+ * (по размерам из заголовка). При заполненной очереди - отказ 429, если память
+ * не освободилась за max-wait - отказ 503.
+ */
+@Component
+@Slf4j
+public class ImageProcessingExecutor {
+
+    private static final long BYTES_PER_PERMIT = 1024;
+
+    private final ThreadPoolExecutor executor;
+    private final Semaphore memoryBudget;
+    private final int budgetPermits;
+    private final long maxWaitNanos;
+    private final long retryAfterSeconds;
+
+    private final Timer waitTimer;
+    private final Counter rejectedQueueFull;
+    private final Counter rejectedMemoryBudget;
+
+    public ImageProcessingExecutor(MeterRegistry meterRegistry,
+                                   @Value("${image.processing.max-concurrent:2}") int maxConcurrent,
+                                   @Value("${image.processing.queue-capacity:16}") int queueCapacity,
+                                   @Value("${image.processing.memory-budget:256MB}") DataSize memoryBudget,
+                                   @Value("${image.processing.max-wait:10s}") Duration maxWait) {
+        this.budgetPermits = (int) Math.min(Integer.MAX_VALUE, memoryBudget.toBytes() / BYTES_PER_PERMIT);
+        // Честный семафор: крупное изображение не будет бесконечно пропускать вперед мелкие
+        this.memoryBudget = new Semaphore(budgetPermits, true);
+        this.maxWaitNanos = maxWait.toNanos();
+        this.retryAfterSeconds = Math.max(1, maxWait.toSeconds());
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(
+                maxConcurrent, maxConcurrent,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "image-processing-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                new ThreadPoolExecutor.AbortPolicy());
+
+        this.waitTimer = Timer.builder("image.processing.wait")
+                .description("Time from submission until decoding starts (queue + memory budget)")
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        this.rejectedQueueFull = meterRegistry.counter("image.processing.rejected", "reason", "queue-full");
+        this.rejectedMemoryBudget = meterRegistry.counter("image.processing.rejected", "reason", "memory-budget");
+        Gauge.builder("image.processing.queue.size", executor, e -> e.getQueue().size()).register(meterRegistry);
+        Gauge.builder("image.processing.active", executor, ThreadPoolExecutor::getActiveCount).register(meterRegistry);
+        Gauge.builder("image.processing.memory.available", this.memoryBudget,
+                        semaphore -> (double) semaphore.availablePermits() * BYTES_PER_PERMIT)
+                .baseUnit("bytes")
+                .register(meterRegistry);
+
+        log.info("🧮 Image processing executor: {} concurrent, queue {}, memory budget {} MB, max wait {}",
+                maxConcurrent, queueCapacity, memoryBudget.toMegabytes(), maxWait);
+    }
+
+    /**
+     * Выполняет декодирование в пуле и ждет результат.
+     *
+     * @param estimatedBytes оценка памяти под растры (больше бюджета - задача занимает весь бюджет)
+     * @throws ImageProcessingRejectedException при перегрузке (429/503)
+     */
+    public <T> T execute(long estimatedBytes, Callable<T> job) throws IOException {
+        int permits = toPermits(estimatedBytes);
+        long submittedAt = System.nanoTime();
+
+        Future<T> future;
+        try {
+            future = executor.submit(() -> runWithinBudget(permits, submittedAt, job));
+        } catch (RejectedExecutionException e) {
+            rejectedQueueFull.increment();
+            log.warn("🚦 Image processing queue is full ({} waiting), rejecting", executor.getQueue().size());
+            throw new ImageProcessingRejectedException(HttpStatus.TOO_MANY_REQUESTS,
+                    "Image processing queue is full, try again later", retryAfterSeconds);
+        }
+
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while waiting for image processing", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IOException ioException) {
+                throw ioException;
+            }
+            if (cause instanceof RuntimeException runtimeException) {
+                throw runtimeException;
+            }
+            throw new IOException("Image processing failed: " + cause.getMessage(), cause);
+        }
+    }
+
+    private <T> T runWithinBudget(int permits, long submittedAt, Callable<T> job) throws Exception {
+        long remainingNanos = maxWaitNanos - (System.nanoTime() - submittedAt);
+        if (remainingNanos <= 0 || !memoryBudget.tryAcquire(permits, remainingNanos, TimeUnit.NANOSECONDS)) {
+            rejectedMemoryBudget.increment();
+            log.warn("🚦 No memory budget for image decoding ({} KB needed, {} KB free), rejecting",
+                    permits, memoryBudget.availablePermits());
+            throw new ImageProcessingRejectedException(HttpStatus.SERVICE_UNAVAILABLE,
+                    "Image processing is overloaded, try again later", retryAfterSeconds);
+        }
+
+        waitTimer.record(System.nanoTime() - submittedAt, TimeUnit.NANOSECONDS);
+        try {
+            return job.call();
+        } finally {
+            memoryBudget.release(permits);
+        }
+    }
+
+    private int toPermits(long estimatedBytes) {
+        long permits = (estimatedBytes + BYTES_PER_PERMIT - 1) / BYTES_PER_PERMIT;
+        return (int) Math.max(1, Math.min(budgetPermits, permits));
+    }
+
+    public int getQueueSize() {
+        return executor.getQueue().size();
+    }
+
+    public long getAvailableMemoryBytes() {
+        return memoryBudget.availablePermits() * BYTES_PER_PERMIT;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+}
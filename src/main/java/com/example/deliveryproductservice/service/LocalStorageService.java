@@ -0,0 +1,356 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.Exception.ImageConversionException;
+import com.example.deliveryproductservice.model.ImageVariants;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * 💾 Хранилище изображений на локальном диске - для офлайн-разработки и нагрузочных тестов.
+ * Раскладка шардирована по хешу идентификатора ({@code products/3f/a9/0A8ERN7JG0M00}),
+ * чтобы в одном каталоге не скапливались сотни тысяч файлов. Запись атомарная:
+ * файл пишется во временный в том же каталоге и переименовывается, так что читатель
+ * никогда не видит частично записанное изображение. Раздача - {@code LocalImageController}.
+ * Включается storage.type=local.
+ */
+@Service
+@ConditionalOnProperty(name = "storage.type", havingValue = "local")
+@Slf4j
+public class LocalStorageService implements StorageService {
+
+    private static final String JPEG_EXTENSION = ".jpg";
+    private static final String TEMP_PREFIX = ".upload-";
+    private static final HexFormat HEX = HexFormat.of();
+
+    private final ImageConverterService imageConverterService;
+    private final ImageContentIndex imageContentIndex;
+    private final StorageIdGenerator storageIdGenerator;
+    private final Path root;
+    private final String publicBaseUrl;
+
+    public LocalStorageService(ImageConverterService imageConverterService,
+                               ImageContentIndex imageContentIndex,
+                               StorageIdGenerator storageIdGenerator,
+                               @Value("${storage.local.root:./data/images}") String root,
+                               @Value("${storage.local.public-base-url:http://localhost:8083/api/images}") String publicBaseUrl) {
+        this.imageConverterService = imageConverterService;
+        this.imageContentIndex = imageContentIndex;
+        this.storageIdGenerator = storageIdGenerator;
+        this.root = Path.of(root).toAbsolutePath().normalize();
+        this.publicBaseUrl = publicBaseUrl.endsWith("/")
+                ? publicBaseUrl.substring(0, publicBaseUrl.length() - 1)
+                : publicBaseUrl;
+
+        try {
+            Files.createDirectories(this.root);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create image storage directory " + this.root, e);
+        }
+        log.info("💾 Local image storage at {} (served from {})", this.root, this.publicBaseUrl);
+    }
+
+    @Override
+    public StorageResult uploadImage(MultipartFile file) throws IOException {
+        return uploadImage(file, "categories");
+    }
+
+    @Override
+    public StorageResult uploadImage(MultipartFile file, String folder) throws IOException {
+        if (file == null || file.isEmpty()) {
+            throw new IllegalArgumentException("Файл отсутствует или пуст");
+        }
+        return imageContentIndex.uploadOnce(file, () -> uploadNew(file, folder), this::destroy);
+    }
+
+    private StorageResult uploadNew(MultipartFile file, String folder) throws IOException {
+        try (ImageConverterService.ImageDerivatives derivatives = imageConverterService.processDerivatives(file)) {
+            return uploadDerivatives(derivatives, folder);
+        } catch (ImageConversionException e) {
+            log.warn("⚠️ Производные не созданы для {} ({}), сохраняем оригинал", file.getOriginalFilename(), e.getMessage());
+
+            String publicId = generatePublicId(folder);
+            String fileName = publicId + ImageConverterService.ProcessedImage.getExtensionFromFileName(file.getOriginalFilename());
+            try (InputStream inputStream = file.getInputStream()) {
+                writeAtomically(fileName, inputStream);
+            }
+            return new StorageResult(url(fileName), publicId);
+        }
+    }
+
+    @Override
+    public StorageResult uploadDerivatives(ImageConverterService.ImageDerivatives derivatives, String folder) throws IOException {
+        String publicId = generatePublicId(folder);
+        String fullName = publicId + JPEG_EXTENSION;
+        String cardName = publicId + ImageVariants.CARD_SUFFIX + JPEG_EXTENSION;
+        String thumbName = publicId + ImageVariants.THUMB_SUFFIX + JPEG_EXTENSION;
+
+        try {
+            writeAtomically(fullName, derivatives.get(ImageConverterService.ImageVariant.FULL).getFile());
+            writeAtomically(cardName, derivatives.get(ImageConverterService.ImageVariant.CARD).getFile());
+            writeAtomically(thumbName, derivatives.get(ImageConverterService.ImageVariant.THUMB).getFile());
+        } catch (IOException e) {
+            // Неполный набор не оставляем
+            destroy(publicId);
+            throw e;
+        }
+
+        // WebP-версии не создаются: в JDK нет WebP-кодека
+        ImageVariants variants = ImageVariants.builder()
+                .thumbUrl(url(thumbName))
+                .cardUrl(url(cardName))
+                .build();
+
+        log.info("✅ Производные сохранены: {}", publicId);
+        return new StorageResult(url(fullName), publicId, variants);
+    }
+
+    @Override
+    public StorageResult uploadProcessedImage(ImageConverterService.ProcessedImage processedImage) throws IOException {
+        if (processedImage == null || processedImage.getFile() == null || processedImage.getSize() == 0) {
+            throw new IllegalArgumentException("Файл отсутствует или пуст");
+        }
+
+        String publicId = generatePublicId("categories");
+        String fileName = publicId + processedImage.getExtension();
+        writeAtomically(fileName, processedImage.getFile());
+        return new StorageResult(url(fileName), publicId);
+    }
+
+    /**
+     * Снимает ссылку на изображение; файлы удаляются только вместе с последней ссылкой
+     */
+    @Override
+    public boolean deleteImage(String publicId) {
+        if (publicId == null || publicId.isEmpty()) {
+            log.warn("⚠️ Попытка удаления изображения с пустым publicId");
+            return false;
+        }
+
+        if (!imageContentIndex.release(publicId)) {
+            log.info("🧬 Изображение {} используется другими сущностями, не удаляем", publicId);
+            return true;
+        }
+        return destroy(publicId);
+    }
+
+    /**
+     * Отсутствующее изображение считается удаленным; в ответе нет только тех, где удаление упало
+     */
+    @Override
+    public Set<String> destroyImages(List<String> publicIds) {
+        Set<String> destroyed = new HashSet<>();
+        for (String publicId : publicIds) {
+            try {
+                deleteFiles(publicId);
+                destroyed.add(publicId);
+            } catch (IOException e) {
+                log.warn("⚠️ Не удалось удалить изображение {}: {}", publicId, e.getMessage());
+            }
+        }
+        return destroyed;
+    }
+
+    /**
+     * Удаляет изображение и его производные: все файлы каталога с тем же идентификатором
+     */
+    private boolean destroy(String publicId) {
+        try {
+            boolean deleted = deleteFiles(publicId);
+            log.info("🗑️ Изображение {} {}", publicId, deleted ? "удалено" : "не найдено");
+            return deleted;
+        } catch (IOException e) {
+            log.error("❌ Ошибка при удалении изображения {}: {}", publicId, e.getMessage());
+            return false;
+        }
+    }
+
+    private boolean deleteFiles(String publicId) throws IOException {
+        Optional<Path> base = resolve(publicId);
+        if (base.isEmpty()) {
+            log.warn("⚠️ Некорректный идентификатор изображения: {}", publicId);
+            return false;
+        }
+
+        Path directory = base.get().getParent();
+        if (!Files.isDirectory(directory)) {
+            return false;
+        }
+
+        boolean deleted = false;
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, base.get().getFileName() + "*")) {
+            for (Path file : files) {
+                deleted |= Files.deleteIfExists(file);
+            }
+        }
+        return deleted;
+    }
+
+    @Override
+    public Map<String, Object> getImageInfo(String publicId) {
+        if (publicId == null || publicId.isEmpty()) {
+            throw new IllegalArgumentException("Public ID не может быть пустым");
+        }
+
+        Optional<Path> base = resolve(publicId);
+        if (base.isEmpty() || !Files.isDirectory(base.get().getParent())) {
+            return Collections.emptyMap();
+        }
+
+        Map<String, Object> info = new LinkedHashMap<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(base.get().getParent(),
+                base.get().getFileName() + "*")) {
+            for (Path file : files) {
+                info.put(root.relativize(file).toString(), Files.size(file));
+            }
+        } catch (IOException e) {
+            log.error("❌ Ошибка при получении информации об изображении {}: {}", publicId, e.getMessage());
+            return Collections.emptyMap();
+        }
+        return info;
+    }
+
+    /**
+     * Обход каталога ленивый: в памяти только текущая страница
+     */
+    @Override
+    public void listImages(String folder, int pageSize, Consumer<List<StoredObject>> pageConsumer) throws IOException {
+        Optional<Path> directory = resolve(folder).filter(Files::isDirectory);
+        if (directory.isEmpty()) {
+            return;
+        }
+
+        List<StoredObject> page = new ArrayList<>(pageSize);
+        Set<String> seen = new HashSet<>();
+        try (Stream<Path> files = Files.walk(directory.get())) {
+            Iterator<Path> iterator = files
+                    .filter(file -> !file.getFileName().toString().startsWith(TEMP_PREFIX))
+                    .filter(Files::isRegularFile)
+                    .iterator();
+
+            while (iterator.hasNext()) {
+                Path file = iterator.next();
+                String relative = root.relativize(file).toString().replace(File.separatorChar, '/');
+                int extension = relative.lastIndexOf('.');
+                String imageId = ImageVariants.baseId(extension > relative.lastIndexOf('/')
+                        ? relative.substring(0, extension)
+                        : relative);
+
+                if (seen.add(imageId)) {
+                    try {
+                        page.add(new StoredObject(imageId, Files.getLastModifiedTime(file).toInstant()));
+                    } catch (NoSuchFileException e) {
+                        // Удален во время обхода
+                        seen.remove(imageId);
+                    }
+                }
+                if (page.size() >= pageSize) {
+                    pageConsumer.accept(page);
+                    page = new ArrayList<>(pageSize);
+                    seen.clear();
+                }
+            }
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+
+        if (!page.isEmpty()) {
+            pageConsumer.accept(page);
+        }
+    }
+
+    /**
+     * Файл для раздачи по относительному пути из URL.
+     * Пути за пределами корня и незавершенные временные файлы не отдаются
+     */
+    public Optional<Path> resolveFile(String relativePath) {
+        return resolve(relativePath)
+                .filter(path -> !path.getFileName().toString().startsWith(TEMP_PREFIX))
+                .filter(Files::isRegularFile);
+    }
+
+    private Optional<Path> resolve(String relativePath) {
+        String trimmed = relativePath.startsWith("/") ? relativePath.substring(1) : relativePath;
+        if (trimmed.isEmpty()) {
+            return Optional.empty();
+        }
+
+        Path path = root.resolve(trimmed).normalize();
+        return path.startsWith(root) && !path.equals(root) ? Optional.of(path) : Optional.empty();
+    }
+
+    private void writeAtomically(String relativeName, Path source) throws IOException {
+        try (InputStream inputStream = Files.newInputStream(source)) {
+            writeAtomically(relativeName, inputStream);
+        }
+    }
+
+    /**
+     * Пишет во временный файл в целевом каталоге, сбрасывает на диск и переименовывает
+     */
+    private void writeAtomically(String relativeName, InputStream content) throws IOException {
+        Path target = resolve(relativeName)
+                .orElseThrow(() -> new IOException("Invalid storage path: " + relativeName));
+        Files.createDirectories(target.getParent());
+
+        Path temp = Files.createTempFile(target.getParent(), TEMP_PREFIX, ".tmp");
+        try {
+            Files.copy(content, temp, StandardCopyOption.REPLACE_EXISTING);
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                channel.force(true);
+            }
+
+            try {
+                Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+            } catch (AtomicMoveNotSupportedException e) {
+                Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+            }
+        } catch (IOException e) {
+            Files.deleteIfExists(temp);
+            throw e;
+        }
+    }
+
+    /**
+     * folder/ab/cd/KEY - два уровня шардов по 256 каталогов.
+     * Старшие символы ключа - время, поэтому шард берется из перемешанных битов идентификатора,
+     * иначе все свежие загрузки попадали бы в один каталог
+     */
+    private String generatePublicId(String folder) {
+        long id = storageIdGenerator.nextId();
+        long mixed = id * 0x9E3779B97F4A7C15L;
+        return folder + "/" + HEX.toHexDigits((byte) (mixed >>> 56)) + "/" + HEX.toHexDigits((byte) (mixed >>> 48))
+                + "/" + StorageIdGenerator.encode(id);
+    }
+
+    private String url(String relativeName) {
+        return publicBaseUrl + "/" + relativeName;
+    }
+}
@@ -1,8 +1,11 @@
 package com.example.deliveryproductservice.service;
 
+import com.example.deliveryproductservice.config.CircuitBreaker;
+import com.example.deliveryproductservice.config.OutboundHttpClientFactory;
 import com.example.deliveryproductservice.dto.GeoLocation.*;
 import com.example.deliveryproductservice.model.Address;
 import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -13,8 +16,23 @@ import java.math.BigDecimal;
 import java.math.RoundingMode;
 import java.net.URLEncoder;
 import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
 
 @Service
@@ -25,20 +43,79 @@ public class MapboxGeocodingService implements GeocodingService {
     @Value("${mapbox.access.token:}")
     private String mapboxToken;
 
-    private final RestTemplate restTemplate;
-    private static final String MAPBOX_GEOCODING_URL = "https://api.mapbox.com/geocoding/v5/mapbox.places";
+    // Проверка токена тестовым запросом при старте (каждый рестарт тратит запрос к API)
+    @Value("${mapbox.validate-token-on-startup:false}")
+    private boolean validateTokenOnStartup;
 
-    // Флаг для определения доступности геокодирования
-    private boolean geocodingAvailable = false;
+    @Value("${mapbox.geocoding.url:https://api.mapbox.com/geocoding/v5/mapbox.places}")
+    private String geocodingUrl;
 
-    public MapboxGeocodingService() {
-        this.restTemplate = new RestTemplate();
-    }
+    // Лимит запросов к Mapbox (token bucket): общий для одиночных и пакетных запросов
+    @Value("${mapbox.rate-limit.requests-per-second:10}")
+    private double requestsPerSecond;
+
+    @Value("${mapbox.rate-limit.burst:10}")
+    private int rateLimitBurst;
+
+    // Дольше этого токен не ждем - запрос сразу уходит в fallback
+    @Value("${mapbox.rate-limit.max-wait:1s}")
+    private Duration rateLimitMaxWait;
+
+    // Сколько адресов пакета геокодируется параллельно
+    @Value("${geocoding.batch.concurrency:4}")
+    private int batchConcurrency;
+
+    // Сколько адресов ждет свободного потока; сверх этого адрес геокодируется в вызывающем потоке
+    @Value("${geocoding.batch.queue-capacity:100}")
+    private int batchQueueCapacity;
+
+    @Value("${mapbox.http.connect-timeout:2s}")
+    private Duration connectTimeout;
+
+    @Value("${mapbox.http.read-timeout:5s}")
+    private Duration readTimeout;
+
+    // После N ошибок подряд геокодирование отключается, через open-duration - пробный запрос
+    @Value("${mapbox.circuit-breaker.failure-threshold:5}")
+    private int circuitFailureThreshold;
+
+    @Value("${mapbox.circuit-breaker.open-duration:30s}")
+    private Duration circuitOpenDuration;
+
+    private final GeocodingCache geocodingCache;
+    private final OfflineGazetteer offlineGazetteer;
+    private final OutboundHttpClientFactory outboundHttpClientFactory;
+
+    // Незавершенные запросы по нормализованному адресу: параллельные вызовы ждут один ответ Mapbox
+    private final Map<String, CompletableFuture<GeoLocation>> inFlight = new ConcurrentHashMap<>();
+
+    private RestTemplate restTemplate;
+    private CircuitBreaker circuitBreaker;
+    private ScheduledExecutorService probeScheduler;
+    private TokenBucketRateLimiter rateLimiter;
+    private ThreadPoolExecutor batchExecutor;
+
+    private static final BigDecimal DEFAULT_LATITUDE = new BigDecimal("50.0000");
+    private static final BigDecimal DEFAULT_LONGITUDE = new BigDecimal("20.0000");
+
+    // Флаг для определения доступности геокодирования (сбрасывается circuit breaker'ом)
+    private volatile boolean geocodingAvailable = false;
 
     @PostConstruct
     public void initializeMapboxService() {
         log.info("🗺️ Initializing Mapbox Geocoding Service...");
 
+        restTemplate = outboundHttpClientFactory.create("mapbox", connectTimeout, readTimeout);
+        circuitBreaker = outboundHttpClientFactory.circuitBreaker(
+                "mapbox", circuitFailureThreshold, circuitOpenDuration, this::onCircuitStateChange);
+        probeScheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "mapbox-probe");
+            thread.setDaemon(true);
+            return thread;
+        });
+        rateLimiter = new TokenBucketRateLimiter(requestsPerSecond, rateLimitBurst);
+        batchExecutor = createBatchExecutor(batchConcurrency, batchQueueCapacity);
+
         // Проверяем токен
         if (mapboxToken == null || mapboxToken.trim().isEmpty()) {
             log.warn("⚠️ Mapbox access token is not configured!");
@@ -53,7 +130,11 @@ public class MapboxGeocodingService implements GeocodingService {
 
             // Проверяем валидность токена
             try {
-                validateToken();
+                if (validateTokenOnStartup) {
+                    validateToken();
+                } else {
+                    log.info("🔑 Startup token validation skipped (mapbox.validate-token-on-startup=false)");
+                }
                 geocodingAvailable = true;
                 log.info("✅ Mapbox Geocoding Service initialized successfully");
                 log.info("🌍 Geocoding is ENABLED");
@@ -69,6 +150,63 @@ public class MapboxGeocodingService implements GeocodingService {
         log.info("   • Token configured: {}", mapboxToken != null && !mapboxToken.trim().isEmpty());
         log.info("   • Geocoding available: {}", geocodingAvailable);
         log.info("   • Fallback mode: {}", !geocodingAvailable);
+        log.info("   • Rate limit: {} req/s (burst {})", requestsPerSecond, rateLimitBurst);
+    }
+
+    private ThreadPoolExecutor createBatchExecutor(int concurrency, int queueCapacity) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        // Очередь ограничена: если она полна или пул остановлен - адрес геокодируется в вызывающем потоке.
+        // Вызывающий все равно ждет весь пакет, поэтому это только притормаживает его, результат не теряется
+        return new ThreadPoolExecutor(
+                concurrency, concurrency,
+                60L, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(queueCapacity),
+                runnable -> {
+                    Thread thread = new Thread(runnable, "geocoding-batch-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                (task, executor) -> task.run());
+    }
+
+    /**
+     * OPEN - геокодирование выключается и планируется пробный запрос;
+     * CLOSED (проба успешна) - геокодирование снова включается
+     */
+    private void onCircuitStateChange(CircuitBreaker.State state) {
+        if (state == CircuitBreaker.State.OPEN) {
+            geocodingAvailable = false;
+            log.warn("⚠️ Mapbox is failing, geocoding DISABLED - probing again in {}", circuitOpenDuration);
+            probeScheduler.schedule(this::probeMapbox, circuitOpenDuration.toNanos(), TimeUnit.NANOSECONDS);
+        } else if (state == CircuitBreaker.State.CLOSED) {
+            geocodingAvailable = true;
+            log.info("🌍 Mapbox recovered, geocoding ENABLED");
+        }
+    }
+
+    private void probeMapbox() {
+        try {
+            acquirePermit();
+            circuitBreaker.execute(() -> {
+                validateToken();
+                return null;
+            });
+        } catch (CircuitBreaker.CallNotPermittedException e) {
+            // Пробный запрос уже выполняет другой поток - его результат и решит состояние
+            log.debug("Mapbox probe skipped: {}", e.getMessage());
+        } catch (Exception e) {
+            log.warn("⚠️ Mapbox probe failed: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
+        if (probeScheduler != null) {
+            probeScheduler.shutdownNow();
+        }
     }
 
     /**
@@ -82,7 +220,7 @@ public class MapboxGeocodingService implements GeocodingService {
             String testAddress = "New York";
             String encodedAddress = URLEncoder.encode(testAddress, StandardCharsets.UTF_8);
             String url = String.format("%s/%s.json?access_token=%s&limit=1",
-                    MAPBOX_GEOCODING_URL, encodedAddress, mapboxToken);
+                    geocodingUrl, encodedAddress, mapboxToken);
 
             MapboxGeocodingResponse response = restTemplate.getForObject(url, MapboxGeocodingResponse.class);
 
@@ -112,12 +250,7 @@ public class MapboxGeocodingService implements GeocodingService {
 
 
     public Address createAddressWithCoordinates(CreateAddressRequest request) {
-        Address.AddressBuilder builder = Address.builder()
-                .street(request.getStreet())
-                .city(request.getCity())
-                .region(request.getRegion())
-                .country(request.getCountry())
-                .postalCode(request.getPostalCode());
+        Address.AddressBuilder builder = addressBuilder(request);
 
         // Если координаты переданы напрямую
         if (request.getLatitude() != null && request.getLongitude() != null) {
@@ -126,12 +259,12 @@ public class MapboxGeocodingService implements GeocodingService {
             log.info("📍 Using provided coordinates: {}, {}", request.getLatitude(), request.getLongitude());
         }
         // Пробуем геокодирование если доступно
-        else if (geocodingAvailable && (request.getAutoGeocode() == null || request.getAutoGeocode())) {
+        else if (needsGeocoding(request)) {
             try {
                 String address = getFormattedAddress(request);
                 log.info("🌍 Geocoding address: {}", address);
 
-                GeoLocation coordinates = geocodeAddress(address);
+                GeoLocation coordinates = geocodeAddressCached(address);
                 builder.latitude(coordinates.getLatitude())
                         .longitude(coordinates.getLongitude())
                         .fullAddress(address);
@@ -151,6 +284,86 @@ public class MapboxGeocodingService implements GeocodingService {
         return builder.build();
     }
 
+    /**
+     * Пакетное создание адресов (например, при подключении сети магазинов).
+     * Одинаковые адреса (после нормализации) геокодируются один раз, запросы к Mapbox идут
+     * параллельно в пределах token bucket, а ошибка одного адреса заменяется
+     * fallback-координатами только для него.
+     *
+     * @return адреса в том же порядке, что и запросы
+     */
+    @Override
+    public List<Address> createAddressesWithCoordinates(List<CreateAddressRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return Collections.emptyList();
+        }
+
+        // Один lookup на уникальный адрес. Решение "геокодировать или нет" принимается здесь один раз:
+        // geocodingAvailable может измениться (circuit breaker), пока пакет обрабатывается
+        Map<String, CompletableFuture<GeoLocation>> lookups = new HashMap<>();
+        List<CompletableFuture<GeoLocation>> lookupPerRequest = new ArrayList<>(requests.size());
+        for (CreateAddressRequest request : requests) {
+            CompletableFuture<GeoLocation> lookup = null;
+            if (needsGeocoding(request)) {
+                String address = getFormattedAddress(request);
+                lookup = lookups.computeIfAbsent(AddressNormalizer.normalize(address),
+                        key -> geocodeCoalesced(address, batchExecutor));
+            }
+            lookupPerRequest.add(lookup);
+        }
+        log.info("🌍 Batch geocoding: {} addresses, {} unique lookups", requests.size(), lookups.size());
+
+        List<Address> addresses = new ArrayList<>(requests.size());
+        for (int i = 0; i < requests.size(); i++) {
+            CreateAddressRequest request = requests.get(i);
+            CompletableFuture<GeoLocation> lookup = lookupPerRequest.get(i);
+            if (lookup == null) {
+                // Координаты переданы явно или геокодирование выключено - запросов к Mapbox нет
+                addresses.add(createAddressWithoutGeocoding(request));
+                continue;
+            }
+
+            String address = getFormattedAddress(request);
+            try {
+                GeoLocation coordinates = lookup.join();
+                addresses.add(addressBuilder(request)
+                        .latitude(coordinates.getLatitude())
+                        .longitude(coordinates.getLongitude())
+                        .fullAddress(address)
+                        .build());
+            } catch (CompletionException e) {
+                log.warn("⚠️ Geocoding failed for '{}': {}, using fallback", address, e.getCause().getMessage());
+                addresses.add(createAddressWithFallbackCoordinates(addressBuilder(request), request));
+            }
+        }
+        return addresses;
+    }
+
+    private Address createAddressWithoutGeocoding(CreateAddressRequest request) {
+        if (request.getLatitude() != null && request.getLongitude() != null) {
+            return addressBuilder(request)
+                    .latitude(request.getLatitude())
+                    .longitude(request.getLongitude())
+                    .build();
+        }
+        return createAddressWithFallbackCoordinates(addressBuilder(request), request);
+    }
+
+    private boolean needsGeocoding(CreateAddressRequest request) {
+        boolean coordinatesProvided = request.getLatitude() != null && request.getLongitude() != null;
+        return !coordinatesProvided && geocodingAvailable
+                && (request.getAutoGeocode() == null || request.getAutoGeocode());
+    }
+
+    private Address.AddressBuilder addressBuilder(CreateAddressRequest request) {
+        return Address.builder()
+                .street(request.getStreet())
+                .city(request.getCity())
+                .region(request.getRegion())
+                .country(request.getCountry())
+                .postalCode(request.getPostalCode());
+    }
+
     /**
      * Создает адрес с fallback координатами
      */
@@ -168,81 +381,129 @@ public class MapboxGeocodingService implements GeocodingService {
     }
 
     /**
-     * Получает примерные координаты по названию города
+     * Получает примерные координаты по названию города из офлайн-справочника
      */
     private BigDecimal[] getFallbackCoordinatesByCity(String city, String country) {
-        if (city == null) city = "";
-        if (country == null) country = "";
+        Optional<OfflineGazetteer.Coordinates> coordinates = offlineGazetteer.resolve(city, country);
 
-        String key = (city + ", " + country).toLowerCase();
-
-        // Украина
-        if (key.contains("харьков") || key.contains("kharkiv") || key.contains("kharkov")) {
-            return new BigDecimal[]{new BigDecimal("49.9935"), new BigDecimal("36.2304")};
-        }
-        if (key.contains("киев") || key.contains("kiev") || key.contains("kyiv")) {
-            return new BigDecimal[]{new BigDecimal("50.4501"), new BigDecimal("30.5234")};
-        }
-        if (key.contains("одесса") || key.contains("odesa") || key.contains("odessa")) {
-            return new BigDecimal[]{new BigDecimal("46.4825"), new BigDecimal("30.7233")};
+        if (coordinates.isPresent()) {
+            return new BigDecimal[]{
+                    BigDecimal.valueOf(coordinates.get().latitude()).setScale(4, RoundingMode.HALF_UP),
+                    BigDecimal.valueOf(coordinates.get().longitude()).setScale(4, RoundingMode.HALF_UP)
+            };
         }
 
-        // Россия
-        if (key.contains("москва") || key.contains("moscow")) {
-            return new BigDecimal[]{new BigDecimal("55.7558"), new BigDecimal("37.6176")};
-        }
-        if (key.contains("петербург") || key.contains("spb") || key.contains("petersburg")) {
-            return new BigDecimal[]{new BigDecimal("59.9311"), new BigDecimal("30.3609")};
+        // По умолчанию - центр Европы
+        log.debug("🌍 Using default European coordinates for unknown city: {} ({})", city, country);
+        return new BigDecimal[]{DEFAULT_LATITUDE, DEFAULT_LONGITUDE};
+    }
+
+    /**
+     * Геокодирование через кэш: повторный адрес (в т.ч. записанный иначе - "ул." / "улица")
+     * обслуживается из памяти или таблицы geocode_cache без запроса к Mapbox.
+     * "Не найден" тоже кэшируется, ошибки сети - нет.
+     * Параллельные вызовы для одного адреса объединяются в один запрос.
+     */
+    public GeoLocation geocodeAddressCached(String address) {
+        try {
+            return geocodeCoalesced(address, Runnable::run).join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException runtimeException
+                    ? runtimeException
+                    : new RuntimeException(e.getCause());
         }
+    }
 
-        // США
-        if (key.contains("new york")) {
-            return new BigDecimal[]{new BigDecimal("40.7128"), new BigDecimal("-74.0060")};
+    /**
+     * Возвращает уже выполняющийся запрос для этого адреса или запускает новый на executor
+     */
+    private CompletableFuture<GeoLocation> geocodeCoalesced(String address, Executor executor) {
+        String key = AddressNormalizer.normalize(address);
+        CompletableFuture<GeoLocation> created = new CompletableFuture<>();
+        CompletableFuture<GeoLocation> existing = inFlight.putIfAbsent(key, created);
+        if (existing != null) {
+            log.debug("🔗 Joining in-flight geocoding request for '{}'", key);
+            return existing;
         }
-        if (key.contains("los angeles")) {
-            return new BigDecimal[]{new BigDecimal("34.0522"), new BigDecimal("-118.2437")};
+
+        executor.execute(() -> {
+            try {
+                created.complete(lookupCached(address));
+            } catch (Throwable e) {
+                created.completeExceptionally(e);
+            } finally {
+                inFlight.remove(key, created);
+            }
+        });
+        return created;
+    }
+
+    private GeoLocation lookupCached(String address) {
+        Optional<GeocodingCache.CachedGeocode> cached = geocodingCache.get(address);
+        if (cached.isPresent()) {
+            if (!cached.get().resolved()) {
+                throw new RuntimeException("No results found for address (cached): " + address);
+            }
+            log.debug("🗃️ Geocode cache hit for '{}'", address);
+            return cached.get().toGeoLocation();
         }
 
-        // Германия
-        if (key.contains("berlin")) {
-            return new BigDecimal[]{new BigDecimal("52.5200"), new BigDecimal("13.4050")};
+        GeoLocation location = requestGeocode(address);
+        if (location == null) {
+            geocodingCache.putUnresolved(address);
+            throw new RuntimeException("No results found for address: " + address);
         }
 
-        // По умолчанию - центр Европы
-        log.debug("🌍 Using default European coordinates for unknown city: {}", city);
-        return new BigDecimal[]{new BigDecimal("50.0000"), new BigDecimal("20.0000")};
+        geocodingCache.putResolved(address, location);
+        return location;
     }
 
     /**
      * Геокодирование адреса через Mapbox Geocoding API
      */
     public GeoLocation geocodeAddress(String address) {
+        GeoLocation location = requestGeocode(address);
+        if (location == null) {
+            throw new RuntimeException("No results found for address: " + address);
+        }
+        return location;
+    }
+
+    /**
+     * Запрос к Mapbox. Возвращает null, если адрес не найден;
+     * исключение - только при ошибке запроса
+     */
+    private GeoLocation requestGeocode(String address) {
+        MapboxGeocodingResponse response;
         try {
             String encodedAddress = URLEncoder.encode(address, StandardCharsets.UTF_8);
             String url = String.format("%s/%s.json?access_token=%s&limit=1&types=address,poi",
-                    MAPBOX_GEOCODING_URL, encodedAddress, mapboxToken);
+                    geocodingUrl, encodedAddress, mapboxToken);
 
             log.debug("Geocoding request URL: {}", url.replace(mapboxToken, "***"));
 
-            MapboxGeocodingResponse response = restTemplate.getForObject(url, MapboxGeocodingResponse.class);
-
-            if (response != null && response.getFeatures() != null && !response.getFeatures().isEmpty()) {
-                MapboxFeature feature = response.getFeatures().get(0);
-                double[] coordinates = feature.getGeometry().getCoordinates();
-
-                // Mapbox возвращает [longitude, latitude]
-                BigDecimal longitude = BigDecimal.valueOf(coordinates[0]).setScale(8, RoundingMode.HALF_UP);
-                BigDecimal latitude = BigDecimal.valueOf(coordinates[1]).setScale(8, RoundingMode.HALF_UP);
-
-                log.info("Successfully geocoded '{}' to [{}, {}]", address, latitude, longitude);
-                return new GeoLocation(latitude, longitude);
-            } else {
-                throw new RuntimeException("No results found for address: " + address);
-            }
+            acquirePermit();
+            response = circuitBreaker.execute(() -> restTemplate.getForObject(url, MapboxGeocodingResponse.class));
+        } catch (CircuitBreaker.CallNotPermittedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("Error during Mapbox geocoding for address: {}", address, e);
             throw new RuntimeException("Mapbox geocoding service error: " + e.getMessage());
         }
+
+        if (response == null || response.getFeatures() == null || response.getFeatures().isEmpty()) {
+            return null;
+        }
+
+        MapboxFeature feature = response.getFeatures().get(0);
+        double[] coordinates = feature.getGeometry().getCoordinates();
+
+        // Mapbox возвращает [longitude, latitude]
+        BigDecimal longitude = BigDecimal.valueOf(coordinates[0]).setScale(8, RoundingMode.HALF_UP);
+        BigDecimal latitude = BigDecimal.valueOf(coordinates[1]).setScale(8, RoundingMode.HALF_UP);
+
+        log.info("Successfully geocoded '{}' to [{}, {}]", address, latitude, longitude);
+        return new GeoLocation(latitude, longitude);
     }
 
     /**
@@ -251,9 +512,11 @@ public class MapboxGeocodingService implements GeocodingService {
     public String reverseGeocode(BigDecimal longitude, BigDecimal latitude) {
         try {
             String url = String.format("%s/%s,%s.json?access_token=%s&types=address",
-                    MAPBOX_GEOCODING_URL, longitude, latitude, mapboxToken);
+                    geocodingUrl, longitude, latitude, mapboxToken);
 
-            MapboxGeocodingResponse response = restTemplate.getForObject(url, MapboxGeocodingResponse.class);
+            acquirePermit();
+            MapboxGeocodingResponse response = circuitBreaker.execute(
+                    () -> restTemplate.getForObject(url, MapboxGeocodingResponse.class));
 
             if (response != null && response.getFeatures() != null && !response.getFeatures().isEmpty()) {
                 return response.getFeatures().get(0).getPlace_name();
@@ -272,10 +535,12 @@ public class MapboxGeocodingService implements GeocodingService {
     public List<MapboxPlace> searchNearbyPlaces(BigDecimal longitude, BigDecimal latitude, String query, int limit) {
         try {
             String url = String.format("%s/%s.json?access_token=%s&proximity=%s,%s&limit=%d&types=poi",
-                    MAPBOX_GEOCODING_URL, URLEncoder.encode(query, StandardCharsets.UTF_8),
+                    geocodingUrl, URLEncoder.encode(query, StandardCharsets.UTF_8),
                     mapboxToken, longitude, latitude, limit);
 
-            MapboxGeocodingResponse response = restTemplate.getForObject(url, MapboxGeocodingResponse.class);
+            acquirePermit();
+            MapboxGeocodingResponse response = circuitBreaker.execute(
+                    () -> restTemplate.getForObject(url, MapboxGeocodingResponse.class));
 
             if (response != null && response.getFeatures() != null) {
                 return response.getFeatures().stream()
@@ -289,6 +554,24 @@ public class MapboxGeocodingService implements GeocodingService {
         }
     }
 
+    /**
+     * Пропускает запрос к Mapbox: сначала circuit breaker (открытая цепь отклоняет сразу, не занимая
+     * очередь лимита), затем токен лимита с ожиданием не дольше rate-limit.max-wait
+     */
+    private void acquirePermit() {
+        if (!circuitBreaker.allowRequest()) {
+            throw new CircuitBreaker.CallNotPermittedException(circuitBreaker.getName());
+        }
+        try {
+            if (!rateLimiter.tryAcquire(rateLimitMaxWait)) {
+                throw new RuntimeException("Mapbox rate limit exceeded, no permit within " + rateLimitMaxWait);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted while waiting for Mapbox rate limit", e);
+        }
+    }
+
     private MapboxPlace convertToMapboxPlace(MapboxFeature feature) {
         double[] coordinates = feature.getGeometry().getCoordinates();
         return MapboxPlace.builder()
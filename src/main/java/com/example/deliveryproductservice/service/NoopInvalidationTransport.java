@@ -0,0 +1,26 @@
+package com.example.deliveryproductservice.service;
+
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.function.Consumer;
+
+/**
+ * 📡 Транспорт для одиночного экземпляра: сообщения никуда не уходят
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "none")
+public class NoopInvalidationTransport implements CacheInvalidationTransport {
+
+    @Override
+    public void publish(String message) {
+    }
+
+    @Override
+    public void subscribe(Consumer<String> onMessage, Runnable onReconnect) {
+    }
+
+    @Override
+    public void close() {
+    }
+}
@@ -0,0 +1,463 @@
+package com.example.deliveryproductservice.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.io.Resource;
+import org.springframework.core.io.ResourceLoader;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.text.Normalizer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * 📖 Офлайн-справочник городов для fallback-координат без обращения к сети.
+ * <p>
+ * При старте исходный список (bundled TSV или выгрузка GeoNames) превращается в компактный
+ * бинарный индекс: записи фиксированной длины, отсортированные по ключу. Индекс отображается
+ * в память (memory-mapped), поиск - бинарный, O(log n), без аллокаций на сравнение.
+ * Ключ - транслитерированное в латиницу имя без диакритики и пунктуации, поэтому
+ * "Харьков", "Kharkov" и "Kharkiv" (алиасы из справочника) сходятся к одной записи.
+ * Префиксы населенных пунктов ("г.", "м.", "смт", "пгт", "с.") перед поиском отбрасываются,
+ * при совпадении имени в нескольких странах предпочитается страна из запроса.
+ * <p>
+ * Встроенный cities.tsv - около 150 крупных городов; для покрытия в тысячи городов
+ * gazetteer.source указывает на выгрузку GeoNames (например, cities15000.txt).
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OfflineGazetteer {
+
+    static final int KEY_LENGTH = 32;
+    private static final int COUNTRY_LENGTH = 2;
+    private static final int RECORD_SIZE = KEY_LENGTH + Float.BYTES * 2 + Integer.BYTES + COUNTRY_LENGTH;
+    private static final int HEADER_SIZE = Integer.BYTES * 2;
+    private static final int MAGIC = 0x47415A32; // "GAZ2"
+
+    // Минимальная длина префикса и ограничение просмотра совпадений по префиксу
+    private static final int MIN_PREFIX_LENGTH = 3;
+    private static final int PREFIX_SCAN_LIMIT = 64;
+
+    // "г. Харьков", "м.Київ", "смт Ворзель", "city of Chicago" - префикс не входит в имя города
+    private static final Pattern SETTLEMENT_PREFIX = Pattern.compile(
+            "^(?:(?:г|гор|город|м|міс|місто|с|сел|село|селище|смт|пгт|пос|поселок|посёлок|city\\s+of)\\.?\\s+" +
+                    "|(?:г|гор|м|міс|с|сел|смт|пгт|пос)\\.)+",
+            Pattern.CASE_INSENSITIVE | Pattern.UNICODE_CASE);
+
+    private static final String[] CYRILLIC_TO_LATIN = buildTransliteration();
+
+    // Названия стран → ISO-код (ключи через keyOf, поэтому транслитерация та же, что у городов)
+    private static final Map<String, String> COUNTRY_CODES = buildCountryCodes();
+
+    private final ResourceLoader resourceLoader;
+
+    @Value("${gazetteer.source:classpath:gazetteer/cities.tsv}")
+    private String source;
+
+    @Value("${gazetteer.index-path:${java.io.tmpdir}/product-service-gazetteer.bin}")
+    private String indexPath;
+
+    private volatile ByteBuffer index;
+    private volatile int size;
+
+    @PostConstruct
+    public void load() {
+        try {
+            Path path = Paths.get(indexPath);
+            int count = buildIndexFile(resourceLoader.getResource(source), path);
+
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                mapped.order(ByteOrder.BIG_ENDIAN);
+                if (mapped.getInt(0) != MAGIC) {
+                    throw new IOException("Invalid gazetteer index header");
+                }
+                this.size = mapped.getInt(Integer.BYTES);
+                this.index = mapped;
+            }
+
+            log.info("📖 Offline gazetteer loaded: {} keys ({} source entries) from {}", size, count, source);
+        } catch (Exception e) {
+            // Без справочника остаются координаты по умолчанию
+            log.error("❌ Failed to load offline gazetteer from {}: {}", source, e.getMessage(), e);
+            this.index = null;
+            this.size = 0;
+        }
+    }
+
+    public Optional<Coordinates> resolve(String place) {
+        return resolve(place, null);
+    }
+
+    /**
+     * Координаты города: точное совпадение, затем самый крупный город с таким префиксом.
+     * Для строк вида "Kharkiv, Ukraine" или "Україна, м. Харків" пробуется также каждая часть между запятыми.
+     * Страна (название или ISO-код) выбирает между одноименными городами, но не отсекает остальные.
+     */
+    public Optional<Coordinates> resolve(String place, String country) {
+        ByteBuffer buffer = index;
+        if (buffer == null || place == null || place.isBlank()) {
+            return Optional.empty();
+        }
+
+        String countryCode = countryCodeOf(country);
+        Optional<Coordinates> result = resolveKey(buffer, keyOf(stripSettlementPrefix(place)), countryCode);
+        if (result.isEmpty() && place.indexOf(',') > 0) {
+            for (String part : place.split(",")) {
+                result = resolveKey(buffer, keyOf(stripSettlementPrefix(part)), countryCode);
+                if (result.isPresent()) {
+                    break;
+                }
+            }
+        }
+        return result;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private Optional<Coordinates> resolveKey(ByteBuffer buffer, byte[] key, String countryCode) {
+        if (key.length == 0) {
+            return Optional.empty();
+        }
+
+        int position = lowerBound(buffer, key);
+        boolean exact = position < size && compare(buffer, position, key, KEY_LENGTH) == 0;
+        if (!exact && key.length < MIN_PREFIX_LENGTH) {
+            return Optional.empty();
+        }
+
+        // Точный ключ или префикс: город из запрошенной страны, иначе с наибольшим населением
+        int length = exact ? KEY_LENGTH : key.length;
+        int best = -1;
+        int bestPopulation = -1;
+        boolean bestInCountry = false;
+        for (int i = position; i < size && i < position + PREFIX_SCAN_LIMIT; i++) {
+            if (compare(buffer, i, key, length) != 0) {
+                break;
+            }
+            int offset = recordOffset(i) + KEY_LENGTH + Float.BYTES * 2;
+            int population = buffer.getInt(offset);
+            boolean inCountry = countryCode != null
+                    && buffer.get(offset + Integer.BYTES) == countryCode.charAt(0)
+                    && buffer.get(offset + Integer.BYTES + 1) == countryCode.charAt(1);
+            if ((inCountry && !bestInCountry) || (inCountry == bestInCountry && population > bestPopulation)) {
+                best = i;
+                bestPopulation = population;
+                bestInCountry = inCountry;
+            }
+        }
+        return best >= 0 ? Optional.of(coordinatesAt(buffer, best)) : Optional.empty();
+    }
+
+    /**
+     * Первая запись с ключом >= key (бинарный поиск)
+     */
+    private int lowerBound(ByteBuffer buffer, byte[] key) {
+        int low = 0;
+        int high = size;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compare(buffer, mid, key, KEY_LENGTH) < 0) {
+                low = mid + 1;
+            } else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Сравнивает первые length байт ключа записи с key (key дополняется нулями)
+     */
+    private static int compare(ByteBuffer buffer, int record, byte[] key, int length) {
+        int offset = recordOffset(record);
+        for (int i = 0; i < length; i++) {
+            int stored = buffer.get(offset + i) & 0xFF;
+            int wanted = i < key.length ? key[i] & 0xFF : 0;
+            if (stored != wanted) {
+                return stored - wanted;
+            }
+        }
+        return 0;
+    }
+
+    private static Coordinates coordinatesAt(ByteBuffer buffer, int record) {
+        int offset = recordOffset(record) + KEY_LENGTH;
+        return new Coordinates(buffer.getFloat(offset), buffer.getFloat(offset + Float.BYTES));
+    }
+
+    private static int recordOffset(int record) {
+        return HEADER_SIZE + record * RECORD_SIZE;
+    }
+
+    // ================================
+    // 🏗️ ПОСТРОЕНИЕ ИНДЕКСА
+    // ================================
+
+    /**
+     * Читает исходный справочник, сортирует ключи и атомарно записывает бинарный индекс.
+     * Поддерживаются два формата строк (разделитель - табуляция):
+     * <ul>
+     *     <li>name, lat, lon, country, population, aliases через запятую (bundled cities.tsv)</li>
+     *     <li>выгрузка GeoNames (cities500/1000/5000/15000.txt, 19 колонок)</li>
+     * </ul>
+     */
+    static int buildIndexFile(Resource resource, Path target) throws IOException {
+        List<Entry> entries = new ArrayList<>();
+        int sourceEntries = 0;
+
+        try (BufferedReader reader = new BufferedReader(
+                new InputStreamReader(resource.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                if (line.isBlank() || line.startsWith("#")) {
+                    continue;
+                }
+                if (parseLine(line.split("\t"), entries)) {
+                    sourceEntries++;
+                }
+            }
+        }
+
+        entries.sort(Comparator.<Entry, byte[]>comparing(Entry::key, Arrays::compareUnsigned)
+                .thenComparing(Entry::population, Comparator.reverseOrder()));
+
+        // Ключ + страна - одна запись (самый крупный город с этим именем в стране)
+        List<Entry> unique = new ArrayList<>(entries.size());
+        Set<String> seenCountries = new HashSet<>();
+        for (Entry entry : entries) {
+            if (unique.isEmpty() || !Arrays.equals(unique.get(unique.size() - 1).key(), entry.key())) {
+                seenCountries.clear();
+            }
+            if (seenCountries.add(entry.country())) {
+                unique.add(entry);
+            }
+        }
+
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + unique.size() * RECORD_SIZE).order(ByteOrder.BIG_ENDIAN);
+        buffer.putInt(MAGIC).putInt(unique.size());
+        for (Entry entry : unique) {
+            buffer.put(entry.key());
+            buffer.position(buffer.position() + KEY_LENGTH - entry.key().length);
+            buffer.putFloat(entry.latitude()).putFloat(entry.longitude()).putInt(entry.population());
+            buffer.put(entry.country().getBytes(StandardCharsets.US_ASCII));
+        }
+
+        Path parent = target.toAbsolutePath().getParent();
+        if (parent != null) {
+            Files.createDirectories(parent);
+        }
+        Path temp = Files.createTempFile(parent, "gazetteer", ".tmp");
+        Files.write(temp, buffer.array());
+        Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+
+        return sourceEntries;
+    }
+
+    private static boolean parseLine(String[] columns, List<Entry> entries) {
+        try {
+            List<String> names = new ArrayList<>();
+            float latitude;
+            float longitude;
+            int population;
+            String country;
+
+            if (columns.length >= 15) {
+                // GeoNames: 1 name, 2 asciiname, 3 alternatenames, 4 lat, 5 lon, 8 country, 14 population
+                names.add(columns[1]);
+                names.add(columns[2]);
+                names.addAll(Arrays.asList(columns[3].split(",")));
+                latitude = Float.parseFloat(columns[4]);
+                longitude = Float.parseFloat(columns[5]);
+                population = columns[14].isEmpty() ? 0 : (int) Math.min(Integer.MAX_VALUE, Long.parseLong(columns[14]));
+                country = columns[8];
+            } else if (columns.length >= 3) {
+                names.add(columns[0]);
+                latitude = Float.parseFloat(columns[1]);
+                longitude = Float.parseFloat(columns[2]);
+                country = columns.length > 3 ? columns[3] : "";
+                population = columns.length > 4 && !columns[4].isEmpty() ? Integer.parseInt(columns[4]) : 0;
+                if (columns.length > 5) {
+                    names.addAll(Arrays.asList(columns[5].split(",")));
+                }
+            } else {
+                return false;
+            }
+
+            String countryCode = country.length() == COUNTRY_LENGTH ? country.toUpperCase(Locale.ROOT) : "\0\0";
+            for (String name : names) {
+                byte[] key = keyOf(name);
+                if (key.length > 0) {
+                    entries.add(new Entry(key, latitude, longitude, population, countryCode));
+                }
+            }
+            return true;
+        } catch (NumberFormatException e) {
+            log.debug("Skipping malformed gazetteer line: {}", String.join("\t", columns));
+            return false;
+        }
+    }
+
+    // ================================
+    // 🔤 КЛЮЧ И ТРАНСЛИТЕРАЦИЯ
+    // ================================
+
+    /**
+     * Отбрасывает префиксы типа населенного пункта: "г. Харьков" → "Харьков"
+     */
+    static String stripSettlementPrefix(String place) {
+        return SETTLEMENT_PREFIX.matcher(place.strip()).replaceFirst("");
+    }
+
+    /**
+     * ISO-код страны по коду ("UA") или названию ("Ukraine", "Украина", "Україна"); null, если неизвестна
+     */
+    static String countryCodeOf(String country) {
+        if (country == null || country.isBlank()) {
+            return null;
+        }
+        String trimmed = country.strip();
+        if (trimmed.length() == COUNTRY_LENGTH && trimmed.chars().allMatch(c -> c < 128 && Character.isLetter(c))) {
+            return trimmed.toUpperCase(Locale.ROOT);
+        }
+        return COUNTRY_CODES.get(new String(keyOf(trimmed), StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Ключ поиска: кириллица → латиница, без диакритики, только [a-z0-9], не длиннее KEY_LENGTH
+     */
+    static byte[] keyOf(String name) {
+        String lower = name.toLowerCase(Locale.ROOT);
+        StringBuilder latin = new StringBuilder(lower.length() + 8);
+        for (int i = 0; i < lower.length(); i++) {
+            char c = lower.charAt(i);
+            if (c >= '\u0400' && c <= '\u04FF') {
+                String mapped = CYRILLIC_TO_LATIN[c - '\u0400'];
+                latin.append(mapped != null ? mapped : "");
+            } else if (c == 'ł') {
+                latin.append('l');
+            } else if (c == 'ß') {
+                latin.append("ss");
+            } else {
+                latin.append(c);
+            }
+        }
+
+        String decomposed = Normalizer.normalize(latin, Normalizer.Form.NFD);
+        byte[] key = new byte[Math.min(decomposed.length(), KEY_LENGTH)];
+        int length = 0;
+        for (int i = 0; i < decomposed.length() && length < KEY_LENGTH; i++) {
+            char c = decomposed.charAt(i);
+            if ((c >= 'a' && c <= 'z') || (c >= '0' && c <= '9')) {
+                key[length++] = (byte) c;
+            }
+        }
+        return length == key.length ? key : Arrays.copyOf(key, length);
+    }
+
+    private static String[] buildTransliteration() {
+        String[] table = new String[0x100];
+        String[][] pairs = {
+                {"а", "a"}, {"б", "b"}, {"в", "v"}, {"г", "g"}, {"д", "d"}, {"е", "e"}, {"ё", "e"},
+                {"ж", "zh"}, {"з", "z"}, {"и", "i"}, {"й", "y"}, {"к", "k"}, {"л", "l"}, {"м", "m"},
+                {"н", "n"}, {"о", "o"}, {"п", "p"}, {"р", "r"}, {"с", "s"}, {"т", "t"}, {"у", "u"},
+                {"ф", "f"}, {"х", "kh"}, {"ц", "ts"}, {"ч", "ch"}, {"ш", "sh"}, {"щ", "shch"},
+                {"ъ", ""}, {"ы", "y"}, {"ь", ""}, {"э", "e"}, {"ю", "yu"}, {"я", "ya"},
+                // украинские и белорусские буквы
+                {"і", "i"}, {"ї", "yi"}, {"є", "ye"}, {"ґ", "g"}, {"ў", "u"}
+        };
+        for (String[] pair : pairs) {
+            table[pair[0].charAt(0) - '\u0400'] = pair[1];
+        }
+        return table;
+    }
+
+    private static Map<String, String> buildCountryCodes() {
+        String[][] countries = {
+                {"UA", "Ukraine", "Украина", "Україна"},
+                {"RU", "Russia", "Russian Federation", "Россия", "Росія"},
+                {"BY", "Belarus", "Беларусь", "Білорусь"},
+                {"PL", "Poland", "Polska", "Польша", "Польща"},
+                {"MD", "Moldova", "Молдова"},
+                {"KZ", "Kazakhstan", "Казахстан"},
+                {"UZ", "Uzbekistan", "Узбекистан"},
+                {"GE", "Georgia", "Грузия", "Грузія"},
+                {"AM", "Armenia", "Армения", "Вірменія"},
+                {"AZ", "Azerbaijan", "Азербайджан"},
+                {"DE", "Germany", "Deutschland", "Германия", "Німеччина"},
+                {"US", "United States", "USA", "United States of America", "США"},
+                {"GB", "United Kingdom", "Great Britain", "UK", "Великобритания", "Велика Британія"},
+                {"CA", "Canada", "Канада"},
+                {"FR", "France", "Франция", "Франція"},
+                {"IT", "Italy", "Италия", "Італія"},
+                {"ES", "Spain", "Испания", "Іспанія"},
+                {"PT", "Portugal", "Португалия", "Португалія"},
+                {"NL", "Netherlands", "Нидерланды", "Нідерланди"},
+                {"BE", "Belgium", "Бельгия", "Бельгія"},
+                {"CH", "Switzerland", "Швейцария", "Швейцарія"},
+                {"AT", "Austria", "Австрия", "Австрія"},
+                {"CZ", "Czechia", "Czech Republic", "Чехия", "Чехія"},
+                {"SK", "Slovakia", "Словакия", "Словаччина"},
+                {"HU", "Hungary", "Венгрия", "Угорщина"},
+                {"RO", "Romania", "Румыния", "Румунія"},
+                {"BG", "Bulgaria", "Болгария", "Болгарія"},
+                {"RS", "Serbia", "Сербия", "Сербія"},
+                {"HR", "Croatia", "Хорватия", "Хорватія"},
+                {"SI", "Slovenia", "Словения", "Словенія"},
+                {"GR", "Greece", "Греция", "Греція"},
+                {"TR", "Turkey", "Türkiye", "Турция", "Туреччина"},
+                {"IL", "Israel", "Израиль", "Ізраїль"},
+                {"LT", "Lithuania", "Литва"},
+                {"LV", "Latvia", "Латвия", "Латвія"},
+                {"EE", "Estonia", "Эстония", "Естонія"},
+                {"FI", "Finland", "Финляндия", "Фінляндія"},
+                {"SE", "Sweden", "Швеция", "Швеція"},
+                {"NO", "Norway", "Норвегия", "Норвегія"},
+                {"DK", "Denmark", "Дания", "Данія"},
+                {"IE", "Ireland", "Ирландия", "Ірландія"}
+        };
+        Map<String, String> codes = new HashMap<>();
+        for (String[] country : countries) {
+            for (int i = 1; i < country.length; i++) {
+                codes.put(new String(keyOf(country[i]), StandardCharsets.US_ASCII), country[0]);
+            }
+        }
+        return Map.copyOf(codes);
+    }
+
+    /**
+     * Координаты из справочника (точность float достаточна для fallback)
+     */
+    public record Coordinates(double latitude, double longitude) {
+    }
+
+    private record Entry(byte[] key, float latitude, float longitude, int population, String country) {
+    }
+}
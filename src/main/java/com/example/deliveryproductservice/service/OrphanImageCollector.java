@@ -0,0 +1,286 @@
+package com.example.deliveryproductservice.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ♻️ Сборка мусора в хранилище изображений.
+ * Изображения, на которые не ссылается ни Product.picId, ни Store.picId, ни Category.imageId
+ * (загрузка прошла, а транзакция - нет), удаляются пачками, если они старше grace-периода.
+ * Ссылки читаются потоковым курсором в фильтр Блума (ложноположительный ответ лишь оставляет
+ * сироту до следующего запуска), листинг хранилища обходится постранично. Перед удалением
+ * каждый кандидат перепроверяется точным запросом. В режиме dry-run только отчет.
+ */
+@Service
+@Slf4j
+public class OrphanImageCollector {
+
+    private static final int REFERENCE_FETCH_SIZE = 5000;
+    private static final int REPORT_SAMPLE_SIZE = 20;
+
+    private static final String REFERENCED_IDS_SQL = """
+            SELECT pic_id FROM products WHERE pic_id IS NOT NULL
+            UNION ALL
+            SELECT pic_id FROM stores WHERE pic_id IS NOT NULL
+            UNION ALL
+            SELECT image_id FROM categories WHERE image_id IS NOT NULL
+            """;
+
+    private static final String REFERENCED_COUNT_SQL = """
+            SELECT (SELECT count(*) FROM products WHERE pic_id IS NOT NULL)
+                 + (SELECT count(*) FROM stores WHERE pic_id IS NOT NULL)
+                 + (SELECT count(*) FROM categories WHERE image_id IS NOT NULL)
+            """;
+
+    // Ни одна сущность не ссылается на кандидата c.id
+    private static final String UNREFERENCED = """
+            NOT EXISTS (SELECT 1 FROM products p WHERE p.pic_id = c.id)
+              AND NOT EXISTS (SELECT 1 FROM stores s WHERE s.pic_id = c.id)
+              AND NOT EXISTS (SELECT 1 FROM categories g WHERE g.image_id = c.id)""";
+
+    private final StorageService storageService;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final boolean enabled;
+    private final boolean dryRun;
+    private final Duration interval;
+    private final Duration gracePeriod;
+    private final List<String> folders;
+    private final int pageSize;
+    private final int deleteBatchSize;
+    private final double falsePositiveRate;
+
+    private final Counter orphansFound;
+    private final Counter orphansDeleted;
+
+    private ScheduledExecutorService scheduler;
+
+    public OrphanImageCollector(StorageService storageService,
+                                JdbcTemplate jdbcTemplate,
+                                PlatformTransactionManager transactionManager,
+                                MeterRegistry meterRegistry,
+                                @Value("${image.gc.enabled:false}") boolean enabled,
+                                @Value("${image.gc.dry-run:true}") boolean dryRun,
+                                @Value("${image.gc.interval:24h}") Duration interval,
+                                @Value("${image.gc.grace-period:24h}") Duration gracePeriod,
+                                @Value("${image.gc.folders:products,stores,categories}") List<String> folders,
+                                @Value("${image.gc.page-size:500}") int pageSize,
+                                @Value("${image.gc.delete-batch-size:100}") int deleteBatchSize,
+                                @Value("${image.gc.false-positive-rate:0.01}") double falsePositiveRate) {
+        this.storageService = storageService;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.enabled = enabled;
+        this.dryRun = dryRun;
+        this.interval = interval;
+        this.gracePeriod = gracePeriod;
+        this.folders = folders;
+        this.pageSize = pageSize;
+        this.deleteBatchSize = deleteBatchSize;
+        this.falsePositiveRate = falsePositiveRate;
+
+        this.orphansFound = meterRegistry.counter("image.gc.orphans", "result", "found");
+        this.orphansDeleted = meterRegistry.counter("image.gc.orphans", "result", "deleted");
+    }
+
+    @PostConstruct
+    public void start() {
+        if (!enabled) {
+            log.info("♻️ Orphan image collection is disabled (image.gc.enabled=false)");
+            return;
+        }
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "orphan-image-gc");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::collectSafely,
+                interval.toMillis(), interval.toMillis(), TimeUnit.MILLISECONDS);
+        log.info("♻️ Orphan image collection every {} (grace {}, {})",
+                interval, gracePeriod, dryRun ? "dry-run" : "deleting");
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    private void collectSafely() {
+        try {
+            collect(dryRun);
+        } catch (Exception e) {
+            log.error("❌ Orphan image collection failed: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Один проход сборки мусора
+     *
+     * @param dryRun true - только найти сирот и вернуть отчет, ничего не удаляя
+     */
+    public Report collect(boolean dryRun) throws IOException {
+        long started = System.nanoTime();
+        Instant cutoff = Instant.now().minus(gracePeriod);
+
+        // Ссылки читаются до листинга: все, что появится позже, моложе cutoff или пройдет точную проверку
+        BloomFilter referenced = loadReferencedIds();
+
+        Run run = new Run(dryRun, cutoff);
+        for (String folder : folders) {
+            storageService.listImages(folder, pageSize, page -> {
+                for (StorageService.StoredObject image : page) {
+                    run.scanned++;
+                    if (image.createdAt().isAfter(cutoff) || referenced.mightContain(image.imageId())) {
+                        continue;
+                    }
+                    run.candidates.add(image.imageId());
+                    if (run.candidates.size() >= deleteBatchSize) {
+                        flush(run);
+                    }
+                }
+            });
+        }
+        flush(run);
+
+        Report report = new Report(dryRun, run.scanned, run.orphans, run.deleted,
+                Collections.unmodifiableList(run.sample), Duration.ofNanos(System.nanoTime() - started));
+        log.info("♻️ Orphan image collection{}: scanned {}, orphans {}, deleted {} in {} ms. Sample: {}",
+                dryRun ? " (dry-run)" : "", report.scanned(), report.orphans(), report.deleted(),
+                report.took().toMillis(), report.sample());
+        return report;
+    }
+
+    /**
+     * Потоковый курсор: в PostgreSQL fetchSize работает только внутри транзакции
+     */
+    private BloomFilter loadReferencedIds() {
+        Long count = jdbcTemplate.queryForObject(REFERENCED_COUNT_SQL, Long.class);
+        BloomFilter filter = BloomFilter.create(count == null ? 0 : count, falsePositiveRate);
+
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(connection -> {
+            PreparedStatement statement = connection.prepareStatement(REFERENCED_IDS_SQL,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            statement.setFetchSize(REFERENCE_FETCH_SIZE);
+            return statement;
+        }, (RowCallbackHandler) resultSet -> filter.put(resultSet.getString(1))));
+
+        log.debug("♻️ Loaded {} referenced image ids into {} KB bloom filter", count, filter.bitSize() / 8 / 1024);
+        return filter;
+    }
+
+    private void flush(Run run) {
+        if (run.candidates.isEmpty()) {
+            return;
+        }
+        List<String> candidates = new ArrayList<>(run.candidates);
+        run.candidates.clear();
+
+        List<String> orphans = transactionTemplate.execute(status -> confirmOrphans(candidates, run));
+        if (orphans == null || orphans.isEmpty()) {
+            return;
+        }
+
+        run.orphans += orphans.size();
+        orphansFound.increment(orphans.size());
+        for (String orphan : orphans) {
+            if (run.sample.size() < REPORT_SAMPLE_SIZE) {
+                run.sample.add(orphan);
+            }
+        }
+
+        if (!run.dryRun) {
+            int deleted = storageService.destroyImages(orphans).size();
+            run.deleted += deleted;
+            orphansDeleted.increment(deleted);
+        }
+    }
+
+    /**
+     * Точная проверка кандидатов. Запись индекса содержимого удаляется вместе с решением,
+     * иначе следующая загрузка того же файла получила бы удаленное изображение.
+     * Недавно выданные индексом изображения (updated_at после cutoff) не трогаем.
+     * <p>
+     * Сиротами считаются только те, чью запись индекса удалил этот же DELETE (RETURNING),
+     * и те, у кого записи индекса нет вовсе. Если {@link ImageContentIndex} выдал изображение
+     * между листингом и удалением, DELETE дождется его блокировки, увидит новый updated_at
+     * и пропустит строку - такое изображение в хранилище не удаляется
+     */
+    private List<String> confirmOrphans(List<String> candidates, Run run) {
+        String values = String.join(", ", Collections.nCopies(candidates.size(), "(?)"));
+        List<Object> args = new ArrayList<>(candidates);
+        Timestamp cutoff = Timestamp.from(run.cutoff);
+        args.add(cutoff);
+
+        if (run.dryRun) {
+            return jdbcTemplate.queryForList("""
+                    SELECT c.id FROM (VALUES %s) AS c(id)
+                    WHERE %s
+                      AND NOT EXISTS (SELECT 1 FROM stored_images i WHERE i.public_id = c.id AND i.updated_at >= ?)
+                    """.formatted(values, UNREFERENCED), String.class, args.toArray());
+        }
+
+        return jdbcTemplate.queryForList("""
+                WITH c(id) AS (VALUES %s),
+                removed AS (
+                    DELETE FROM stored_images i USING c
+                    WHERE i.public_id = c.id AND i.updated_at < ? AND %s
+                    RETURNING i.public_id
+                )
+                SELECT public_id FROM removed
+                UNION ALL
+                SELECT c.id FROM c
+                WHERE %s
+                  AND NOT EXISTS (SELECT 1 FROM stored_images i WHERE i.public_id = c.id)
+                """.formatted(values, UNREFERENCED, UNREFERENCED), String.class, args.toArray());
+    }
+
+    /**
+     * Результат прохода; sample - первые найденные сироты
+     */
+    public record Report(boolean dryRun, long scanned, long orphans, long deleted,
+                         List<String> sample, Duration took) {
+    }
+
+    private static final class Run {
+        private final boolean dryRun;
+        private final Instant cutoff;
+        private final Set<String> candidates = new LinkedHashSet<>();
+        private final List<String> sample = new ArrayList<>();
+        private long scanned;
+        private long orphans;
+        private long deleted;
+
+        private Run(boolean dryRun, Instant cutoff) {
+            this.dryRun = dryRun;
+            this.cutoff = cutoff;
+        }
+    }
+}
@@ -0,0 +1,147 @@
+package com.example.deliveryproductservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.stereotype.Component;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.function.Consumer;
+
+/**
+ * 📡 Инвалидация через PostgreSQL LISTEN/NOTIFY на существующем datasource.
+ * Подписчик держит одно соединение из пула в фоновом потоке и опрашивает уведомления;
+ * при обрыве переподключается с растущей задержкой и сообщает о возможной потере сообщений.
+ * Отправка - pg_notify вне транзакции, доставляется сразу
+ */
+@Component
+@ConditionalOnProperty(name = "cache.invalidation.transport", havingValue = "postgres", matchIfMissing = true)
+@Slf4j
+public class PostgresInvalidationTransport implements CacheInvalidationTransport {
+
+    private static final int POLL_TIMEOUT_MS = 1000;
+    private static final Duration MAX_RECONNECT_DELAY = Duration.ofSeconds(30);
+
+    private final DataSource dataSource;
+    private final JdbcTemplate jdbcTemplate;
+    private final String channel;
+
+    private volatile boolean running;
+    private Thread listener;
+
+    public PostgresInvalidationTransport(DataSource dataSource,
+                                         JdbcTemplate jdbcTemplate,
+                                         @Value("${cache.invalidation.channel:product_service_cache}") String channel) {
+        if (!channel.matches("[a-z_][a-z0-9_]*")) {
+            // Имя канала подставляется в LISTEN как идентификатор
+            throw new IllegalArgumentException("Invalid cache invalidation channel: " + channel);
+        }
+        this.dataSource = dataSource;
+        this.jdbcTemplate = jdbcTemplate;
+        this.channel = channel;
+    }
+
+    @Override
+    public void publish(String message) {
+        jdbcTemplate.query("SELECT pg_notify(?, ?)", (ResultSetExtractor<Void>) resultSet -> null, channel, message);
+    }
+
+    @Override
+    public synchronized void subscribe(Consumer<String> onMessage, Runnable onReconnect) {
+        if (listener != null) {
+            throw new IllegalStateException("Already subscribed to " + channel);
+        }
+        running = true;
+        listener = new Thread(() -> listen(onMessage, onReconnect), "cache-invalidation-listener");
+        listener.setDaemon(true);
+        listener.start();
+    }
+
+    @Override
+    public synchronized void close() {
+        running = false;
+        if (listener != null) {
+            listener.interrupt();
+        }
+    }
+
+    private void listen(Consumer<String> onMessage, Runnable onReconnect) {
+        long delayMs = 1000;
+        boolean lost = false;
+
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try {
+                    execute(connection, "LISTEN " + channel);
+                    PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                    log.info("📡 Listening for cache invalidations on channel '{}'", channel);
+                    delayMs = 1000;
+                    if (lost) {
+                        lost = false;
+                        onReconnect.run();
+                    }
+
+                    while (running) {
+                        PGNotification[] notifications = pgConnection.getNotifications(POLL_TIMEOUT_MS);
+                        if (notifications == null) {
+                            continue;
+                        }
+                        for (PGNotification notification : notifications) {
+                            dispatch(onMessage, notification.getParameter());
+                        }
+                    }
+                } finally {
+                    // Соединение вернется в пул - подписка на нем не должна остаться
+                    unlisten(connection);
+                }
+            } catch (SQLException e) {
+                if (!running) {
+                    break;
+                }
+                lost = true;
+                log.warn("⚠️ Cache invalidation listener lost connection: {}. Reconnecting in {} ms",
+                        e.getMessage(), delayMs);
+                try {
+                    Thread.sleep(delayMs);
+                } catch (InterruptedException interrupted) {
+                    Thread.currentThread().interrupt();
+                    break;
+                }
+                delayMs = Math.min(delayMs * 2, MAX_RECONNECT_DELAY.toMillis());
+            }
+        }
+        log.info("📡 Cache invalidation listener stopped");
+    }
+
+    private static void dispatch(Consumer<String> onMessage, String payload) {
+        try {
+            onMessage.accept(payload);
+        } catch (Exception e) {
+            log.error("❌ Failed to apply cache invalidation '{}': {}", payload, e.getMessage(), e);
+        }
+    }
+
+    private static void execute(Connection connection, String sql) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(sql);
+        }
+    }
+
+    private static void unlisten(Connection connection) {
+        try {
+            if (!connection.isClosed()) {
+                execute(connection, "UNLISTEN *");
+            }
+        } catch (SQLException e) {
+            log.debug("UNLISTEN failed: {}", e.getMessage());
+        }
+    }
+}
@@ -1,12 +1,16 @@
 package com.example.deliveryproductservice.service;
 
 
+import com.example.deliveryproductservice.dto.ImageUpload.ImageUploadStatusDto;
+import com.example.deliveryproductservice.dto.PageCursor;
 import com.example.deliveryproductservice.dto.ProductDto.CreateProductDto;
 import com.example.deliveryproductservice.dto.ProductDto.ProductBriefResponseWrapper;
 import com.example.deliveryproductservice.dto.ProductDto.ProductResponseWrapper;
 import com.example.deliveryproductservice.dto.ProductDto.SingleProductResponseWrapper;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Optional;
+
 
 public interface ProductService {
 
@@ -16,6 +20,14 @@ public interface ProductService {
                                                Long userId);
 //    SingleProductResponseWrapper createProduct(CreateProductDto createProductDto, Long userId);
 
+    // 🚀 Создание продукта с фоновой загрузкой изображения (статус PENDING)
+    SingleProductResponseWrapper createProductAsync(CreateProductDto createProductDto,
+                                                    MultipartFile imageFile,
+                                                    Long userId);
+
+    // 🖼️ Статус фоновой загрузки изображения
+    Optional<ImageUploadStatusDto> getProductImageStatus(Long productId);
+
     // 🔍 Получение одного продукта
     SingleProductResponseWrapper getProductById(Long productId);
 
@@ -28,6 +40,13 @@ public interface ProductService {
     // 📂 Получение продуктов конкретной категории
     ProductResponseWrapper getProductsByCategory(Long categoryId, int page, int size);
 
+    // 🔖 Те же списки с keyset-пагинацией: страница после курсора, в ответе nextCursor
+    ProductResponseWrapper getAllAvailableProducts(PageCursor cursor, int size);
+
+    ProductResponseWrapper getProductsByStore(Long storeId, PageCursor cursor, int size);
+
+    ProductResponseWrapper getProductsByCategory(Long categoryId, PageCursor cursor, int size);
+
     // 🔎 Поиск продуктов по названию
     ProductResponseWrapper searchProductsByName(String name, int page, int size);
 
@@ -0,0 +1,109 @@
+package com.example.deliveryproductservice.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * 🆔 Генератор идентификаторов для ключей хранилища в стиле Snowflake.
+ * 64 бита: 41 - миллисекунды от EPOCH, 10 - номер узла, 12 - счетчик в пределах миллисекунды.
+ * Идентификаторы упорядочены по времени и строго возрастают в пределах узла:
+ * при переводе часов назад или переполнении счетчика время берется "взаймы"
+ * у следующей миллисекунды вместо ожидания. Без блокировок - одно CAS-обновление состояния.
+ * Строковый вид - 13 символов Crockford Base32, лексикографический порядок совпадает с числовым.
+ */
+@Component
+@Slf4j
+public class StorageIdGenerator {
+
+    // 2024-01-01T00:00:00Z - 41 бит миллисекунд хватает примерно до 2093 года
+    static final long EPOCH_MILLIS = 1704067200000L;
+
+    static final int NODE_BITS = 10;
+    static final int SEQUENCE_BITS = 12;
+    static final long MAX_NODE_ID = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    public static final int KEY_LENGTH = 13;
+    private static final char[] CROCKFORD_BASE32 = "0123456789ABCDEFGHJKMNPQRSTVWXYZ".toCharArray();
+
+    private final long nodeId;
+    private final LongSupplier clock;
+
+    // (миллисекунды от EPOCH << SEQUENCE_BITS) | счетчик последнего выданного идентификатора
+    private final AtomicLong lastState = new AtomicLong();
+
+    public StorageIdGenerator(@Value("${storage.id.node-id:-1}") long nodeId,
+                              @Value("${cache.invalidation.transport:postgres}") String invalidationTransport) {
+        this(resolveNodeId(nodeId, invalidationTransport), System::currentTimeMillis);
+    }
+
+    StorageIdGenerator(long nodeId, LongSupplier clock) {
+        if (nodeId < 0 || nodeId > MAX_NODE_ID) {
+            throw new IllegalArgumentException("storage.id.node-id must be in [0, " + MAX_NODE_ID + "], got " + nodeId);
+        }
+        this.nodeId = nodeId;
+        this.clock = clock;
+        log.info("🆔 Storage id generator node: {}", nodeId);
+    }
+
+    public long nextId() {
+        long now = (clock.getAsLong() - EPOCH_MILLIS) << SEQUENCE_BITS;
+        while (true) {
+            long last = lastState.get();
+            // Новая миллисекунда - счетчик с нуля; иначе (та же, или часы ушли назад) - следующий за последним.
+            // Переполнение счетчика переносится в поле времени - это и есть "заем" следующей миллисекунды
+            long next = now > last ? now : last + 1;
+            if (lastState.compareAndSet(last, next)) {
+                long sequence = next & SEQUENCE_MASK;
+                long millis = next >>> SEQUENCE_BITS;
+                return (millis << (NODE_BITS + SEQUENCE_BITS)) | (nodeId << SEQUENCE_BITS) | sequence;
+            }
+        }
+    }
+
+    /**
+     * Идентификатор в виде ключа: 13 символов Crockford Base32
+     */
+    public String nextKey() {
+        return encode(nextId());
+    }
+
+    static String encode(long id) {
+        char[] chars = new char[KEY_LENGTH];
+        // Старшая "цифра" - 4 бита, остальные 12 - по 5 бит
+        for (int i = KEY_LENGTH - 1; i >= 0; i--) {
+            chars[i] = CROCKFORD_BASE32[(int) (id & 0x1F)];
+            id >>>= 5;
+        }
+        return new String(chars);
+    }
+
+    static long timestampMillis(long id) {
+        return (id >>> (NODE_BITS + SEQUENCE_BITS)) + EPOCH_MILLIS;
+    }
+
+    static long nodeId(long id) {
+        return (id >>> SEQUENCE_BITS) & MAX_NODE_ID;
+    }
+
+    /**
+     * Номер узла задается только явно: совпавшие номера у двух инстансов дают одинаковые public_id,
+     * и хранилище молча перезаписывает одно изображение другим. Без storage.id.node-id запуск разрешен
+     * лишь в режиме одного инстанса (cache.invalidation.transport=none) - тогда номер 0
+     */
+    static long resolveNodeId(long configured, String invalidationTransport) {
+        if (configured >= 0) {
+            return configured;
+        }
+        if ("none".equals(invalidationTransport)) {
+            log.info("🆔 storage.id.node-id is not set, single instance (cache.invalidation.transport=none) uses node 0");
+            return 0;
+        }
+        throw new IllegalStateException("storage.id.node-id must be set to a number in [0, " + MAX_NODE_ID +
+                "] unique per instance (e.g. the pod ordinal); it may be omitted only with cache.invalidation.transport=none");
+    }
+}
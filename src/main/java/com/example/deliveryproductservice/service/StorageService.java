@@ -1,10 +1,15 @@
 package com.example.deliveryproductservice.service;
 
+import com.example.deliveryproductservice.model.ImageVariants;
 import lombok.Getter;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
+import java.time.Instant;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
 
 public interface StorageService {
     /**
@@ -22,11 +27,32 @@ public interface StorageService {
      */
     boolean deleteImage(String imageId);
 
+    /**
+     * Физически удаляет пачку изображений вместе с производными, без учета ссылок.
+     * Используется очередью отложенного удаления ({@link ImageDeletionQueue}).
+     *
+     * @return идентификаторы, которых больше нет в хранилище (удалены или уже отсутствовали)
+     */
+    Set<String> destroyImages(List<String> imageIds);
+
     /**
      * Загружает обработанное изображение
      */
     StorageResult uploadProcessedImage(ImageConverterService.ProcessedImage processedImage) throws IOException;
 
+    /**
+     * Загружает набор производных (thumb/card/full) под общим идентификатором.
+     * imageId результата - идентификатор полного размера; {@link #deleteImage} удаляет весь набор
+     */
+    StorageResult uploadDerivatives(ImageConverterService.ImageDerivatives derivatives, String folder) throws IOException;
+
+    /**
+     * Постранично перечисляет изображения папки - для сборки мусора.
+     * Производные сворачиваются в идентификатор основного изображения;
+     * страница передается в pageConsumer и после него не удерживается
+     */
+    void listImages(String folder, int pageSize, Consumer<List<StoredObject>> pageConsumer) throws IOException;
+
     /**
      * Получает информацию об изображении
      */
@@ -39,10 +65,23 @@ public interface StorageService {
     class StorageResult {
         private final String url;
         private final String imageId;
+        // Производные размеры; null, если загружен один файл
+        private final ImageVariants variants;
 
         public StorageResult(String url, String imageId) {
+            this(url, imageId, null);
+        }
+
+        public StorageResult(String url, String imageId, ImageVariants variants) {
             this.url = url;
             this.imageId = imageId;
+            this.variants = variants;
         }
     }
-}
\ No newline at end of file
+
+    /**
+     * Изображение в хранилище: идентификатор и время загрузки
+     */
+    record StoredObject(String imageId, Instant createdAt) {
+    }
+}
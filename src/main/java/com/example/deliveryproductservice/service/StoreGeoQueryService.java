@@ -0,0 +1,137 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreDto;
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreRequest;
+import com.example.deliveryproductservice.dto.StoreDto.StoreNearbyProjection;
+import com.example.deliveryproductservice.repository.StoreRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 🗺️ Поиск магазинов поблизости на стороне БД (для multi-node развертываний).
+ * Режим выбирается свойством store.nearby.search-mode (memory | database).
+ * В режиме database при старте проверяется наличие расширения PostGIS:
+ * если есть - используется geography + GiST, иначе bounding box по btree (latitude, longitude).
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class StoreGeoQueryService {
+
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private final StoreRepository storeRepository;
+    private final JdbcTemplate jdbcTemplate;
+
+    @Value("${store.nearby.search-mode:memory}")
+    private String searchMode;
+
+    private volatile boolean postgisAvailable = false;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void detectPostgis() {
+        if (!isDatabaseMode()) {
+            log.info("🗺️ Nearby search mode: memory (in-process spatial index)");
+            return;
+        }
+
+        try {
+            Boolean installed = jdbcTemplate.queryForObject(
+                    "SELECT EXISTS (SELECT 1 FROM pg_extension WHERE extname = 'postgis')", Boolean.class);
+            postgisAvailable = Boolean.TRUE.equals(installed);
+
+            if (postgisAvailable) {
+                // Выражение должно совпадать с StoreRepository.STORE_GEOGRAPHY (без алиаса таблицы)
+                jdbcTemplate.execute("CREATE INDEX IF NOT EXISTS idx_store_geog ON stores USING GIST (" +
+                        "CAST(ST_SetSRID(ST_MakePoint(CAST(longitude AS double precision), " +
+                        "CAST(latitude AS double precision)), 4326) AS geography))");
+            }
+        } catch (Exception e) {
+            log.warn("⚠️ PostGIS detection failed, using bounding box queries: {}", e.getMessage());
+            postgisAvailable = false;
+        }
+
+        log.info("🗺️ Nearby search mode: database ({})",
+                postgisAvailable ? "PostGIS geography + GiST" : "bounding box + btree");
+    }
+
+    public boolean isDatabaseMode() {
+        return "database".equalsIgnoreCase(searchMode);
+    }
+
+    public boolean isPostgisAvailable() {
+        return postgisAvailable;
+    }
+
+    /**
+     * Магазины поблизости через SQL (с тем же контрактом, что и in-memory индекс)
+     */
+    public List<NearbyStoreDto> findNearby(NearbyStoreRequest request) {
+        double lat = request.getLatitude().doubleValue();
+        double lon = request.getLongitude().doubleValue();
+        boolean deliverableOnly = Boolean.TRUE.equals(request.getDeliverableOnly());
+        double radiusKm;
+        if (deliverableOnly) {
+            // Дальше самой большой зоны доставки магазина не доставит никто
+            Integer maxDeliveryRadius = storeRepository.findMaxActiveDeliveryRadius();
+            if (maxDeliveryRadius == null) {
+                return List.of();
+            }
+            radiusKm = Math.max(maxDeliveryRadius, 0);
+        } else {
+            radiusKm = request.getRadiusKm() != null ? request.getRadiusKm() : 10;
+        }
+
+        double maxFee = request.getMaxDeliveryFee() != null ? request.getMaxDeliveryFee().doubleValue() : Double.MAX_VALUE;
+        int maxTime = request.getMaxDeliveryTime() != null ? request.getMaxDeliveryTime() : Integer.MAX_VALUE;
+        double minRating = request.getMinRating() != null ? request.getMinRating().doubleValue() : -1;
+        String sortBy = request.getSortBy() != null ? request.getSortBy() : "distance";
+        PageRequest pageRequest = PageRequest.of(0, request.getLimit() != null ? request.getLimit() : 20);
+
+        Slice<StoreNearbyProjection> slice;
+        if (postgisAvailable) {
+            slice = storeRepository.findNearbyBriefPostgis(lat, lon, radiusKm,
+                    maxFee, maxTime, minRating, deliverableOnly, sortBy, pageRequest);
+        } else {
+            double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+            double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+            double lonDelta = Math.min(radiusKm / (KM_PER_DEGREE_LAT * cosLat), 180.0);
+
+            slice = storeRepository.findNearbyBriefByBoundingBox(lat, lon,
+                    lat - latDelta, lat + latDelta, lon - lonDelta, lon + lonDelta,
+                    radiusKm, maxFee, maxTime, minRating, deliverableOnly, sortBy, pageRequest);
+        }
+
+        List<NearbyStoreDto> stores = new ArrayList<>(slice.getNumberOfElements());
+        for (StoreNearbyProjection projection : slice) {
+            stores.add(mapToNearbyDto(projection));
+        }
+        return stores;
+    }
+
+    private NearbyStoreDto mapToNearbyDto(StoreNearbyProjection projection) {
+        Double distance = projection.getDistanceKm();
+        return NearbyStoreDto.builder()
+                .id(projection.getId())
+                .name(projection.getName())
+                .rating(projection.getRating())
+                .deliveryFee(projection.getDeliveryFee())
+                .estimatedDeliveryTime(projection.getEstimatedDeliveryTime())
+                .deliveryRadius(projection.getDeliveryRadius())
+                .picUrl(projection.getPicUrl())
+                .addressCity(projection.getAddressCity())
+                .addressStreet(projection.getAddressStreet())
+                .distanceKm(distance != null ? Math.round(distance * 100.0) / 100.0 : null)
+                .build();
+    }
+}
@@ -1,13 +1,22 @@
 package com.example.deliveryproductservice.service;
 
+import com.example.deliveryproductservice.dto.ImageUpload.ImageUploadStatusDto;
+import com.example.deliveryproductservice.dto.PageCursor;
 import com.example.deliveryproductservice.dto.StoreDto.*;
 import org.springframework.web.multipart.MultipartFile;
 
+import java.util.Optional;
 
 
 public interface StoreService {
     StoreResponseDto createStore(CreateStoreDto createStoreDto, Long ownerId);
 
+    // 🚀 Создание магазина с фоновой загрузкой изображения (статус PENDING)
+    StoreResponseDto createStoreAsync(CreateStoreDto createStoreDto, Long ownerId);
+
+    // 🖼️ Статус фоновой загрузки изображения
+    Optional<ImageUploadStatusDto> getStoreImageStatus(Long storeId);
+
     StoreResponseWrapper getActiveStores(int page, int size);
 
     StoreResponseWrapper getStoresByOwner(Long ownerId, int page, int size);
@@ -18,5 +27,17 @@ public interface StoreService {
 
     StoreBriefResponseWrapper getActiveStoresBrief(int page, int size);
 
+    // 🔖 Keyset-пагинация: страница после курсора, в ответе nextCursor
+    StoreResponseWrapper getActiveStores(PageCursor cursor, int size);
+
+    StoreBriefResponseWrapper getActiveStoresBrief(PageCursor cursor, int size);
+
+    SingleStoreResponseWrapper updateStore(Long storeId, UpdateStoreDto updateStoreDto, Long ownerId);
+
+    SingleStoreResponseWrapper deactivateStore(Long storeId, Long ownerId);
+
+    // 🗺️ Поиск магазинов поблизости (через in-memory индекс)
+    NearbyStoreResponseWrapper findNearbyStores(NearbyStoreRequest request);
+
 
 }
@@ -0,0 +1,513 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreDto;
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreRequest;
+import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.model.Store;
+import com.example.deliveryproductservice.util.geo.GeoKernel;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 🗺️ In-memory пространственный индекс активных магазинов.
+ * Координаты раскладываются по сетке ячеек CELL_SIZE_DEG x CELL_SIZE_DEG,
+ * поиск в радиусе просматривает только ячейки, попадающие в bounding box.
+ * Второй (обратный) индекс покрытия хранит для крупных ячеек магазины, чья зона
+ * доставки (deliveryRadius) пересекает ячейку - для запроса "кто доставит в эту точку".
+ * Каждая ячейка - неизменяемый снимок с параллельными массивами координат (радианы + cos(lat))
+ * для пакетной оценки через {@link GeoKernel}; при записи ячейка пересобирается целиком.
+ * Чтение без блокировок, запись (создание/обновление/деактивация магазина) синхронизирована.
+ * Полная перезагрузка собирает новую сетку в стороне и публикует ее одной volatile-записью -
+ * читатели видят либо старый, либо новый индекс целиком, но не пустой или частичный.
+ */
+@Component
+@Slf4j
+public class StoreSpatialIndex {
+
+    private static final double CELL_SIZE_DEG = 0.1; // ~11 км по широте
+    private static final double COVERAGE_CELL_SIZE_DEG = 0.25; // ~28 км по широте
+    private static final double KM_PER_DEGREE_LAT = 111.32;
+
+    private volatile Grid grid = new Grid();
+
+    // Буферы пакетной оценки на поток - поиск не аллоцирует массивы на каждый запрос
+    private final ThreadLocal<ScoreBuffers> scoreBuffers = ThreadLocal.withInitial(ScoreBuffers::new);
+
+    // ================================
+    // ✏️ ОБНОВЛЕНИЕ ИНДЕКСА
+    // ================================
+
+    /**
+     * Добавляет/обновляет магазин в индексе. Неактивные магазины удаляются.
+     * Если вызвано внутри транзакции - применяется только после коммита.
+     */
+    public void onStoreSaved(Store store) {
+        if (store == null || store.getId() == null) {
+            return;
+        }
+        StoreGeoEntry entry = StoreGeoEntry.from(store);
+        Long storeId = store.getId();
+
+        runAfterCommit(() -> {
+            if (entry == null) {
+                remove(storeId);
+            } else {
+                put(entry);
+            }
+        });
+    }
+
+    /**
+     * Удаляет магазин из индекса (после коммита, если есть активная транзакция)
+     */
+    public void onStoreRemoved(Long storeId) {
+        if (storeId != null) {
+            runAfterCommit(() -> remove(storeId));
+        }
+    }
+
+    /**
+     * Полная перезагрузка индекса (используется при старте приложения)
+     */
+    public synchronized void rebuild(Collection<Store> stores) {
+        Grid rebuilt = new Grid();
+        for (Store store : stores) {
+            StoreGeoEntry entry = StoreGeoEntry.from(store);
+            if (entry != null) {
+                rebuilt.put(entry);
+            }
+        }
+        grid = rebuilt;
+        log.info("🗺️ Store spatial index rebuilt: {} stores in {} cells", rebuilt.entriesById.size(), rebuilt.cells.size());
+    }
+
+    synchronized void put(StoreGeoEntry entry) {
+        grid.put(entry);
+    }
+
+    synchronized void remove(Long storeId) {
+        grid.remove(storeId);
+    }
+
+    public int size() {
+        return grid.entriesById.size();
+    }
+
+    // ================================
+    // 🔍 ПОИСК
+    // ================================
+
+    /**
+     * Магазины в радиусе от точки с фильтрами и top-K по выбранной сортировке
+     */
+    public List<NearbyStoreDto> findNearby(NearbyStoreRequest request) {
+        double lat = request.getLatitude().doubleValue();
+        double lon = request.getLongitude().doubleValue();
+        double radiusKm = request.getRadiusKm() != null ? request.getRadiusKm() : 10;
+
+        QueryFilter filter = new QueryFilter(request);
+        TopK top = new TopK(request.getLimit() != null ? request.getLimit() : 20, comparatorFor(request.getSortBy()));
+
+        // Bounding box радиуса в ячейках сетки
+        double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+        double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+        double lonDelta = Math.min(radiusKm / (KM_PER_DEGREE_LAT * cosLat), 180.0);
+
+        int minLatCell = cellIndex(lat - latDelta);
+        int maxLatCell = cellIndex(lat + latDelta);
+        int minLonCell = cellIndex(lon - lonDelta);
+        int maxLonCell = cellIndex(lon + lonDelta);
+
+        double queryLatRad = Math.toRadians(lat);
+        double queryLonRad = Math.toRadians(lon);
+        double queryCosLat = Math.cos(queryLatRad);
+        ScoreBuffers buffers = scoreBuffers.get();
+        Map<Long, Cell> cells = grid.cells;
+
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            for (int lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                Cell cell = cells.get(cellKey(latCell, lonCell));
+                if (cell == null) {
+                    continue;
+                }
+                GeoKernel.PointArrays points = cell.getPoints();
+                buffers.ensureCapacity(points.size());
+                int found = GeoKernel.scoreWithin(queryLatRad, queryLonRad, queryCosLat, radiusKm,
+                        points.latRad(), points.lonRad(), points.cosLat(), 0, points.size(),
+                        buffers.indexes, buffers.distances);
+
+                for (int i = 0; i < found; i++) {
+                    StoreGeoEntry entry = cell.getEntries()[buffers.indexes[i]];
+                    if (filter.accepts(entry)) {
+                        top.offer(new Candidate(entry, buffers.distances[i]));
+                    }
+                }
+            }
+        }
+
+        return top.toDtos();
+    }
+
+    /**
+     * Магазины, чья зона доставки (deliveryRadius) покрывает точку клиента.
+     * Просматривается одна ячейка обратного индекса покрытия - время не зависит от общего числа магазинов.
+     */
+    public List<NearbyStoreDto> findDeliverable(NearbyStoreRequest request) {
+        double lat = request.getLatitude().doubleValue();
+        double lon = request.getLongitude().doubleValue();
+
+        QueryFilter filter = new QueryFilter(request);
+        TopK top = new TopK(request.getLimit() != null ? request.getLimit() : 20, comparatorFor(request.getSortBy()));
+
+        double queryLatRad = Math.toRadians(lat);
+        double queryLonRad = Math.toRadians(lon);
+        double queryCosLat = Math.cos(queryLatRad);
+
+        Cell cell = grid.coverageCells.get(cellKey(coverageCellIndex(lat), coverageCellIndex(lon)));
+        if (cell != null) {
+            for (StoreGeoEntry entry : cell.getEntries()) {
+                if (!filter.accepts(entry)) {
+                    continue;
+                }
+                double distance = GeoKernel.distanceWithinKm(queryLatRad, queryLonRad, queryCosLat,
+                        entry.getLatRad(), entry.getLonRad(), entry.getCosLat(), entry.getDeliveryRadiusKm());
+                if (distance != Double.POSITIVE_INFINITY) {
+                    top.offer(new Candidate(entry, distance));
+                }
+            }
+        }
+
+        return top.toDtos();
+    }
+
+    private Comparator<Candidate> comparatorFor(String sortBy) {
+        Comparator<Candidate> byDistance = Comparator.comparingDouble(Candidate::getDistanceKm);
+        if (sortBy == null) {
+            return byDistance;
+        }
+        switch (sortBy) {
+            case "rating":
+                return Comparator.comparingDouble((Candidate c) -> -c.getEntry().getRatingValue())
+                        .thenComparing(byDistance);
+            case "deliveryTime":
+                return Comparator.comparingInt((Candidate c) -> c.getEntry().getEstimatedDeliveryTime())
+                        .thenComparing(byDistance);
+            case "deliveryFee":
+                return Comparator.comparingDouble((Candidate c) -> c.getEntry().getFeeValue())
+                        .thenComparing(byDistance);
+            default:
+                return byDistance;
+        }
+    }
+
+    // ================================
+    // 🛠️ ПРИВАТНЫЕ МЕТОДЫ
+    // ================================
+
+    private static void runAfterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    static int cellIndex(double degrees) {
+        return (int) Math.floor(degrees / CELL_SIZE_DEG);
+    }
+
+    static int coverageCellIndex(double degrees) {
+        return (int) Math.floor(degrees / COVERAGE_CELL_SIZE_DEG);
+    }
+
+    /**
+     * Ключи ячеек покрытия, которые пересекает круг доставки с центром (lat, lon)
+     */
+    static long[] coverageKeys(double lat, double lon, double radiusKm) {
+        double latDelta = radiusKm / KM_PER_DEGREE_LAT;
+        double cosLat = Math.max(Math.cos(Math.toRadians(lat)), 0.01);
+        double lonDelta = Math.min(radiusKm / (KM_PER_DEGREE_LAT * cosLat), 180.0);
+
+        int minLatCell = coverageCellIndex(lat - latDelta);
+        int maxLatCell = coverageCellIndex(lat + latDelta);
+        int minLonCell = coverageCellIndex(lon - lonDelta);
+        int maxLonCell = coverageCellIndex(lon + lonDelta);
+
+        long[] keys = new long[(maxLatCell - minLatCell + 1) * (maxLonCell - minLonCell + 1)];
+        int count = 0;
+        for (int latCell = minLatCell; latCell <= maxLatCell; latCell++) {
+            double cellMinLat = latCell * COVERAGE_CELL_SIZE_DEG;
+            double nearestLat = Math.max(cellMinLat, Math.min(lat, cellMinLat + COVERAGE_CELL_SIZE_DEG));
+            for (int lonCell = minLonCell; lonCell <= maxLonCell; lonCell++) {
+                double cellMinLon = lonCell * COVERAGE_CELL_SIZE_DEG;
+                double nearestLon = Math.max(cellMinLon, Math.min(lon, cellMinLon + COVERAGE_CELL_SIZE_DEG));
+                // Ячейка попадает в покрытие, если ближайшая к центру точка ячейки внутри круга
+                if (haversineKm(lat, lon, nearestLat, nearestLon) <= radiusKm) {
+                    keys[count++] = cellKey(latCell, lonCell);
+                }
+            }
+        }
+        return Arrays.copyOf(keys, count);
+    }
+
+    static long cellKey(int latCell, int lonCell) {
+        return ((long) latCell << 32) | (lonCell & 0xFFFFFFFFL);
+    }
+
+    static double haversineKm(double lat1, double lon1, double lat2, double lon2) {
+        double lat1Rad = Math.toRadians(lat1);
+        double lat2Rad = Math.toRadians(lat2);
+        return GeoKernel.haversineKm(lat1Rad, Math.toRadians(lon1), Math.cos(lat1Rad),
+                lat2Rad, Math.toRadians(lon2), Math.cos(lat2Rad));
+    }
+
+    // ================================
+    // 📦 ВСПОМОГАТЕЛЬНЫЕ КЛАССЫ
+    // ================================
+
+    /**
+     * Сетка ячеек, обратный индекс покрытия и магазины по id. Точечные изменения - на месте
+     * (каждая ячейка заменяется целиком), полная перезагрузка - новый экземпляр
+     */
+    private static final class Grid {
+        private final Map<Long, Cell> cells = new ConcurrentHashMap<>();
+        private final Map<Long, StoreGeoEntry> entriesById = new ConcurrentHashMap<>();
+        // Обратный индекс: ячейка -> магазины, чей круг доставки пересекает ячейку
+        private final Map<Long, Cell> coverageCells = new ConcurrentHashMap<>();
+
+        private void put(StoreGeoEntry entry) {
+            StoreGeoEntry previous = entriesById.put(entry.getId(), entry);
+            if (previous != null) {
+                removeFromCells(previous);
+            }
+            cells.compute(entry.getCellKey(), (key, cell) -> Cell.with(cell, entry));
+            for (long coverageKey : entry.getCoverageKeys()) {
+                coverageCells.compute(coverageKey, (key, cell) -> Cell.with(cell, entry));
+            }
+        }
+
+        private void remove(Long storeId) {
+            StoreGeoEntry previous = entriesById.remove(storeId);
+            if (previous != null) {
+                removeFromCells(previous);
+            }
+        }
+
+        private void removeFromCells(StoreGeoEntry entry) {
+            cells.computeIfPresent(entry.getCellKey(), (k, cell) -> Cell.without(cell, entry.getId()));
+            for (long coverageKey : entry.getCoverageKeys()) {
+                coverageCells.computeIfPresent(coverageKey, (k, cell) -> Cell.without(cell, entry.getId()));
+            }
+        }
+    }
+
+    /**
+     * Неизменяемый снимок полей магазина, нужных для поиска
+     */
+    @Getter
+    static final class StoreGeoEntry {
+        private final Long id;
+        private final String name;
+        private final double latitude;
+        private final double longitude;
+        private final double latRad;
+        private final double lonRad;
+        private final double cosLat;
+        private final long cellKey;
+        private final BigDecimal rating;
+        private final double ratingValue;
+        private final BigDecimal deliveryFee;
+        private final double feeValue;
+        private final int estimatedDeliveryTime;
+        private final Integer deliveryRadius;
+        private final double deliveryRadiusKm;
+        private final long[] coverageKeys;
+        private final String picUrl;
+        private final String addressCity;
+        private final String addressStreet;
+
+        private StoreGeoEntry(Store store, Address address) {
+            this.id = store.getId();
+            this.name = store.getName();
+            this.latitude = address.getLatitude().doubleValue();
+            this.longitude = address.getLongitude().doubleValue();
+            this.latRad = Math.toRadians(latitude);
+            this.lonRad = Math.toRadians(longitude);
+            this.cosLat = Math.cos(latRad);
+            this.cellKey = cellKey(cellIndex(latitude), cellIndex(longitude));
+            this.rating = store.getRating() != null ? store.getRating() : BigDecimal.ZERO;
+            this.ratingValue = rating.doubleValue();
+            this.deliveryFee = store.getDeliveryFee() != null ? store.getDeliveryFee() : BigDecimal.ZERO;
+            this.feeValue = deliveryFee.doubleValue();
+            this.estimatedDeliveryTime = store.getEstimatedDeliveryTime() != null ? store.getEstimatedDeliveryTime() : 0;
+            this.deliveryRadius = store.getDeliveryRadius();
+            this.deliveryRadiusKm = deliveryRadius != null ? deliveryRadius : 0;
+            this.coverageKeys = coverageKeys(latitude, longitude, deliveryRadiusKm);
+            this.picUrl = store.getPicUrl();
+            this.addressCity = address.getCity();
+            this.addressStreet = address.getStreet();
+        }
+
+        /**
+         * null - если магазин неактивен или без координат (в индекс не попадает)
+         */
+        static StoreGeoEntry from(Store store) {
+            Address address = store.getAddress();
+            if (!Boolean.TRUE.equals(store.getIsActive()) || address == null
+                    || address.getLatitude() == null || address.getLongitude() == null) {
+                return null;
+            }
+            return new StoreGeoEntry(store, address);
+        }
+    }
+
+    /**
+     * Неизменяемая ячейка сетки: магазины + их координаты в параллельных массивах
+     */
+    @Getter
+    private static final class Cell {
+        private final StoreGeoEntry[] entries;
+        private final GeoKernel.PointArrays points;
+
+        private Cell(StoreGeoEntry[] entries) {
+            this.entries = entries;
+            this.points = new GeoKernel.PointArrays(entries.length);
+            for (StoreGeoEntry entry : entries) {
+                points.add(entry.getLatitude(), entry.getLongitude());
+            }
+        }
+
+        private static Cell with(Cell cell, StoreGeoEntry entry) {
+            Cell base = cell != null ? without(cell, entry.getId()) : null;
+            StoreGeoEntry[] entries = base != null
+                    ? Arrays.copyOf(base.entries, base.entries.length + 1)
+                    : new StoreGeoEntry[1];
+            entries[entries.length - 1] = entry;
+            return new Cell(entries);
+        }
+
+        /**
+         * null - если ячейка стала пустой (удаляется из сетки)
+         */
+        private static Cell without(Cell cell, Long storeId) {
+            StoreGeoEntry[] kept = new StoreGeoEntry[cell.entries.length];
+            int count = 0;
+            for (StoreGeoEntry entry : cell.entries) {
+                if (!entry.getId().equals(storeId)) {
+                    kept[count++] = entry;
+                }
+            }
+            if (count == cell.entries.length) {
+                return cell;
+            }
+            return count == 0 ? null : new Cell(Arrays.copyOf(kept, count));
+        }
+    }
+
+    /**
+     * Буферы результатов {@link GeoKernel#scoreWithin}, растут до размера самой большой ячейки
+     */
+    private static final class ScoreBuffers {
+        private int[] indexes = new int[64];
+        private double[] distances = new double[64];
+
+        private void ensureCapacity(int size) {
+            if (indexes.length < size) {
+                indexes = new int[size];
+                distances = new double[size];
+            }
+        }
+    }
+
+    /**
+     * Фильтры запроса, приведенные к примитивам один раз на запрос
+     */
+    private static final class QueryFilter {
+        private final double maxFee;
+        private final int maxTime;
+        private final double minRating;
+
+        private QueryFilter(NearbyStoreRequest request) {
+            this.maxFee = request.getMaxDeliveryFee() != null ? request.getMaxDeliveryFee().doubleValue() : Double.MAX_VALUE;
+            this.maxTime = request.getMaxDeliveryTime() != null ? request.getMaxDeliveryTime() : Integer.MAX_VALUE;
+            this.minRating = request.getMinRating() != null ? request.getMinRating().doubleValue() : -1;
+        }
+
+        private boolean accepts(StoreGeoEntry entry) {
+            return entry.getFeeValue() <= maxFee
+                    && entry.getEstimatedDeliveryTime() <= maxTime
+                    && entry.getRatingValue() >= minRating;
+        }
+    }
+
+    /**
+     * Ограниченная куча: "худший" кандидат на вершине, храним только limit лучших
+     */
+    private static final class TopK {
+        private final int limit;
+        private final Comparator<Candidate> order;
+        private final PriorityQueue<Candidate> heap;
+
+        private TopK(int limit, Comparator<Candidate> order) {
+            this.limit = limit;
+            this.order = order;
+            this.heap = new PriorityQueue<>(limit + 1, order.reversed());
+        }
+
+        private void offer(Candidate candidate) {
+            heap.offer(candidate);
+            if (heap.size() > limit) {
+                heap.poll();
+            }
+        }
+
+        private List<NearbyStoreDto> toDtos() {
+            List<Candidate> result = new ArrayList<>(heap);
+            result.sort(order);
+
+            List<NearbyStoreDto> stores = new ArrayList<>(result.size());
+            for (Candidate candidate : result) {
+                stores.add(candidate.toDto());
+            }
+            return stores;
+        }
+    }
+
+    @Getter
+    private static final class Candidate {
+        private final StoreGeoEntry entry;
+        private final double distanceKm;
+
+        private Candidate(StoreGeoEntry entry, double distanceKm) {
+            this.entry = entry;
+            this.distanceKm = distanceKm;
+        }
+
+        private NearbyStoreDto toDto() {
+            return NearbyStoreDto.builder()
+                    .id(entry.getId())
+                    .name(entry.getName())
+                    .rating(entry.getRating())
+                    .deliveryFee(entry.getDeliveryFee())
+                    .estimatedDeliveryTime(entry.getEstimatedDeliveryTime())
+                    .deliveryRadius(entry.getDeliveryRadius())
+                    .picUrl(entry.getPicUrl())
+                    .addressCity(entry.getAddressCity())
+                    .addressStreet(entry.getAddressStreet())
+                    .distanceKm(Math.round(distanceKm * 100.0) / 100.0)
+                    .build();
+        }
+    }
+}
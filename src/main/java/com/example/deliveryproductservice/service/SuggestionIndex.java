@@ -0,0 +1,423 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.SuggestionDto;
+import com.example.deliveryproductservice.service.CacheInvalidationBus.EntityType;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+/**
+ * 💡 Индекс подсказок поиска (typeahead) по названиям продуктов, магазинов и категорий.
+ * Неизменяемый снимок: отсортированный массив ключей - название с начала каждого слова
+ * ("пицца маргарита", "маргарита"), поиск префикса - бинарный поиск и просмотр диапазона.
+ * Для префиксов из 1-2 символов (самые длинные диапазоны) top-K считается при сборке снимка.
+ * Вес: рейтинг, +2 популярному продукту, +1 совпадению с начала названия; категории выше всех.
+ * Изменения приходят через {@link CacheInvalidationBus} (свои и других узлов) и раз в
+ * refresh-interval применяются пачкой: измененные записи перечитываются из БД по id
+ * и вливаются в снимок слиянием отсортированных массивов, без полной пересборки.
+ */
+@Service
+@Slf4j
+public class SuggestionIndex {
+
+    static final int SHORT_PREFIX_LENGTH = 2;
+    private static final int MAX_WORD_STARTS = 6;
+    private static final int MAX_KEY_LENGTH = 64;
+    private static final float FIRST_WORD_BONUS = 1f;
+    private static final float POPULAR_BONUS = 2f;
+    private static final float STORE_BONUS = 1f;
+    // Категорий мало, и это навигация - при совпадении показываются первыми
+    private static final float CATEGORY_SCORE = 10f;
+    private static final int RELOAD_BATCH_SIZE = 500;
+    private static final Pattern NON_WORD = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final int maxResults;
+    private final Duration refreshInterval;
+
+    private final AtomicReference<Snapshot> current;
+    private final Set<DocKey> dirty = ConcurrentHashMap.newKeySet();
+    private volatile boolean reloadRequested;
+
+    private ScheduledExecutorService scheduler;
+
+    public SuggestionIndex(JdbcTemplate jdbcTemplate,
+                           CacheInvalidationBus cacheInvalidationBus,
+                           @Value("${search.suggest.max-results:20}") int maxResults,
+                           @Value("${search.suggest.refresh-interval:1s}") Duration refreshInterval) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.cacheInvalidationBus = cacheInvalidationBus;
+        this.maxResults = maxResults;
+        this.refreshInterval = refreshInterval;
+        this.current = new AtomicReference<>(Snapshot.build(Map.of(), maxResults));
+    }
+
+    @PostConstruct
+    public void registerCacheInvalidation() {
+        for (EntityType type : EntityType.values()) {
+            cacheInvalidationBus.registerLocalAndRemote(type,
+                    id -> dirty.add(new DocKey(type, id)),
+                    () -> reloadRequested = true);
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        reloadAll();
+
+        scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "suggestion-index-refresh");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::refreshSafely,
+                refreshInterval.toMillis(), refreshInterval.toMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    /**
+     * Top-K подсказок для введенного префикса, по убыванию веса. limit больше search.suggest.max-results
+     * урезается до него, limit <= 0 - пустой список
+     */
+    public List<SuggestionDto> suggest(String prefix, int limit) {
+        return current.get().suggest(prefix, limit).stream()
+                .map(doc -> SuggestionDto.builder()
+                        .type(doc.type().name().toLowerCase(Locale.ROOT))
+                        .id(doc.id())
+                        .name(doc.name())
+                        .build())
+                .toList();
+    }
+
+    private void refreshSafely() {
+        try {
+            refresh();
+        } catch (Exception e) {
+            log.error("❌ Suggestion index refresh failed: {}", e.getMessage(), e);
+        }
+    }
+
+    void refresh() {
+        if (reloadRequested) {
+            reloadRequested = false;
+            dirty.clear();
+            reloadAll();
+            return;
+        }
+        if (dirty.isEmpty()) {
+            return;
+        }
+
+        // Изменение, пришедшее во время загрузки, снова попадет в dirty и применится следующим проходом
+        List<DocKey> keys = new ArrayList<>(dirty);
+        keys.forEach(dirty::remove);
+
+        Map<DocKey, Doc> changes = new HashMap<>();
+        for (DocKey key : keys) {
+            changes.put(key, null);
+        }
+        for (EntityType type : EntityType.values()) {
+            List<Long> ids = keys.stream().filter(key -> key.type() == type).map(DocKey::id).toList();
+            for (int from = 0; from < ids.size(); from += RELOAD_BATCH_SIZE) {
+                List<Long> batch = ids.subList(from, Math.min(from + RELOAD_BATCH_SIZE, ids.size()));
+                for (Doc doc : load(type, batch)) {
+                    changes.put(new DocKey(type, doc.id()), doc);
+                }
+            }
+        }
+
+        current.set(current.get().apply(changes));
+        log.debug("💡 Suggestion index updated: {} changed entries", changes.size());
+    }
+
+    private void reloadAll() {
+        long started = System.nanoTime();
+        Map<DocKey, Doc> docs = new HashMap<>();
+        for (EntityType type : EntityType.values()) {
+            for (Doc doc : load(type, null)) {
+                docs.put(new DocKey(type, doc.id()), doc);
+            }
+        }
+        Snapshot snapshot = Snapshot.build(docs, maxResults);
+        current.set(snapshot);
+        log.info("💡 Suggestion index built: {} entries, {} keys in {} ms",
+                docs.size(), snapshot.keyCount(), (System.nanoTime() - started) / 1_000_000);
+    }
+
+    /**
+     * Активные записи типа; ids == null - все
+     */
+    private List<Doc> load(EntityType type, List<Long> ids) {
+        String sql = switch (type) {
+            case PRODUCT -> "SELECT id, name, is_popular, rating FROM products WHERE is_available = true";
+            case STORE -> "SELECT id, name, false, rating FROM stores WHERE is_active = true";
+            case CATEGORY -> "SELECT id, name, false, NULL FROM categories WHERE is_active = true";
+        };
+        Object[] args = new Object[0];
+        if (ids != null) {
+            sql += " AND id IN (" + String.join(", ", Collections.nCopies(ids.size(), "?")) + ")";
+            args = ids.toArray();
+        }
+        return jdbcTemplate.query(sql, (resultSet, rowNum) -> new Doc(type, resultSet.getLong(1), resultSet.getString(2),
+                score(type, resultSet.getBoolean(3), resultSet.getFloat(4))), args);
+    }
+
+    static float score(EntityType type, boolean popular, float rating) {
+        return switch (type) {
+            case PRODUCT -> rating + (popular ? POPULAR_BONUS : 0);
+            case STORE -> rating + STORE_BONUS;
+            case CATEGORY -> CATEGORY_SCORE;
+        };
+    }
+
+    /**
+     * Нижний регистр, ё → е, слова из букв и цифр через один пробел
+     */
+    static String normalize(String text) {
+        if (text == null) {
+            return "";
+        }
+        StringJoiner joiner = new StringJoiner(" ");
+        for (String word : NON_WORD.split(text.toLowerCase(Locale.ROOT).replace('ё', 'е'))) {
+            if (!word.isEmpty()) {
+                joiner.add(word);
+            }
+        }
+        return joiner.toString();
+    }
+
+    // ================================
+    // 📦 СНИМОК
+    // ================================
+
+    record DocKey(EntityType type, long id) {
+    }
+
+    record Doc(EntityType type, long id, String name, float score) {
+        DocKey key() {
+            return new DocKey(type, id);
+        }
+    }
+
+    private record Token(String key, Doc doc, float score) {
+    }
+
+    private static final Comparator<Token> TOKEN_ORDER = (left, right) -> {
+        int byKey = left.key().compareTo(right.key());
+        return byKey != 0 ? byKey : Float.compare(right.score(), left.score());
+    };
+
+    private static final Comparator<Candidate> RESULT_ORDER = Comparator.comparing(Candidate::score, Comparator.reverseOrder())
+            .thenComparingInt(candidate -> candidate.doc().name().length())
+            .thenComparing(candidate -> candidate.doc().name());
+
+    private record Candidate(Doc doc, float score) {
+    }
+
+    /**
+     * Неизменяемый снимок: ключи отсортированы, top-K коротких префиксов посчитаны заранее
+     */
+    static final class Snapshot {
+
+        private final Map<DocKey, Doc> docs;
+        private final Token[] tokens;
+        private final Map<String, Doc[]> shortPrefixTop;
+        private final int maxResults;
+
+        private Snapshot(Map<DocKey, Doc> docs, Token[] tokens, Map<String, Doc[]> shortPrefixTop, int maxResults) {
+            this.docs = docs;
+            this.tokens = tokens;
+            this.shortPrefixTop = shortPrefixTop;
+            this.maxResults = maxResults;
+        }
+
+        static Snapshot build(Map<DocKey, Doc> docs, int maxResults) {
+            List<Token> tokens = new ArrayList<>();
+            docs.values().forEach(doc -> tokenize(doc, tokens));
+            Token[] sorted = tokens.toArray(Token[]::new);
+            Arrays.sort(sorted, TOKEN_ORDER);
+
+            // Ключи с общим префиксом лежат подряд - каждая группа обходится один раз
+            Map<String, Doc[]> shortPrefixTop = new HashMap<>();
+            for (int length = 1; length <= SHORT_PREFIX_LENGTH; length++) {
+                int i = 0;
+                while (i < sorted.length) {
+                    if (sorted[i].key().length() < length) {
+                        i++;
+                        continue;
+                    }
+                    String prefix = sorted[i].key().substring(0, length);
+                    int end = i;
+                    while (end < sorted.length && sorted[end].key().startsWith(prefix)) {
+                        end++;
+                    }
+                    shortPrefixTop.put(prefix, top(sorted, i, end, prefix, maxResults));
+                    i = end;
+                }
+            }
+            return new Snapshot(Map.copyOf(docs), sorted, shortPrefixTop, maxResults);
+        }
+
+        /**
+         * Новый снимок с изменениями (null - запись удалена или неактивна): токены измененных
+         * записей выбрасываются, новые сортируются отдельно и вливаются слиянием.
+         * Top-K пересчитывается только для коротких префиксов затронутых ключей
+         */
+        Snapshot apply(Map<DocKey, Doc> changes) {
+            Map<DocKey, Doc> updated = new HashMap<>(docs);
+            // Старые версии измененных записей - их токены выбрасываются (сравнение по ссылке, без аллокаций)
+            Set<Doc> stale = Collections.newSetFromMap(new IdentityHashMap<>());
+            List<Token> added = new ArrayList<>();
+            changes.forEach((key, doc) -> {
+                Doc previous = docs.get(key);
+                if (previous != null) {
+                    stale.add(previous);
+                }
+                if (doc == null) {
+                    updated.remove(key);
+                } else {
+                    updated.put(key, doc);
+                    tokenize(doc, added);
+                }
+            });
+            added.sort(TOKEN_ORDER);
+
+            Set<String> affected = new HashSet<>();
+            added.forEach(token -> addShortPrefixes(token.key(), affected));
+
+            Token[] merged = new Token[tokens.length + added.size()];
+            int size = 0;
+            int j = 0;
+            for (Token token : tokens) {
+                if (stale.contains(token.doc())) {
+                    addShortPrefixes(token.key(), affected);
+                    continue;
+                }
+                while (j < added.size() && TOKEN_ORDER.compare(added.get(j), token) < 0) {
+                    merged[size++] = added.get(j++);
+                }
+                merged[size++] = token;
+            }
+            while (j < added.size()) {
+                merged[size++] = added.get(j++);
+            }
+            merged = Arrays.copyOf(merged, size);
+
+            Map<String, Doc[]> top = new HashMap<>(shortPrefixTop);
+            for (String prefix : affected) {
+                Doc[] docsForPrefix = top(merged, lowerBound(merged, prefix), merged.length, prefix, maxResults);
+                if (docsForPrefix.length == 0) {
+                    top.remove(prefix);
+                } else {
+                    top.put(prefix, docsForPrefix);
+                }
+            }
+            return new Snapshot(Collections.unmodifiableMap(updated), merged, top, maxResults);
+        }
+
+        List<Doc> suggest(String prefix, int limit) {
+            String normalized = normalize(prefix);
+            int k = Math.min(limit, maxResults);
+            if (normalized.isEmpty() || k <= 0) {
+                return List.of();
+            }
+
+            Doc[] top;
+            if (normalized.length() <= SHORT_PREFIX_LENGTH) {
+                top = shortPrefixTop.getOrDefault(normalized, new Doc[0]);
+            } else {
+                top = top(tokens, lowerBound(tokens, normalized), tokens.length, normalized, k);
+            }
+            return Arrays.asList(top).subList(0, Math.min(k, top.length));
+        }
+
+        int keyCount() {
+            return tokens.length;
+        }
+
+        int size() {
+            return docs.size();
+        }
+
+        private static int lowerBound(Token[] tokens, String key) {
+            int low = 0;
+            int high = tokens.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (tokens[mid].key().compareTo(key) < 0) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        // Лучшие k записей в диапазоне ключей с префиксом; запись учитывается один раз - с лучшим весом
+        private static Doc[] top(Token[] tokens, int from, int to, String prefix, int k) {
+            Map<DocKey, Candidate> best = new HashMap<>();
+            PriorityQueue<Candidate> heap = new PriorityQueue<>(RESULT_ORDER.reversed());
+            for (int i = from; i < to && tokens[i].key().startsWith(prefix); i++) {
+                Token token = tokens[i];
+                // Большинство токенов отсекается здесь: не лучше худшего из уже выбранных
+                if (heap.size() == k && token.score() <= heap.peek().score()) {
+                    continue;
+                }
+                Candidate existing = best.get(token.doc().key());
+                if (existing != null) {
+                    if (existing.score() >= token.score()) {
+                        continue;
+                    }
+                    heap.remove(existing);
+                } else if (heap.size() == k) {
+                    best.remove(heap.poll().doc().key());
+                }
+                Candidate candidate = new Candidate(token.doc(), token.score());
+                best.put(token.doc().key(), candidate);
+                heap.add(candidate);
+            }
+            return heap.stream().sorted(RESULT_ORDER).map(Candidate::doc).toArray(Doc[]::new);
+        }
+
+        private static void addShortPrefixes(String key, Set<String> out) {
+            for (int length = 1; length <= Math.min(SHORT_PREFIX_LENGTH, key.length()); length++) {
+                out.add(key.substring(0, length));
+            }
+        }
+
+        private static void tokenize(Doc doc, List<Token> out) {
+            String[] words = normalize(doc.name()).split(" ");
+            for (int start = 0; start < Math.min(words.length, MAX_WORD_STARTS); start++) {
+                if (words[start].isEmpty()) {
+                    continue;
+                }
+                String key = String.join(" ", Arrays.copyOfRange(words, start, words.length));
+                if (key.length() > MAX_KEY_LENGTH) {
+                    key = key.substring(0, MAX_KEY_LENGTH);
+                }
+                out.add(new Token(key, doc, doc.score() + (start == 0 ? FIRST_WORD_BONUS : 0)));
+            }
+        }
+    }
+}
@@ -1,32 +1,52 @@
 package com.example.deliveryproductservice.service.impl;
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
 import com.example.deliveryproductservice.dto.category.*;
 import com.example.deliveryproductservice.mapper.CategoryMapper;
 import com.example.deliveryproductservice.model.Category;
+import com.example.deliveryproductservice.model.ImageVariants;
 import com.example.deliveryproductservice.repository.CategoryRepository;
+import com.example.deliveryproductservice.service.CacheInvalidationBus;
+import com.example.deliveryproductservice.service.CategoryCatalogCache;
 import com.example.deliveryproductservice.service.CategoryService;
+import com.example.deliveryproductservice.service.ImageDeletionQueue;
 import com.example.deliveryproductservice.service.StorageService;
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.function.Supplier;
 
 @Service
 @RequiredArgsConstructor
 @Slf4j
-@Transactional
 public class CategoryServiceImpl implements CategoryService {
 
     private final CategoryRepository categoryRepository;
     private final CategoryMapper categoryMapper;
     private final StorageService storageService;
+    private final ImageDeletionQueue imageDeletionQueue;
+    private final CategoryCatalogCache categoryCatalogCache;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    // Короткие транзакции фазы коммита - загрузка в Cloudinary выполняется вне их
+    private final TransactionTemplate transactionTemplate;
+
+    /**
+     * Изменения категорий на других экземплярах применяются к локальному каталогу
+     */
+    @PostConstruct
+    public void registerCacheInvalidation() {
+        cacheInvalidationBus.register(CacheInvalidationBus.EntityType.CATEGORY,
+                categoryCatalogCache::refresh, categoryCatalogCache::invalidate);
+    }
 
     // ================================
     // ✏️ CRUD ОПЕРАЦИИ
@@ -42,19 +62,30 @@ public class CategoryServiceImpl implements CategoryService {
                 return ApiResponse.error("Категория с названием '" + dto.getName() + "' уже существует");
             }
 
+            // Загрузка без транзакции, затем короткий коммит
             ImageUploadResult imageResult = handleImageUpload(dto.getImageFile(), "categories");
-            Category category = categoryMapper.mapToEntity(dto, imageResult.getImageUrl());
 
-            if (imageResult.getImageId() != null) {
-                category.setImageId(imageResult.getImageId());
-            }
+            Category savedCategory = commitOrCompensate(imageResult.getImageId(), () -> {
+                Category category = categoryMapper.mapToEntity(dto, imageResult.getImageUrl());
 
-            Category savedCategory = categoryRepository.save(category);
+                if (imageResult.getImageId() != null) {
+                    category.setImageId(imageResult.getImageId());
+                    category.setImageVariants(imageResult.getImageVariants());
+                }
+
+                Category saved = categoryRepository.save(category);
+                categoryCatalogCache.onCategorySaved(saved);
+                cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.CATEGORY, saved.getId());
+                return saved;
+            });
             CategoryResponseDto responseDto = categoryMapper.mapToResponseDto(savedCategory);
 
             log.info("✅ Category created: {}", savedCategory.getId());
             return ApiResponse.success(responseDto);
 
+        } catch (ImageProcessingRejectedException e) {
+            // Перегрузка обработки изображений - ответ 429/503 с Retry-After формирует ImageProcessingExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("Error creating category: {}", dto.getName(), e);
             return ApiResponse.error("Ошибка создания категории");
@@ -78,24 +109,35 @@ public class CategoryServiceImpl implements CategoryService {
                 return ApiResponse.error("Категория с названием '" + dto.getName() + "' уже существует");
             }
 
-            ImageUploadResult imageResult = handleImageUpdate(
-                    dto.getImageFile(),
-                    category.getImageId(),
-                    "categories"
-            );
+            // Новое изображение загружается до транзакции, старое удаляется после коммита
+            ImageUploadResult imageResult = handleImageUpload(dto.getImageFile(), "categories");
 
-            categoryMapper.updateEntityFromDto(category, dto, imageResult.getImageUrl());
+            Category savedCategory = commitOrCompensate(imageResult.getImageId(), () -> {
+                Category current = categoryRepository.findById(id)
+                        .orElseThrow(() -> new IllegalStateException("Category " + id + " disappeared during update"));
 
-            if (imageResult.getImageId() != null) {
-                category.setImageId(imageResult.getImageId());
-            }
+                categoryMapper.updateEntityFromDto(current, dto, imageResult.getImageUrl());
 
-            Category savedCategory = categoryRepository.save(category);
+                if (imageResult.getImageId() != null) {
+                    // Старое изображение удаляется фоном после коммита (outbox в этой же транзакции)
+                    imageDeletionQueue.enqueue(current.getImageId());
+                    current.setImageId(imageResult.getImageId());
+                    current.setImageVariants(imageResult.getImageVariants());
+                }
+
+                Category saved = categoryRepository.save(current);
+                categoryCatalogCache.onCategorySaved(saved);
+                cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.CATEGORY, saved.getId());
+                return saved;
+            });
             CategoryResponseDto responseDto = categoryMapper.mapToResponseDto(savedCategory);
 
             log.info("✅ Category updated: {}", savedCategory.getId());
             return ApiResponse.success(responseDto);
 
+        } catch (ImageProcessingRejectedException e) {
+            // Перегрузка обработки изображений - ответ 429/503 с Retry-After формирует ImageProcessingExceptionHandler
+            throw e;
         } catch (Exception e) {
             log.error("Error updating category: {}", id, e);
             return ApiResponse.error("Ошибка обновления категории");
@@ -113,10 +155,15 @@ public class CategoryServiceImpl implements CategoryService {
             }
 
             Category category = categoryOpt.get();
-            handleImageDeletion(category.getImageId());
+            String imageId = category.getImageId();
 
-            category.setIsActive(false);
-            categoryRepository.save(category);
+            transactionTemplate.executeWithoutResult(status -> {
+                category.setIsActive(false);
+                categoryCatalogCache.onCategorySaved(categoryRepository.save(category));
+                cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.CATEGORY, id);
+                // Изображение удаляется фоном после коммита
+                imageDeletionQueue.enqueue(imageId);
+            });
 
             log.info("🗑️ Category {} deactivated by user {}", id, deletedBy);
             return ApiResponse.successNoData();
@@ -128,16 +175,14 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ApiResponse<CategoryResponseDto> getCategoryById(Long id) {
         log.debug("Getting category by ID: {}", id);
 
         try {
-            Optional<Category> category = categoryRepository.findById(id);
+            Optional<CategoryResponseDto> category = categoryCatalogCache.snapshot().findById(id);
 
             if (category.isPresent()) {
-                CategoryResponseDto dto = categoryMapper.mapToResponseDto(category.get());
-                return ApiResponse.success(dto);
+                return ApiResponse.success(category.get());
             } else {
                 return ApiResponse.notFound("Категория с ID " + id + " не найдена");
             }
@@ -153,15 +198,11 @@ public class CategoryServiceImpl implements CategoryService {
     // ================================
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryResponseDto> getAllActiveCategories() {
         log.debug("Getting all active categories with full info");
 
         try {
-            List<CategoryResponseDto> categories = categoryRepository.findByIsActiveTrueOrderBySortOrderAsc()
-                    .stream()
-                    .map(categoryMapper::mapToResponseDto)
-                    .collect(Collectors.toList());
+            List<CategoryResponseDto> categories = categoryCatalogCache.snapshot().getActive();
 
             return ListApiResponse.success(categories);
 
@@ -172,15 +213,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryResponseDto> getAllCategories() {
         log.debug("Getting all categories (including inactive) with full info");
 
         try {
-            List<CategoryResponseDto> categories = categoryRepository.findAllByOrderBySortOrderAsc()
-                    .stream()
-                    .map(categoryMapper::mapToResponseDto)
-                    .collect(Collectors.toList());
+            List<CategoryResponseDto> categories = categoryCatalogCache.snapshot().getAll();
 
             return ListApiResponse.success(categories);
 
@@ -191,15 +228,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryResponseDto> searchCategories(String name) {
         log.debug("Searching categories by name: {}", name);
 
         try {
-            List<CategoryResponseDto> categories = categoryRepository.findByNameContainingIgnoreCaseAndIsActiveTrue(name)
-                    .stream()
-                    .map(categoryMapper::mapToResponseDto)
-                    .collect(Collectors.toList());
+            List<CategoryResponseDto> categories = categoryCatalogCache.snapshot().searchActive(name);
 
             return ListApiResponse.successWithMessage(categories,
                     "Найдено " + categories.size() + " категорий по запросу: " + name);
@@ -215,12 +248,11 @@ public class CategoryServiceImpl implements CategoryService {
     // ================================
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryBaseProjection> getActiveCategoriesBrief() {
         log.debug("Getting active categories brief");
 
         try {
-            List<CategoryBaseProjection> categories = categoryRepository.findActiveCategoriesProjection();
+            List<CategoryBaseProjection> categories = categoryCatalogCache.snapshot().getActiveBrief();
             return ListApiResponse.success(categories);
 
         } catch (Exception e) {
@@ -230,12 +262,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ApiResponse<CategoryBaseProjection> getCategoryBrief(Long id) {
         log.debug("Getting category brief for ID: {}", id);
 
         try {
-            Optional<CategoryBaseProjection> category = categoryRepository.findCategoryProjectionById(id);
+            Optional<CategoryBaseProjection> category = categoryCatalogCache.snapshot().findBriefById(id);
 
             if (category.isPresent()) {
                 return ApiResponse.success(category.get());
@@ -250,12 +281,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryBaseProjection> getCategoriesBriefByIds(List<Long> ids) {
         log.debug("Getting categories brief by IDs: {}", ids);
 
         try {
-            List<CategoryBaseProjection> categories = categoryRepository.findCategoriesProjectionByIds(ids);
+            List<CategoryBaseProjection> categories = categoryCatalogCache.snapshot().findBriefByIds(ids);
             return ListApiResponse.success(categories);
 
         } catch (Exception e) {
@@ -265,12 +295,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryBaseProjection> getAllCategoriesBrief() {
         log.debug("Getting all categories brief");
 
         try {
-            List<CategoryBaseProjection> categories = categoryRepository.findAllCategoriesProjection();
+            List<CategoryBaseProjection> categories = categoryCatalogCache.snapshot().getAllBrief();
             return ListApiResponse.success(categories);
 
         } catch (Exception e) {
@@ -280,12 +309,11 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
-    @Transactional(readOnly = true)
     public ListApiResponse<CategoryBaseProjection> searchCategoriesBrief(String name) {
         log.debug("Searching categories brief by name: {}", name);
 
         try {
-            List<CategoryBaseProjection> categories = categoryRepository.searchActiveCategoriesProjection(name);
+            List<CategoryBaseProjection> categories = categoryCatalogCache.snapshot().searchActiveBrief(name);
             return ListApiResponse.successWithMessage(categories,
                     "Найдено " + categories.size() + " категорий по запросу: " + name);
 
@@ -321,9 +349,8 @@ public class CategoryServiceImpl implements CategoryService {
     // ================================
 
     @Override
-    @Transactional(readOnly = true)
     public Long getActiveCategoriesCount() {
-        return categoryRepository.countActiveCategories();
+        return categoryCatalogCache.snapshot().getActiveCount();
     }
 
     @Override
@@ -339,6 +366,7 @@ public class CategoryServiceImpl implements CategoryService {
     }
 
     @Override
+    @Transactional
     public ApiResponse<CategoryResponseDto> toggleCategoryStatus(Long id, Long updatedBy) {
         log.info("Toggling category status: {} by user: {}", id, updatedBy);
 
@@ -353,6 +381,8 @@ public class CategoryServiceImpl implements CategoryService {
             category.setIsActive(!currentStatus);
 
             Category savedCategory = categoryRepository.save(category);
+            categoryCatalogCache.onCategorySaved(savedCategory);
+            cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.CATEGORY, id);
             CategoryResponseDto responseDto = categoryMapper.mapToResponseDto(savedCategory);
 
             String statusText = savedCategory.getIsActive() ? "активирована" : "деактивирована";
@@ -374,7 +404,7 @@ public class CategoryServiceImpl implements CategoryService {
     private ImageUploadResult handleImageUpload(MultipartFile imageFile, String folder) {
         if (imageFile == null || imageFile.isEmpty()) {
             log.debug("No image file provided");
-            return new ImageUploadResult(null, null);
+            return new ImageUploadResult(null, null, null);
         }
 
         try {
@@ -383,7 +413,7 @@ public class CategoryServiceImpl implements CategoryService {
             log.info("📸 Image uploaded successfully: {} with ID: {}",
                     storageResult.getUrl(), storageResult.getImageId());
 
-            return new ImageUploadResult(storageResult.getUrl(), storageResult.getImageId());
+            return new ImageUploadResult(storageResult.getUrl(), storageResult.getImageId(), storageResult.getVariants());
 
         } catch (IOException e) {
             log.error("❌ Failed to upload image: {}", e.getMessage(), e);
@@ -391,17 +421,20 @@ public class CategoryServiceImpl implements CategoryService {
         }
     }
 
-    private ImageUploadResult handleImageUpdate(MultipartFile newImageFile, String currentImageId, String folder) {
-        if (newImageFile == null || newImageFile.isEmpty()) {
-            log.debug("No new image provided, keeping current image");
-            return new ImageUploadResult(null, null);
-        }
-
-        if (currentImageId != null) {
-            handleImageDeletion(currentImageId);
+    /**
+     * Выполняет действие в короткой транзакции; при ошибке коммита удаляет
+     * только что загруженное изображение (компенсация)
+     */
+    private <T> T commitOrCompensate(String uploadedImageId, Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } catch (RuntimeException e) {
+            if (uploadedImageId != null) {
+                log.warn("↩️ Commit failed, deleting uploaded image {}", uploadedImageId);
+                handleImageDeletion(uploadedImageId);
+            }
+            throw e;
         }
-
-        return handleImageUpload(newImageFile, folder);
     }
 
     private void handleImageDeletion(String imageId) {
@@ -423,10 +456,12 @@ public class CategoryServiceImpl implements CategoryService {
     private static class ImageUploadResult {
         private final String imageUrl;
         private final String imageId;
+        private final ImageVariants imageVariants;
 
-        public ImageUploadResult(String imageUrl, String imageId) {
+        public ImageUploadResult(String imageUrl, String imageId, ImageVariants imageVariants) {
             this.imageUrl = imageUrl;
             this.imageId = imageId;
+            this.imageVariants = imageVariants;
         }
     }
 }
\ No newline at end of file
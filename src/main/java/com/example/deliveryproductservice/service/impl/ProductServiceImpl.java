@@ -1,11 +1,17 @@
 package com.example.deliveryproductservice.service.impl;
 
 
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
 import com.example.deliveryproductservice.dto.ProductDto.*;
+import com.example.deliveryproductservice.dto.ImageUpload.ImageUploadStatusDto;
+import com.example.deliveryproductservice.dto.PageCursor;
 import com.example.deliveryproductservice.mapper.ProductMapper;
+import com.example.deliveryproductservice.model.ImageStatus;
 import com.example.deliveryproductservice.model.Product;
 import com.example.deliveryproductservice.repository.ProductRepository;
-import com.example.deliveryproductservice.service.ImageConverterService;
+import com.example.deliveryproductservice.service.AsyncImageUploadService;
+import com.example.deliveryproductservice.service.CacheInvalidationBus;
+import com.example.deliveryproductservice.service.ImageDeletionQueue;
 import com.example.deliveryproductservice.service.ProductService;
 import com.example.deliveryproductservice.service.StorageService;
 import lombok.RequiredArgsConstructor;
@@ -15,6 +21,7 @@ import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -30,7 +37,12 @@ public class ProductServiceImpl implements ProductService {
     private final ProductRepository productRepository;
     private final ProductMapper productMapper;
     private final StorageService storageService;
-    private final ImageConverterService imageConverterService;
+    private final AsyncImageUploadService asyncImageUploadService;
+    private final ImageDeletionQueue imageDeletionQueue;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    private final TransactionTemplate transactionTemplate;
+
+    private static final String PENDING_IMAGE_URL = "https://via.placeholder.com/400x400/f0f0f0/999999?text=Processing";
 
 
     /**
@@ -71,18 +83,24 @@ public class ProductServiceImpl implements ProductService {
                     .discountPrice(createProductDto.getDiscountPrice())
                     .picUrl(uploadResult.getUrl())
                     .picId(uploadResult.getImageId())
+                    .imageVariants(uploadResult.getVariants())
                     .isPopular(createProductDto.getIsPopular())
                     .isAvailable(createProductDto.getIsAvailable())
                     .rating(BigDecimal.ZERO)
+                    .imageStatus(ImageStatus.READY)
                     .build();
 
             Product savedProduct = productRepository.save(product);
+            cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.PRODUCT, savedProduct.getId());
 
             log.info("Product created successfully with ID: {} by user: {}",
                     savedProduct.getId(), userId);
 
             return SingleProductResponseWrapper.success(convertToResponseDto(savedProduct));
 
+        } catch (ImageProcessingRejectedException e) {
+            // Перегрузка обработки изображений - контроллер отвечает 429/503 с Retry-After
+            throw e;
         } catch (IOException e) {
             log.error("Error uploading image for product creation", e);
             return SingleProductResponseWrapper.builder()
@@ -101,15 +119,129 @@ public class ProductServiceImpl implements ProductService {
     }
 
     /**
-     * Обрабатывает и загружает изображение - ИСПРАВЛЕНО
+     * Обрабатывает и загружает изображение вместе с производными (thumb/card/full).
+     * Уже загруженный ранее файл (например, одно фото для нескольких вариантов блюда)
+     * не обрабатывается повторно - хранилище возвращает существующее изображение
      */
     private StorageService.StorageResult processAndUploadImage(MultipartFile imageFile) throws IOException {
-        // ИСПРАВЛЕНО: Обработка изображения через ImageConverterService
-        ImageConverterService.ProcessedImage processedImage =
-                imageConverterService.processProductImage(imageFile);
+        return storageService.uploadImage(imageFile, "products");
+    }
+
+    /**
+     * 🚀 Создает продукт сразу с placeholder-изображением (статус PENDING).
+     * Конвертация и загрузка выполняются в фоне, результат можно опросить через getProductImageStatus
+     */
+    @Override
+    public SingleProductResponseWrapper createProductAsync(CreateProductDto createProductDto,
+                                                           MultipartFile imageFile,
+                                                           Long userId) {
+        if (imageFile == null || imageFile.isEmpty()) {
+            return SingleProductResponseWrapper.builder()
+                    .success(false)
+                    .message("Product image is required")
+                    .timestamp(java.time.LocalDateTime.now())
+                    .build();
+        }
+
+        if (!isValidImageFile(imageFile)) {
+            return SingleProductResponseWrapper.builder()
+                    .success(false)
+                    .message("Invalid image format. Only JPG, PNG, GIF, WEBP are allowed")
+                    .timestamp(java.time.LocalDateTime.now())
+                    .build();
+        }
+
+        // Копируем файл до выхода из запроса - временный multipart-файл будет удален
+        AsyncImageUploadService.PendingImage pendingImage;
+        try {
+            pendingImage = AsyncImageUploadService.PendingImage.copyOf(imageFile);
+        } catch (IOException e) {
+            log.error("Error reading image for async product creation", e);
+            return SingleProductResponseWrapper.builder()
+                    .success(false)
+                    .message("Failed to read product image: " + e.getMessage())
+                    .timestamp(java.time.LocalDateTime.now())
+                    .build();
+        }
+
+        try {
+            String placeholderId = "default_product_pending_" + UUID.randomUUID();
+
+            Product product = Product.builder()
+                    .storeId(createProductDto.getStoreId())
+                    .categoryId(createProductDto.getCategoryId())
+                    .name(createProductDto.getName())
+                    .description(createProductDto.getDescription())
+                    .price(createProductDto.getPrice())
+                    .discountPrice(createProductDto.getDiscountPrice())
+                    .picUrl(PENDING_IMAGE_URL)
+                    .picId(placeholderId)
+                    .isPopular(createProductDto.getIsPopular())
+                    .isAvailable(createProductDto.getIsAvailable())
+                    .rating(BigDecimal.ZERO)
+                    .imageStatus(ImageStatus.PENDING)
+                    .build();
+
+            // Нет места в очереди загрузки - транзакция откатывается, продукт не создается
+            Product savedProduct = transactionTemplate.execute(status -> {
+                Product saved = productRepository.save(product);
+                Long savedId = saved.getId();
+                cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.PRODUCT, savedId);
+
+                asyncImageUploadService.submitAfterCommit(
+                        pendingImage,
+                        this::processAndUploadImage,
+                        result -> attachUploadedImage(savedId, placeholderId, result),
+                        () -> markImageFailed(savedId, placeholderId));
+                return saved;
+            });
+            Long productId = savedProduct.getId();
 
-        // Загрузка обработанного изображения через StorageService
-        return storageService.uploadProcessedImage(processedImage);
+            log.info("Product created with pending image, ID: {} by user: {}", productId, userId);
+
+            return SingleProductResponseWrapper.success(convertToResponseDto(savedProduct));
+
+        } catch (RuntimeException e) {
+            pendingImage.discardIfNotSubmitted();
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ImageUploadStatusDto> getProductImageStatus(Long productId) {
+        return productRepository.findById(productId)
+                .map(product -> ImageUploadStatusDto.of("product", product.getId(),
+                        ImageStatus.orReady(product.getImageStatus()), product.getPicUrl()));
+    }
+
+    /**
+     * Записывает загруженное изображение, если продукт все еще ждет именно его
+     * (не удален и изображение не заменено через update)
+     */
+    private boolean attachUploadedImage(Long productId, String placeholderId, StorageService.StorageResult result) {
+        Optional<Product> productOptional = productRepository.findById(productId);
+        if (productOptional.isEmpty() || !placeholderId.equals(productOptional.get().getPicId())) {
+            return false;
+        }
+
+        Product product = productOptional.get();
+        product.setPicUrl(result.getUrl());
+        product.setPicId(result.getImageId());
+        product.setImageVariants(result.getVariants());
+        product.setImageStatus(ImageStatus.READY);
+        productRepository.save(product);
+        cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.PRODUCT, productId);
+        return true;
+    }
+
+    private void markImageFailed(Long productId, String placeholderId) {
+        productRepository.findById(productId)
+                .filter(product -> placeholderId.equals(product.getPicId()))
+                .ifPresent(product -> {
+                    product.setImageStatus(ImageStatus.FAILED);
+                    productRepository.save(product);
+                });
     }
 
     /**
@@ -133,6 +265,8 @@ public class ProductServiceImpl implements ProductService {
         dto.setPrice(product.getPrice());
         dto.setDiscountPrice(product.getDiscountPrice());
         dto.setPicUrl(product.getPicUrl());
+        dto.setImageVariants(product.getImageVariants());
+        dto.setImageStatus(ImageStatus.orReady(product.getImageStatus()));
         dto.setIsAvailable(product.getIsAvailable());
         dto.setRating(product.getRating());
         dto.setCreatedAt(product.getCreatedAt());
@@ -239,6 +373,46 @@ public class ProductServiceImpl implements ProductService {
         return ProductResponseWrapper.success(productDtoSlice);
     }
 
+    @Override
+    @Transactional(readOnly = true)
+    public ProductResponseWrapper getAllAvailableProducts(PageCursor cursor, int size) {
+        log.debug("Getting available products after cursor ({}, {}), size={}", cursor.getCreatedAt(), cursor.getId(), size);
+
+        Slice<Product> productSlice = productRepository.findAvailableAfter(
+                cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+
+        return toKeysetResponse(productSlice);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductResponseWrapper getProductsByStore(Long storeId, PageCursor cursor, int size) {
+        log.debug("Getting products for store {} after cursor ({}, {}), size={}",
+                storeId, cursor.getCreatedAt(), cursor.getId(), size);
+
+        Slice<Product> productSlice = productRepository.findAvailableByStoreAfter(
+                storeId, cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+
+        return toKeysetResponse(productSlice);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ProductResponseWrapper getProductsByCategory(Long categoryId, PageCursor cursor, int size) {
+        log.debug("Getting products for category {} after cursor ({}, {}), size={}",
+                categoryId, cursor.getCreatedAt(), cursor.getId(), size);
+
+        Slice<Product> productSlice = productRepository.findAvailableByCategoryAfter(
+                categoryId, cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+
+        return toKeysetResponse(productSlice);
+    }
+
+    private ProductResponseWrapper toKeysetResponse(Slice<Product> productSlice) {
+        String nextCursor = PageCursor.next(productSlice, Product::getCreatedAt, Product::getId);
+        return ProductResponseWrapper.success(productSlice.map(productMapper::mapToResponseDto), nextCursor);
+    }
+
     @Override
     @Transactional(readOnly = true)
     public ProductResponseWrapper searchProductsByName(String name, int page, int size) {
@@ -285,24 +459,20 @@ public class ProductServiceImpl implements ProductService {
             if (updateProductDto.getImageFile() != null && !updateProductDto.getImageFile().isEmpty()) {
                 handleProductImage(product, updateProductDto);
 
-                // Удаляем старое изображение
-                if (oldImageId != null && !oldImageId.startsWith("default_")) {
-                    try {
-                        storageService.deleteImage(oldImageId);
-                        log.debug("🗑️ Old image deleted: {}", oldImageId);
-                    } catch (Exception e) {
-                        log.warn("⚠️ Failed to delete old image {}: {}", oldImageId, e.getMessage());
-                    }
-                }
+                // Старое изображение удаляется фоном после коммита (outbox в этой же транзакции)
+                imageDeletionQueue.enqueue(oldImageId);
             }
 
             Product savedProduct = productRepository.save(product);
+            cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.PRODUCT, productId);
 
             log.info("✅ Product {} updated successfully by user: {}", productId, userId);
 
             ProductResponseDto responseDto = productMapper.mapToResponseDto(savedProduct);
             return SingleProductResponseWrapper.success(responseDto);
 
+        } catch (ImageProcessingRejectedException e) {
+            throw e;
         } catch (Exception e) {
             log.error("❌ Error updating product {}: {}", productId, e.getMessage(), e);
             throw new RuntimeException("Failed to update product: " + e.getMessage(), e);
@@ -324,6 +494,7 @@ public class ProductServiceImpl implements ProductService {
         product.setIsAvailable(false); // Мягкое удаление
 
         productRepository.save(product);
+        cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.PRODUCT, productId);
 
         log.info("✅ Product {} soft deleted successfully by user: {}", productId, userId);
 
@@ -344,6 +515,8 @@ public class ProductServiceImpl implements ProductService {
 
                 product.setPicId(result.getImageId());
                 product.setPicUrl(result.getUrl());
+                product.setImageVariants(result.getVariants());
+                product.setImageStatus(ImageStatus.READY);
 
                 log.info("✅ Product image uploaded successfully: {} -> {}",
                         result.getImageId(), result.getUrl());
@@ -369,6 +542,7 @@ public class ProductServiceImpl implements ProductService {
     private void setDefaultProductImage(Product product) {
         product.setPicId("default_product_" + System.currentTimeMillis());
         product.setPicUrl("https://via.placeholder.com/400x400/f0f0f0/999999?text=No+Image");
+        product.setImageVariants(null);
 
         log.debug("🖼️ Set default image for product");
     }
@@ -393,20 +567,10 @@ public class ProductServiceImpl implements ProductService {
 
         // Удаляем из базы данных
         productRepository.delete(product);
+        cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.PRODUCT, productId);
 
-        // Удаляем изображение
-        if (imageId != null && !imageId.startsWith("default_")) {
-            try {
-                boolean deleted = storageService.deleteImage(imageId);
-                if (deleted) {
-                    log.info("🗑️ Product image deleted: {}", imageId);
-                } else {
-                    log.warn("⚠️ Failed to delete product image: {}", imageId);
-                }
-            } catch (Exception e) {
-                log.error("❌ Error deleting product image {}: {}", imageId, e.getMessage(), e);
-            }
-        }
+        // Изображение удаляется фоном; запись в очередь откатится вместе с удалением продукта
+        imageDeletionQueue.enqueue(imageId);
 
         log.info("✅ Product {} hard deleted successfully by user: {}", productId, userId);
     }
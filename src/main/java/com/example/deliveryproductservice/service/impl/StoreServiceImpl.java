@@ -1,22 +1,35 @@
 package com.example.deliveryproductservice.service.impl;
 
+import com.example.deliveryproductservice.dto.ImageUpload.ImageUploadStatusDto;
+import com.example.deliveryproductservice.dto.PageCursor;
 import com.example.deliveryproductservice.dto.StoreDto.*;
 import com.example.deliveryproductservice.mapper.StoreMapper;
 import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.model.ImageStatus;
+import com.example.deliveryproductservice.model.ImageVariants;
 import com.example.deliveryproductservice.model.Store;
 import com.example.deliveryproductservice.repository.StoreRepository;
+import com.example.deliveryproductservice.service.AsyncImageUploadService;
+import com.example.deliveryproductservice.service.CacheInvalidationBus;
 import com.example.deliveryproductservice.service.GeocodingService;
+import com.example.deliveryproductservice.service.ImageDeletionQueue;
 import com.example.deliveryproductservice.service.StorageService;
+import com.example.deliveryproductservice.service.StoreGeoQueryService;
 import com.example.deliveryproductservice.service.StoreService;
+import com.example.deliveryproductservice.service.StoreSpatialIndex;
+import jakarta.annotation.PostConstruct;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Slice;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
@@ -25,35 +38,51 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.Base64;
 import java.util.List;
 import java.util.Optional;
+import java.util.UUID;
+import java.util.function.Supplier;
 import java.util.stream.Collectors;
 
 @RequiredArgsConstructor
 @Slf4j
 @Service
-@Transactional
 public class StoreServiceImpl implements StoreService {
 
     private final StoreRepository storeRepository;
     private final StoreMapper storeMapper;
     private final StorageService storageService;
     private final GeocodingService geocodingService;
+    private final StoreSpatialIndex storeSpatialIndex;
+    private final StoreGeoQueryService storeGeoQueryService;
+    private final AsyncImageUploadService asyncImageUploadService;
+    private final ImageDeletionQueue imageDeletionQueue;
+    private final CacheInvalidationBus cacheInvalidationBus;
+    // Короткие транзакции фазы коммита - удаленные вызовы выполняются вне их
+    private final TransactionTemplate transactionTemplate;
     private static final int UI_STORE_LIMIT = 9;
+    private static final String PENDING_IMAGE_URL = "https://via.placeholder.com/800x600/f0f0f0/999999?text=Processing";
+    private static final int INDEX_LOAD_BATCH_SIZE = 500;
 
 
 
+    /**
+     * Создание магазина в две фазы: геокодирование и загрузка изображения выполняются
+     * без транзакции (соединение из пула не удерживается во время HTTP-вызовов),
+     * затем короткая транзакция только сохраняет магазин.
+     */
     @Override
     public StoreResponseDto createStore(CreateStoreDto createStoreDto, Long ownerId) {
 
         try {
-            // 1. 🌍 Создаем адрес с координатами
+            // 1. 🌍 Создаем адрес с координатами (Mapbox, без транзакции)
             Address storeAddress = createStoreAddress(createStoreDto);
             log.info("📍 Address created with coordinates: [{}, {}]",
                     storeAddress.getLatitude(), storeAddress.getLongitude());
 
-            // 2. 📸 Обрабатываем изображение через StorageService
+            // 2. 📸 Загружаем изображение (Cloudinary, без транзакции)
             StorageService.StorageResult imageResult = null;
             MultipartFile imageFile = createStoreDto.getImageFile();
 
@@ -71,19 +100,23 @@ public class StoreServiceImpl implements StoreService {
                 // throw new IllegalArgumentException("Изображение магазина обязательно");
             }
 
-            // 3. 🏪 Создаем сущность Store
-            Store store = buildStoreEntity(createStoreDto, ownerId, storeAddress, imageResult);
-
-            // 4. 💾 Сохраняем в базу данных
-            Store savedStore = storeRepository.save(store);
+            // 3. 💾 Короткая транзакция: создаем и сохраняем Store
+            StorageService.StorageResult uploadedImage = imageResult;
+            Store savedStore = commitOrCompensate(uploadedImage != null ? uploadedImage.getImageId() : null, () -> {
+                Store store = buildStoreEntity(createStoreDto, ownerId, storeAddress, uploadedImage);
+                Store saved = storeRepository.save(store);
+                storeSpatialIndex.onStoreSaved(saved);
+                cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.STORE, saved.getId());
+                return saved;
+            });
 
             log.info("✅ Store created successfully with ID: {} by owner: {}",
                     savedStore.getId(), ownerId);
 
-            // 5. 📊 Логируем статистику
+            // 4. 📊 Логируем статистику
             logStoreCreationStats(savedStore);
 
-            // 6. 📤 Возвращаем DTO ответ
+            // 5. 📤 Возвращаем DTO ответ
             return storeMapper.mapToResponseDto(savedStore);
 
         } catch (RuntimeException e) {
@@ -95,6 +128,97 @@ public class StoreServiceImpl implements StoreService {
         }
     }
 
+    /**
+     * 🚀 Создание магазина без ожидания загрузки изображения:
+     * магазин сохраняется с placeholder (статус PENDING), загрузка идет в фоне после коммита
+     */
+    @Override
+    public StoreResponseDto createStoreAsync(CreateStoreDto createStoreDto, Long ownerId) {
+        MultipartFile imageFile = createStoreDto.getImageFile();
+        if (imageFile == null || imageFile.isEmpty()) {
+            return createStore(createStoreDto, ownerId);
+        }
+
+        // Копируем файл до выхода из запроса - временный multipart-файл будет удален
+        AsyncImageUploadService.PendingImage pendingImage;
+        try {
+            pendingImage = AsyncImageUploadService.PendingImage.copyOf(imageFile);
+        } catch (IOException e) {
+            log.error("❌ Failed to read store image: {}", e.getMessage());
+            throw new RuntimeException("Ошибка чтения изображения: " + e.getMessage(), e);
+        }
+
+        try {
+            Address storeAddress = createStoreAddress(createStoreDto);
+
+            String placeholderId = "default_store_pending_" + UUID.randomUUID();
+
+            Store savedStore = transactionTemplate.execute(status -> {
+                Store store = buildStoreEntity(createStoreDto, ownerId, storeAddress, (StorageService.StorageResult) null);
+                store.setPicUrl(PENDING_IMAGE_URL);
+                store.setPicId(placeholderId);
+                store.setImageStatus(ImageStatus.PENDING);
+
+                Store saved = storeRepository.save(store);
+                storeSpatialIndex.onStoreSaved(saved);
+                cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.STORE, saved.getId());
+
+                // Задача загрузки стартует только после коммита
+                Long savedId = saved.getId();
+                asyncImageUploadService.submitAfterCommit(
+                        pendingImage,
+                        storageService::uploadImage,
+                        result -> attachUploadedImage(savedId, placeholderId, result),
+                        () -> markImageFailed(savedId, placeholderId));
+                return saved;
+            });
+
+            log.info("✅ Store created with pending image, ID: {} by owner: {}", savedStore.getId(), ownerId);
+            return storeMapper.mapToResponseDto(savedStore);
+
+        } catch (RuntimeException e) {
+            pendingImage.discardIfNotSubmitted();
+            throw e;
+        }
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ImageUploadStatusDto> getStoreImageStatus(Long storeId) {
+        return storeRepository.findById(storeId)
+                .map(store -> ImageUploadStatusDto.of("store", store.getId(),
+                        ImageStatus.orReady(store.getImageStatus()), store.getPicUrl()));
+    }
+
+    /**
+     * Записывает загруженное изображение, если магазин все еще ждет именно его
+     */
+    private boolean attachUploadedImage(Long storeId, String placeholderId, StorageService.StorageResult result) {
+        Optional<Store> storeOptional = storeRepository.findById(storeId);
+        if (storeOptional.isEmpty() || !placeholderId.equals(storeOptional.get().getPicId())) {
+            return false;
+        }
+
+        Store store = storeOptional.get();
+        store.setPicUrl(result.getUrl());
+        store.setPicId(result.getImageId());
+        store.setImageVariants(result.getVariants());
+        store.setImageStatus(ImageStatus.READY);
+        Store savedStore = storeRepository.save(store);
+        storeSpatialIndex.onStoreSaved(savedStore);
+        cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.STORE, storeId);
+        return true;
+    }
+
+    private void markImageFailed(Long storeId, String placeholderId) {
+        storeRepository.findById(storeId)
+                .filter(store -> placeholderId.equals(store.getPicId()))
+                .ifPresent(store -> {
+                    store.setImageStatus(ImageStatus.FAILED);
+                    storeRepository.save(store);
+                });
+    }
+
     /**
      * ✅ Вспомогательный метод для создания сущности Store
      */
@@ -122,7 +246,9 @@ public class StoreServiceImpl implements StoreService {
         if (imageResult != null) {
             store.setPicUrl(imageResult.getUrl());
             store.setPicId(imageResult.getImageId());
+            store.setImageVariants(imageResult.getVariants());
         }
+        store.setImageStatus(ImageStatus.READY);
 
         // Статус и временные метки
         store.setIsActive(createStoreDto.getIsActive() != null ? createStoreDto.getIsActive() : true);
@@ -210,6 +336,37 @@ public class StoreServiceImpl implements StoreService {
     }
 
 
+    @Override
+    @Transactional(readOnly = true)
+    public StoreResponseWrapper getActiveStores(PageCursor cursor, int size) {
+        log.debug("Getting active stores after cursor ({}, {}), size={}", cursor.getCreatedAt(), cursor.getId(), size);
+
+        Slice<Store> storeSlice = storeRepository.findActiveAfter(
+                cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+
+        String nextCursor = PageCursor.next(storeSlice, Store::getCreatedAt, Store::getId);
+        return StoreResponseWrapper.success(storeSlice.map(storeMapper::mapToResponseDto), nextCursor);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public StoreBriefResponseWrapper getActiveStoresBrief(PageCursor cursor, int size) {
+        log.debug("Getting active stores brief after cursor ({}, {}), size={}", cursor.getCreatedAt(), cursor.getId(), size);
+
+        try {
+            Slice<StoreBriefProjection> storeProjections = storeRepository.findActiveStoresBriefAfter(
+                    cursor.getCreatedAt(), cursor.getId(), PageRequest.of(0, size));
+
+            String nextCursor = PageCursor.next(storeProjections,
+                    StoreBriefProjection::getCreatedAt, StoreBriefProjection::getId);
+            return StoreBriefResponseWrapper.success(storeProjections.map(StoreBriefDto::fromProjection), nextCursor);
+
+        } catch (Exception e) {
+            log.error("Error getting brief stores", e);
+            return StoreBriefResponseWrapper.error("Ошибка получения списка магазинов");
+        }
+    }
+
     @Transactional(readOnly = true)
     @Override
     public StoreResponseWrapper getStoresByOwner(Long ownerId, int page, int size) {
@@ -241,10 +398,168 @@ public class StoreServiceImpl implements StoreService {
 
 
 
+    /**
+     * Обновление магазина: новое изображение загружается до транзакции,
+     * старое удаляется только после успешного коммита
+     */
+    @Override
+    public SingleStoreResponseWrapper updateStore(Long storeId, UpdateStoreDto updateStoreDto, Long ownerId) {
+        log.info("Updating store {} by owner: {}", storeId, ownerId);
+
+        // Проверка владельца до загрузки, чтобы не грузить изображение впустую
+        Optional<Store> existing = storeRepository.findById(storeId);
+        if (existing.isEmpty() || !existing.get().getOwnerId().equals(ownerId)) {
+            return SingleStoreResponseWrapper.notFound(storeId);
+        }
+
+        // 📸 Фаза подготовки: загрузка без транзакции
+        ImageUploadResult imageResult = null;
+        if (updateStoreDto.getImageFile() != null && !updateStoreDto.getImageFile().isEmpty()) {
+            imageResult = handleImageUpload(updateStoreDto.getImageFile(), "stores");
+        }
+
+        // 💾 Короткая транзакция: применяем изменения к актуальному состоянию
+        ImageUploadResult uploadedImage = imageResult;
+        Store savedStore = commitOrCompensate(uploadedImage != null ? uploadedImage.getImageId() : null, () -> {
+            Optional<Store> storeOptional = storeRepository.findById(storeId);
+            if (storeOptional.isEmpty() || !storeOptional.get().getOwnerId().equals(ownerId)) {
+                throw new IllegalStateException("Store " + storeId + " disappeared during update");
+            }
+
+            Store store = storeOptional.get();
+
+            if (updateStoreDto.getName() != null) store.setName(updateStoreDto.getName());
+            if (updateStoreDto.getDescription() != null) store.setDescription(updateStoreDto.getDescription());
+            if (updateStoreDto.getPhone() != null) store.setPhone(updateStoreDto.getPhone());
+            if (updateStoreDto.getEmail() != null) store.setEmail(updateStoreDto.getEmail());
+            if (updateStoreDto.getDeliveryRadius() != null) store.setDeliveryRadius(updateStoreDto.getDeliveryRadius());
+            if (updateStoreDto.getDeliveryFee() != null) store.setDeliveryFee(updateStoreDto.getDeliveryFee());
+            if (updateStoreDto.getEstimatedDeliveryTime() != null) store.setEstimatedDeliveryTime(updateStoreDto.getEstimatedDeliveryTime());
+            if (updateStoreDto.getIsActive() != null) store.setIsActive(updateStoreDto.getIsActive());
+
+            if (uploadedImage != null) {
+                // Старое изображение удаляется фоном после коммита (outbox в этой же транзакции)
+                imageDeletionQueue.enqueue(store.getPicId());
+                store.setPicUrl(uploadedImage.getImageUrl());
+                store.setPicId(uploadedImage.getImageId());
+                store.setImageVariants(uploadedImage.getImageVariants());
+                store.setImageStatus(ImageStatus.READY);
+            }
+
+            Store saved = storeRepository.save(store);
+            storeSpatialIndex.onStoreSaved(saved);
+            cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.STORE, storeId);
+            return saved;
+        });
+
+        log.info("✅ Store {} updated successfully by owner: {}", storeId, ownerId);
+        return SingleStoreResponseWrapper.success(storeMapper.mapToResponseDto(savedStore));
+    }
+
+    @Override
+    @Transactional
+    public SingleStoreResponseWrapper deactivateStore(Long storeId, Long ownerId) {
+        log.info("Deactivating store {} by owner: {}", storeId, ownerId);
+
+        Optional<Store> storeOptional = storeRepository.findByIdAndIsActiveTrue(storeId);
+        if (storeOptional.isEmpty() || !storeOptional.get().getOwnerId().equals(ownerId)) {
+            return SingleStoreResponseWrapper.notFound(storeId);
+        }
+
+        Store store = storeOptional.get();
+        store.setIsActive(false); // Мягкое удаление
+        Store savedStore = storeRepository.save(store);
+        storeSpatialIndex.onStoreRemoved(storeId);
+        cacheInvalidationBus.publish(CacheInvalidationBus.EntityType.STORE, storeId);
+
+        log.info("✅ Store {} deactivated by owner: {}", storeId, ownerId);
+        return SingleStoreResponseWrapper.success(storeMapper.mapToResponseDto(savedStore));
+    }
+
+    /**
+     * Без @Transactional: в режиме памяти соединение с БД не нужно, в режиме БД - один запрос репозитория
+     */
+    @Override
+    public NearbyStoreResponseWrapper findNearbyStores(NearbyStoreRequest request) {
+        log.debug("Searching stores near [{}, {}] within {} km, sortBy={}, deliverableOnly={}",
+                request.getLatitude(), request.getLongitude(), request.getRadiusKm(),
+                request.getSortBy(), request.getDeliverableOnly());
+
+        List<NearbyStoreDto> stores;
+        if (storeGeoQueryService.isDatabaseMode()) {
+            stores = storeGeoQueryService.findNearby(request);
+        } else if (Boolean.TRUE.equals(request.getDeliverableOnly())) {
+            stores = storeSpatialIndex.findDeliverable(request);
+        } else {
+            stores = storeSpatialIndex.findNearby(request);
+        }
+        return NearbyStoreResponseWrapper.success(stores, request);
+    }
+
+    /**
+     * 🗺️ Загрузка активных магазинов в пространственный индекс при старте
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    @Transactional(readOnly = true)
+    public void loadSpatialIndex() {
+        if (storeGeoQueryService.isDatabaseMode()) {
+            log.info("🗺️ Nearby search served by database, in-memory spatial index not loaded");
+            return;
+        }
+
+        List<Store> activeStores = new ArrayList<>();
+        Slice<Store> batch;
+        int page = 0;
+        do {
+            batch = storeRepository.findByIsActiveTrueOrderByCreatedAtDesc(PageRequest.of(page++, INDEX_LOAD_BATCH_SIZE));
+            activeStores.addAll(batch.getContent());
+        } while (batch.hasNext());
+
+        storeSpatialIndex.rebuild(activeStores);
+    }
+
+    /**
+     * Изменения магазинов на других экземплярах применяются к локальному пространственному индексу
+     */
+    @PostConstruct
+    public void registerCacheInvalidation() {
+        cacheInvalidationBus.register(CacheInvalidationBus.EntityType.STORE, this::reloadIndexedStore, this::loadSpatialIndex);
+    }
+
+    private void reloadIndexedStore(Long storeId) {
+        if (storeGeoQueryService.isDatabaseMode()) {
+            return;
+        }
+        storeRepository.findById(storeId).ifPresentOrElse(
+                storeSpatialIndex::onStoreSaved,
+                () -> storeSpatialIndex.onStoreRemoved(storeId));
+    }
+
+
     // ================================
     // 🛠️ ПРИВАТНЫЕ МЕТОДЫ
     // ================================
 
+    /**
+     * 💾 Фаза коммита: выполняет действие в короткой транзакции.
+     * Если транзакция не прошла, уже загруженное изображение удаляется (компенсация).
+     */
+    private <T> T commitOrCompensate(String uploadedImageId, Supplier<T> action) {
+        try {
+            return transactionTemplate.execute(status -> action.get());
+        } catch (RuntimeException e) {
+            if (uploadedImageId != null) {
+                log.warn("↩️ Commit failed, deleting uploaded image {}", uploadedImageId);
+                try {
+                    storageService.deleteImage(uploadedImageId);
+                } catch (Exception deleteError) {
+                    log.error("❌ Compensation failed for image {}: {}", uploadedImageId, deleteError.getMessage());
+                }
+            }
+            throw e;
+        }
+    }
+
     /**
      * 🌍 Создание адреса с геокодированием
      */
@@ -275,7 +590,7 @@ public class StoreServiceImpl implements StoreService {
     private ImageUploadResult handleImageUpload(MultipartFile imageFile, String folder) {
         if (imageFile == null || imageFile.isEmpty()) {
             log.debug("No image file provided for store");
-            return new ImageUploadResult(null, null);
+            return new ImageUploadResult(null, null, null);
         }
 
         try {
@@ -286,7 +601,7 @@ public class StoreServiceImpl implements StoreService {
             log.info("✅ Store image uploaded successfully: {} with ID: {}",
                     storageResult.getUrl(), storageResult.getImageId());
 
-            return new ImageUploadResult(storageResult.getUrl(), storageResult.getImageId());
+            return new ImageUploadResult(storageResult.getUrl(), storageResult.getImageId(), storageResult.getVariants());
 
         } catch (IOException e) {
             log.error("❌ Failed to upload store image: {}", e.getMessage(), e);
@@ -314,6 +629,7 @@ public class StoreServiceImpl implements StoreService {
         if (imageResult != null && imageResult.getImageId() != null) {
             store.setPicId(imageResult.getImageId());
             store.setPicUrl(imageResult.getImageUrl());
+            store.setImageVariants(imageResult.getImageVariants());
         } else {
             // Генерируем уникальный ID для дефолтного изображения
             String uniquePicId = "default_store_" + System.currentTimeMillis() + "_" + ownerId;
@@ -340,10 +656,12 @@ public class StoreServiceImpl implements StoreService {
     private static class ImageUploadResult {
         private final String imageUrl;
         private final String imageId;
+        private final ImageVariants imageVariants;
 
-        public ImageUploadResult(String imageUrl, String imageId) {
+        public ImageUploadResult(String imageUrl, String imageId, ImageVariants imageVariants) {
             this.imageUrl = imageUrl;
             this.imageId = imageId;
+            this.imageVariants = imageVariants;
         }
 
     }
@@ -0,0 +1,138 @@
+package com.example.deliveryproductservice.util.geo;
+
+import java.util.Arrays;
+
+/**
+ * 📐 Примитивное геоядро для расчета расстояний без BigDecimal и без аллокаций.
+ * Координаты хранятся заранее в радианах вместе с cos(lat), поэтому на каждую пару точек
+ * не нужно повторно считать toRadians/cos. Перед полным haversine выполняется
+ * дешевый отсев по equirectangular-приближению.
+ */
+public final class GeoKernel {
+
+    public static final double EARTH_RADIUS_KM = 6371.0;
+
+    // Запас для equirectangular-отсева: на дистанциях доставки ошибка приближения < 0.5%
+    private static final double FAST_REJECT_MARGIN = 1.01;
+
+    private GeoKernel() {
+    }
+
+    /**
+     * Haversine по заранее посчитанным радианам и cos(lat) обеих точек
+     */
+    public static double haversineKm(double lat1Rad, double lon1Rad, double cosLat1,
+                                     double lat2Rad, double lon2Rad, double cosLat2) {
+        double sinLat = Math.sin((lat2Rad - lat1Rad) * 0.5);
+        double sinLon = Math.sin((lon2Rad - lon1Rad) * 0.5);
+        double a = sinLat * sinLat + cosLat1 * cosLat2 * sinLon * sinLon;
+        return 2 * EARTH_RADIUS_KM * Math.asin(Math.min(1.0, Math.sqrt(a)));
+    }
+
+    /**
+     * Квадрат equirectangular-расстояния в км² (без тригонометрии)
+     */
+    public static double equirectangularKmSquared(double lat1Rad, double lon1Rad, double cosLat1,
+                                                  double lat2Rad, double lon2Rad, double cosLat2) {
+        double x = (lon2Rad - lon1Rad) * (cosLat1 + cosLat2) * 0.5;
+        double y = lat2Rad - lat1Rad;
+        return (x * x + y * y) * EARTH_RADIUS_KM * EARTH_RADIUS_KM;
+    }
+
+    /**
+     * Расстояние с предварительным отсевом: если точка заведомо дальше maxKm,
+     * возвращает Double.POSITIVE_INFINITY без вызова sin/asin.
+     */
+    public static double distanceWithinKm(double lat1Rad, double lon1Rad, double cosLat1,
+                                          double lat2Rad, double lon2Rad, double cosLat2,
+                                          double maxKm) {
+        double limit = maxKm * FAST_REJECT_MARGIN;
+        if (equirectangularKmSquared(lat1Rad, lon1Rad, cosLat1, lat2Rad, lon2Rad, cosLat2) > limit * limit) {
+            return Double.POSITIVE_INFINITY;
+        }
+        double distance = haversineKm(lat1Rad, lon1Rad, cosLat1, lat2Rad, lon2Rad, cosLat2);
+        return distance <= maxKm ? distance : Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Пакетная оценка: для точки запроса проходит по параллельным массивам [from, to)
+     * и записывает индексы и расстояния точек в радиусе в буферы вызывающего.
+     * Ничего не аллоцирует. Возвращает число найденных точек.
+     */
+    public static int scoreWithin(double queryLatRad, double queryLonRad, double queryCosLat, double radiusKm,
+                                  double[] latRad, double[] lonRad, double[] cosLat, int from, int to,
+                                  int[] outIndex, double[] outDistanceKm) {
+        int count = 0;
+        for (int i = from; i < to; i++) {
+            double distance = distanceWithinKm(queryLatRad, queryLonRad, queryCosLat,
+                    latRad[i], lonRad[i], cosLat[i], radiusKm);
+            if (distance != Double.POSITIVE_INFINITY) {
+                outIndex[count] = i;
+                outDistanceKm[count] = distance;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // ================================
+    // 📦 ПАРАЛЛЕЛЬНЫЕ МАССИВЫ ТОЧЕК
+    // ================================
+
+    /**
+     * Точки в виде параллельных double[] (радианы + cos(lat)), заполняются один раз
+     */
+    public static final class PointArrays {
+        private double[] latRad;
+        private double[] lonRad;
+        private double[] cosLat;
+        private int size;
+
+        public PointArrays(int capacity) {
+            int initial = Math.max(capacity, 1);
+            this.latRad = new double[initial];
+            this.lonRad = new double[initial];
+            this.cosLat = new double[initial];
+        }
+
+        public void add(double latitudeDeg, double longitudeDeg) {
+            if (size == latRad.length) {
+                int newCapacity = size * 2;
+                latRad = Arrays.copyOf(latRad, newCapacity);
+                lonRad = Arrays.copyOf(lonRad, newCapacity);
+                cosLat = Arrays.copyOf(cosLat, newCapacity);
+            }
+            double lat = Math.toRadians(latitudeDeg);
+            latRad[size] = lat;
+            lonRad[size] = Math.toRadians(longitudeDeg);
+            cosLat[size] = Math.cos(lat);
+            size++;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public double[] latRad() {
+            return latRad;
+        }
+
+        public double[] lonRad() {
+            return lonRad;
+        }
+
+        public double[] cosLat() {
+            return cosLat;
+        }
+
+        /**
+         * Все точки в радиусе от (latitudeDeg, longitudeDeg) - см. {@link GeoKernel#scoreWithin}
+         */
+        public int scoreWithin(double latitudeDeg, double longitudeDeg, double radiusKm,
+                               int[] outIndex, double[] outDistanceKm) {
+            double queryLat = Math.toRadians(latitudeDeg);
+            return GeoKernel.scoreWithin(queryLat, Math.toRadians(longitudeDeg), Math.cos(queryLat), radiusKm,
+                    latRad, lonRad, cosLat, 0, size, outIndex, outDistanceKm);
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.deliveryproductservice.benchmark;
+
+import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.util.geo.GeoKernel;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Сравнение расчета "все магазины в радиусе от точки":
+ * BigDecimal-адреса через прежнюю реализацию Address.distanceToKm
+ * против пакетного GeoKernel.scoreWithin по параллельным массивам.
+ * <p>
+ * Запуск: mvn test-compile, затем main() этого класса из IDE
+ * (или java -cp target/test-classes:... GeoKernelBenchmark)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class GeoKernelBenchmark {
+
+    private static final double QUERY_LAT = 49.9935;
+    private static final double QUERY_LON = 36.2304;
+    private static final double RADIUS_KM = 10.0;
+
+    @Param({"1000", "10000"})
+    private int storeCount;
+
+    private Address query;
+    private Address[] addresses;
+    private GeoKernel.PointArrays points;
+    private int[] outIndex;
+    private double[] outDistance;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        query = address(QUERY_LAT, QUERY_LON);
+        addresses = new Address[storeCount];
+        points = new GeoKernel.PointArrays(storeCount);
+
+        for (int i = 0; i < storeCount; i++) {
+            // Магазины в квадрате ~ ±0.5° вокруг Харькова
+            double lat = QUERY_LAT + (random.nextDouble() - 0.5);
+            double lon = QUERY_LON + (random.nextDouble() - 0.5);
+            addresses[i] = address(lat, lon);
+            points.add(addresses[i].getLatitude().doubleValue(), addresses[i].getLongitude().doubleValue());
+        }
+
+        outIndex = new int[storeCount];
+        outDistance = new double[storeCount];
+    }
+
+    @Benchmark
+    public int legacyAddressDistance(Blackhole blackhole) {
+        int found = 0;
+        for (Address address : addresses) {
+            double distance = legacyDistanceToKm(query, address);
+            if (distance <= RADIUS_KM) {
+                blackhole.consume(distance);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int currentAddressDistance(Blackhole blackhole) {
+        int found = 0;
+        for (Address address : addresses) {
+            double distance = query.distanceToKm(address);
+            if (distance <= RADIUS_KM) {
+                blackhole.consume(distance);
+                found++;
+            }
+        }
+        return found;
+    }
+
+    @Benchmark
+    public int kernelBatch() {
+        return points.scoreWithin(QUERY_LAT, QUERY_LON, RADIUS_KM, outIndex, outDistance);
+    }
+
+    /**
+     * Реализация Address.distanceToKm до перехода на GeoKernel (baseline)
+     */
+    private static double legacyDistanceToKm(Address from, Address to) {
+        double lat1 = from.getLatitude().doubleValue();
+        double lon1 = from.getLongitude().doubleValue();
+        double lat2 = to.getLatitude().doubleValue();
+        double lon2 = to.getLongitude().doubleValue();
+
+        final int R = 6371;
+        double latDistance = Math.toRadians(lat2 - lat1);
+        double lonDistance = Math.toRadians(lon2 - lon1);
+        double a = Math.sin(latDistance / 2) * Math.sin(latDistance / 2)
+                + Math.cos(Math.toRadians(lat1)) * Math.cos(Math.toRadians(lat2))
+                * Math.sin(lonDistance / 2) * Math.sin(lonDistance / 2);
+        double c = 2 * Math.atan2(Math.sqrt(a), Math.sqrt(1 - a));
+        return R * c;
+    }
+
+    private static Address address(double lat, double lon) {
+        return Address.builder()
+                .street("Test")
+                .city("Kharkiv")
+                .latitude(BigDecimal.valueOf(lat).setScale(8, RoundingMode.HALF_UP))
+                .longitude(BigDecimal.valueOf(lon).setScale(8, RoundingMode.HALF_UP))
+                .build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options options = new OptionsBuilder()
+                .include(GeoKernelBenchmark.class.getSimpleName())
+                .build();
+        new Runner(options).run();
+    }
+}
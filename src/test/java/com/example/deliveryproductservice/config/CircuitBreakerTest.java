@@ -0,0 +1,118 @@
+package com.example.deliveryproductservice.config;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.client.HttpClientErrorException;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Открытие после серии ошибок, единственный пробный вызов по истечении open-duration,
+ * повторное включение после успешной пробы и повторное открытие после неудачной
+ */
+class CircuitBreakerTest {
+
+    private static final Duration OPEN_DURATION = Duration.ofSeconds(30);
+
+    private final AtomicLong nanos = new AtomicLong();
+    private final List<CircuitBreaker.State> transitions = new ArrayList<>();
+    private final CircuitBreaker breaker =
+            new CircuitBreaker("test", 3, OPEN_DURATION, transitions::add, nanos::get);
+
+    private void fail(int times) {
+        for (int i = 0; i < times; i++) {
+            assertThrows(IllegalStateException.class, () -> breaker.execute(() -> {
+                throw new IllegalStateException("boom");
+            }));
+        }
+    }
+
+    private void elapse(Duration duration) {
+        nanos.addAndGet(duration.toNanos());
+    }
+
+    @Test
+    void opensAfterConsecutiveFailuresAndRejectsCalls() {
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertThrows(CircuitBreaker.CallNotPermittedException.class, () -> breaker.execute(() -> "ok"));
+
+        elapse(OPEN_DURATION.minusSeconds(1));
+        assertFalse(breaker.allowRequest());
+        assertFalse(breaker.tryAcquirePermission());
+    }
+
+    @Test
+    void allowRequestDoesNotTakeTheProbe() {
+        assertTrue(breaker.allowRequest());
+        fail(3);
+        assertFalse(breaker.allowRequest());
+
+        elapse(OPEN_DURATION);
+        // Проверка не переводит цепь в HALF_OPEN - пробный вызов остается за execute
+        assertTrue(breaker.allowRequest());
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertTrue(breaker.tryAcquirePermission());
+        assertFalse(breaker.allowRequest());
+    }
+
+    @Test
+    void successfulProbeClosesTheCircuit() {
+        fail(3);
+        elapse(OPEN_DURATION);
+
+        // Пробный вызов один: второй вызывающий во время пробы отклоняется
+        assertTrue(breaker.tryAcquirePermission());
+        assertEquals(CircuitBreaker.State.HALF_OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(List.of(CircuitBreaker.State.OPEN, CircuitBreaker.State.HALF_OPEN, CircuitBreaker.State.CLOSED),
+                transitions);
+
+        // Счетчик ошибок после закрытия начинается заново
+        fail(2);
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void failedProbeReopensForAnotherOpenDuration() {
+        fail(3);
+        elapse(OPEN_DURATION);
+
+        fail(1);
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+        assertFalse(breaker.tryAcquirePermission());
+
+        elapse(OPEN_DURATION);
+        assertEquals("ok", breaker.execute(() -> "ok"));
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+    }
+
+    @Test
+    void clientErrorsDoNotOpenTheCircuitButTooManyRequestsDoes() {
+        for (int i = 0; i < 5; i++) {
+            assertThrows(HttpClientErrorException.class, () -> breaker.execute(() -> {
+                throw new HttpClientErrorException(HttpStatus.NOT_FOUND);
+            }));
+        }
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.getState());
+
+        for (int i = 0; i < 3; i++) {
+            assertThrows(HttpClientErrorException.class, () -> breaker.execute(() -> {
+                throw new HttpClientErrorException(HttpStatus.TOO_MANY_REQUESTS);
+            }));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, breaker.getState());
+    }
+}
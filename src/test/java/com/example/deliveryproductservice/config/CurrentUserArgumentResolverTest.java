@@ -0,0 +1,85 @@
+package com.example.deliveryproductservice.config;
+
+import com.example.deliveryproductservice.annotation.CurrentUser;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.server.ResponseStatusException;
+
+import java.lang.reflect.Method;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * @CurrentUser берет principal из атрибута запроса (или X-User-* от gateway),
+ * обязательный параметр без пользователя отклоняется с 401 до вызова контроллера
+ */
+class CurrentUserArgumentResolverTest {
+
+    private final CurrentUserArgumentResolver resolver = new CurrentUserArgumentResolver();
+
+    @SuppressWarnings("unused")
+    private void handler(@CurrentUser Long userId,
+                         @CurrentUser AuthenticatedUser user,
+                         @CurrentUser(required = false) Long optionalUserId,
+                         Long notAnnotated) {
+    }
+
+    private static MethodParameter parameter(int index) throws NoSuchMethodException {
+        Method method = CurrentUserArgumentResolverTest.class.getDeclaredMethod("handler",
+                Long.class, AuthenticatedUser.class, Long.class, Long.class);
+        return new MethodParameter(method, index);
+    }
+
+    private Object resolve(int index, MockHttpServletRequest request) throws Exception {
+        return resolver.resolveArgument(parameter(index), null, new ServletWebRequest(request), null);
+    }
+
+    @Test
+    void supportsOnlyAnnotatedUserParameters() throws Exception {
+        assertTrue(resolver.supportsParameter(parameter(0)));
+        assertTrue(resolver.supportsParameter(parameter(1)));
+        assertTrue(resolver.supportsParameter(parameter(2)));
+        assertFalse(resolver.supportsParameter(parameter(3)));
+    }
+
+    @Test
+    void resolvesPrincipalSetByJwtFilter() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        AuthenticatedUser principal = new AuthenticatedUser(7L, "owner@example.com", "ROLE_BUSINESS", Long.MAX_VALUE);
+        request.setAttribute(AuthenticatedUser.REQUEST_ATTRIBUTE, principal);
+
+        assertEquals(7L, resolve(0, request));
+        assertSame(principal, resolve(1, request));
+    }
+
+    @Test
+    void fallsBackToGatewayHeaders() throws Exception {
+        MockHttpServletRequest request = new MockHttpServletRequest();
+        request.addHeader("X-User-Id", "42");
+        request.addHeader("X-User-Role", "ROLE_CUSTOMER");
+
+        assertEquals(42L, resolve(0, request));
+        assertEquals("ROLE_CUSTOMER", ((AuthenticatedUser) resolve(1, request)).role());
+    }
+
+    @Test
+    void rejectsMissingUserWhenRequired() throws Exception {
+        MockHttpServletRequest anonymous = new MockHttpServletRequest();
+        ResponseStatusException e = assertThrows(ResponseStatusException.class, () -> resolve(0, anonymous));
+        assertEquals(HttpStatus.UNAUTHORIZED, e.getStatusCode());
+        assertThrows(ResponseStatusException.class, () -> resolve(1, anonymous));
+
+        // Роль без id пользователя - principal есть, но id для Long-параметра нет
+        MockHttpServletRequest roleOnly = new MockHttpServletRequest();
+        roleOnly.addHeader("X-User-Role", "ROLE_CUSTOMER");
+        assertThrows(ResponseStatusException.class, () -> resolve(0, roleOnly));
+    }
+
+    @Test
+    void optionalParameterResolvesToNull() throws Exception {
+        assertNull(resolve(2, new MockHttpServletRequest()));
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.deliveryproductservice.config;
+
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Clock;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.Date;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Кэш principal: запись не переживает exp токена, измененный или чужой токен
+ * заново проверяется по подписи, переполнение вытесняет давно не использованный токен
+ */
+class JwtUtilTest {
+
+    private static final String SECRET = "test-secret-test-secret-test-secret-0123456789";
+
+    private final MutableClock clock = new MutableClock(Instant.parse("2026-01-01T00:00:00Z"));
+    private JwtUtil jwtUtil;
+
+    @BeforeEach
+    void setUp() {
+        jwtUtil = new JwtUtil();
+        ReflectionTestUtils.setField(jwtUtil, "jwtSecret", SECRET);
+        ReflectionTestUtils.setField(jwtUtil, "principalCacheMaxSize", 2);
+        ReflectionTestUtils.setField(jwtUtil, "clock", clock);
+        jwtUtil.init();
+    }
+
+    private String token(long userId, String role, long ttlSeconds, String secret) {
+        return Jwts.builder()
+                .setSubject("user" + userId + "@example.com")
+                .claim("userId", userId)
+                .claim("role", role)
+                .setIssuedAt(Date.from(clock.instant()))
+                .setExpiration(Date.from(clock.instant().plusSeconds(ttlSeconds)))
+                .signWith(Keys.hmacShaKeyFor(secret.getBytes(StandardCharsets.UTF_8)))
+                .compact();
+    }
+
+    @Test
+    void cachedPrincipalExpiresWithToken() {
+        String token = token(1, "BUSINESS", 60, SECRET);
+
+        AuthenticatedUser principal = jwtUtil.authenticate(token);
+        assertEquals(1L, principal.userId());
+        assertEquals("BUSINESS", principal.role());
+        assertSame(principal, jwtUtil.authenticate(token));
+
+        clock.advanceSeconds(61);
+
+        assertNull(jwtUtil.authenticate(token));
+        assertFalse(jwtUtil.isCached(token));
+    }
+
+    @Test
+    void changedOrForeignTokenIsNotServedFromCache() {
+        String token = token(1, "CUSTOMER", 60, SECRET);
+        assertNotNull(jwtUtil.authenticate(token));
+
+        // Подмененные claims со старой подписью - другой ключ кэша, подпись не сходится
+        String forged = token(1, "ADMIN", 60, SECRET);
+        String tampered = forged.substring(0, forged.lastIndexOf('.')) + token.substring(token.lastIndexOf('.'));
+        assertNull(jwtUtil.authenticate(tampered));
+
+        // Подписан чужим ключом
+        assertNull(jwtUtil.authenticate(token(1, "ADMIN", 60, "another-secret-another-secret-another-secret")));
+        assertFalse(jwtUtil.isCached(tampered));
+        assertEquals("CUSTOMER", jwtUtil.authenticate(token).role());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedTokenWhenFull() {
+        String first = token(1, "CUSTOMER", 60, SECRET);
+        String second = token(2, "CUSTOMER", 60, SECRET);
+        String third = token(3, "CUSTOMER", 60, SECRET);
+
+        jwtUtil.authenticate(first);
+        jwtUtil.authenticate(second);
+        jwtUtil.authenticate(first);
+        jwtUtil.authenticate(third);
+
+        assertEquals(2, jwtUtil.cachedPrincipals());
+        assertTrue(jwtUtil.isCached(first));
+        assertFalse(jwtUtil.isCached(second));
+        assertTrue(jwtUtil.isCached(third));
+        // Вытесненный токен по-прежнему валиден - просто разбирается заново
+        assertEquals(2L, jwtUtil.authenticate(second).userId());
+    }
+
+    private static final class MutableClock extends Clock {
+        private Instant now;
+
+        private MutableClock(Instant now) {
+            this.now = now;
+        }
+
+        void advanceSeconds(long seconds) {
+            now = now.plusSeconds(seconds);
+        }
+
+        @Override
+        public Instant instant() {
+            return now;
+        }
+
+        @Override
+        public ZoneOffset getZone() {
+            return ZoneOffset.UTC;
+        }
+
+        @Override
+        public Clock withZone(ZoneId zone) {
+            return this;
+        }
+    }
+}
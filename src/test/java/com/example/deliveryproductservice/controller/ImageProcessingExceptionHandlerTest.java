@@ -0,0 +1,78 @@
+package com.example.deliveryproductservice.controller;
+
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
+import com.example.deliveryproductservice.config.AuthenticatedUser;
+import com.example.deliveryproductservice.config.CurrentUserArgumentResolver;
+import com.example.deliveryproductservice.service.StoreService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.multipart;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Перегрузка обработки изображений при загрузке магазина доходит до клиента как 429/503
+ * с Retry-After, а не как 500 из общего catch контроллера
+ */
+class ImageProcessingExceptionHandlerTest {
+
+    private static final AuthenticatedUser OWNER =
+            new AuthenticatedUser(7L, "owner@example.com", "ROLE_BUSINESS", Long.MAX_VALUE);
+
+    private final MockMultipartFile image =
+            new MockMultipartFile("imageFile", "photo.jpg", "image/jpeg", new byte[]{1, 2, 3});
+
+    private StoreService storeService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        storeService = mock(StoreService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new StoreController(storeService))
+                .setControllerAdvice(new ImageProcessingExceptionHandler())
+                .setCustomArgumentResolvers(new CurrentUserArgumentResolver())
+                .build();
+    }
+
+    @Test
+    void fullQueueOnStoreCreationIsTooManyRequests() throws Exception {
+        when(storeService.createStore(any(), eq(7L))).thenThrow(new ImageProcessingRejectedException(
+                HttpStatus.TOO_MANY_REQUESTS, "Image processing queue is full", 5));
+
+        mockMvc.perform(multipart("/api/stores")
+                        .file(image)
+                        .file(json("store", "{\"name\":\"Store\"}"))
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, OWNER))
+                .andExpect(status().isTooManyRequests())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "5"))
+                .andExpect(jsonPath("$.success").value(false))
+                .andExpect(jsonPath("$.message").value("Image processing queue is full"));
+    }
+
+    @Test
+    void memoryTimeoutOnStoreUpdateIsServiceUnavailable() throws Exception {
+        when(storeService.updateStore(eq(1L), any(), eq(7L))).thenThrow(new ImageProcessingRejectedException(
+                HttpStatus.SERVICE_UNAVAILABLE, "Image processing is overloaded", 10));
+
+        mockMvc.perform(multipart(HttpMethod.PUT, "/api/stores/1")
+                        .file(image)
+                        .file(json("store", "{\"name\":\"Store\"}"))
+                        .requestAttr(AuthenticatedUser.REQUEST_ATTRIBUTE, OWNER))
+                .andExpect(status().isServiceUnavailable())
+                .andExpect(header().string(HttpHeaders.RETRY_AFTER, "10"));
+    }
+
+    private static MockMultipartFile json(String name, String content) {
+        return new MockMultipartFile(name, "", MediaType.APPLICATION_JSON_VALUE, content.getBytes());
+    }
+}
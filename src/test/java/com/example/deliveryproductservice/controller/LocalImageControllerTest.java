@@ -0,0 +1,168 @@
+package com.example.deliveryproductservice.controller;
+
+import com.example.deliveryproductservice.service.ImageContentIndex;
+import com.example.deliveryproductservice.service.ImageConverterService;
+import com.example.deliveryproductservice.service.ImageProcessingExecutor;
+import com.example.deliveryproductservice.service.LocalStorageService;
+import com.example.deliveryproductservice.service.StorageIdGenerator;
+import com.example.deliveryproductservice.service.StorageService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Локальное хранилище: шардированная атомарная запись и раздача с ETag и Range
+ */
+class LocalImageControllerTest {
+
+    private static final String BASE_URL = "http://localhost/api/images";
+
+    @TempDir
+    Path tempDir;
+
+    private Path root;
+
+    private final ImageProcessingExecutor imageProcessingExecutor = new ImageProcessingExecutor(
+            new SimpleMeterRegistry(), 1, 4, DataSize.ofMegabytes(64), Duration.ofSeconds(10));
+
+    private LocalStorageService storageService;
+    private LocalImageController controller;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        root = tempDir.resolve("images");
+        ImageContentIndex imageContentIndex = mock(ImageContentIndex.class);
+        when(imageContentIndex.uploadOnce(any(), any(), any()))
+                .thenAnswer(invocation -> invocation.<ImageContentIndex.Upload>getArgument(1).upload());
+        when(imageContentIndex.release(anyString())).thenReturn(true);
+
+        storageService = new LocalStorageService(new ImageConverterService(imageProcessingExecutor),
+                imageContentIndex, new StorageIdGenerator(1, "postgres"), root.toString(), BASE_URL + "/");
+        controller = new LocalImageController(storageService);
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingExecutor.shutdown();
+    }
+
+    @Test
+    void storesDerivativesInShardedLayoutAndDeletesThemTogether() throws Exception {
+        StorageService.StorageResult result = upload();
+
+        assertTrue(result.getImageId().matches("products/[0-9a-f]{2}/[0-9a-f]{2}/[0-9A-Z]{13}"), result.getImageId());
+        assertEquals(BASE_URL + "/" + result.getImageId() + ".jpg", result.getUrl());
+        assertEquals(BASE_URL + "/" + result.getImageId() + "_thumb.jpg", result.getVariants().getThumbUrl());
+
+        List<Path> files = listFiles();
+        assertEquals(3, files.size(), "full, card and thumb without leftover temp files: " + files);
+
+        assertTrue(storageService.deleteImage(result.getImageId()));
+        assertTrue(listFiles().isEmpty());
+    }
+
+    @Test
+    void servesFileWithEtagAndConditionalRequests() throws Exception {
+        StorageService.StorageResult result = upload();
+        byte[] expected = Files.readAllBytes(root.resolve(result.getImageId() + ".jpg"));
+
+        MockHttpServletResponse full = get(result, null, null);
+        assertEquals(200, full.getStatus());
+        assertEquals("image/jpeg", full.getContentType());
+        assertEquals(expected.length, full.getContentLengthLong());
+        assertArrayEquals(expected, full.getContentAsByteArray());
+
+        String etag = full.getHeader(HttpHeaders.ETAG);
+        assertNotNull(etag);
+        MockHttpServletResponse notModified = get(result, etag, null);
+        assertEquals(304, notModified.getStatus());
+        assertEquals(0, notModified.getContentAsByteArray().length);
+    }
+
+    @Test
+    void servesSingleByteRanges() throws Exception {
+        StorageService.StorageResult result = upload();
+        byte[] expected = Files.readAllBytes(root.resolve(result.getImageId() + ".jpg"));
+
+        MockHttpServletResponse partial = get(result, null, "bytes=10-19");
+        assertEquals(206, partial.getStatus());
+        assertEquals("bytes 10-19/" + expected.length, partial.getHeader(HttpHeaders.CONTENT_RANGE));
+        assertArrayEquals(Arrays.copyOfRange(expected, 10, 20), partial.getContentAsByteArray());
+
+        MockHttpServletResponse suffix = get(result, null, "bytes=-5");
+        assertArrayEquals(Arrays.copyOfRange(expected, expected.length - 5, expected.length),
+                suffix.getContentAsByteArray());
+
+        MockHttpServletResponse unsatisfiable = get(result, null, "bytes=" + expected.length + "-");
+        assertEquals(416, unsatisfiable.getStatus());
+        assertEquals("bytes */" + expected.length, unsatisfiable.getHeader(HttpHeaders.CONTENT_RANGE));
+    }
+
+    @Test
+    void rejectsPathsOutsideStorageRoot() throws Exception {
+        Files.writeString(tempDir.resolve("secret.txt"), "secret");
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImage("/../secret.txt", new MockHttpServletRequest("GET", "/api/images/../secret.txt"), response);
+
+        assertEquals(404, response.getStatus());
+    }
+
+    private StorageService.StorageResult upload() throws Exception {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x * 5 ^ y * 11);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", output);
+        return storageService.uploadImage(
+                new MockMultipartFile("image", "dish.jpg", "image/jpeg", output.toByteArray()), "products");
+    }
+
+    private MockHttpServletResponse get(StorageService.StorageResult result, String ifNoneMatch, String range)
+            throws Exception {
+        String path = "/" + result.getImageId() + ".jpg";
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/images" + path);
+        if (ifNoneMatch != null) {
+            request.addHeader(HttpHeaders.IF_NONE_MATCH, ifNoneMatch);
+        }
+        if (range != null) {
+            request.addHeader(HttpHeaders.RANGE, range);
+        }
+
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        controller.getImage(path, request, response);
+        return response;
+    }
+
+    private List<Path> listFiles() throws Exception {
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile).toList();
+        }
+    }
+}
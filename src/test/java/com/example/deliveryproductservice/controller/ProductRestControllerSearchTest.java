@@ -0,0 +1,59 @@
+package com.example.deliveryproductservice.controller;
+
+import com.example.deliveryproductservice.dto.ProductDto.ProductResponseWrapper;
+import com.example.deliveryproductservice.dto.SearchCursor;
+import com.example.deliveryproductservice.service.FullTextSearchService;
+import com.example.deliveryproductservice.service.ProductService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Поиск продуктов по названию ограничивает размер страницы так же, как /api/search:
+ * size вне 1..100 - 400 с понятным сообщением, а не "Invalid cursor" или выборка без предела
+ */
+class ProductRestControllerSearchTest {
+
+    private FullTextSearchService fullTextSearchService;
+    private ProductService productService;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        fullTextSearchService = mock(FullTextSearchService.class);
+        productService = mock(ProductService.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(
+                        new ProductRestController(productService, fullTextSearchService, new ObjectMapper()))
+                .build();
+    }
+
+    @Test
+    void pageSizeOutsideRangeIsBadRequest() throws Exception {
+        for (String size : new String[]{"0", "-1", "101", "1000000"}) {
+            mockMvc.perform(get("/api/products/search").param("name", "milk").param("size", size))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value("Page size must be between 1 and 100"));
+        }
+        verifyNoInteractions(fullTextSearchService, productService);
+    }
+
+    @Test
+    void pageSizeAtBoundsIsAccepted() throws Exception {
+        when(fullTextSearchService.searchProducts(anyString(), any(), anyInt()))
+                .thenReturn(ProductResponseWrapper.error("stub"));
+
+        mockMvc.perform(get("/api/products/search").param("name", "milk").param("size", "1"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/products/search").param("name", "milk").param("size", "100"))
+                .andExpect(status().isOk());
+
+        verify(fullTextSearchService).searchProducts("milk", SearchCursor.decode(null), 1);
+        verify(fullTextSearchService).searchProducts("milk", SearchCursor.decode(null), 100);
+    }
+}
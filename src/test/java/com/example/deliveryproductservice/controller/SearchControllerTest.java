@@ -0,0 +1,81 @@
+package com.example.deliveryproductservice.controller;
+
+import com.example.deliveryproductservice.dto.CursorParams;
+import com.example.deliveryproductservice.dto.SearchCursor;
+import com.example.deliveryproductservice.service.FullTextSearchService;
+import com.example.deliveryproductservice.service.SuggestionIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.setup.MockMvcBuilders;
+
+import static org.mockito.Mockito.*;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
+
+/**
+ * Размер страницы поиска и число подсказок вне допустимого диапазона отклоняются с 400
+ * до обращения к БД и индексу
+ */
+class SearchControllerTest {
+
+    private FullTextSearchService fullTextSearchService;
+    private SuggestionIndex suggestionIndex;
+    private MockMvc mockMvc;
+
+    @BeforeEach
+    void setUp() {
+        fullTextSearchService = mock(FullTextSearchService.class);
+        suggestionIndex = mock(SuggestionIndex.class);
+        mockMvc = MockMvcBuilders.standaloneSetup(new SearchController(fullTextSearchService, suggestionIndex))
+                .build();
+    }
+
+    @Test
+    void pageSizeOutsideRangeIsBadRequest() throws Exception {
+        for (String size : new String[]{"0", "-5", "101", "1000000"}) {
+            mockMvc.perform(get("/api/search/products").param("q", "milk").param("size", size))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.success").value(false));
+            mockMvc.perform(get("/api/search/stores").param("q", "milk").param("size", size))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.success").value(false));
+        }
+        verifyNoInteractions(fullTextSearchService);
+    }
+
+    @Test
+    void pageSizeAtBoundsIsAccepted() throws Exception {
+        mockMvc.perform(get("/api/search/products").param("q", "milk").param("size", "100"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/api/search/stores").param("q", "milk").param("size", "1"))
+                .andExpect(status().isOk());
+
+        verify(fullTextSearchService).searchProducts("milk", SearchCursor.decode(null), 100);
+        verify(fullTextSearchService).searchStores("milk", SearchCursor.decode(null), 1);
+    }
+
+    @Test
+    void suggestionLimitOutsideRangeIsBadRequest() throws Exception {
+        for (String limit : new String[]{"0", "-1", "21"}) {
+            mockMvc.perform(get("/api/search/suggest").param("q", "пи").param("limit", limit))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.success").value(false));
+        }
+        verifyNoInteractions(suggestionIndex);
+
+        mockMvc.perform(get("/api/search/suggest").param("q", "пи").param("limit", "20"))
+                .andExpect(status().isOk());
+        verify(suggestionIndex).suggest("пи", 20);
+    }
+
+    @Test
+    void damagedCursorIsRejectedWithTheSharedMessage() throws Exception {
+        for (String path : new String[]{"/api/search/products", "/api/search/stores"}) {
+            mockMvc.perform(get(path).param("q", "milk").param("cursor", "not-a-cursor!"))
+                    .andExpect(status().isBadRequest())
+                    .andExpect(jsonPath("$.message").value(CursorParams.INVALID_CURSOR));
+        }
+        verifyNoInteractions(fullTextSearchService);
+    }
+}
@@ -0,0 +1,31 @@
+package com.example.deliveryproductservice.dto;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Курсор списка и поиска разбирается одинаково: пустой - начало, поврежденный - пустой Optional
+ */
+class CursorParamsTest {
+
+    @Test
+    void keysetForCursorOrFirstPage() {
+        assertTrue(CursorParams.useKeyset(null, 0));
+        assertTrue(CursorParams.useKeyset("abc", 3));
+        assertFalse(CursorParams.useKeyset(null, 2));
+    }
+
+    @Test
+    void decodesValidAndRejectsDamagedCursors() {
+        PageCursor page = PageCursor.after(LocalDateTime.of(2025, 1, 2, 3, 4, 5), 9L);
+        assertEquals(page, CursorParams.decodePage(page.encode()).orElseThrow());
+        assertSame(PageCursor.first(), CursorParams.decodePage(null).orElseThrow());
+        assertEquals(SearchCursor.decode(null), CursorParams.decodeSearch("").orElseThrow());
+
+        assertTrue(CursorParams.decodePage("not-a-cursor!").isEmpty());
+        assertTrue(CursorParams.decodeSearch("not-a-cursor!").isEmpty());
+    }
+}
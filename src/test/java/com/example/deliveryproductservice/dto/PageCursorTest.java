@@ -0,0 +1,56 @@
+package com.example.deliveryproductservice.dto;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Курсор переживает кодирование без потери точности, пустой курсор - начало списка,
+ * поврежденный курсор отклоняется
+ */
+class PageCursorTest {
+
+    @Test
+    void roundTripsCreatedAtWithNanosAndId() {
+        PageCursor cursor = PageCursor.after(LocalDateTime.of(2025, 3, 14, 15, 9, 26, 535_897_000), 42L);
+
+        String token = cursor.encode();
+
+        assertTrue(token.matches("[A-Za-z0-9_-]+"), token);
+        assertEquals(cursor, PageCursor.decode(token));
+    }
+
+    @Test
+    void emptyCursorStartsFromTheNewest() {
+        assertSame(PageCursor.first(), PageCursor.decode(null));
+        assertSame(PageCursor.first(), PageCursor.decode(" "));
+        assertEquals(Long.MAX_VALUE, PageCursor.first().getId());
+        assertEquals(PageCursor.first(), PageCursor.decode(PageCursor.first().encode()));
+    }
+
+    @Test
+    void rejectsMalformedCursor() {
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("not a cursor!"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("MTIz"));
+        assertThrows(IllegalArgumentException.class, () -> PageCursor.decode("YTpiOmM"));
+    }
+
+    @Test
+    void nextCursorPointsAtLastElementOnlyWhenMorePagesExist() {
+        LocalDateTime newest = LocalDateTime.of(2025, 1, 2, 10, 0);
+        LocalDateTime older = newest.minusMinutes(5);
+        List<PageCursor> rows = List.of(PageCursor.after(newest, 7L), PageCursor.after(older, 3L));
+
+        String next = PageCursor.next(new SliceImpl<>(rows, PageRequest.of(0, 2), true),
+                PageCursor::getCreatedAt, PageCursor::getId);
+
+        assertEquals(PageCursor.after(older, 3L), PageCursor.decode(next));
+        assertNull(PageCursor.next(new SliceImpl<>(rows, PageRequest.of(0, 2), false),
+                PageCursor::getCreatedAt, PageCursor::getId));
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Переполненный пул отклоняет загрузку с 429 (а не выполняет ее в потоке запроса),
+ * место освобождается после задачи или отката, потерянные задачи помечаются FAILED
+ */
+class AsyncImageUploadServiceTest {
+
+    private final Set<String> uploadThreads = ConcurrentHashMap.newKeySet();
+    private final CountDownLatch releaseUploads = new CountDownLatch(1);
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private JdbcTemplate jdbcTemplate;
+    private AsyncImageUploadService service;
+
+    @BeforeEach
+    void setUp() {
+        jdbcTemplate = mock(JdbcTemplate.class);
+        // Пул из одного потока и очереди на одну задачу
+        service = new AsyncImageUploadService(mock(StorageService.class), jdbcTemplate,
+                mock(PlatformTransactionManager.class), 1, 1, Duration.ofMinutes(15), Duration.ofMinutes(10));
+    }
+
+    @AfterEach
+    void tearDown() {
+        releaseUploads.countDown();
+        service.shutdown();
+    }
+
+    private AsyncImageUploadService.PendingImage image() throws Exception {
+        return AsyncImageUploadService.PendingImage.copyOf(
+                new MockMultipartFile("image", "pic.jpg", "image/jpeg", new byte[]{1, 2, 3}));
+    }
+
+    private void submit(AsyncImageUploadService.PendingImage image) {
+        service.submitAfterCommit(image,
+                file -> {
+                    uploadThreads.add(Thread.currentThread().getName());
+                    try {
+                        releaseUploads.await(10, TimeUnit.SECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return new StorageService.StorageResult("url", "id");
+                },
+                result -> true,
+                failures::incrementAndGet);
+    }
+
+    @Test
+    void rejectsWhenPoolIsFullInsteadOfRunningInCaller() throws Exception {
+        submit(image());
+        submit(image());
+
+        AsyncImageUploadService.PendingImage rejected = image();
+        File spooled = spooledFile(rejected);
+        ImageProcessingRejectedException e = assertThrows(ImageProcessingRejectedException.class, () -> submit(rejected));
+
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, e.getStatus());
+        assertTrue(e.getRetryAfterSeconds() > 0);
+        assertFalse(spooled.exists(), "rejected upload copy is discarded");
+        assertFalse(uploadThreads.contains(Thread.currentThread().getName()));
+
+        // Задачи завершились - места снова есть
+        releaseUploads.countDown();
+        waitUntilIdle();
+        assertDoesNotThrow(() -> submit(image()));
+        assertDoesNotThrow(() -> submit(image()));
+    }
+
+    @Test
+    void rolledBackTransactionReleasesSlot() throws Exception {
+        TransactionSynchronizationManager.initSynchronization();
+        try {
+            submit(image());
+            submit(image());
+            for (TransactionSynchronization synchronization : TransactionSynchronizationManager.getSynchronizations()) {
+                synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+            }
+        } finally {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+
+        assertEquals(2, service.getAvailableSlots());
+        assertTrue(uploadThreads.isEmpty(), "nothing is uploaded for a rolled back entity");
+    }
+
+    @Test
+    void uploadSubmittedAfterShutdownIsMarkedFailed() throws Exception {
+        service.shutdown();
+
+        submit(image());
+
+        assertEquals(1, failures.get());
+        assertTrue(uploadThreads.isEmpty());
+    }
+
+    @Test
+    void marksStalePendingUploadsFailed() {
+        when(jdbcTemplate.update(contains("UPDATE products"), any(Object[].class))).thenReturn(2);
+        when(jdbcTemplate.update(contains("UPDATE stores"), any(Object[].class))).thenReturn(1);
+
+        assertEquals(3, service.markStalePendingFailed());
+        verify(jdbcTemplate, times(2)).update(contains("image_status = 'PENDING' AND updated_at < ?"), any(Object[].class));
+    }
+
+    private void waitUntilIdle() throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+        while (service.getAvailableSlots() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+    }
+
+    private static File spooledFile(AsyncImageUploadService.PendingImage image) throws Exception {
+        Field field = AsyncImageUploadService.PendingImage.class.getDeclaredField("file");
+        field.setAccessible(true);
+        return ((Path) field.get(image)).toFile();
+    }
+}
@@ -0,0 +1,43 @@
+package com.example.deliveryproductservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Фильтр не теряет добавленные идентификаторы (иначе сборщик удалил бы живое изображение),
+ * а доля ложноположительных близка к заданной
+ */
+class BloomFilterTest {
+
+    @Test
+    void hasNoFalseNegativesAndBoundedFalsePositives() {
+        int count = 200_000;
+        BloomFilter filter = BloomFilter.create(count, 0.01);
+        for (int i = 0; i < count; i++) {
+            filter.put("products/ab/cd/" + i);
+        }
+
+        for (int i = 0; i < count; i++) {
+            assertTrue(filter.mightContain("products/ab/cd/" + i));
+        }
+
+        int falsePositives = 0;
+        for (int i = count; i < 2 * count; i++) {
+            if (filter.mightContain("products/ab/cd/" + i)) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / count;
+        assertTrue(rate < 0.02, "false positive rate " + rate);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = BloomFilter.create(0, 0.01);
+
+        assertFalse(filter.mightContain("products/legacy"));
+        filter.put("products/legacy");
+        assertTrue(filter.mightContain("products/legacy"));
+    }
+}
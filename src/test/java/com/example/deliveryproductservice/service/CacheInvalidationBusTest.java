@@ -0,0 +1,124 @@
+package com.example.deliveryproductservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Сообщения других узлов применяются по одному, собственные игнорируются,
+ * разрыв в версиях или переподключение транспорта ведут к полной перезагрузке
+ */
+class CacheInvalidationBusTest {
+
+    private final List<Long> invalidated = new ArrayList<>();
+    private final List<Long> productsInvalidated = new ArrayList<>();
+    private int refreshes;
+
+    private RecordingTransport transport;
+    private CacheInvalidationBus bus;
+
+    @BeforeEach
+    void setUp() {
+        transport = new RecordingTransport();
+        bus = new CacheInvalidationBus(transport, new SimpleMeterRegistry());
+        bus.register(CacheInvalidationBus.EntityType.STORE, invalidated::add, () -> refreshes++);
+        bus.register(CacheInvalidationBus.EntityType.PRODUCT, productsInvalidated::add, () -> refreshes++);
+        bus.start();
+    }
+
+    @Test
+    void appliesPeerMessagesToHandlersOfTheirType() {
+        transport.deliver("peer|1|STORE|10");
+        transport.deliver("peer|2|PRODUCT|20");
+        transport.deliver("peer|3|STORE|11");
+
+        assertEquals(List.of(10L, 11L), invalidated);
+        assertEquals(List.of(20L), productsInvalidated);
+        assertEquals(0, refreshes);
+    }
+
+    @Test
+    void firstMessageOfPeerIsNotAGap() {
+        transport.deliver("peer|42|STORE|10");
+
+        assertEquals(List.of(10L), invalidated);
+        assertEquals(0, refreshes);
+    }
+
+    @Test
+    void missedVersionTriggersFullRefreshOfAllHandlers() {
+        transport.deliver("peer|1|STORE|10");
+        transport.deliver("peer|3|STORE|11");
+
+        assertEquals(List.of(10L), invalidated);
+        assertEquals(2, refreshes);
+
+        transport.deliver("peer|4|STORE|12");
+        assertEquals(List.of(10L, 12L), invalidated);
+        assertEquals(2, refreshes);
+    }
+
+    @Test
+    void ignoresOwnDuplicateAndMalformedMessages() {
+        transport.deliver(bus.getNodeId() + "|1|STORE|10");
+        transport.deliver("peer|1|STORE|11");
+        transport.deliver("peer|1|STORE|11");
+        transport.deliver("peer|2|UNKNOWN|12");
+        transport.deliver("garbage");
+
+        assertEquals(List.of(11L), invalidated);
+        assertEquals(0, refreshes);
+    }
+
+    @Test
+    void reconnectTriggersFullRefresh() {
+        transport.reconnect();
+
+        assertEquals(2, refreshes);
+    }
+
+    @Test
+    void localChangesReachOnlyLocalAndRemoteHandlers() {
+        List<Long> local = new ArrayList<>();
+        bus.registerLocalAndRemote(CacheInvalidationBus.EntityType.STORE, local::add, () -> refreshes++);
+
+        bus.publish(CacheInvalidationBus.EntityType.STORE, 10L);
+        transport.deliver("peer|1|STORE|11");
+
+        assertEquals(List.of(10L, 11L), local);
+        assertEquals(List.of(11L), invalidated);
+    }
+
+    private static final class RecordingTransport implements CacheInvalidationTransport {
+        private Consumer<String> onMessage;
+        private Runnable onReconnect;
+
+        @Override
+        public void publish(String message) {
+        }
+
+        @Override
+        public void subscribe(Consumer<String> onMessage, Runnable onReconnect) {
+            this.onMessage = onMessage;
+            this.onReconnect = onReconnect;
+        }
+
+        @Override
+        public void close() {
+        }
+
+        void deliver(String message) {
+            onMessage.accept(message);
+        }
+
+        void reconnect() {
+            onReconnect.run();
+        }
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.category.CategoryBaseProjection;
+import com.example.deliveryproductservice.dto.category.CategoryResponseDto;
+import com.example.deliveryproductservice.mapper.CategoryMapper;
+import com.example.deliveryproductservice.model.Category;
+import com.example.deliveryproductservice.repository.CategoryRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Каталог загружается из БД один раз, запись публикует новый снимок из перечитанной строки,
+ * а уже выданный снимок читателя не меняется - в том числе через изменение отданных DTO
+ */
+class CategoryCatalogCacheTest {
+
+    private CategoryRepository categoryRepository;
+    private CategoryCatalogCache cache;
+
+    @BeforeEach
+    void setUp() {
+        categoryRepository = mock(CategoryRepository.class);
+        when(categoryRepository.findAll()).thenReturn(List.of(
+                category(1L, "Піца", 2, true),
+                category(2L, "Суши", 1, true),
+                category(3L, "Архив", 0, false)));
+        cache = new CategoryCatalogCache(categoryRepository, new CategoryMapper());
+    }
+
+    @Test
+    void loadsOnceAndServesListsInRepositoryOrder() {
+        CategoryCatalogCache.Snapshot snapshot = cache.snapshot();
+
+        assertEquals(List.of(2L, 1L), snapshot.getActive().stream().map(CategoryResponseDto::getId).toList());
+        assertEquals(List.of(3L, 2L, 1L), snapshot.getAllBrief().stream().map(CategoryBaseProjection::getId).toList());
+        assertEquals(2, snapshot.getActiveCount());
+        assertSame(snapshot, cache.snapshot());
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    void searchesActiveNamesIgnoringCase() {
+        CategoryCatalogCache.Snapshot snapshot = cache.snapshot();
+
+        assertEquals(List.of(1L), snapshot.searchActiveBrief("ПІЦ").stream().map(CategoryBaseProjection::getId).toList());
+        assertTrue(snapshot.searchActive("архив").isEmpty(), "inactive categories are not searchable");
+        assertEquals(2, snapshot.searchActive("").size());
+    }
+
+    @Test
+    void savedCategoryPublishesNewSnapshotWithoutTouchingOldOne() {
+        CategoryCatalogCache.Snapshot before = cache.snapshot();
+        Category restored = category(3L, "Архив", 0, true);
+        Category added = category(4L, "Десерти", 5, true);
+        when(categoryRepository.findById(3L)).thenReturn(Optional.of(restored));
+        when(categoryRepository.findById(4L)).thenReturn(Optional.of(added));
+
+        cache.onCategorySaved(restored);
+        cache.onCategorySaved(added);
+
+        CategoryCatalogCache.Snapshot after = cache.snapshot();
+        assertNotSame(before, after);
+        assertEquals(List.of(3L, 2L, 1L, 4L), after.getActive().stream().map(CategoryResponseDto::getId).toList());
+        assertEquals(2, before.getActive().size());
+        assertEquals(List.of(1L, 4L), after.findBriefByIds(List.of(4L, 1L, 99L)).stream()
+                .map(CategoryBaseProjection::getId).toList());
+        verify(categoryRepository, times(1)).findAll();
+    }
+
+    @Test
+    void afterCommitOutOfOrderStillPublishesLatestCommittedRow() {
+        cache.snapshot();
+        // Оба обновления уже закоммичены; afterCommit более раннего выполняется последним
+        Category older = category(1L, "Пицца (старое)", 2, true);
+        Category newer = category(1L, "Пицца", 2, true);
+        when(categoryRepository.findById(1L)).thenReturn(Optional.of(newer));
+
+        cache.onCategorySaved(newer);
+        cache.onCategorySaved(older);
+
+        assertEquals("Пицца", cache.snapshot().findById(1L).orElseThrow().getName());
+        verify(categoryRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    void returnedDtosAreCopies() {
+        CategoryCatalogCache.Snapshot snapshot = cache.snapshot();
+
+        snapshot.findById(1L).orElseThrow().setName("changed");
+        snapshot.getActive().forEach(dto -> dto.setIsActive(false));
+        snapshot.searchActive("").forEach(dto -> dto.setSortOrder(99));
+
+        assertEquals("Піца", snapshot.findById(1L).orElseThrow().getName());
+        assertEquals(2, snapshot.getActive().size());
+        assertEquals(List.of(0, 1, 2), snapshot.getAll().stream().map(CategoryResponseDto::getSortOrder).toList());
+    }
+
+    private static Category category(Long id, String name, int sortOrder, boolean active) {
+        Category category = new Category();
+        category.setId(id);
+        category.setName(name);
+        category.setSortOrder(sortOrder);
+        category.setIsActive(active);
+        return category;
+    }
+}
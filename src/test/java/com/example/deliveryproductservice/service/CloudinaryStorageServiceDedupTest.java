@@ -0,0 +1,155 @@
+package com.example.deliveryproductservice.service;
+
+import com.cloudinary.Cloudinary;
+import com.cloudinary.Uploader;
+import com.example.deliveryproductservice.model.StoredImage;
+import com.example.deliveryproductservice.repository.StoredImageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Повторная загрузка того же файла не идет в Cloudinary, а удаление
+ * снимает ссылку и удаляет изображение только вместе с последней
+ */
+class CloudinaryStorageServiceDedupTest {
+
+    private final ImageProcessingExecutor imageProcessingExecutor = new ImageProcessingExecutor(
+            new SimpleMeterRegistry(), 1, 4, DataSize.ofMegabytes(64), Duration.ofSeconds(10));
+
+    // Таблица stored_images в памяти: hash -> запись
+    private final Map<String, StoredImage> storedImages = new ConcurrentHashMap<>();
+
+    private Uploader uploader;
+    private CloudinaryStorageService storageService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Cloudinary cloudinary = mock(Cloudinary.class);
+        uploader = mock(Uploader.class);
+        when(cloudinary.uploader()).thenReturn(uploader);
+        when(uploader.upload(any(), anyMap())).thenAnswer(invocation -> {
+            String publicId = (String) invocation.<Map<?, ?>>getArgument(1).get("public_id");
+            return Map.of("public_id", publicId, "secure_url", "https://cdn/" + publicId + ".jpg");
+        });
+        when(uploader.destroy(anyString(), anyMap())).thenReturn(Map.of("result", "ok"));
+
+        storageService = new CloudinaryStorageService(cloudinary,
+                new ImageConverterService(imageProcessingExecutor),
+                new ImageContentIndex(inMemoryRepository(), mock(JdbcTemplate.class)),
+                new StorageIdGenerator(1, System::currentTimeMillis));
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingExecutor.shutdown();
+    }
+
+    @Test
+    void sameContentIsUploadedOnceAndDestroyedWithLastReference() throws Exception {
+        byte[] photo = jpeg();
+
+        StorageService.StorageResult first = storageService.uploadImage(
+                new MockMultipartFile("image", "dish.jpg", "image/jpeg", photo), "products");
+        StorageService.StorageResult second = storageService.uploadImage(
+                new MockMultipartFile("image", "dish-large.jpg", "image/jpeg", photo), "products");
+
+        // full + card + thumb один раз
+        verify(uploader, times(3)).upload(any(), anyMap());
+        assertEquals(first.getImageId(), second.getImageId());
+        assertEquals(first.getUrl(), second.getUrl());
+        assertEquals(first.getVariants().getThumbUrl(), second.getVariants().getThumbUrl());
+        assertEquals(2, storedImages.values().iterator().next().getRefCount());
+
+        assertTrue(storageService.deleteImage(first.getImageId()));
+        verify(uploader, never()).destroy(anyString(), anyMap());
+
+        assertTrue(storageService.deleteImage(second.getImageId()));
+        verify(uploader).destroy(eq(first.getImageId()), anyMap());
+        assertTrue(storedImages.isEmpty());
+    }
+
+    @Test
+    void imagesUploadedBeforeTheIndexAreDestroyedDirectly() throws Exception {
+        assertTrue(storageService.deleteImage("products/legacy"));
+
+        verify(uploader).destroy(eq("products/legacy"), anyMap());
+    }
+
+    private StoredImageRepository inMemoryRepository() {
+        StoredImageRepository repository = mock(StoredImageRepository.class);
+
+        when(repository.saveAndFlush(any(StoredImage.class))).thenAnswer(invocation -> {
+            StoredImage image = invocation.getArgument(0);
+            if (storedImages.putIfAbsent(image.getContentHash(), image) != null) {
+                throw new DataIntegrityViolationException("duplicate content_hash");
+            }
+            return image;
+        });
+        when(repository.findByContentHash(anyString()))
+                .thenAnswer(invocation -> Optional.ofNullable(storedImages.get(invocation.<String>getArgument(0))));
+        when(repository.incrementRefCount(anyString())).thenAnswer(invocation -> {
+            StoredImage image = storedImages.get(invocation.<String>getArgument(0));
+            if (image == null || image.getRefCount() == 0) {
+                return 0;
+            }
+            image.setRefCount(image.getRefCount() + 1);
+            return 1;
+        });
+        when(repository.decrementRefCount(anyString())).thenAnswer(invocation -> {
+            Optional<StoredImage> image = byPublicId(invocation.getArgument(0));
+            if (image.isEmpty() || image.get().getRefCount() == 0) {
+                return 0;
+            }
+            image.get().setRefCount(image.get().getRefCount() - 1);
+            return 1;
+        });
+        when(repository.deleteUnreferenced(anyString())).thenAnswer(invocation -> {
+            Optional<StoredImage> image = byPublicId(invocation.getArgument(0));
+            if (image.isEmpty() || image.get().getRefCount() != 0) {
+                return 0;
+            }
+            storedImages.remove(image.get().getContentHash());
+            return 1;
+        });
+        return repository;
+    }
+
+    private Optional<StoredImage> byPublicId(String publicId) {
+        return storedImages.values().stream()
+                .filter(image -> image.getPublicId().equals(publicId))
+                .findFirst();
+    }
+
+    private static byte[] jpeg() throws Exception {
+        BufferedImage image = new BufferedImage(800, 600, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < image.getHeight(); y++) {
+            for (int x = 0; x < image.getWidth(); x++) {
+                image.setRGB(x, y, x * 7 ^ y * 13);
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(image, "jpeg", output);
+        return output.toByteArray();
+    }
+}
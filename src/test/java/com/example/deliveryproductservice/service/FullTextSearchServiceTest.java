@@ -0,0 +1,52 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.SearchCursor;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Запрос пользователя превращается в безопасный tsquery из префиксов,
+ * курсор выдачи передает ранг float4 без потерь
+ */
+class FullTextSearchServiceTest {
+
+    @Test
+    void buildsPrefixQueryFromWordsOnly() {
+        assertEquals("пицца:* & 4:* & сыра:*", FullTextSearchService.toPrefixQuery("Пицца  4 сыра!"));
+        assertEquals("піца:* & з:* & куркою:*", FullTextSearchService.toPrefixQuery("Піца з куркою"));
+        // Операторы tsquery из ввода не проходят
+        assertEquals("it:* & s:* & drop:*", FullTextSearchService.toPrefixQuery("it's 'drop'&|!:*"));
+        assertNull(FullTextSearchService.toPrefixQuery(" &|! "));
+        assertNull(FullTextSearchService.toPrefixQuery(null));
+    }
+
+    @Test
+    void limitsNumberOfTerms() {
+        String query = FullTextSearchService.toPrefixQuery("a b c d e f g h i j k");
+
+        assertEquals(8, query.split(" & ").length);
+    }
+
+    @Test
+    void vectorWeighsNameOverDescriptionInEveryConfig() {
+        String expression = FullTextSearchService.vectorExpression(List.of("russian", "simple"));
+
+        assertEquals("setweight(to_tsvector('russian'::regconfig, coalesce(name, '')), 'A') || "
+                + "setweight(to_tsvector('russian'::regconfig, coalesce(description, '')), 'B') || "
+                + "setweight(to_tsvector('simple'::regconfig, coalesce(name, '')), 'A') || "
+                + "setweight(to_tsvector('simple'::regconfig, coalesce(description, '')), 'B')", expression);
+    }
+
+    @Test
+    void searchCursorRoundTripsRankExactly() {
+        SearchCursor cursor = SearchCursor.after(0.1f / 3, 17L);
+
+        assertEquals(cursor, SearchCursor.decode(cursor.encode()));
+        assertSame(SearchCursor.first(), SearchCursor.decode(null));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("TmFOOjE"));
+        assertThrows(IllegalArgumentException.class, () -> SearchCursor.decode("%%%"));
+    }
+}
@@ -0,0 +1,152 @@
+package com.example.deliveryproductservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.util.unit.DataSize;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Потоковая обработка: декодирование с прореживанием вместо полного растра
+ * и запись результата во временный файл вместо byte[]
+ */
+class ImageConverterServiceStreamingTest {
+
+    private static byte[] largeJpeg;
+
+    private final ImageProcessingExecutor imageProcessingExecutor = new ImageProcessingExecutor(
+            new SimpleMeterRegistry(), 1, 4, DataSize.ofMegabytes(256), Duration.ofSeconds(10));
+    private final ImageConverterService imageConverterService = new ImageConverterService(imageProcessingExecutor);
+
+    @BeforeAll
+    static void createLargeImage() throws IOException {
+        BufferedImage source = new BufferedImage(4000, 3000, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < source.getHeight(); y++) {
+            for (int x = 0; x < source.getWidth(); x++) {
+                source.setRGB(x, y, (x * 31 + y * 17) ^ (x * y));
+            }
+        }
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        ImageIO.write(source, "jpeg", output);
+        largeJpeg = output.toByteArray();
+    }
+
+    @AfterEach
+    void tearDown() {
+        imageProcessingExecutor.shutdown();
+    }
+
+    @Test
+    void largeImageIsDownscaledIntoTemporaryFile() throws Exception {
+        Path file;
+        try (ImageConverterService.ProcessedImage processed =
+                     imageConverterService.processProductImage(upload("photo.jpg", "image/jpeg"))) {
+
+            file = processed.getFile();
+            assertTrue(Files.exists(file));
+            assertEquals("image/jpeg", processed.getContentType());
+            assertEquals(Files.size(file), processed.getSize());
+
+            BufferedImage result;
+            try (InputStream inputStream = processed.openStream()) {
+                result = ImageIO.read(inputStream);
+            }
+            assertEquals(1200, result.getWidth());
+            assertEquals(900, result.getHeight());
+            assertEquals(result.getWidth(), processed.getWidth());
+        }
+
+        assertFalse(Files.exists(file), "Temporary file must be deleted on close");
+    }
+
+    @Test
+    void derivativesAreBuiltFromOneDecodeAndDeletedOnClose() throws Exception {
+        List<Path> files = new ArrayList<>();
+        try (ImageConverterService.ImageDerivatives derivatives =
+                     imageConverterService.processDerivatives(upload("photo.jpg", "image/jpeg"))) {
+
+            assertVariant(derivatives.get(ImageConverterService.ImageVariant.FULL), 1200, 900, "photo_full.jpg");
+            assertVariant(derivatives.get(ImageConverterService.ImageVariant.CARD), 600, 450, "photo_card.jpg");
+            assertVariant(derivatives.get(ImageConverterService.ImageVariant.THUMB), 200, 150, "photo_thumb.jpg");
+
+            for (ImageConverterService.ImageVariant variant : ImageConverterService.ImageVariant.values()) {
+                files.add(derivatives.get(variant).getFile());
+            }
+        }
+
+        for (Path file : files) {
+            assertFalse(Files.exists(file), "Temporary derivative must be deleted on close: " + file);
+        }
+    }
+
+    @Test
+    void largeImageIsDecodedSubsampledNotAtFullResolution() throws Exception {
+        ImageConverterService converter = spy(imageConverterService);
+        List<BufferedImage> decoded = new CopyOnWriteArrayList<>();
+        doAnswer(invocation -> {
+            BufferedImage image = (BufferedImage) invocation.callRealMethod();
+            decoded.add(image);
+            return image;
+        }).when(converter).decodeSubsampled(any(), anyInt());
+
+        try (ImageConverterService.ProcessedImage ignored = converter.processProductImage(upload("photo.jpg", "image/jpeg"));
+             ImageConverterService.ImageDerivatives alsoIgnored = converter.processDerivatives(upload("photo.jpg", "image/jpeg"))) {
+
+            // Один decode на вызов, и растр в памяти - каждый третий пиксель: 1334x1000 вместо 4000x3000
+            assertEquals(2, decoded.size());
+            for (BufferedImage image : decoded) {
+                assertEquals(1334, image.getWidth());
+                assertEquals(1000, image.getHeight());
+                WritableRaster raster = image.getRaster();
+                DataBuffer buffer = raster.getDataBuffer();
+                assertEquals(1334L * 1000, (long) buffer.getSize() * buffer.getNumBanks() / raster.getNumDataElements());
+            }
+        }
+        verify(converter, times(2)).decodeSubsampled(any(), eq(3));
+    }
+
+    @Test
+    void subsamplingKeepsDecodedImageAtLeastTargetSize() {
+        assertEquals(1, ImageConverterService.subsamplingFactor(1000, 800));
+        assertEquals(1, ImageConverterService.subsamplingFactor(2000, 1500));
+        assertEquals(3, ImageConverterService.subsamplingFactor(4000, 3000));
+        assertEquals(10, ImageConverterService.subsamplingFactor(3000, 12000));
+    }
+
+    private static void assertVariant(ImageConverterService.ProcessedImage variant,
+                                      int width, int height, String fileName) throws IOException {
+        BufferedImage image;
+        try (InputStream inputStream = variant.openStream()) {
+            image = ImageIO.read(inputStream);
+        }
+        assertEquals(width, image.getWidth());
+        assertEquals(height, image.getHeight());
+        assertEquals(fileName, variant.getFileName());
+        assertEquals("image/jpeg", variant.getContentType());
+    }
+
+    private static MockMultipartFile upload(String fileName, String contentType) {
+        return new MockMultipartFile("image", fileName, contentType, largeJpeg);
+    }
+}
@@ -0,0 +1,144 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.model.ImageDeletion;
+import com.example.deliveryproductservice.repository.ImageDeletionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.InOrder;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+/**
+ * Outbox удаления: ссылка снимается при постановке в очередь, пачка удаляется
+ * одним вызовом хранилища вне транзакции (под арендой), неудачные записи
+ * откладываются с растущей задержкой
+ */
+class ImageDeletionQueueTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private ImageDeletionRepository repository;
+    private ImageContentIndex imageContentIndex;
+    private StorageService storageService;
+    private PlatformTransactionManager transactionManager;
+    private ImageDeletionQueue queue;
+
+    @BeforeEach
+    void setUp() {
+        repository = mock(ImageDeletionRepository.class);
+        imageContentIndex = mock(ImageContentIndex.class);
+        storageService = mock(StorageService.class);
+        transactionManager = mock(PlatformTransactionManager.class);
+        queue = new ImageDeletionQueue(repository, imageContentIndex, storageService,
+                transactionManager, meterRegistry,
+                10, Duration.ofSeconds(10), Duration.ofSeconds(30), Duration.ofMinutes(10), Duration.ofMinutes(5));
+    }
+
+    @Test
+    void enqueuesOnlyWhenLastReferenceIsReleased() {
+        when(imageContentIndex.release("products/shared")).thenReturn(false);
+        when(imageContentIndex.release("products/single")).thenReturn(true);
+
+        queue.enqueue("products/shared");
+        queue.enqueue("products/single");
+        queue.enqueue("default_product_1");
+        queue.enqueue(null);
+
+        verify(repository, times(1)).save(argThat(deletion -> deletion.getPublicId().equals("products/single")));
+        verify(imageContentIndex, never()).release("default_product_1");
+        assertEquals(1, queue.getBacklog());
+    }
+
+    @Test
+    void drainsBatchWithOneStorageCallAndReschedulesFailures() {
+        ImageDeletion deleted = deletion(1L, "products/a");
+        ImageDeletion failed = deletion(2L, "products/b");
+        when(repository.lockDue(any(LocalDateTime.class), anyInt())).thenReturn(List.of(deleted, failed));
+        when(storageService.destroyImages(List.of("products/a", "products/b"))).thenReturn(Set.of("products/a"));
+        when(repository.count()).thenReturn(1L);
+
+        LocalDateTime before = LocalDateTime.now();
+        assertEquals(1, queue.drain());
+
+        verify(storageService, times(1)).destroyImages(any());
+        verify(repository).deleteAllInBatch(List.of(deleted));
+        verify(repository).saveAll(List.of(failed));
+        assertEquals(1, failed.getAttempts());
+        assertNotNull(failed.getLastError());
+        assertFalse(failed.getNextAttemptAt().isBefore(before.plusSeconds(30)));
+        assertEquals(1, queue.getBacklog());
+        assertEquals(1.0, meterRegistry.get("image.deletion.backlog").gauge().value());
+    }
+
+    @Test
+    void storageIsCalledBetweenClaimAndCompletionCommits() {
+        ImageDeletion deletion = deletion(1L, "products/a");
+        when(repository.lockDue(any(LocalDateTime.class), anyInt())).thenReturn(List.of(deletion));
+        LocalDateTime before = LocalDateTime.now();
+        when(storageService.destroyImages(any())).thenAnswer(invocation -> {
+            // Во время вызова запись арендована: другие инстансы ее не считают готовой
+            assertFalse(deletion.getNextAttemptAt().isBefore(before.plusMinutes(5)));
+            return Set.of("products/a");
+        });
+
+        assertEquals(1, queue.drain());
+
+        InOrder inOrder = inOrder(transactionManager, repository, storageService);
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(repository).lockDue(any(LocalDateTime.class), eq(10));
+        inOrder.verify(repository).saveAll(List.of(deletion));
+        inOrder.verify(transactionManager).commit(any());
+        inOrder.verify(storageService).destroyImages(List.of("products/a"));
+        inOrder.verify(transactionManager).getTransaction(any());
+        inOrder.verify(repository).deleteAllInBatch(List.of(deletion));
+        inOrder.verify(transactionManager).commit(any());
+    }
+
+    @Test
+    void storageOutageKeepsWholeBatchForRetry() {
+        ImageDeletion deletion = deletion(1L, "products/a");
+        when(repository.lockDue(any(LocalDateTime.class), anyInt())).thenReturn(List.of(deletion));
+        when(storageService.destroyImages(any())).thenThrow(new IllegalStateException("503 Service Unavailable"));
+
+        assertEquals(0, queue.drain());
+
+        verify(repository).deleteAllInBatch(List.of());
+        assertEquals(1, deletion.getAttempts());
+        assertEquals("503 Service Unavailable", deletion.getLastError());
+    }
+
+    @Test
+    void backoffDoublesUpToMaximum() {
+        assertBetween(Duration.ofSeconds(30), queue.backoff(1));
+        assertBetween(Duration.ofSeconds(60), queue.backoff(2));
+        assertBetween(Duration.ofSeconds(240), queue.backoff(4));
+        assertBetween(Duration.ofMinutes(10), queue.backoff(10));
+        assertBetween(Duration.ofMinutes(10), queue.backoff(1000));
+    }
+
+    private static void assertBetween(Duration base, Duration actual) {
+        // Джиттер - не больше 20% сверху
+        assertTrue(actual.compareTo(base) >= 0 && actual.compareTo(base.plus(base.dividedBy(5))) <= 0,
+                base + " <= " + actual);
+    }
+
+    private static ImageDeletion deletion(Long id, String publicId) {
+        return ImageDeletion.builder()
+                .id(id)
+                .publicId(publicId)
+                .attempts(0)
+                .nextAttemptAt(LocalDateTime.now())
+                .build();
+    }
+}
@@ -0,0 +1,93 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.Exception.ImageProcessingRejectedException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Отказы при перегрузке: 429 при заполненной очереди, 503 без памяти в бюджете
+ */
+class ImageProcessingExecutorTest {
+
+    private ImageProcessingExecutor executor;
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executor.shutdown();
+    }
+
+    @Test
+    void rejectsWith429WhenQueueIsFull() throws Exception {
+        executor = new ImageProcessingExecutor(new SimpleMeterRegistry(),
+                1, 1, DataSize.ofMegabytes(64), Duration.ofSeconds(5));
+
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(() -> submit(1024, this::awaitRelease));
+        waitUntil(() -> executor.getAvailableMemoryBytes() < DataSize.ofMegabytes(64).toBytes());
+        CompletableFuture<String> queued = CompletableFuture.supplyAsync(() -> submit(1024, () -> "queued"));
+        waitUntil(() -> executor.getQueueSize() == 1);
+
+        ImageProcessingRejectedException rejected = assertThrows(ImageProcessingRejectedException.class,
+                () -> executor.execute(1024, () -> "rejected"));
+        assertEquals(HttpStatus.TOO_MANY_REQUESTS, rejected.getStatus());
+        assertTrue(rejected.getRetryAfterSeconds() > 0);
+
+        release.countDown();
+        assertEquals("done", running.get(5, TimeUnit.SECONDS));
+        assertEquals("queued", queued.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void rejectsWith503WhenMemoryBudgetIsNotReleasedInTime() throws Exception {
+        executor = new ImageProcessingExecutor(new SimpleMeterRegistry(),
+                2, 4, DataSize.ofMegabytes(1), Duration.ofMillis(200));
+
+        // Первая задача занимает весь бюджет
+        CompletableFuture<String> running = CompletableFuture.supplyAsync(
+                () -> submit(DataSize.ofMegabytes(1).toBytes(), this::awaitRelease));
+        waitUntil(() -> executor.getAvailableMemoryBytes() == 0);
+
+        ImageProcessingRejectedException rejected = assertThrows(ImageProcessingRejectedException.class,
+                () -> executor.execute(DataSize.ofKilobytes(512).toBytes(), () -> "rejected"));
+        assertEquals(HttpStatus.SERVICE_UNAVAILABLE, rejected.getStatus());
+
+        release.countDown();
+        assertEquals("done", running.get(5, TimeUnit.SECONDS));
+        assertEquals(DataSize.ofMegabytes(1).toBytes(), executor.getAvailableMemoryBytes());
+        assertEquals("admitted", executor.execute(DataSize.ofKilobytes(512).toBytes(), () -> "admitted"));
+    }
+
+    private String awaitRelease() throws InterruptedException {
+        assertTrue(release.await(5, TimeUnit.SECONDS));
+        return "done";
+    }
+
+    private String submit(long estimatedBytes, Callable<String> job) {
+        try {
+            return executor.execute(estimatedBytes, job);
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static void waitUntil(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean()) {
+            assertTrue(System.nanoTime() < deadline, "Condition not reached in time");
+            Thread.sleep(10);
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.config.CircuitBreaker;
+import com.example.deliveryproductservice.config.OutboundHttpClientFactory;
+import com.example.deliveryproductservice.dto.GeoLocation.CreateAddressRequest;
+import com.example.deliveryproductservice.dto.GeoLocation.GeoLocation;
+import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.repository.GeocodeCacheRepository;
+import com.sun.net.httpserver.HttpServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Пакетное геокодирование против локального stub-сервера вместо Mapbox
+ */
+class MapboxGeocodingServiceBatchTest {
+
+    private static final String FOUND_RESPONSE =
+            "{\"type\":\"FeatureCollection\",\"features\":[{\"text\":\"stub\",\"place_name\":\"stub\","
+                    + "\"geometry\":{\"type\":\"Point\",\"coordinates\":[36.2304,49.9935]}}]}";
+
+    private HttpServer server;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile long responseDelayMillis;
+
+    private MapboxGeocodingService geocodingService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/geocoding", exchange -> {
+            requests.incrementAndGet();
+            try {
+                Thread.sleep(responseDelayMillis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+
+            boolean fail = exchange.getRequestURI().getRawPath().contains("Broken");
+            byte[] body = (fail ? "{\"message\":\"boom\"}" : FOUND_RESPONSE).getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(fail ? 500 : 200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        });
+        server.setExecutor(Executors.newFixedThreadPool(8));
+        server.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (geocodingService != null) {
+            geocodingService.shutdown();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    void batchDedupesAddressesAndFallsBackPerAddress() {
+        startService(100, 100);
+
+        List<Address> addresses = geocodingService.createAddressesWithCoordinates(List.of(
+                request("ул. Сумская, 1", "Харьков"),
+                request("улица Сумская 1", "Харьков"),
+                request("Broken street 5", "Kyiv"),
+                request("ул. Сумская, 1", "Харьков")));
+
+        assertEquals(4, addresses.size());
+        // Три записи одного адреса - один запрос, плюс один неудачный
+        assertEquals(2, requests.get());
+
+        for (int i : new int[]{0, 1, 3}) {
+            assertEquals(0, new BigDecimal("49.9935").compareTo(addresses.get(i).getLatitude()));
+            assertEquals(0, new BigDecimal("36.2304").compareTo(addresses.get(i).getLongitude()));
+        }
+        assertEquals("ул. Сумская, 1", addresses.get(0).getStreet());
+
+        // Ошибка Mapbox затрагивает только свой адрес
+        Address fallback = addresses.get(2);
+        assertEquals(0, new BigDecimal("50.0000").compareTo(fallback.getLatitude()));
+        assertEquals(0, new BigDecimal("20.0000").compareTo(fallback.getLongitude()));
+    }
+
+    @Test
+    void concurrentLookupsOfSameAddressShareOneRequest() throws Exception {
+        startService(100, 100);
+        responseDelayMillis = 300;
+
+        int callers = 8;
+        ExecutorService pool = Executors.newFixedThreadPool(callers);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Future<GeoLocation>> results = new ArrayList<>();
+        try {
+            for (int i = 0; i < callers; i++) {
+                results.add(pool.submit(() -> {
+                    start.await();
+                    return geocodingService.geocodeAddressCached("Сумская 1, Харьков");
+                }));
+            }
+            start.countDown();
+
+            for (Future<GeoLocation> result : results) {
+                assertEquals(0, new BigDecimal("49.9935").compareTo(result.get(5, TimeUnit.SECONDS).getLatitude()));
+            }
+        } finally {
+            pool.shutdownNow();
+        }
+
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    void batchRespectsTokenBucketLimit() {
+        // 10 запросов в секунду без всплеска: 5 адресов занимают не меньше ~400 мс
+        startService(10, 1);
+
+        List<CreateAddressRequest> batch = new ArrayList<>();
+        for (int i = 1; i <= 5; i++) {
+            batch.add(request("Street " + i, "Berlin"));
+        }
+
+        long startNanos = System.nanoTime();
+        List<Address> addresses = geocodingService.createAddressesWithCoordinates(batch);
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+
+        assertEquals(5, addresses.size());
+        assertEquals(5, requests.get());
+        assertTrue(elapsedMillis >= 350, "Batch finished too fast for the rate limit: " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void exhaustedRateLimitFailsFastInsteadOfQueueing() {
+        // 1 запрос в секунду: второй адрес ждал бы ~1 с, а ждать можно 50 мс
+        startService(1, 1);
+        ReflectionTestUtils.setField(geocodingService, "rateLimitMaxWait", Duration.ofMillis(50));
+
+        geocodingService.createAddressWithCoordinates(request("Street 1", "Berlin"));
+        long startNanos = System.nanoTime();
+        Address address = geocodingService.createAddressWithCoordinates(request("Street 2", "Berlin"));
+        long elapsedMillis = Duration.ofNanos(System.nanoTime() - startNanos).toMillis();
+
+        assertEquals(1, requests.get());
+        assertEquals(0, new BigDecimal("50.0000").compareTo(address.getLatitude()));
+        assertTrue(elapsedMillis < 500, "Rate-limited call waited " + elapsedMillis + " ms");
+    }
+
+    @Test
+    void openCircuitRejectsBeforeTakingRateLimitPermits() {
+        // 6 токенов без заметного пополнения: 5 уходят на ошибки, открывающие цепь
+        startService(0.01, 6);
+        for (int i = 1; i <= 5; i++) {
+            geocodingService.createAddressWithCoordinates(request("Broken street " + i, "Kyiv"));
+        }
+
+        // Цепь открыта: вызов отклоняется сразу и не забирает последний токен
+        for (int i = 1; i <= 10; i++) {
+            assertThrows(CircuitBreaker.CallNotPermittedException.class,
+                    () -> geocodingService.geocodeAddress("Street 1, Berlin"));
+        }
+        TokenBucketRateLimiter rateLimiter =
+                (TokenBucketRateLimiter) ReflectionTestUtils.getField(geocodingService, "rateLimiter");
+        assertEquals(5, requests.get());
+        assertTrue(rateLimiter.tryAcquire());
+        assertFalse(rateLimiter.tryAcquire());
+    }
+
+    @Test
+    void circuitBreakerDisablesGeocodingAfterConsecutiveFailures() {
+        startService(100, 100);
+
+        for (int i = 1; i <= 5; i++) {
+            geocodingService.createAddressWithCoordinates(request("Broken street " + i, "Kyiv"));
+        }
+        assertEquals(5, requests.get());
+        assertEquals(false, ReflectionTestUtils.getField(geocodingService, "geocodingAvailable"));
+
+        // Цепь открыта - адрес получает fallback-координаты без запроса к Mapbox
+        Address address = geocodingService.createAddressWithCoordinates(request("Street 1", "Berlin"));
+        assertEquals(5, requests.get());
+        assertEquals(0, new BigDecimal("50.0000").compareTo(address.getLatitude()));
+    }
+
+    @Test
+    void breakerClosingMidBatchKeepsTheDecisionMadeForEachAddress() {
+        OfflineGazetteer gazetteer = mock(OfflineGazetteer.class);
+        startService(100, 100, gazetteer);
+        ReflectionTestUtils.setField(geocodingService, "geocodingAvailable", false);
+        // Пробный запрос закрыл цепь, пока пакет собирал fallback-адреса
+        when(gazetteer.resolve(any(), any())).thenAnswer(invocation -> {
+            ReflectionTestUtils.setField(geocodingService, "geocodingAvailable", true);
+            return Optional.empty();
+        });
+
+        List<Address> addresses = geocodingService.createAddressesWithCoordinates(List.of(
+                request("Street 1", "Berlin"),
+                request("Street 2", "Berlin")));
+
+        assertEquals(2, addresses.size());
+        assertEquals(0, requests.get());
+        assertEquals(0, new BigDecimal("50.0000").compareTo(addresses.get(1).getLatitude()));
+    }
+
+    private void startService(double requestsPerSecond, int burst) {
+        startService(requestsPerSecond, burst, mock(OfflineGazetteer.class));
+    }
+
+    private void startService(double requestsPerSecond, int burst, OfflineGazetteer gazetteer) {
+        SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+        GeocodingCache cache = new GeocodingCache(mock(GeocodeCacheRepository.class), meterRegistry,
+                1000, Duration.ofDays(30), Duration.ofDays(1));
+        geocodingService = new MapboxGeocodingService(
+                cache, gazetteer, new OutboundHttpClientFactory(meterRegistry));
+
+        ReflectionTestUtils.setField(geocodingService, "mapboxToken", "stub-token-for-tests");
+        ReflectionTestUtils.setField(geocodingService, "geocodingUrl",
+                "http://localhost:" + server.getAddress().getPort() + "/geocoding");
+        ReflectionTestUtils.setField(geocodingService, "requestsPerSecond", requestsPerSecond);
+        ReflectionTestUtils.setField(geocodingService, "rateLimitBurst", burst);
+        ReflectionTestUtils.setField(geocodingService, "rateLimitMaxWait", Duration.ofSeconds(1));
+        ReflectionTestUtils.setField(geocodingService, "batchConcurrency", 4);
+        ReflectionTestUtils.setField(geocodingService, "batchQueueCapacity", 100);
+        ReflectionTestUtils.setField(geocodingService, "connectTimeout", Duration.ofSeconds(2));
+        ReflectionTestUtils.setField(geocodingService, "readTimeout", Duration.ofSeconds(5));
+        ReflectionTestUtils.setField(geocodingService, "circuitFailureThreshold", 5);
+        ReflectionTestUtils.setField(geocodingService, "circuitOpenDuration", Duration.ofSeconds(30));
+        geocodingService.initializeMapboxService();
+    }
+
+    private static CreateAddressRequest request(String street, String city) {
+        CreateAddressRequest request = new CreateAddressRequest();
+        request.setStreet(street);
+        request.setCity(city);
+        return request;
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.deliveryproductservice.service;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.core.io.DefaultResourceLoader;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поиск по встроенному справочнику: алиасы и транслитерация сходятся к одному городу,
+ * префиксы населенных пунктов и страна после запятой не мешают, страна выбирает между тезками
+ */
+class OfflineGazetteerTest {
+
+    @TempDir
+    Path tempDir;
+
+    private OfflineGazetteer load(String source) {
+        OfflineGazetteer gazetteer = new OfflineGazetteer(new DefaultResourceLoader());
+        ReflectionTestUtils.setField(gazetteer, "source", source);
+        ReflectionTestUtils.setField(gazetteer, "indexPath", tempDir.resolve("gazetteer.bin").toString());
+        gazetteer.load();
+        return gazetteer;
+    }
+
+    private static void assertCoordinates(double latitude, double longitude, Optional<OfflineGazetteer.Coordinates> actual) {
+        assertTrue(actual.isPresent());
+        assertEquals(latitude, actual.get().latitude(), 0.001);
+        assertEquals(longitude, actual.get().longitude(), 0.001);
+    }
+
+    @Test
+    void aliasesAndTransliterationResolveToTheSameCity() {
+        OfflineGazetteer gazetteer = load("classpath:gazetteer/cities.tsv");
+
+        assertTrue(gazetteer.size() > 100);
+        for (String name : new String[]{"Kharkiv", "Kharkov", "Харьков", "Харків", "KHARKIV"}) {
+            assertCoordinates(49.9935, 36.2304, gazetteer.resolve(name));
+        }
+        assertCoordinates(51.7592, 19.4560, gazetteer.resolve("Łódź"));
+        assertArrayEquals("lodz".getBytes(StandardCharsets.US_ASCII), OfflineGazetteer.keyOf("Łódź"));
+        assertArrayEquals("kharkiv".getBytes(StandardCharsets.US_ASCII), OfflineGazetteer.keyOf("Харків"));
+    }
+
+    @Test
+    void settlementPrefixesAndCommaPartsAreIgnored() {
+        OfflineGazetteer gazetteer = load("classpath:gazetteer/cities.tsv");
+
+        assertCoordinates(49.9935, 36.2304, gazetteer.resolve("г. Харьков"));
+        assertCoordinates(50.4501, 30.5234, gazetteer.resolve("м.Київ"));
+        assertCoordinates(46.4825, 30.7233, gazetteer.resolve("Україна, м. Одеса"));
+        assertCoordinates(49.8397, 24.0297, gazetteer.resolve("Lviv, Ukraine"));
+        assertEquals("Самара", OfflineGazetteer.stripSettlementPrefix("Самара"));
+        assertEquals("Мариуполь", OfflineGazetteer.stripSettlementPrefix("Мариуполь"));
+    }
+
+    @Test
+    void prefixLookupPicksTheLargestCity() {
+        OfflineGazetteer gazetteer = load("classpath:gazetteer/cities.tsv");
+
+        assertCoordinates(48.4647, 35.0462, gazetteer.resolve("Dnipr"));
+        assertTrue(gazetteer.resolve("Atlantis").isEmpty());
+        assertTrue(gazetteer.resolve("Kh").isEmpty());
+    }
+
+    @Test
+    void countryChoosesBetweenCitiesWithTheSameName() throws Exception {
+        Path source = tempDir.resolve("cities.tsv");
+        Files.writeString(source, String.join("\n",
+                "Odesa\t46.4825\t30.7233\tUA\t1010000\tOdessa,Одесса",
+                "Odessa\t31.8457\t-102.3676\tUS\t120000\t"));
+        OfflineGazetteer gazetteer = load("file:" + source);
+
+        assertCoordinates(46.4825, 30.7233, gazetteer.resolve("Odessa"));
+        assertCoordinates(31.8457, -102.3676, gazetteer.resolve("Odessa", "USA"));
+        assertCoordinates(31.8457, -102.3676, gazetteer.resolve("Odessa", "us"));
+        assertCoordinates(46.4825, 30.7233, gazetteer.resolve("Odessa", "Україна"));
+        // Неизвестная страна не отсекает город
+        assertCoordinates(46.4825, 30.7233, gazetteer.resolve("Odessa", "Narnia"));
+        assertEquals("UA", OfflineGazetteer.countryCodeOf("Украина"));
+    }
+}
@@ -0,0 +1,81 @@
+package com.example.deliveryproductservice.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementCreator;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.List;
+import java.util.Set;
+import java.util.function.Consumer;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * В хранилище удаляются только сироты, чью запись индекса удалил DELETE ... RETURNING:
+ * изображение, выданное индексом между листингом и удалением, остается на месте
+ */
+class OrphanImageCollectorTest {
+
+    private static final Instant OLD = Instant.now().minus(Duration.ofDays(3));
+
+    private StorageService storageService;
+    private JdbcTemplate jdbcTemplate;
+    private OrphanImageCollector collector;
+
+    @BeforeEach
+    @SuppressWarnings("unchecked")
+    void setUp() throws Exception {
+        storageService = mock(StorageService.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(0L);
+        doNothing().when(jdbcTemplate).query(any(PreparedStatementCreator.class), any(RowCallbackHandler.class));
+
+        doAnswer(invocation -> {
+            invocation.<Consumer<List<StorageService.StoredObject>>>getArgument(2).accept(List.of(
+                    new StorageService.StoredObject("products/orphan", OLD),
+                    new StorageService.StoredObject("products/reused", OLD),
+                    new StorageService.StoredObject("products/fresh", Instant.now())));
+            return null;
+        }).when(storageService).listImages(eq("products"), anyInt(), any(Consumer.class));
+        when(storageService.destroyImages(any())).thenAnswer(invocation -> Set.copyOf(invocation.getArgument(0)));
+
+        collector = new OrphanImageCollector(storageService, jdbcTemplate, mock(PlatformTransactionManager.class),
+                new SimpleMeterRegistry(), false, true, Duration.ofHours(24), Duration.ofHours(24),
+                List.of("products"), 500, 100, 0.01);
+    }
+
+    @Test
+    void destroysOnlyImagesWhoseIndexRowWasDeleted() throws Exception {
+        // "reused" прошел отбор, но ImageContentIndex выдал его заново: DELETE его не вернул
+        when(jdbcTemplate.queryForList(contains("RETURNING"), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("products/orphan"));
+
+        OrphanImageCollector.Report report = collector.collect(false);
+
+        verify(storageService).destroyImages(List.of("products/orphan"));
+        assertEquals(3, report.scanned());
+        assertEquals(1, report.orphans());
+        assertEquals(1, report.deleted());
+    }
+
+    @Test
+    void dryRunOnlyReportsWithoutDeletingIndexRows() throws Exception {
+        when(jdbcTemplate.queryForList(anyString(), eq(String.class), any(Object[].class)))
+                .thenReturn(List.of("products/orphan", "products/reused"));
+
+        OrphanImageCollector.Report report = collector.collect(true);
+
+        verify(jdbcTemplate, never()).queryForList(contains("DELETE"), eq(String.class), any(Object[].class));
+        verify(storageService, never()).destroyImages(any());
+        assertEquals(2, report.orphans());
+        assertEquals(List.of("products/orphan", "products/reused"), report.sample());
+    }
+}
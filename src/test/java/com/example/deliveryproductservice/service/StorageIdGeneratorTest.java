@@ -0,0 +1,118 @@
+package com.example.deliveryproductservice.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Идентификаторы уникальны под конкурентной нагрузкой, монотонны в пределах узла
+ * и не повторяются при переводе часов назад и переполнении счетчика; номер узла не угадывается
+ */
+class StorageIdGeneratorTest {
+
+    private static final long NOW = StorageIdGenerator.EPOCH_MILLIS + 1_000_000L;
+
+    @Test
+    void millionsOfConcurrentIdsAreUniqueAndMonotonicPerThread() throws Exception {
+        StorageIdGenerator generator = new StorageIdGenerator(7, System::currentTimeMillis);
+        int threads = 8;
+        int perThread = 500_000;
+        long[][] ids = new long[threads][perThread];
+
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            long[] target = ids[t];
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+                for (int i = 0; i < target.length; i++) {
+                    target[i] = generator.nextId();
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+
+        long[] all = new long[threads * perThread];
+        for (int t = 0; t < threads; t++) {
+            for (int i = 1; i < perThread; i++) {
+                assertTrue(ids[t][i] > ids[t][i - 1], "ids must grow within a thread");
+            }
+            System.arraycopy(ids[t], 0, all, t * perThread, perThread);
+        }
+
+        Arrays.sort(all);
+        for (int i = 1; i < all.length; i++) {
+            assertNotEquals(all[i - 1], all[i], "duplicate id");
+        }
+        assertEquals(7, StorageIdGenerator.nodeId(all[0]));
+    }
+
+    @Test
+    void clockGoingBackwardsDoesNotRepeatIds() {
+        AtomicLong clock = new AtomicLong(NOW);
+        StorageIdGenerator generator = new StorageIdGenerator(3, clock::get);
+
+        long beforeJump = generator.nextId();
+        clock.set(NOW - 5_000);
+        long afterJump = generator.nextId();
+
+        assertTrue(afterJump > beforeJump);
+        assertEquals(NOW, StorageIdGenerator.timestampMillis(afterJump));
+    }
+
+    @Test
+    void sequenceOverflowBorrowsNextMillisecond() {
+        StorageIdGenerator generator = new StorageIdGenerator(0, () -> NOW);
+
+        long previous = generator.nextId();
+        for (int i = 0; i < 5_000; i++) {
+            long next = generator.nextId();
+            assertTrue(next > previous);
+            previous = next;
+        }
+
+        // 4096 идентификаторов на миллисекунду - остальные взяты у следующей
+        assertEquals(NOW + 1, StorageIdGenerator.timestampMillis(previous));
+    }
+
+    @Test
+    void keysHaveFixedLengthAndSortLikeIds() {
+        StorageIdGenerator generator = new StorageIdGenerator(1023, System::currentTimeMillis);
+
+        String previous = generator.nextKey();
+        for (int i = 0; i < 10_000; i++) {
+            String next = generator.nextKey();
+            assertEquals(StorageIdGenerator.KEY_LENGTH, next.length());
+            assertTrue(next.compareTo(previous) > 0, previous + " >= " + next);
+            previous = next;
+        }
+        assertEquals("0000000000000", StorageIdGenerator.encode(0));
+        assertEquals("FZZZZZZZZZZZZ", StorageIdGenerator.encode(-1L));
+    }
+
+    @Test
+    void rejectsNodeIdOutOfRange() {
+        assertThrows(IllegalArgumentException.class, () -> new StorageIdGenerator(1024, System::currentTimeMillis));
+    }
+
+    @Test
+    void nodeIdIsRequiredUnlessSingleInstance() {
+        assertEquals(5, StorageIdGenerator.resolveNodeId(5, "postgres"));
+        assertEquals(0, StorageIdGenerator.resolveNodeId(-1, "none"));
+        assertThrows(IllegalStateException.class, () -> StorageIdGenerator.resolveNodeId(-1, "postgres"));
+        assertThrows(IllegalStateException.class, () -> new StorageIdGenerator(-1, "postgres"));
+    }
+}
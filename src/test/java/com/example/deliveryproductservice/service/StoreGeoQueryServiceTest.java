@@ -0,0 +1,149 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreDto;
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreRequest;
+import com.example.deliveryproductservice.dto.StoreDto.StoreNearbyProjection;
+import com.example.deliveryproductservice.model.Store;
+import com.example.deliveryproductservice.repository.StoreRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Режим database возвращает те же магазины, что и in-memory индекс: радиус поиска deliverableOnly
+ * берется из самой большой зоны доставки, пустые числовые поля читаются как 0.
+ * Репозиторий отвечает так, как ответил бы SQL findNearbyBriefByBoundingBox
+ */
+class StoreGeoQueryServiceTest {
+
+    private static final double LAT = 50.4501;
+    private static final double LON = 30.5234;
+
+    private List<Store> stores;
+    private StoreRepository storeRepository;
+    private StoreGeoQueryService service;
+
+    @BeforeEach
+    void setUp() {
+        Store noFees = StoreSpatialIndexTest.store(4, LAT - 0.02, LON, 5, true);
+        noFees.setDeliveryFee(null);
+        noFees.setEstimatedDeliveryTime(null);
+        noFees.setRating(null);
+        stores = List.of(
+                StoreSpatialIndexTest.store(1, LAT + 0.05, LON, 3, true),     // 5.6 км, возит на 3 км
+                StoreSpatialIndexTest.store(2, LAT + 0.05, LON, 10, true),    // 5.6 км, возит на 10 км
+                StoreSpatialIndexTest.store(3, LAT + 0.6, LON, 80, true),     // 67 км, возит на 80 км
+                noFees);
+
+        storeRepository = mock(StoreRepository.class);
+        when(storeRepository.findMaxActiveDeliveryRadius()).thenReturn(80);
+        when(storeRepository.findNearbyBriefByBoundingBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt(), anyDouble(), anyBoolean(), anyString(),
+                any(Pageable.class)))
+                .thenAnswer(invocation -> new SliceImpl<>(evaluateSql(
+                        invocation.getArgument(6), invocation.getArgument(7), invocation.getArgument(8),
+                        invocation.getArgument(10))));
+
+        service = new StoreGeoQueryService(storeRepository, mock(JdbcTemplate.class));
+        ReflectionTestUtils.setField(service, "searchMode", "database");
+    }
+
+    @Test
+    void deliverableSearchMatchesInMemoryIndex() {
+        NearbyStoreRequest request = StoreSpatialIndexTest.request(10);
+        request.setDeliverableOnly(true);
+
+        List<NearbyStoreDto> found = service.findNearby(request);
+
+        assertEquals(List.of(4L, 2L, 3L), found.stream().map(NearbyStoreDto::getId).toList());
+        assertEquals(inMemory().findDeliverable(request), found);
+        verify(storeRepository).findNearbyBriefByBoundingBox(anyDouble(), anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), eq(80.0), anyDouble(), anyInt(), anyDouble(), eq(true), anyString(),
+                any(Pageable.class));
+    }
+
+    @Test
+    void radiusSearchWithFiltersMatchesInMemoryIndex() {
+        NearbyStoreRequest request = StoreSpatialIndexTest.request(10);
+        request.setMaxDeliveryFee(new BigDecimal("20.00"));
+        request.setMaxDeliveryTime(30);
+
+        // Магазин без стоимости и времени доставки проходит фильтры в обоих режимах
+        assertEquals(List.of(4L), service.findNearby(request).stream().map(NearbyStoreDto::getId).toList());
+        assertEquals(inMemory().findNearby(request), service.findNearby(request));
+    }
+
+    @Test
+    void noActiveStoresMeansNoDeliverableQuery() {
+        when(storeRepository.findMaxActiveDeliveryRadius()).thenReturn(null);
+        NearbyStoreRequest request = StoreSpatialIndexTest.request(10);
+        request.setDeliverableOnly(true);
+
+        assertTrue(service.findNearby(request).isEmpty());
+        verify(storeRepository, never()).findNearbyBriefByBoundingBox(anyDouble(), anyDouble(), anyDouble(),
+                anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyDouble(), anyInt(), anyDouble(), anyBoolean(),
+                anyString(), any(Pageable.class));
+    }
+
+    private StoreSpatialIndex inMemory() {
+        StoreSpatialIndex index = new StoreSpatialIndex();
+        index.rebuild(stores);
+        return index;
+    }
+
+    /**
+     * Семантика SQL-запроса: COALESCE пустых полей в 0, фильтры, deliverableOnly, сортировка по расстоянию
+     */
+    private List<StoreNearbyProjection> evaluateSql(double radiusKm, double maxFee, int maxTime, boolean deliverableOnly) {
+        return stores.stream()
+                .map(store -> {
+                    double distance = StoreSpatialIndex.haversineKm(LAT, LON,
+                            store.getAddress().getLatitude().doubleValue(), store.getAddress().getLongitude().doubleValue());
+                    return new Row(store.getId(), store.getName(), orZero(store.getRating()), orZero(store.getDeliveryFee()),
+                            store.getEstimatedDeliveryTime() != null ? store.getEstimatedDeliveryTime() : 0,
+                            store.getPicUrl(), store.getAddress().getCity(), store.getAddress().getStreet(),
+                            store.getDeliveryRadius() != null ? store.getDeliveryRadius() : 0, distance);
+                })
+                .filter(row -> row.getDistanceKm() <= radiusKm
+                        && row.getDeliveryFee().doubleValue() <= maxFee
+                        && row.getEstimatedDeliveryTime() <= maxTime
+                        && (!deliverableOnly || row.getDistanceKm() <= row.getDeliveryRadius()))
+                .sorted(Comparator.comparingDouble(Row::getDistanceKm))
+                .<StoreNearbyProjection>map(row -> row)
+                .toList();
+    }
+
+    private static BigDecimal orZero(BigDecimal value) {
+        return value != null ? value : BigDecimal.ZERO;
+    }
+
+    private record Row(Long id, String name, BigDecimal rating, BigDecimal deliveryFee, Integer estimatedDeliveryTime,
+                       String picUrl, String addressCity, String addressStreet, Integer deliveryRadius,
+                       Double distanceKm) implements StoreNearbyProjection {
+        public Long getId() { return id; }
+        public String getName() { return name; }
+        public Boolean getIsActive() { return true; }
+        public BigDecimal getRating() { return rating; }
+        public BigDecimal getDeliveryFee() { return deliveryFee; }
+        public Integer getEstimatedDeliveryTime() { return estimatedDeliveryTime; }
+        public String getPicUrl() { return picUrl; }
+        public String getPicWebpUrl() { return null; }
+        public String getAddressCity() { return addressCity; }
+        public String getAddressStreet() { return addressStreet; }
+        public LocalDateTime getCreatedAt() { return null; }
+        public Integer getDeliveryRadius() { return deliveryRadius; }
+        public Double getDistanceKm() { return distanceKm; }
+    }
+}
@@ -0,0 +1,139 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreDto;
+import com.example.deliveryproductservice.dto.StoreDto.NearbyStoreRequest;
+import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.model.Store;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Поиск в радиусе и по зоне доставки, точечные изменения и полная перезагрузка,
+ * во время которой читатели не видят пустой индекс
+ */
+class StoreSpatialIndexTest {
+
+    // Киев, Майдан
+    private static final double LAT = 50.4501;
+    private static final double LON = 30.5234;
+
+    static Store store(long id, double lat, double lon, int deliveryRadius, boolean active) {
+        Store store = new Store();
+        store.setId(id);
+        store.setName("Store " + id);
+        store.setIsActive(active);
+        store.setRating(new BigDecimal("4.50"));
+        store.setDeliveryRadius(deliveryRadius);
+        store.setDeliveryFee(new BigDecimal("30.00"));
+        store.setEstimatedDeliveryTime(40);
+        store.setPicUrl("pic");
+        store.setAddress(Address.builder()
+                .street("Хрещатик")
+                .city("Київ")
+                .latitude(BigDecimal.valueOf(lat))
+                .longitude(BigDecimal.valueOf(lon))
+                .build());
+        return store;
+    }
+
+    static NearbyStoreRequest request(int radiusKm) {
+        NearbyStoreRequest request = new NearbyStoreRequest();
+        request.setLatitude(BigDecimal.valueOf(LAT));
+        request.setLongitude(BigDecimal.valueOf(LON));
+        request.setRadiusKm(radiusKm);
+        return request;
+    }
+
+    private static List<Long> ids(List<NearbyStoreDto> stores) {
+        return stores.stream().map(NearbyStoreDto::getId).toList();
+    }
+
+    @Test
+    void findsStoresWithinRadiusSortedByDistance() {
+        StoreSpatialIndex index = new StoreSpatialIndex();
+        index.rebuild(List.of(
+                store(1, LAT + 0.05, LON, 5, true),     // ~5.6 км
+                store(2, LAT + 0.01, LON, 5, true),     // ~1.1 км
+                store(3, LAT + 0.5, LON, 5, true),      // ~56 км
+                store(4, LAT, LON, 5, false)));         // неактивный
+
+        List<NearbyStoreDto> found = index.findNearby(request(10));
+
+        assertEquals(List.of(2L, 1L), ids(found));
+        assertEquals(1.11, found.get(0).getDistanceKm(), 0.01);
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    void deliverableSearchHonoursEachStoreRadius() {
+        StoreSpatialIndex index = new StoreSpatialIndex();
+        index.rebuild(List.of(
+                store(1, LAT + 0.05, LON, 3, true),     // 5.6 км, возит на 3 км
+                store(2, LAT + 0.05, LON, 10, true),    // 5.6 км, возит на 10 км
+                store(3, LAT + 0.5, LON, 80, true)));   // 56 км, возит на 80 км
+
+        NearbyStoreRequest request = request(10);
+        request.setDeliverableOnly(true);
+
+        assertEquals(List.of(2L, 3L), ids(index.findDeliverable(request)));
+    }
+
+    @Test
+    void appliesUpdatesAndRemovals() {
+        StoreSpatialIndex index = new StoreSpatialIndex();
+        index.rebuild(List.of(store(1, LAT + 0.01, LON, 5, true)));
+
+        // Переезд в другую ячейку
+        index.onStoreSaved(store(1, LAT + 0.3, LON, 5, true));
+        assertTrue(index.findNearby(request(10)).isEmpty());
+        assertEquals(List.of(1L), ids(index.findNearby(request(50))));
+
+        index.onStoreSaved(store(2, LAT, LON, 5, true));
+        index.onStoreSaved(store(1, LAT + 0.3, LON, 5, false));
+        assertEquals(List.of(2L), ids(index.findNearby(request(50))));
+
+        index.onStoreRemoved(2L);
+        assertEquals(0, index.size());
+        assertTrue(index.findNearby(request(50)).isEmpty());
+    }
+
+    @Test
+    void rebuildReplacesContentsAtomically() throws Exception {
+        List<Store> stores = new ArrayList<>();
+        for (int i = 0; i < 500; i++) {
+            stores.add(store(i + 1, LAT + (i % 50) * 0.002, LON + (i / 50) * 0.002, 5, true));
+        }
+        StoreSpatialIndex index = new StoreSpatialIndex();
+        index.rebuild(stores);
+
+        NearbyStoreRequest request = request(20);
+        request.setLimit(100);
+        AtomicBoolean running = new AtomicBoolean(true);
+        AtomicInteger partialReads = new AtomicInteger();
+        Thread reader = new Thread(() -> {
+            while (running.get()) {
+                if (index.findNearby(request).size() != 100 || index.size() != 500) {
+                    partialReads.incrementAndGet();
+                }
+            }
+        });
+        reader.start();
+        try {
+            for (int i = 0; i < 50; i++) {
+                index.rebuild(stores);
+            }
+        } finally {
+            running.set(false);
+            reader.join();
+        }
+
+        assertEquals(0, partialReads.get());
+    }
+}
@@ -0,0 +1,104 @@
+package com.example.deliveryproductservice.service;
+
+import com.example.deliveryproductservice.service.CacheInvalidationBus.EntityType;
+import com.example.deliveryproductservice.service.SuggestionIndex.Doc;
+import com.example.deliveryproductservice.service.SuggestionIndex.DocKey;
+import com.example.deliveryproductservice.service.SuggestionIndex.Snapshot;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Индекс подсказок: поиск по началу любого слова, порядок по популярности,
+ * инкрементальное обновление не трогает опубликованный снимок
+ */
+class SuggestionIndexTest {
+
+    private static Map<DocKey, Doc> docs(Doc... docs) {
+        Map<DocKey, Doc> map = new LinkedHashMap<>();
+        for (Doc doc : docs) {
+            map.put(doc.key(), doc);
+        }
+        return map;
+    }
+
+    private static Doc product(long id, String name, boolean popular, float rating) {
+        return new Doc(EntityType.PRODUCT, id, name, SuggestionIndex.score(EntityType.PRODUCT, popular, rating));
+    }
+
+    private static List<String> names(List<Doc> docs) {
+        return docs.stream().map(Doc::name).toList();
+    }
+
+    private final Snapshot snapshot = Snapshot.build(docs(
+            new Doc(EntityType.CATEGORY, 1, "Пицца", SuggestionIndex.score(EntityType.CATEGORY, false, 0)),
+            new Doc(EntityType.STORE, 1, "Пиццерия Наполи", SuggestionIndex.score(EntityType.STORE, false, 4.5f)),
+            product(1, "Пицца Маргарита", false, 4.2f),
+            product(2, "Пицца Пепперони", true, 4.8f),
+            product(3, "Пирог с вишней", false, 3.9f),
+            product(4, "Ёлка шоколадная", false, 4.0f)), 10);
+
+    @Test
+    void ranksByPopularityWithCategoriesFirst() {
+        assertEquals(List.of("Пицца", "Пицца Пепперони", "Пиццерия Наполи", "Пицца Маргарита"),
+                names(snapshot.suggest("пицц", 10)));
+        // Короткий префикс - из заранее посчитанного top-K, тот же порядок
+        assertEquals("Пицца", snapshot.suggest("П", 10).get(0).name());
+        assertEquals(5, snapshot.suggest("пи", 10).size());
+    }
+
+    @Test
+    void matchesAnyWordAndNormalizesInput() {
+        assertEquals(List.of("Пицца Маргарита"), names(snapshot.suggest("марг", 10)));
+        assertEquals(List.of("Пицца Маргарита"), names(snapshot.suggest("  пицца, МАР", 10)));
+        assertEquals(List.of("Ёлка шоколадная"), names(snapshot.suggest("елка", 10)));
+        assertTrue(snapshot.suggest("суши", 10).isEmpty());
+        assertTrue(snapshot.suggest(" !? ", 10).isEmpty());
+    }
+
+    @Test
+    void respectsLimit() {
+        assertEquals(2, snapshot.suggest("пи", 2).size());
+        assertEquals(2, snapshot.suggest("пицц", 2).size());
+        assertTrue(snapshot.suggest("пи", 0).isEmpty());
+        assertTrue(snapshot.suggest("пицц", -1).isEmpty());
+    }
+
+    @Test
+    void appliesChangesWithoutTouchingPublishedSnapshot() {
+        Map<DocKey, Doc> changes = new HashMap<>();
+        changes.put(new DocKey(EntityType.PRODUCT, 2), null);
+        changes.put(new DocKey(EntityType.PRODUCT, 1), product(1, "Пицца Маринара", false, 4.2f));
+        changes.put(new DocKey(EntityType.PRODUCT, 5), product(5, "Пицца Четыре сыра", true, 4.9f));
+
+        Snapshot updated = snapshot.apply(changes);
+
+        assertEquals(List.of("Пицца", "Пицца Четыре сыра", "Пиццерия Наполи", "Пицца Маринара"),
+                names(updated.suggest("пицц", 10)));
+        assertTrue(updated.suggest("маргар", 10).isEmpty());
+        assertEquals(List.of("Пицца Четыре сыра"), names(updated.suggest("чет", 10)));
+        assertEquals("Пицца", updated.suggest("п", 10).get(0).name());
+        assertEquals(6, updated.size());
+        // Слияние дает тот же индекс, что и полная пересборка
+        Map<DocKey, Doc> all = new HashMap<>(docs(
+                new Doc(EntityType.CATEGORY, 1, "Пицца", SuggestionIndex.score(EntityType.CATEGORY, false, 0)),
+                new Doc(EntityType.STORE, 1, "Пиццерия Наполи", SuggestionIndex.score(EntityType.STORE, false, 4.5f)),
+                product(3, "Пирог с вишней", false, 3.9f),
+                product(4, "Ёлка шоколадная", false, 4.0f)));
+        changes.values().stream().filter(doc -> doc != null).forEach(doc -> all.put(doc.key(), doc));
+        Snapshot rebuilt = Snapshot.build(all, 10);
+        assertEquals(rebuilt.keyCount(), updated.keyCount());
+        for (String prefix : List.of("п", "пи", "пиц", "с", "ма", "ё")) {
+            assertEquals(names(rebuilt.suggest(prefix, 10)), names(updated.suggest(prefix, 10)), prefix);
+        }
+
+        assertEquals(List.of("Пицца", "Пицца Пепперони", "Пиццерия Наполи", "Пицца Маргарита"),
+                names(snapshot.suggest("пицц", 10)));
+        assertEquals(6, snapshot.size());
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.deliveryproductservice.service.impl;
+
+import com.example.deliveryproductservice.dto.category.ApiResponse;
+import com.example.deliveryproductservice.dto.category.CategoryResponseDto;
+import com.example.deliveryproductservice.dto.category.CreateCategoryDto;
+import com.example.deliveryproductservice.mapper.CategoryMapper;
+import com.example.deliveryproductservice.model.Category;
+import com.example.deliveryproductservice.repository.CategoryRepository;
+import com.example.deliveryproductservice.service.CacheInvalidationBus;
+import com.example.deliveryproductservice.service.CategoryCatalogCache;
+import com.example.deliveryproductservice.service.ImageDeletionQueue;
+import com.example.deliveryproductservice.service.StorageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+class CategoryServiceImplTransactionTest {
+
+    private ConnectionTrackingTransactionManager transactionManager;
+    private CategoryRepository categoryRepository;
+    private StorageService storageService;
+    private CategoryServiceImpl categoryService;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        transactionManager = new ConnectionTrackingTransactionManager();
+        categoryRepository = mock(CategoryRepository.class);
+        storageService = mock(StorageService.class);
+
+        categoryService = new CategoryServiceImpl(
+                categoryRepository,
+                new CategoryMapper(),
+                storageService,
+                mock(ImageDeletionQueue.class),
+                mock(CategoryCatalogCache.class),
+                mock(CacheInvalidationBus.class),
+                new TransactionTemplate(transactionManager));
+
+        when(storageService.uploadImage(any(MultipartFile.class), anyString())).thenAnswer(invocation -> {
+            assertFalse(transactionManager.isConnectionHeld(), "Image upload must run outside a transaction");
+            return new StorageService.StorageResult("https://cdn/categories/pizza.jpg", "categories/pizza");
+        });
+    }
+
+    @Test
+    void createCategoryUploadsWithoutHoldingConnection() {
+        when(categoryRepository.save(any(Category.class))).thenAnswer(invocation -> {
+            assertTrue(transactionManager.isConnectionHeld());
+            Category category = invocation.getArgument(0);
+            category.setId(3L);
+            return category;
+        });
+
+        ApiResponse<CategoryResponseDto> response = categoryService.createCategory(createCategoryDto(), 1L);
+
+        assertTrue(response.isSuccess());
+        assertEquals("https://cdn/categories/pizza.jpg", response.getData().getImageUrl());
+        assertEquals(1, transactionManager.getCommits());
+        verify(storageService, never()).deleteImage(anyString());
+    }
+
+    @Test
+    void createCategoryDeletesUploadedImageWhenCommitFails() {
+        when(categoryRepository.save(any(Category.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+
+        ApiResponse<CategoryResponseDto> response = categoryService.createCategory(createCategoryDto(), 1L);
+
+        assertTrue(response.isError());
+        assertEquals(1, transactionManager.getRollbacks());
+        verify(storageService).deleteImage("categories/pizza");
+    }
+
+    private static CreateCategoryDto createCategoryDto() {
+        CreateCategoryDto dto = new CreateCategoryDto();
+        dto.setName("Pizza");
+        dto.setImageFile(new MockMultipartFile("imageFile", "pizza.jpg", "image/jpeg", new byte[]{1, 2, 3}));
+        return dto;
+    }
+}
@@ -0,0 +1,60 @@
+package com.example.deliveryproductservice.service.impl;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Тестовый менеджер транзакций: вместо JDBC-соединения отмечает, что текущий поток
+ * "держит соединение" между begin и завершением транзакции
+ */
+class ConnectionTrackingTransactionManager extends AbstractPlatformTransactionManager {
+
+    private final ThreadLocal<Boolean> connectionHeld = ThreadLocal.withInitial(() -> false);
+    private final AtomicInteger commits = new AtomicInteger();
+    private final AtomicInteger rollbacks = new AtomicInteger();
+
+    boolean isConnectionHeld() {
+        return connectionHeld.get();
+    }
+
+    int getCommits() {
+        return commits.get();
+    }
+
+    int getRollbacks() {
+        return rollbacks.get();
+    }
+
+    @Override
+    protected Object doGetTransaction() {
+        return new Object();
+    }
+
+    @Override
+    protected boolean isExistingTransaction(Object transaction) {
+        return connectionHeld.get();
+    }
+
+    @Override
+    protected void doBegin(Object transaction, TransactionDefinition definition) {
+        connectionHeld.set(true);
+    }
+
+    @Override
+    protected void doCommit(DefaultTransactionStatus status) {
+        commits.incrementAndGet();
+    }
+
+    @Override
+    protected void doRollback(DefaultTransactionStatus status) {
+        rollbacks.incrementAndGet();
+    }
+
+    @Override
+    protected void doCleanupAfterCompletion(Object transaction) {
+        connectionHeld.set(false);
+    }
+}
@@ -0,0 +1,204 @@
+package com.example.deliveryproductservice.service.impl;
+
+import com.example.deliveryproductservice.dto.GeoLocation.CreateAddressRequest;
+import com.example.deliveryproductservice.dto.StoreDto.CreateStoreDto;
+import com.example.deliveryproductservice.dto.StoreDto.SingleStoreResponseWrapper;
+import com.example.deliveryproductservice.dto.StoreDto.StoreResponseDto;
+import com.example.deliveryproductservice.dto.StoreDto.UpdateStoreDto;
+import com.example.deliveryproductservice.mapper.StoreMapper;
+import com.example.deliveryproductservice.model.Address;
+import com.example.deliveryproductservice.model.ImageVariants;
+import com.example.deliveryproductservice.model.Store;
+import com.example.deliveryproductservice.repository.StoreRepository;
+import com.example.deliveryproductservice.service.AsyncImageUploadService;
+import com.example.deliveryproductservice.service.CacheInvalidationBus;
+import com.example.deliveryproductservice.service.GeocodingService;
+import com.example.deliveryproductservice.service.ImageDeletionQueue;
+import com.example.deliveryproductservice.service.StorageService;
+import com.example.deliveryproductservice.service.StoreGeoQueryService;
+import com.example.deliveryproductservice.service.StoreSpatialIndex;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.mock.web.MockMultipartFile;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+/**
+ * Удаленные вызовы (Mapbox, Cloudinary) не должны выполняться внутри транзакции,
+ * а при неудачном коммите загруженное изображение должно удаляться
+ */
+class StoreServiceImplTransactionTest {
+
+    private ConnectionTrackingTransactionManager transactionManager;
+    private StoreRepository storeRepository;
+    private StorageService storageService;
+    private ImageDeletionQueue imageDeletionQueue;
+    private GeocodingService geocodingService;
+    private StoreServiceImpl storeService;
+
+    @BeforeEach
+    void setUp() {
+        transactionManager = new ConnectionTrackingTransactionManager();
+        storeRepository = mock(StoreRepository.class);
+        storageService = mock(StorageService.class);
+        imageDeletionQueue = mock(ImageDeletionQueue.class);
+        geocodingService = mock(GeocodingService.class);
+
+        storeService = new StoreServiceImpl(
+                storeRepository,
+                new StoreMapper(),
+                storageService,
+                geocodingService,
+                new StoreSpatialIndex(),
+                mock(StoreGeoQueryService.class),
+                mock(AsyncImageUploadService.class),
+                imageDeletionQueue,
+                mock(CacheInvalidationBus.class),
+                new TransactionTemplate(transactionManager));
+
+        when(geocodingService.createAddressWithCoordinates(any(CreateAddressRequest.class))).thenAnswer(invocation -> {
+            assertFalse(transactionManager.isConnectionHeld(), "Geocoding must run outside a transaction");
+            return address();
+        });
+    }
+
+    @Test
+    void createStoreUploadsAndGeocodesWithoutHoldingConnection() throws Exception {
+        when(storageService.uploadImage(any(MultipartFile.class))).thenAnswer(invocation -> {
+            assertFalse(transactionManager.isConnectionHeld(), "Image upload must run outside a transaction");
+            return new StorageService.StorageResult("https://cdn/stores/img-1.jpg", "stores/img-1",
+                    ImageVariants.builder().thumbUrl("https://cdn/stores/img-1_thumb.jpg").build());
+        });
+        when(storeRepository.save(any(Store.class))).thenAnswer(invocation -> {
+            assertTrue(transactionManager.isConnectionHeld(), "Store must be saved inside the commit transaction");
+            Store store = invocation.getArgument(0);
+            store.setId(1L);
+            return store;
+        });
+
+        StoreResponseDto response = storeService.createStore(createStoreDto(), 42L);
+
+        assertEquals(1L, response.getId());
+        assertEquals("https://cdn/stores/img-1.jpg", response.getPicUrl());
+        assertEquals("https://cdn/stores/img-1_thumb.jpg", response.getImageVariants().getThumbUrl());
+        assertEquals(1, transactionManager.getCommits());
+        verify(storageService, never()).deleteImage(any());
+    }
+
+    @Test
+    void createStoreDeletesUploadedImageWhenCommitFails() throws Exception {
+        when(storageService.uploadImage(any(MultipartFile.class)))
+                .thenReturn(new StorageService.StorageResult("https://cdn/stores/img-1.jpg", "stores/img-1"));
+        when(storeRepository.save(any(Store.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        when(storageService.deleteImage("stores/img-1")).thenAnswer(invocation -> {
+            assertFalse(transactionManager.isConnectionHeld(), "Compensation must run after the transaction");
+            return true;
+        });
+
+        assertThrows(DataIntegrityViolationException.class, () -> storeService.createStore(createStoreDto(), 42L));
+
+        assertEquals(1, transactionManager.getRollbacks());
+        verify(storageService).deleteImage("stores/img-1");
+    }
+
+    @Test
+    void createStoreAsyncDeletesPendingCopyWhenSaveFails() throws Exception {
+        when(storeRepository.save(any(Store.class)))
+                .thenThrow(new DataIntegrityViolationException("duplicate key"));
+        Set<Path> before = pendingImageCopies();
+
+        assertThrows(DataIntegrityViolationException.class, () -> storeService.createStoreAsync(createStoreDto(), 42L));
+
+        assertEquals(1, transactionManager.getRollbacks());
+        assertEquals(before, pendingImageCopies(), "Temporary image copy must be deleted");
+    }
+
+    @Test
+    void updateStoreReplacesImageOutsideTransactionAndQueuesOldForDeletion() throws Exception {
+        Store existing = new Store();
+        existing.setId(7L);
+        existing.setOwnerId(42L);
+        existing.setName("Old name");
+        existing.setAddress(address());
+        existing.setIsActive(true);
+        existing.setDeliveryRadius(5);
+        existing.setDeliveryFee(BigDecimal.TEN);
+        existing.setEstimatedDeliveryTime(30);
+        existing.setPicUrl("https://cdn/stores/old.jpg");
+        existing.setPicId("stores/old");
+
+        when(storeRepository.findById(7L)).thenReturn(Optional.of(existing));
+        when(storageService.uploadImage(any(MultipartFile.class), any(String.class))).thenAnswer(invocation -> {
+            assertFalse(transactionManager.isConnectionHeld(), "Image upload must run outside a transaction");
+            return new StorageService.StorageResult("https://cdn/stores/new.jpg", "stores/new");
+        });
+        when(storeRepository.save(any(Store.class))).thenAnswer(invocation -> {
+            assertTrue(transactionManager.isConnectionHeld());
+            return invocation.getArgument(0);
+        });
+        doAnswer(invocation -> {
+            assertTrue(transactionManager.isConnectionHeld(), "Old image must be queued in the commit transaction");
+            return null;
+        }).when(imageDeletionQueue).enqueue("stores/old");
+
+        UpdateStoreDto update = new UpdateStoreDto();
+        update.setName("New name");
+        update.setImageFile(imageFile());
+
+        SingleStoreResponseWrapper response = storeService.updateStore(7L, update, 42L);
+
+        assertTrue(response.getSuccess());
+        assertEquals("New name", response.getStore().getName());
+        assertEquals("https://cdn/stores/new.jpg", response.getStore().getPicUrl());
+        verify(imageDeletionQueue).enqueue("stores/old");
+        verify(storageService, never()).deleteImage(any());
+    }
+
+    private static CreateStoreDto createStoreDto() {
+        CreateStoreDto dto = new CreateStoreDto();
+        dto.setName("Test store");
+        dto.setStreet("Sumska 1");
+        dto.setCity("Kharkiv");
+        dto.setDeliveryRadius(5);
+        dto.setDeliveryFee(BigDecimal.TEN);
+        dto.setEstimatedDeliveryTime(30);
+        dto.setImageFile(imageFile());
+        return dto;
+    }
+
+    // Копии PendingImage.copyOf во временном каталоге
+    private static Set<Path> pendingImageCopies() throws IOException {
+        try (Stream<Path> files = Files.list(Path.of(System.getProperty("java.io.tmpdir")))) {
+            return files.filter(file -> file.getFileName().toString().startsWith("pending-image-"))
+                    .collect(Collectors.toSet());
+        }
+    }
+
+    private static MockMultipartFile imageFile() {
+        return new MockMultipartFile("imageFile", "store.jpg", "image/jpeg", new byte[]{1, 2, 3});
+    }
+
+    private static Address address() {
+        return Address.builder()
+                .street("Sumska 1")
+                .city("Kharkiv")
+                .latitude(new BigDecimal("49.99350000"))
+                .longitude(new BigDecimal("36.23040000"))
+                .build();
+    }
+}